@@ -10,12 +10,25 @@ CREATE TABLE IF NOT EXISTS users (
     display_name VARCHAR(255),
     is_admin CHAR(1) DEFAULT 'N',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-    last_login DATETIME
+    last_login DATETIME,
+    sync_seq BIGINT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Canonical locations (normalized from free-text fuel-up locations)
+CREATE TABLE IF NOT EXISTS locations (
+    location_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    canonical_name VARCHAR(255) NOT NULL UNIQUE,
+    display_name VARCHAR(500),
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- Fuel ups table
+-- Partitioned by year (FuelUpPartitionManager adds next year's partition
+-- monthly; FuelUpArchiver truncates years moved to the archive). MySQL
+-- requires the partition column in the primary key and does not support
+-- foreign keys on partitioned tables, so user_id is not constrained here.
 CREATE TABLE IF NOT EXISTS fuel_ups (
-    fuel_up_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    fuel_up_id BIGINT AUTO_INCREMENT,
     user_id VARCHAR(50) NOT NULL,
     fuel_date DATE NOT NULL,
     gallons DECIMAL(10,2) NOT NULL,
@@ -23,11 +36,50 @@ CREATE TABLE IF NOT EXISTS fuel_ups (
     total_cost DECIMAL(10,2),
     engine_hours DECIMAL(10,1),
     location TEXT,
+    location_id BIGINT,
+    latitude DOUBLE,
+    longitude DOUBLE,
+    geo_cell BIGINT,
+    sync_seq BIGINT,
     notes TEXT,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
-    INDEX idx_user_date (user_id, fuel_date),
-    INDEX idx_fuel_date (fuel_date)
+    deleted_at DATETIME NULL,
+    PRIMARY KEY (fuel_up_id, fuel_date),
+    -- Covering index for the list projection and statistics (InnoDB
+    -- appends the primary key, so fuel_up_id is covered too)
+    INDEX idx_user_date (user_id, deleted_at, fuel_date, gallons, price_per_gallon, total_cost),
+    INDEX idx_fuel_date (fuel_date),
+    INDEX idx_location_id (location_id),
+    INDEX idx_geo_cell (geo_cell),
+    INDEX idx_user_sync_seq (user_id, sync_seq),
+    INDEX idx_deleted_at (deleted_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
+PARTITION BY RANGE (YEAR(fuel_date)) (
+    PARTITION p_archived VALUES LESS THAN (2024),
+    PARTITION p2024 VALUES LESS THAN (2025),
+    PARTITION p2025 VALUES LESS THAN (2026),
+    PARTITION p2026 VALUES LESS THAN (2027),
+    PARTITION p2027 VALUES LESS THAN (2028),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- Deleted fuel-ups, kept for delta sync
+CREATE TABLE IF NOT EXISTS fuel_up_tombstones (
+    tombstone_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id VARCHAR(50) NOT NULL,
+    fuel_up_id BIGINT NOT NULL,
+    sync_seq BIGINT NOT NULL,
+    deleted_at DATETIME,
+    INDEX idx_tombstone_user_seq (user_id, sync_seq)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Client idempotency keys for fuel-up submissions (purged after expiry)
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    request_key VARCHAR(160) PRIMARY KEY,
+    fuel_up_id BIGINT,
+    created_at DATETIME,
+    expires_at DATETIME NOT NULL,
+    INDEX idx_idempotency_expires (expires_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 -- Insert test user
@@ -42,3 +94,18 @@ VALUES
     ('testuser', '2025-09-15', 30.0, 3.95, 118.50, 95.2, 'Harbor Point', 'Long trip fuel-up'),
     ('testuser', '2025-09-01', 22.3, 3.79, 84.52, 88.1, 'Marina Bay', 'Weekend outing')
 ON DUPLICATE KEY UPDATE fuel_up_id=fuel_up_id;
+
+-- Link sample fuel-ups to canonical locations
+INSERT IGNORE INTO locations (canonical_name, display_name)
+VALUES ('marina bay', 'Marina Bay'), ('harbor point', 'Harbor Point');
+
+UPDATE fuel_ups f JOIN locations l ON LOWER(TRIM(f.location)) = l.canonical_name
+SET f.location_id = l.location_id
+WHERE f.location_id IS NULL;
+
+-- Give existing fuel-ups a change sequence; IDs are already increasing per user
+UPDATE fuel_ups SET sync_seq = fuel_up_id WHERE sync_seq IS NULL;
+
+UPDATE users u
+SET u.sync_seq = (SELECT COALESCE(MAX(f.sync_seq), 0) FROM fuel_ups f WHERE f.user_id = u.user_id)
+WHERE u.sync_seq IS NULL;
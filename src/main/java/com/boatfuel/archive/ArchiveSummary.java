@@ -0,0 +1,50 @@
+package com.boatfuel.archive;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals of a user's archived fuel-ups, read from archive footers without
+ * decoding any rows
+ */
+public class ArchiveSummary {
+
+    public static final ArchiveSummary EMPTY = new ArchiveSummary(0, 0, 0, 0);
+
+    private final int count;
+    private final long gallonsHundredths;
+    private final long totalCostHundredths;
+    private final long priceHundredths;
+
+    public ArchiveSummary(int count, long gallonsHundredths, long totalCostHundredths, long priceHundredths) {
+        this.count = count;
+        this.gallonsHundredths = gallonsHundredths;
+        this.totalCostHundredths = totalCostHundredths;
+        this.priceHundredths = priceHundredths;
+    }
+
+    public ArchiveSummary plus(ArchiveSummary other) {
+        return new ArchiveSummary(count + other.count,
+            gallonsHundredths + other.gallonsHundredths,
+            totalCostHundredths + other.totalCostHundredths,
+            priceHundredths + other.priceHundredths);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public BigDecimal getTotalGallons() {
+        return BigDecimal.valueOf(gallonsHundredths, 2);
+    }
+
+    public BigDecimal getTotalSpent() {
+        return BigDecimal.valueOf(totalCostHundredths, 2);
+    }
+
+    /**
+     * Sum of price-per-gallon over all archived fill-ups (for averaging)
+     */
+    public BigDecimal getSumPricePerGallon() {
+        return BigDecimal.valueOf(priceHundredths, 2);
+    }
+}
@@ -0,0 +1,498 @@
+package com.boatfuel.archive;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One year of archived fuel-ups in a compressed, columnar file.
+ *
+ * Rows are grouped by user. Each group stores its columns one after the
+ * other (IDs and dates delta-encoded, amounts as fixed-point hundredths,
+ * all as zig-zag varints) and is gzipped on its own, so reading one user
+ * inflates only that user's group. A footer lists every group with its
+ * offset, date range and totals; statistics are answered from the footer
+ * alone.
+ *
+ * Layout: MAGIC, groups..., footer, footer offset (long), MAGIC
+ */
+public class FuelUpArchive {
+
+    static final int MAGIC = 0x42464152; // "BFAR"
+
+    private final File file;
+    private final int year;
+    private final Map<String, Group> groups;
+    private final int rowCount;
+
+    private FuelUpArchive(File file, int year, Map<String, Group> groups) {
+        this.file = file;
+        this.year = year;
+        this.groups = groups;
+        int rows = 0;
+        for (Group group : groups.values()) {
+            rows += group.rows;
+        }
+        this.rowCount = rows;
+    }
+
+    /**
+     * Write rows (ordered by user) to the file, atomically replacing it
+     * @return the archive, opened
+     */
+    public static FuelUpArchive write(File target, int year, Iterator<FuelUp> rows) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        Map<String, Group> groups = new LinkedHashMap<>();
+
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(year);
+            long offset = 8;
+
+            List<FuelUp> pending = new ArrayList<>();
+            String currentUser = null;
+            while (rows.hasNext()) {
+                FuelUp row = rows.next();
+                String userId = row.getUser().getUserId();
+                if (currentUser != null && !currentUser.equals(userId)) {
+                    offset += writeGroup(out, currentUser, pending, offset, groups);
+                    pending.clear();
+                }
+                currentUser = userId;
+                pending.add(row);
+            }
+            if (currentUser != null) {
+                offset += writeGroup(out, currentUser, pending, offset, groups);
+            }
+
+            long footerOffset = offset;
+            out.writeInt(groups.size());
+            for (Group group : groups.values()) {
+                group.writeTo(out);
+            }
+            out.writeLong(footerOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new FuelUpArchive(target, year, groups);
+    }
+
+    /**
+     * Open an archive, reading only its footer
+     */
+    public static FuelUpArchive open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 20 || raf.readInt() != MAGIC) {
+                throw new IOException("Not a fuel-up archive: " + file);
+            }
+            int year = raf.readInt();
+            raf.seek(raf.length() - 12);
+            long footerOffset = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("Truncated fuel-up archive: " + file);
+            }
+            byte[] footer = new byte[(int) (raf.length() - 12 - footerOffset)];
+            raf.seek(footerOffset);
+            raf.readFully(footer);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer));
+            int count = in.readInt();
+            Map<String, Group> groups = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Group group = Group.readFrom(in);
+                groups.put(group.userId, group);
+            }
+            return new FuelUpArchive(file, year, groups);
+        }
+    }
+
+    /**
+     * A user's archived fuel-ups dated from..to (inclusive, null for open
+     * ends), as detached entities
+     */
+    public List<FuelUp> read(String userId, LocalDate from, LocalDate to) throws IOException {
+        Group group = groups.get(userId);
+        if (group == null
+                || (from != null && group.maxEpochDay < from.toEpochDay())
+                || (to != null && group.minEpochDay > to.toEpochDay())) {
+            return Collections.emptyList();
+        }
+
+        byte[] compressed = new byte[group.length];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(group.offset);
+            raf.readFully(compressed);
+        }
+        List<FuelUp> rows = decodeGroup(userId, group.rows,
+            new GZIPInputStream(new ByteArrayInputStream(compressed)));
+
+        if (from == null && to == null) {
+            return rows;
+        }
+        List<FuelUp> inRange = new ArrayList<>(rows.size());
+        for (FuelUp row : rows) {
+            LocalDate date = toLocalDate(row.getDate());
+            if ((from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to))) {
+                inRange.add(row);
+            }
+        }
+        return inRange;
+    }
+
+    public ArchiveSummary summarize(String userId) {
+        Group group = groups.get(userId);
+        return group == null ? ArchiveSummary.EMPTY : group.summary;
+    }
+
+    /**
+     * The archived row with this ID, decoding groups until it is found;
+     * null if the archive does not hold it
+     */
+    public FuelUp find(long id) throws IOException {
+        for (String userId : groups.keySet()) {
+            for (FuelUp row : read(userId, null, null)) {
+                if (row.getId() == id) {
+                    return row;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * IDs of every archived row, decoding all groups
+     */
+    public Set<Long> readIds() throws IOException {
+        Set<Long> ids = new HashSet<>(rowCount * 2);
+        for (String userId : groups.keySet()) {
+            for (FuelUp row : read(userId, null, null)) {
+                ids.add(row.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Users with rows in the archive
+     */
+    public Set<String> getUserIds() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static int writeGroup(DataOutputStream out, String userId, List<FuelUp> rows,
+                                  long offset, Map<String, Group> groups) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            encodeGroup(rows, gzip);
+        }
+        byte[] compressed = bytes.toByteArray();
+        out.write(compressed);
+
+        long minDay = Long.MAX_VALUE;
+        long maxDay = Long.MIN_VALUE;
+        for (FuelUp row : rows) {
+            long day = toLocalDate(row.getDate()).toEpochDay();
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+        groups.put(userId, new Group(userId, offset, compressed.length, rows.size(), minDay, maxDay,
+            summarize(rows)));
+        return compressed.length;
+    }
+
+    /**
+     * Totals of decoded rows, as the footer stores them
+     */
+    static ArchiveSummary summarize(List<FuelUp> rows) {
+        long gallons = 0;
+        long cost = 0;
+        long price = 0;
+        for (FuelUp row : rows) {
+            gallons += hundredths(row.getGallons());
+            cost += hundredths(row.getTotalCost());
+            price += hundredths(row.getPricePerGallon());
+        }
+        return new ArchiveSummary(rows.size(), gallons, cost, price);
+    }
+
+    /**
+     * Columns in order; each column holds one value per row
+     */
+    private static void encodeGroup(List<FuelUp> rows, OutputStream out) throws IOException {
+        long previous = 0;
+        for (FuelUp row : rows) {
+            writeVarLong(out, row.getId() - previous);
+            previous = row.getId();
+        }
+        previous = 0;
+        for (FuelUp row : rows) {
+            long day = toLocalDate(row.getDate()).toEpochDay();
+            writeVarLong(out, day - previous);
+            previous = day;
+        }
+        for (FuelUp row : rows) {
+            writeDecimal(out, row.getGallons(), 2);
+        }
+        for (FuelUp row : rows) {
+            writeDecimal(out, row.getPricePerGallon(), 2);
+        }
+        for (FuelUp row : rows) {
+            writeDecimal(out, row.getTotalCost(), 2);
+        }
+        for (FuelUp row : rows) {
+            writeDecimal(out, row.getEngineHours(), 1);
+        }
+        for (FuelUp row : rows) {
+            writeNullableLong(out, row.getLocationId());
+        }
+        for (FuelUp row : rows) {
+            writeNullableLong(out, row.getLatitude() == null ? null : Double.doubleToLongBits(row.getLatitude()));
+        }
+        for (FuelUp row : rows) {
+            writeNullableLong(out, row.getLongitude() == null ? null : Double.doubleToLongBits(row.getLongitude()));
+        }
+        for (FuelUp row : rows) {
+            writeNullableLong(out, row.getCreatedAt() == null ? null : row.getCreatedAt().getTime());
+        }
+        for (FuelUp row : rows) {
+            writeString(out, row.getLocation());
+        }
+        for (FuelUp row : rows) {
+            writeString(out, row.getNotes());
+        }
+    }
+
+    private static List<FuelUp> decodeGroup(String userId, int count, InputStream compressed) throws IOException {
+        try (InputStream in = compressed) {
+            User user = new User();
+            user.setUserId(userId);
+            List<FuelUp> rows = new ArrayList<>(count);
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                FuelUp row = new FuelUp();
+                row.setUser(user);
+                previous += readVarLong(in);
+                row.setId(previous);
+                rows.add(row);
+            }
+            previous = 0;
+            for (FuelUp row : rows) {
+                previous += readVarLong(in);
+                row.setDate(java.sql.Date.valueOf(LocalDate.ofEpochDay(previous)));
+            }
+            for (FuelUp row : rows) {
+                row.setGallons(readDecimal(in, 2));
+            }
+            for (FuelUp row : rows) {
+                row.setPricePerGallon(readDecimal(in, 2));
+            }
+            for (FuelUp row : rows) {
+                // After gallons and price: their setters recompute the total
+                row.setTotalCost(readDecimal(in, 2));
+            }
+            for (FuelUp row : rows) {
+                row.setEngineHours(readDecimal(in, 1));
+            }
+            for (FuelUp row : rows) {
+                row.setLocationId(readNullableLong(in));
+            }
+            Long[] latitudes = new Long[count];
+            for (int i = 0; i < count; i++) {
+                latitudes[i] = readNullableLong(in);
+            }
+            for (int i = 0; i < count; i++) {
+                Long longitude = readNullableLong(in);
+                if (latitudes[i] != null && longitude != null) {
+                    rows.get(i).setLatitude(Double.longBitsToDouble(latitudes[i]));
+                    rows.get(i).setLongitude(Double.longBitsToDouble(longitude));
+                }
+            }
+            for (FuelUp row : rows) {
+                Long createdAt = readNullableLong(in);
+                row.setCreatedAt(createdAt == null ? null : new Date(createdAt));
+            }
+            for (FuelUp row : rows) {
+                row.setLocation(readString(in));
+            }
+            for (FuelUp row : rows) {
+                row.setNotes(readString(in));
+            }
+            return rows;
+        }
+    }
+
+    static LocalDate toLocalDate(Date date) {
+        return date instanceof java.sql.Date
+            ? ((java.sql.Date) date).toLocalDate()
+            : new java.sql.Date(date.getTime()).toLocalDate();
+    }
+
+    private static long hundredths(BigDecimal value) {
+        return value == null ? 0 : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static void writeDecimal(OutputStream out, BigDecimal value, int scale) throws IOException {
+        writeNullableLong(out, value == null ? null : value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValue());
+    }
+
+    private static BigDecimal readDecimal(InputStream in, int scale) throws IOException {
+        Long unscaled = readNullableLong(in);
+        return unscaled == null ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    // Null is a 0 flag byte, otherwise 1 followed by the value
+    private static void writeNullableLong(OutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            writeVarLong(out, value);
+        }
+    }
+
+    private static Long readNullableLong(InputStream in) throws IOException {
+        return readByte(in) == 0 ? null : readVarLong(in);
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        new DataInputStream(in).readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Zig-zag varint: small magnitudes of either sign take few bytes
+     */
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte(in);
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new IOException("Unexpected end of archive group");
+        }
+        return b;
+    }
+
+    /**
+     * Footer entry for one user's row group
+     */
+    private static final class Group {
+        final String userId;
+        final long offset;
+        final int length;
+        final int rows;
+        final long minEpochDay;
+        final long maxEpochDay;
+        final ArchiveSummary summary;
+
+        Group(String userId, long offset, int length, int rows, long minEpochDay, long maxEpochDay,
+              ArchiveSummary summary) {
+            this.userId = userId;
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+            this.minEpochDay = minEpochDay;
+            this.maxEpochDay = maxEpochDay;
+            this.summary = summary;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(userId);
+            out.writeLong(offset);
+            out.writeInt(length);
+            out.writeInt(rows);
+            out.writeLong(minEpochDay);
+            out.writeLong(maxEpochDay);
+            out.writeLong(summary.getTotalGallons().unscaledValue().longValue());
+            out.writeLong(summary.getTotalSpent().unscaledValue().longValue());
+            out.writeLong(summary.getSumPricePerGallon().unscaledValue().longValue());
+        }
+
+        static Group readFrom(DataInputStream in) throws IOException {
+            String userId = in.readUTF();
+            long offset = in.readLong();
+            int length = in.readInt();
+            int rows = in.readInt();
+            long minDay = in.readLong();
+            long maxDay = in.readLong();
+            ArchiveSummary summary = new ArchiveSummary(rows, in.readLong(), in.readLong(), in.readLong());
+            return new Group(userId, offset, length, rows, minDay, maxDay, summary);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.boatfuel.archive;
+
+import com.boatfuel.entity.FuelUp;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Directory of yearly fuel-up archives (fuel_ups-YYYY.bfa).
+ *
+ * Archive footers are loaded once and kept in memory; rows are only
+ * decoded for the user and years a read actually reaches.
+ *
+ * A new archive starts out pending removal, recorded on disk by a
+ * fuel_ups-YYYY.bfa.pending marker that is created before the archive
+ * file. While a year is pending its rows are still (partly) in FUEL_UPS,
+ * so reads only serve the archived rows already reported removed from
+ * the table. Once every row is gone the marker is deleted and the whole
+ * archive is served. A pending year found on startup serves nothing
+ * until the archiver has finished removing it.
+ *
+ * Archived rows deleted later are recorded per year in an append-only
+ * fuel_ups-YYYY.bfa.deleted file of (user, ID) entries; reads and
+ * summaries leave them out.
+ */
+public class FuelUpArchiveStore {
+
+    private static final Logger logger = Logger.getLogger(FuelUpArchiveStore.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("fuel_ups-(\\d{4})\\.bfa");
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String DELETED_SUFFIX = ".deleted";
+
+    private final File directory;
+    private final NavigableMap<Integer, ArchivedYear> archives = new ConcurrentSkipListMap<>();
+
+    public FuelUpArchiveStore(File directory) {
+        this.directory = directory;
+        load();
+    }
+
+    public File fileFor(int year) {
+        return new File(directory, "fuel_ups-" + year + ".bfa");
+    }
+
+    /**
+     * Whether the year is archived and its rows are gone from FUEL_UPS
+     */
+    public boolean isArchived(int year) {
+        ArchivedYear archived = archives.get(year);
+        return archived != null && archived.removed == null;
+    }
+
+    /**
+     * Archived years whose rows may still be in FUEL_UPS
+     */
+    public SortedSet<Integer> getPendingYears() {
+        SortedSet<Integer> years = new TreeSet<>();
+        for (Map.Entry<Integer, ArchivedYear> entry : archives.entrySet()) {
+            if (entry.getValue().removed != null) {
+                years.add(entry.getKey());
+            }
+        }
+        return years;
+    }
+
+    public FuelUpArchive getArchive(int year) {
+        ArchivedYear archived = archives.get(year);
+        return archived == null ? null : archived.archive;
+    }
+
+    public boolean isEmpty() {
+        return archives.isEmpty();
+    }
+
+    /**
+     * Users with rows in any archived year
+     */
+    public Set<String> getUserIds() {
+        Set<String> userIds = new TreeSet<>();
+        for (ArchivedYear archived : archives.values()) {
+            userIds.addAll(archived.archive.getUserIds());
+        }
+        return userIds;
+    }
+
+    /**
+     * Newest archived year, or null
+     */
+    public Integer getLatestYear() {
+        return archives.isEmpty() ? null : archives.lastKey();
+    }
+
+    /**
+     * Write the archive for a year and register it as pending removal
+     */
+    public FuelUpArchive write(int year, Iterator<FuelUp> rowsByUser) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory: " + directory.getAbsolutePath());
+        }
+        File marker = pendingMarker(year);
+        if (!marker.exists()) {
+            Files.createFile(marker.toPath());
+        }
+        // Left over from a write that never finished; its IDs were never served
+        Files.deleteIfExists(deletedFile(year).toPath());
+        FuelUpArchive archive = FuelUpArchive.write(fileFor(year), year, rowsByUser);
+        archives.put(year, new ArchivedYear(archive, ConcurrentHashMap.newKeySet(), new ConcurrentHashMap<>()));
+        return archive;
+    }
+
+    /**
+     * Record rows of a pending year as deleted from FUEL_UPS, so reads
+     * serve them from the archive from now on
+     */
+    public void markRemoved(int year, Collection<Long> ids) {
+        ArchivedYear archived = archives.get(year);
+        if (archived != null && archived.removed != null) {
+            archived.removed.addAll(ids);
+        }
+    }
+
+    /**
+     * Every row of a pending year is gone from FUEL_UPS; serve the whole
+     * archive
+     */
+    public void completeRemoval(int year) throws IOException {
+        ArchivedYear archived = archives.get(year);
+        if (archived == null || archived.removed == null) {
+            return;
+        }
+        Files.deleteIfExists(pendingMarker(year).toPath());
+        archives.put(year, new ArchivedYear(archived.archive, null, archived.deleted));
+    }
+
+    /**
+     * Record a user's archived rows as deleted, grouped by the year they
+     * are archived under; rows of years without an archive are ignored
+     */
+    public void delete(String userId, Collection<FuelUp> rows) throws IOException {
+        Map<Integer, List<Long>> idsByYear = new HashMap<>();
+        for (FuelUp row : rows) {
+            int year = FuelUpArchive.toLocalDate(row.getDate()).getYear();
+            idsByYear.computeIfAbsent(year, y -> new ArrayList<>()).add(row.getId());
+        }
+        for (Map.Entry<Integer, List<Long>> entry : idsByYear.entrySet()) {
+            delete(entry.getKey(), userId, entry.getValue());
+        }
+    }
+
+    /**
+     * Record archived rows of a year as deleted. The entries are synced to
+     * disk before they take effect, so a deleted row is never served again.
+     */
+    public synchronized void delete(int year, String userId, Collection<Long> ids) throws IOException {
+        ArchivedYear archived = archives.get(year);
+        if (archived == null || ids.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(bytes);
+        for (Long id : ids) {
+            entries.writeUTF(userId);
+            entries.writeLong(id);
+        }
+        try (FileOutputStream out = new FileOutputStream(deletedFile(year), true)) {
+            out.write(bytes.toByteArray());
+            out.getFD().sync();
+        }
+        archived.deleted.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).addAll(ids);
+    }
+
+    /**
+     * The archived row with this ID, decoding every group of every year;
+     * null if no archive serves it. For deletes that only have an ID.
+     */
+    public FuelUp find(long id) throws IOException {
+        for (ArchivedYear archived : archives.descendingMap().values()) {
+            FuelUp row = archived.archive.find(id);
+            if (row != null) {
+                return archived.serves(row) ? row : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A user's archived fuel-ups dated from..to (null for open ends),
+     * newest year first
+     */
+    public List<FuelUp> read(String userId, LocalDate from, LocalDate to) throws IOException {
+        List<FuelUp> rows = new ArrayList<>();
+        if (archives.isEmpty()) {
+            return rows;
+        }
+        int fromYear = from == null ? archives.firstKey() : from.getYear();
+        int toYear = to == null ? archives.lastKey() : to.getYear();
+        if (fromYear > toYear) {
+            return rows;
+        }
+        for (ArchivedYear archived : archives.subMap(fromYear, true, toYear, true).descendingMap().values()) {
+            rows.addAll(archived.read(userId, from, to));
+        }
+        return rows;
+    }
+
+    public ArchiveSummary summarize(String userId) throws IOException {
+        ArchiveSummary summary = ArchiveSummary.EMPTY;
+        for (ArchivedYear archived : archives.values()) {
+            summary = summary.plus(archived.removed == null && !archived.deleted.containsKey(userId)
+                ? archived.archive.summarize(userId)
+                : FuelUpArchive.summarize(archived.read(userId, null, null)));
+        }
+        return summary;
+    }
+
+    private File pendingMarker(int year) {
+        return new File(directory, fileFor(year).getName() + PENDING_SUFFIX);
+    }
+
+    private File deletedFile(int year) {
+        return new File(directory, fileFor(year).getName() + DELETED_SUFFIX);
+    }
+
+    /**
+     * Deleted IDs by user; a torn entry at the end (a crash mid-append,
+     * before the delete took effect) is ignored
+     */
+    private static Map<String, Set<Long>> readDeleted(File file) throws IOException {
+        Map<String, Set<Long>> deleted = new ConcurrentHashMap<>();
+        if (!file.exists()) {
+            return deleted;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                String userId = in.readUTF();
+                long id = in.readLong();
+                deleted.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        } catch (EOFException e) {
+            return deleted;
+        }
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            Matcher matcher = FILE_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            try {
+                FuelUpArchive archive = FuelUpArchive.open(file);
+                boolean pending = new File(directory, file.getName() + PENDING_SUFFIX).exists();
+                archives.put(Integer.parseInt(matcher.group(1)),
+                    new ArchivedYear(archive, pending ? ConcurrentHashMap.newKeySet() : null,
+                        readDeleted(new File(directory, file.getName() + DELETED_SUFFIX))));
+            } catch (IOException e) {
+                logger.error("Skipping unreadable fuel-up archive " + file, e);
+            }
+        }
+        for (File file : files) {
+            // A marker without its archive: the write never finished and no rows were removed
+            String name = file.getName();
+            if (name.endsWith(PENDING_SUFFIX)
+                    && !new File(directory, name.substring(0, name.length() - PENDING_SUFFIX.length())).exists()
+                    && !file.delete()) {
+                logger.warn("Cannot delete stale archive marker " + file);
+            }
+        }
+        if (!archives.isEmpty()) {
+            logger.info("Opened " + archives.size() + " fuel-up archives in " + directory.getAbsolutePath()
+                + (getPendingYears().isEmpty() ? "" : ", pending removal: " + getPendingYears()));
+        }
+    }
+
+    /**
+     * An archive, the IDs deleted since it was written by user and, while
+     * its rows are being removed from FUEL_UPS, the IDs already removed
+     * (null once the removal is complete)
+     */
+    private static final class ArchivedYear {
+        final FuelUpArchive archive;
+        final Set<Long> removed;
+        final Map<String, Set<Long>> deleted;
+
+        ArchivedYear(FuelUpArchive archive, Set<Long> removed, Map<String, Set<Long>> deleted) {
+            this.archive = archive;
+            this.removed = removed;
+            this.deleted = deleted;
+        }
+
+        boolean serves(FuelUp row) {
+            Set<Long> deletedIds = deleted.get(row.getUser().getUserId());
+            return (removed == null || removed.contains(row.getId()))
+                && (deletedIds == null || !deletedIds.contains(row.getId()));
+        }
+
+        List<FuelUp> read(String userId, LocalDate from, LocalDate to) throws IOException {
+            List<FuelUp> rows = archive.read(userId, from, to);
+            if (removed == null && !deleted.containsKey(userId)) {
+                return rows;
+            }
+            List<FuelUp> served = new ArrayList<>();
+            for (FuelUp row : rows) {
+                if (serves(row)) {
+                    served.add(row);
+                }
+            }
+            return served;
+        }
+    }
+}
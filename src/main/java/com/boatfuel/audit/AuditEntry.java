@@ -0,0 +1,45 @@
+package com.boatfuel.audit;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Structured audit record: who did what, and when
+ */
+public class AuditEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timestamp;
+    private final String userId;
+    private final String action;
+    private final String message;
+
+    public AuditEntry(long timestamp, String userId, String action, String message) {
+        this.timestamp = timestamp;
+        this.userId = userId;
+        this.action = action;
+        this.message = message;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return new Date(timestamp) + " - " + userId + " " + action + " - " + message;
+    }
+}
@@ -0,0 +1,164 @@
+package com.boatfuel.audit;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only, segmented audit store.
+ *
+ * Entries are written to the active segment until it exceeds the size or
+ * age limit, at which point it is sealed and a new segment is started.
+ * Queries by user and time range only open segments whose time bounds
+ * overlap the range and whose user bloom filter may contain the user,
+ * and seek within each segment through its sparse timestamp index.
+ */
+public class AuditLogStore {
+
+    private static final Logger logger = Logger.getLogger(AuditLogStore.class);
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_SEGMENT_AGE_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+
+    private final List<AuditSegment> segments = new ArrayList<>();
+    private AuditSegment active;
+    private long lastTimestamp;
+
+    public AuditLogStore(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SEGMENT_AGE_MILLIS);
+    }
+
+    public AuditLogStore(File directory, long maxSegmentBytes, long maxSegmentAgeMillis) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create audit directory: " + directory.getAbsolutePath());
+        }
+        loadSegments();
+    }
+
+    /**
+     * Append an entry stamped with the current time
+     */
+    public void append(String userId, String action, String message) throws IOException {
+        append(System.currentTimeMillis(), userId, action, message);
+    }
+
+    /**
+     * Append an entry. Timestamps are kept non-decreasing so segments stay
+     * sorted by time even if the wall clock steps backwards.
+     */
+    public synchronized void append(long timestamp, String userId, String action, String message) throws IOException {
+        long stamped = Math.max(timestamp, lastTimestamp);
+        rollIfNeeded(stamped);
+        active.append(new AuditEntry(stamped, userId, action, message));
+        lastTimestamp = stamped;
+    }
+
+    /**
+     * Entries for a user (or all users when userId is null) with
+     * from &lt;= timestamp &lt;= to, in time order
+     */
+    public List<AuditEntry> query(String userId, long from, long to) throws IOException {
+        List<ScanTarget> targets = new ArrayList<>();
+        synchronized (this) {
+            for (AuditSegment segment : selectSegments(userId, from, to)) {
+                targets.add(new ScanTarget(segment, segment.seekOffset(from), segment.getLength()));
+            }
+        }
+
+        List<AuditEntry> results = new ArrayList<>();
+        for (ScanTarget target : targets) {
+            target.segment.scan(userId, from, to, target.start, target.limit, results);
+        }
+        return results;
+    }
+
+    /**
+     * Seal the active segment
+     */
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.seal();
+            active = null;
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Segments a query has to read: overlapping the time range and, when a
+     * user is given, passing the user bloom filter
+     */
+    synchronized List<AuditSegment> selectSegments(String userId, long from, long to) {
+        List<AuditSegment> selected = new ArrayList<>();
+        for (AuditSegment segment : segments) {
+            if (segment.overlaps(from, to) && (userId == null || segment.mightContainUser(userId))) {
+                selected.add(segment);
+            }
+        }
+        return selected;
+    }
+
+    private void rollIfNeeded(long timestamp) throws IOException {
+        if (active != null
+                && (active.getLength() >= maxSegmentBytes
+                    || timestamp - active.getCreatedAt() >= maxSegmentAgeMillis)) {
+            logger.debug("Rolling audit segment " + active.getDataFile().getName());
+            active.seal();
+            active = null;
+        }
+        if (active == null) {
+            long createdAt = Math.max(timestamp, nextSegmentId());
+            active = AuditSegment.create(directory, createdAt);
+            segments.add(active);
+        }
+    }
+
+    /**
+     * Segment files are named by creation time, which must stay unique
+     */
+    private long nextSegmentId() {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getCreatedAt() + 1;
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles(AuditSegment::isDataFile);
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            AuditSegment segment = AuditSegment.open(file);
+            segments.add(segment);
+            if (segment.getCount() > 0) {
+                lastTimestamp = Math.max(lastTimestamp, segment.getMaxTimestamp());
+            }
+        }
+        logger.info("Opened audit store " + directory.getAbsolutePath() + " with " + segments.size() + " segments");
+    }
+
+    private static final class ScanTarget {
+        final AuditSegment segment;
+        final long start;
+        final long limit;
+
+        ScanTarget(AuditSegment segment, long start, long limit) {
+            this.segment = segment;
+            this.start = start;
+            this.limit = limit;
+        }
+    }
+}
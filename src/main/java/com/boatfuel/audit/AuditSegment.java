@@ -0,0 +1,295 @@
+package com.boatfuel.audit;
+
+import com.boatfuel.util.BloomFilter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One append-only segment of the audit store.
+ *
+ * Data file layout: a sequence of records, each
+ * [int length][long timestamp][UTF userId][UTF action][UTF message].
+ * Alongside the data the segment keeps its time bounds, a sparse
+ * timestamp-to-offset index (every INDEX_INTERVAL records) and a bloom
+ * filter of the users it contains. Sealed segments persist these in a
+ * side ".idx" file so reopening the store does not rescan the data.
+ */
+class AuditSegment {
+
+    static final String DATA_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int INDEX_MAGIC = 0x41554458; // "AUDX"
+    private static final int INDEX_INTERVAL = 64;
+    private static final int EXPECTED_USERS = 1024;
+    private static final double USER_FALSE_POSITIVE_RATE = 0.01;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final long createdAt;
+
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private int count;
+    private long length;
+    private BloomFilter users;
+    private long[] indexTimestamps = new long[16];
+    private long[] indexOffsets = new long[16];
+    private int indexSize;
+
+    private DataOutputStream out;
+
+    private AuditSegment(File dataFile, long createdAt) {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getParentFile(), baseName(dataFile) + INDEX_SUFFIX);
+        this.createdAt = createdAt;
+        this.users = BloomFilter.create(EXPECTED_USERS, USER_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Start a new, writable segment
+     */
+    static AuditSegment create(File directory, long createdAt) throws IOException {
+        File dataFile = new File(directory, String.format("segment-%020d", createdAt) + DATA_SUFFIX);
+        AuditSegment segment = new AuditSegment(dataFile, createdAt);
+        segment.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true)));
+        return segment;
+    }
+
+    /**
+     * Open an existing segment read-only, loading its index or rebuilding it
+     * when the index is missing or stale (e.g. after a crash)
+     */
+    static AuditSegment open(File dataFile) throws IOException {
+        String name = baseName(dataFile);
+        long createdAt = Long.parseLong(name.substring("segment-".length()));
+        AuditSegment segment = new AuditSegment(dataFile, createdAt);
+        if (!segment.loadIndex()) {
+            segment.rebuildIndex();
+            segment.writeIndex();
+        }
+        return segment;
+    }
+
+    static boolean isDataFile(File file) {
+        return file.getName().startsWith("segment-") && file.getName().endsWith(DATA_SUFFIX);
+    }
+
+    void append(AuditEntry entry) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeLong(entry.getTimestamp());
+        recordOut.writeUTF(nullToEmpty(entry.getUserId()));
+        recordOut.writeUTF(nullToEmpty(entry.getAction()));
+        recordOut.writeUTF(truncate(nullToEmpty(entry.getMessage())));
+
+        out.writeInt(record.size());
+        record.writeTo(out);
+        out.flush();
+
+        track(entry.getTimestamp(), entry.getUserId(), length);
+        length += 4 + record.size();
+    }
+
+    /**
+     * Close the data file and persist the index; the segment becomes read-only
+     */
+    void seal() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            writeIndex();
+        }
+    }
+
+    boolean isSealed() {
+        return out == null;
+    }
+
+    boolean overlaps(long from, long to) {
+        return count > 0 && maxTimestamp >= from && minTimestamp <= to;
+    }
+
+    boolean mightContainUser(String userId) {
+        return users.mightContain(userId);
+    }
+
+    /**
+     * Collect matching entries between the start and limit offsets (captured
+     * when the segment was selected), stopping at the first record past "to"
+     */
+    void scan(String userId, long from, long to, long start, long limit, List<AuditEntry> results) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            channel.position(start);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long position = start;
+            while (position < limit) {
+                int recordLength = in.readInt();
+                long timestamp = in.readLong();
+                if (timestamp > to) {
+                    break;
+                }
+                String entryUser = in.readUTF();
+                String action = in.readUTF();
+                String message = in.readUTF();
+                position += 4 + recordLength;
+
+                if (timestamp >= from && (userId == null || userId.equals(entryUser))) {
+                    results.add(new AuditEntry(timestamp, emptyToNull(entryUser), action, message));
+                }
+            }
+        }
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    File getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Offset of the last sparse index entry strictly before "from"
+     */
+    long seekOffset(long from) {
+        int low = 0;
+        int high = indexSize - 1;
+        long offset = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexTimestamps[mid] < from) {
+                offset = indexOffsets[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offset;
+    }
+
+    private void track(long timestamp, String userId, long offset) {
+        if (count % INDEX_INTERVAL == 0) {
+            if (indexSize == indexTimestamps.length) {
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+            }
+            indexTimestamps[indexSize] = timestamp;
+            indexOffsets[indexSize] = offset;
+            indexSize++;
+        }
+        if (userId != null) {
+            users.add(userId);
+        }
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        count++;
+    }
+
+    private void rebuildIndex() throws IOException {
+        long fileLength = dataFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile)))) {
+            long position = 0;
+            while (position + 4 <= fileLength) {
+                int recordLength = in.readInt();
+                if (position + 4 + recordLength > fileLength) {
+                    break; // torn write at the tail
+                }
+                long timestamp = in.readLong();
+                String userId = in.readUTF();
+                in.readUTF();
+                in.readUTF();
+                track(timestamp, userId.isEmpty() ? null : userId, position);
+                position += 4 + recordLength;
+            }
+            length = position;
+        }
+    }
+
+    private boolean loadIndex() throws IOException {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return false;
+            }
+            long indexedLength = in.readLong();
+            if (indexedLength != dataFile.length()) {
+                return false;
+            }
+            length = indexedLength;
+            count = in.readInt();
+            minTimestamp = in.readLong();
+            maxTimestamp = in.readLong();
+            users = BloomFilter.readFrom(in);
+            indexSize = in.readInt();
+            indexTimestamps = new long[Math.max(indexSize, 1)];
+            indexOffsets = new long[Math.max(indexSize, 1)];
+            for (int i = 0; i < indexSize; i++) {
+                indexTimestamps[i] = in.readLong();
+                indexOffsets[i] = in.readLong();
+            }
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        try (DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            idx.writeInt(INDEX_MAGIC);
+            idx.writeLong(length);
+            idx.writeInt(count);
+            idx.writeLong(minTimestamp);
+            idx.writeLong(maxTimestamp);
+            users.writeTo(idx);
+            idx.writeInt(indexSize);
+            for (int i = 0; i < indexSize; i++) {
+                idx.writeLong(indexTimestamps[i]);
+                idx.writeLong(indexOffsets[i]);
+            }
+        }
+    }
+
+    private static String baseName(File dataFile) {
+        String name = dataFile.getName();
+        return name.substring(0, name.length() - DATA_SUFFIX.length());
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * writeUTF is limited to 65535 encoded bytes
+     */
+    private static String truncate(String message) {
+        return message.length() > 16384 ? message.substring(0, 16384) : message;
+    }
+}
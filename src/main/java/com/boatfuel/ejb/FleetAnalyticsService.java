@@ -0,0 +1,22 @@
+package com.boatfuel.ejb;
+
+import javax.ejb.Local;
+
+/**
+ * Local business interface for cross-user (admin) analytics
+ */
+@Local
+public interface FleetAnalyticsService {
+
+    /**
+     * Fleet totals, price distribution and the top N consumers by gallons.
+     * Only available to admin users.
+     */
+    FleetStatistics getFleetStatistics(String adminUserId, int topN);
+
+    /**
+     * Fleet-wide price-per-gallon and gallons-per-fill percentiles.
+     * Only available to admin users.
+     */
+    FuelUpDistribution getFleetDistribution(String adminUserId);
+}
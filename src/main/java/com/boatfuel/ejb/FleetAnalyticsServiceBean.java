@@ -0,0 +1,87 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.User;
+import com.boatfuel.stats.DistributionRegistry;
+import com.boatfuel.stats.FleetAggregate;
+import com.boatfuel.stats.FleetAggregator;
+import com.boatfuel.stats.FleetStatisticsCache;
+import com.boatfuel.stats.FuelUpColumns;
+import com.boatfuel.stats.FuelUpSketch;
+import com.boatfuel.util.FileSystemHelper;
+import com.boatfuel.util.JNDILookupHelper;
+import org.apache.log4j.Logger;
+
+import javax.ejb.EJBAccessException;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+
+/**
+ * Fleet analytics for marina operators.
+ *
+ * On the first read all fuel-ups, archived years included, are loaded into
+ * primitive columns and aggregated in parallel (see FleetAggregator); the
+ * result seeds FleetStatisticsCache, which later writes keep current.
+ */
+@Stateless(name = "FleetAnalyticsService")
+public class FleetAnalyticsServiceBean implements FleetAnalyticsService {
+
+    private static final Logger logger = Logger.getLogger(FleetAnalyticsServiceBean.class);
+
+    @PersistenceContext(unitName = "BoatFuelTrackerPU")
+    private EntityManager entityManager;
+
+    public FleetStatistics getFleetStatistics(String adminUserId, int topN) {
+        requireAdmin(adminUserId);
+
+        FleetStatisticsCache cache = FleetStatisticsCache.getInstance();
+        FleetStatistics cached = cache.get(topN);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = cache.version();
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            long start = System.currentTimeMillis();
+            FuelUpColumns columns = FuelUpColumns.load(conn, FileSystemHelper.getArchiveStore());
+            FleetAggregate aggregate = FleetAggregator.aggregate(columns);
+            cache.seed(version, aggregate, columns);
+            logger.info("Fleet statistics over " + columns.size() + " fuel-ups computed in "
+                + (System.currentTimeMillis() - start) + " ms");
+            return aggregate.toStatistics(columns, topN);
+        } catch (Exception e) {
+            logger.error("Error calculating fleet statistics", e);
+            throw new RuntimeException("Failed to calculate fleet statistics", e);
+        }
+    }
+
+    public FuelUpDistribution getFleetDistribution(String adminUserId) {
+        requireAdmin(adminUserId);
+
+        DistributionRegistry registry = DistributionRegistry.getInstance();
+        FuelUpDistribution cached = registry.getFleet();
+        if (cached != null) {
+            return cached;
+        }
+
+        // Only the first read loads the fleet; later changes are applied or rebuilt in the background
+        long version = registry.fleetVersion();
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            FuelUpSketch sketch = FuelUpSketch.load(conn, null);
+            registry.seedFleet(version, sketch);
+            return sketch.toDistribution();
+        } catch (Exception e) {
+            logger.error("Error calculating fleet distribution", e);
+            throw new RuntimeException("Failed to calculate fleet distribution", e);
+        }
+    }
+
+    private void requireAdmin(String userId) {
+        User user = entityManager.find(User.class, userId);
+        if (user == null || !Boolean.TRUE.equals(user.getIsAdmin())) {
+            logger.warn("Fleet analytics denied for user: " + userId);
+            throw new EJBAccessException("Fleet analytics require an admin user");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.boatfuel.ejb;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO for fleet-wide (all users) statistics
+ */
+public class FleetStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long totalFillups;
+    private int userCount;
+    private BigDecimal totalGallons;
+    private BigDecimal totalSpent;
+    private BigDecimal averagePricePerGallon;
+    private BigDecimal minPricePerGallon;
+    private BigDecimal maxPricePerGallon;
+    private BigDecimal priceBucketWidth;
+    private long[] priceHistogram;
+    private List<TopConsumer> topConsumers;
+
+    public long getTotalFillups() {
+        return totalFillups;
+    }
+
+    public void setTotalFillups(long totalFillups) {
+        this.totalFillups = totalFillups;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(int userCount) {
+        this.userCount = userCount;
+    }
+
+    public BigDecimal getTotalGallons() {
+        return totalGallons;
+    }
+
+    public void setTotalGallons(BigDecimal totalGallons) {
+        this.totalGallons = totalGallons;
+    }
+
+    public BigDecimal getTotalSpent() {
+        return totalSpent;
+    }
+
+    public void setTotalSpent(BigDecimal totalSpent) {
+        this.totalSpent = totalSpent;
+    }
+
+    public BigDecimal getAveragePricePerGallon() {
+        return averagePricePerGallon;
+    }
+
+    public void setAveragePricePerGallon(BigDecimal averagePricePerGallon) {
+        this.averagePricePerGallon = averagePricePerGallon;
+    }
+
+    public BigDecimal getMinPricePerGallon() {
+        return minPricePerGallon;
+    }
+
+    public void setMinPricePerGallon(BigDecimal minPricePerGallon) {
+        this.minPricePerGallon = minPricePerGallon;
+    }
+
+    public BigDecimal getMaxPricePerGallon() {
+        return maxPricePerGallon;
+    }
+
+    public void setMaxPricePerGallon(BigDecimal maxPricePerGallon) {
+        this.maxPricePerGallon = maxPricePerGallon;
+    }
+
+    /**
+     * Width of each price histogram bucket; the last bucket is open-ended
+     */
+    public BigDecimal getPriceBucketWidth() {
+        return priceBucketWidth;
+    }
+
+    public void setPriceBucketWidth(BigDecimal priceBucketWidth) {
+        this.priceBucketWidth = priceBucketWidth;
+    }
+
+    public long[] getPriceHistogram() {
+        return priceHistogram;
+    }
+
+    public void setPriceHistogram(long[] priceHistogram) {
+        this.priceHistogram = priceHistogram;
+    }
+
+    public List<TopConsumer> getTopConsumers() {
+        return topConsumers;
+    }
+
+    public void setTopConsumers(List<TopConsumer> topConsumers) {
+        this.topConsumers = topConsumers;
+    }
+
+    /**
+     * A user and their total gallons, largest first in the list
+     */
+    public static class TopConsumer implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String userId;
+        private final BigDecimal totalGallons;
+
+        public TopConsumer(String userId, BigDecimal totalGallons) {
+            this.userId = userId;
+            this.totalGallons = totalGallons;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public BigDecimal getTotalGallons() {
+            return totalGallons;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * DTO for a delta-sync response: fuel-ups created or changed and IDs
+ * deleted since the client's change token, plus the token to send next
+ */
+public class FuelUpChanges implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<FuelUp> upserts;
+    private List<Long> deletedIds;
+    private long nextToken;
+    private boolean hasMore;
+    private boolean resetRequired;
+
+    public FuelUpChanges() {
+    }
+
+    public FuelUpChanges(List<FuelUp> upserts, List<Long> deletedIds, long nextToken, boolean hasMore,
+                         boolean resetRequired) {
+        this.upserts = upserts;
+        this.deletedIds = deletedIds;
+        this.nextToken = nextToken;
+        this.hasMore = hasMore;
+        this.resetRequired = resetRequired;
+    }
+
+    public List<FuelUp> getUpserts() {
+        return upserts;
+    }
+
+    public void setUpserts(List<FuelUp> upserts) {
+        this.upserts = upserts;
+    }
+
+    public List<Long> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public void setDeletedIds(List<Long> deletedIds) {
+        this.deletedIds = deletedIds;
+    }
+
+    public long getNextToken() {
+        return nextToken;
+    }
+
+    public void setNextToken(long nextToken) {
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * True when the page was cut at the limit; call again with nextToken
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * True when the token is not one this server issued, or predates the
+     * delete tombstones still retained; the client should discard its copy
+     * and sync again from token 0
+     */
+    public boolean isResetRequired() {
+        return resetRequired;
+    }
+
+    public void setResetRequired(boolean resetRequired) {
+        this.resetRequired = resetRequired;
+    }
+}
@@ -0,0 +1,114 @@
+package com.boatfuel.ejb;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * DTO for price-per-gallon and gallons-per-fill percentiles and histograms
+ */
+public class FuelUpDistribution implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+
+    private BigDecimal priceP50;
+    private BigDecimal priceP90;
+    private BigDecimal priceP99;
+    private BigDecimal priceBucketWidth;
+    private long[] priceHistogram;
+
+    private BigDecimal gallonsP50;
+    private BigDecimal gallonsP90;
+    private BigDecimal gallonsP99;
+    private BigDecimal gallonsBucketWidth;
+    private long[] gallonsHistogram;
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public BigDecimal getPriceP50() {
+        return priceP50;
+    }
+
+    public void setPriceP50(BigDecimal priceP50) {
+        this.priceP50 = priceP50;
+    }
+
+    public BigDecimal getPriceP90() {
+        return priceP90;
+    }
+
+    public void setPriceP90(BigDecimal priceP90) {
+        this.priceP90 = priceP90;
+    }
+
+    public BigDecimal getPriceP99() {
+        return priceP99;
+    }
+
+    public void setPriceP99(BigDecimal priceP99) {
+        this.priceP99 = priceP99;
+    }
+
+    public BigDecimal getPriceBucketWidth() {
+        return priceBucketWidth;
+    }
+
+    public void setPriceBucketWidth(BigDecimal priceBucketWidth) {
+        this.priceBucketWidth = priceBucketWidth;
+    }
+
+    public long[] getPriceHistogram() {
+        return priceHistogram;
+    }
+
+    public void setPriceHistogram(long[] priceHistogram) {
+        this.priceHistogram = priceHistogram;
+    }
+
+    public BigDecimal getGallonsP50() {
+        return gallonsP50;
+    }
+
+    public void setGallonsP50(BigDecimal gallonsP50) {
+        this.gallonsP50 = gallonsP50;
+    }
+
+    public BigDecimal getGallonsP90() {
+        return gallonsP90;
+    }
+
+    public void setGallonsP90(BigDecimal gallonsP90) {
+        this.gallonsP90 = gallonsP90;
+    }
+
+    public BigDecimal getGallonsP99() {
+        return gallonsP99;
+    }
+
+    public void setGallonsP99(BigDecimal gallonsP99) {
+        this.gallonsP99 = gallonsP99;
+    }
+
+    public BigDecimal getGallonsBucketWidth() {
+        return gallonsBucketWidth;
+    }
+
+    public void setGallonsBucketWidth(BigDecimal gallonsBucketWidth) {
+        this.gallonsBucketWidth = gallonsBucketWidth;
+    }
+
+    public long[] getGallonsHistogram() {
+        return gallonsHistogram;
+    }
+
+    public void setGallonsHistogram(long[] gallonsHistogram) {
+        this.gallonsHistogram = gallonsHistogram;
+    }
+}
@@ -0,0 +1,59 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Immutable projection of the columns the fuel-up list renders.
+ * Selected straight from the IDX_USER_DATE covering index, so listing a
+ * user's fuel-ups never reads the table rows or their text columns.
+ */
+public class FuelUpListRow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final Date date;
+    private final BigDecimal gallons;
+    private final BigDecimal pricePerGallon;
+    private final BigDecimal totalCost;
+
+    public FuelUpListRow(Long id, Date date, BigDecimal gallons, BigDecimal pricePerGallon, BigDecimal totalCost) {
+        this.id = id;
+        this.date = date;
+        this.gallons = gallons;
+        this.pricePerGallon = pricePerGallon;
+        this.totalCost = totalCost;
+    }
+
+    /**
+     * Row for an entity loaded by other means (e.g. from the archive)
+     */
+    public static FuelUpListRow of(FuelUp fuelUp) {
+        return new FuelUpListRow(fuelUp.getId(), fuelUp.getDate(), fuelUp.getGallons(),
+            fuelUp.getPricePerGallon(), fuelUp.getTotalCost());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public BigDecimal getGallons() {
+        return gallons;
+    }
+
+    public BigDecimal getPricePerGallon() {
+        return pricePerGallon;
+    }
+
+    public BigDecimal getTotalCost() {
+        return totalCost;
+    }
+}
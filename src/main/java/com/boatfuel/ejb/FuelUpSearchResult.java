@@ -0,0 +1,61 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * DTO for one page of full-text search results
+ */
+public class FuelUpSearchResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<FuelUp> fuelUps;
+    private int totalMatches;
+    private int offset;
+    private int limit;
+
+    public FuelUpSearchResult() {
+    }
+
+    public FuelUpSearchResult(List<FuelUp> fuelUps, int totalMatches, int offset, int limit) {
+        this.fuelUps = fuelUps;
+        this.totalMatches = totalMatches;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    public List<FuelUp> getFuelUps() {
+        return fuelUps;
+    }
+
+    public void setFuelUps(List<FuelUp> fuelUps) {
+        this.fuelUps = fuelUps;
+    }
+
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+
+    public void setTotalMatches(int totalMatches) {
+        this.totalMatches = totalMatches;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
@@ -2,7 +2,10 @@ package com.boatfuel.ejb;
 
 import com.boatfuel.entity.FuelUp;
 import javax.ejb.Local;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Local business interface for FuelUpService
@@ -13,9 +16,73 @@ public interface FuelUpService {
 
     FuelUp createFuelUp(FuelUp fuelUp);
 
+    /**
+     * Create a fuel-up at most once per client idempotency key. A repeated
+     * key returns the originally created fuel-up (null if it has since been
+     * deleted) instead of inserting again.
+     */
+    FuelUp createFuelUp(FuelUp fuelUp, String idempotencyKey);
+
+    /**
+     * Create a batch of fuel-ups in one transaction, each at most once per
+     * idempotency key (keys may be null)
+     */
+    List<FuelUp> createFuelUps(List<FuelUp> fuelUps, List<String> idempotencyKeys);
+
+    /**
+     * ID of the fuel-up created for a client idempotency key, or null
+     */
+    Long findIdempotentResult(String userId, String idempotencyKey);
+
     List<FuelUp> getFuelUpsByUser(String userId);
 
+    /**
+     * A user's fuel-ups as list rows (date, gallons, price, total), newest
+     * first, including archived years
+     */
+    List<FuelUpListRow> getFuelUpRows(String userId);
+
+    /**
+     * A user's fuel-ups dated from..to inclusive, newest first, including
+     * archived years the range reaches into
+     */
+    List<FuelUp> getFuelUpsBetween(String userId, Date from, Date to);
+
+    /**
+     * Stream live fuel-ups (all users when userId is null) dated from..to
+     * inclusive (either bound may be null) to the consumer in date order,
+     * without materializing the result set; returns the number visited.
+     * Archived years are read through FuelUpArchiveStore instead.
+     */
+    int forEachFuelUp(String userId, Date from, Date to, Consumer<FuelUp> consumer);
+
     void deleteFuelUp(Long fuelUpId);
 
+    /**
+     * Delete a user's fuel-ups by ID; returns the number deleted
+     */
+    int deleteFuelUps(String userId, List<Long> fuelUpIds);
+
+    /**
+     * Delete a user's fuel-ups dated from..to inclusive; returns the number deleted
+     */
+    int deleteFuelUpsBetween(String userId, Date from, Date to);
+
     FuelUpStatistics getStatistics(String userId);
+
+    /**
+     * Statistics computed off the caller's thread; concurrent requests for
+     * the same user share one query
+     */
+    CompletableFuture<FuelUpStatistics> getStatisticsAsync(String userId);
+
+    FuelUpDistribution getDistribution(String userId);
+
+    List<LocationPrice> findCheapestFuel(String userId, int days);
+
+    FuelUpSearchResult searchFuelUps(String userId, String query, int offset, int limit);
+
+    List<FuelUp> findFuelUpsNear(String userId, double latitude, double longitude, double radiusNm);
+
+    FuelUpChanges changesSince(String userId, long token, int limit);
 }
@@ -1,20 +1,67 @@
 package com.boatfuel.ejb;
 
+import com.boatfuel.archive.ArchiveSummary;
+import com.boatfuel.archive.FuelUpArchiveStore;
 import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.FuelUpTombstone;
+import com.boatfuel.entity.IdempotencyRecord;
+import com.boatfuel.entity.User;
+import com.boatfuel.events.FuelUpEventHub;
+import com.boatfuel.geo.GeoCellIndex;
+import com.boatfuel.geo.GeoGrid;
+import com.boatfuel.idempotency.IdempotencyFilter;
+import com.boatfuel.jdbc.RoutingContext;
+import com.boatfuel.location.LocationDictionary;
+import com.boatfuel.location.LocationPriceIndex;
+import com.boatfuel.search.FuelUpSearchIndex;
+import com.boatfuel.search.SearchPage;
+import com.boatfuel.stats.AsyncStatisticsLoader;
+import com.boatfuel.stats.DistributionRegistry;
+import com.boatfuel.stats.FleetStatisticsCache;
+import com.boatfuel.stats.FuelUpSketch;
+import com.boatfuel.stats.StatisticsAggregateCache;
+import com.boatfuel.util.FileSystemHelper;
 import com.boatfuel.util.JNDILookupHelper;
 import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityKey;
 
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
 import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.rmi.RemoteException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * EJB 3.0 Stateless Session Bean (using annotations for TomEE compatibility)
@@ -25,16 +72,67 @@ public class FuelUpServiceBean implements FuelUpService {
 
     private static final Logger logger = Logger.getLogger(FuelUpServiceBean.class);
 
+    // IN-list size for bulk deletes
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    // Constant SQL text so pooled connections reuse the cached prepared statement
+    // Served from the IDX_USER_DATE covering index (see FuelUpQueryPlanTest)
+    static final String LIST_ROWS_JPQL =
+        "SELECT NEW com.boatfuel.ejb.FuelUpListRow(f.id, f.date, f.gallons, f.pricePerGallon, f.totalCost) " +
+        "FROM FuelUp f WHERE f.user.userId = :userId ORDER BY f.date DESC";
+
+    // Rows per round trip when streaming with forEachFuelUp
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Hibernate hint: no dirty-checking snapshots for loaded entities
+    private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+
+    static final String STATISTICS_SQL =
+        "SELECT COUNT(*), SUM(GALLONS), SUM(TOTAL_COST), AVG(PRICE_PER_GALLON), " +
+        "SUM(PRICE_PER_GALLON) FROM FUEL_UPS WHERE USER_ID = ? AND DELETED_AT IS NULL";
+
     @PersistenceContext(unitName = "BoatFuelTrackerPU")
     private EntityManager entityManager;
 
+    private StatisticsAggregateCache statisticsCache = StatisticsAggregateCache.getInstance();
+
+    private AsyncStatisticsLoader statisticsLoader = AsyncStatisticsLoader.getInstance();
+
+    private DistributionRegistry distributions = DistributionRegistry.getInstance();
+
+    private FleetStatisticsCache fleetStatistics = FleetStatisticsCache.getInstance();
+
+    private LocationDictionary locationDictionary = LocationDictionary.getInstance();
+
+    private LocationPriceIndex locationPrices = LocationPriceIndex.getInstance();
+
+    private GeoCellIndex geoIndex = GeoCellIndex.getInstance();
+
+    private IdempotencyFilter idempotencyFilter = IdempotencyFilter.getInstance();
+
+    private FuelUpArchiveStore archiveStore = FileSystemHelper.getArchiveStore();
+
+    private FuelUpEventHub events = FuelUpEventHub.getInstance();
+
+    // Looked up on first write; stays null outside a container
+    private TransactionSynchronizationRegistry transactionRegistry;
+
     /**
      * Create fuel-up using JPA
      */
     public FuelUp createFuelUp(FuelUp fuelUp) {
         try {
             logger.info("Creating new fuel-up for user: " + fuelUp.getUser().getUserId());
+            if (fuelUp.getLocationId() == null && fuelUp.getLocation() != null) {
+                String location = fuelUp.getLocation();
+                Long locationId = locationDictionary.resolve(entityManager, location);
+                fuelUp.setLocationId(locationId);
+                afterCommit(() -> locationDictionary.confirm(location, locationId));
+            }
+            fuelUp.setSyncSeq(nextSyncSeq(fuelUp.getUser()));
             entityManager.persist(fuelUp);
+            afterCommit(() -> afterCreate(fuelUp));
+            pendingEvents().created(fuelUp.getUser().getUserId(), fuelUp.getId());
             return fuelUp;
         } catch (Exception e) {
             logger.error("Error creating fuel-up", e);
@@ -42,16 +140,158 @@ public class FuelUpServiceBean implements FuelUpService {
         }
     }
 
+    /**
+     * Create fuel-up once per idempotency key; the key record is inserted in
+     * the same transaction, so a racing duplicate fails on its primary key
+     */
+    public FuelUp createFuelUp(FuelUp fuelUp, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createFuelUp(fuelUp);
+        }
+        String requestKey = IdempotencyFilter.requestKey(fuelUp.getUser().getUserId(), idempotencyKey);
+        IdempotencyRecord previous = findIdempotencyRecord(requestKey);
+        if (previous != null) {
+            logger.info("Replaying idempotent fuel-up submission: " + requestKey);
+            FuelUp original = previous.getFuelUpId() == null
+                ? null : entityManager.find(FuelUp.class, previous.getFuelUpId());
+            return original == null || original.isDeleted() ? null : original;
+        }
+
+        FuelUp created = createFuelUp(fuelUp);
+        long now = System.currentTimeMillis();
+        entityManager.persist(new IdempotencyRecord(requestKey, fuelUp.getUser().getUserId(), created.getId(),
+            new Date(now), new Date(now + idempotencyFilter.getTtlMillis())));
+        // Filter only: the result is cached once read back committed, never
+        // from a transaction that may still roll back
+        idempotencyFilter.seed(requestKey);
+        return created;
+    }
+
+    /**
+     * Batched create for write-behind ingestion: one transaction and one
+     * commit for the whole batch instead of one per fuel-up
+     */
+    public List<FuelUp> createFuelUps(List<FuelUp> fuelUps, List<String> idempotencyKeys) {
+        List<FuelUp> created = new ArrayList<>(fuelUps.size());
+        for (int i = 0; i < fuelUps.size(); i++) {
+            created.add(createFuelUp(fuelUps.get(i), idempotencyKeys.get(i)));
+        }
+        logger.info("Stored batch of " + fuelUps.size() + " fuel-ups");
+        return created;
+    }
+
+    public Long findIdempotentResult(String userId, String idempotencyKey) {
+        IdempotencyRecord record = findIdempotencyRecord(IdempotencyFilter.requestKey(userId, idempotencyKey));
+        return record == null ? null : record.getFuelUpId();
+    }
+
+    /**
+     * Live record for a key. Fresh keys are ruled out by the in-memory
+     * filter without a query; recent keys resolve from its LRU.
+     */
+    private IdempotencyRecord findIdempotencyRecord(String requestKey) {
+        if (!idempotencyFilter.isWarmed()) {
+            warmIdempotencyFilter();
+        }
+        if (!idempotencyFilter.mightContain(requestKey)) {
+            return null;
+        }
+        Long recent = idempotencyFilter.getRecent(requestKey);
+        if (recent != null) {
+            return new IdempotencyRecord(requestKey, recent, null, null);
+        }
+
+        IdempotencyRecord record = entityManager.find(IdempotencyRecord.class, requestKey);
+        if (record != null && record.getExpiresAt().getTime() < System.currentTimeMillis()) {
+            // Expired but not yet purged: free the key for reuse
+            entityManager.remove(record);
+            entityManager.flush();
+            return null;
+        }
+        if (record != null) {
+            idempotencyFilter.record(requestKey, record.getFuelUpId(), record.getExpiresAt().getTime());
+        }
+        return record;
+    }
+
+    private void warmIdempotencyFilter() {
+        synchronized (idempotencyFilter) {
+            if (idempotencyFilter.isWarmed()) {
+                return;
+            }
+            List<String> keys = entityManager.createQuery(
+                    "SELECT r.requestKey FROM IdempotencyRecord r WHERE r.expiresAt > :now", String.class)
+                .setParameter("now", new Date())
+                .getResultList();
+            for (String key : keys) {
+                idempotencyFilter.seed(key);
+            }
+            idempotencyFilter.markWarmed();
+            logger.info("Seeded idempotency filter with " + keys.size() + " live keys");
+        }
+    }
+
     /**
      * Get fuel-ups using JPA
      */
     public List<FuelUp> getFuelUpsByUser(String userId) {
         try {
             logger.debug("Getting fuel-ups for user: " + userId);
-            Query query = entityManager.createQuery(
-                "SELECT f FROM FuelUp f WHERE f.user.userId = :userId ORDER BY f.date DESC");
+            Query query = readOnly(entityManager.createQuery(
+                "SELECT f FROM FuelUp f WHERE f.user.userId = :userId ORDER BY f.date DESC"));
             query.setParameter("userId", userId);
-            return query.getResultList();
+            List<FuelUp> hot = query.getResultList();
+            return withArchived(hot, archiveStore.read(userId, null, null));
+        } catch (Exception e) {
+            logger.error("Error retrieving fuel-ups", e);
+            throw new RuntimeException("Failed to retrieve fuel-ups", e);
+        }
+    }
+
+    /**
+     * List rows through a constructor projection; only the indexed columns
+     * are selected and no entities enter the persistence context
+     */
+    public List<FuelUpListRow> getFuelUpRows(String userId) {
+        try {
+            List<FuelUpListRow> rows = readOnly(entityManager.createQuery(LIST_ROWS_JPQL, FuelUpListRow.class))
+                .setParameter("userId", userId)
+                .getResultList();
+
+            List<FuelUp> archived = archiveStore.read(userId, null, null);
+            if (archived.isEmpty()) {
+                return rows;
+            }
+            List<FuelUpListRow> merged = new ArrayList<>(rows.size() + archived.size());
+            merged.addAll(rows);
+            for (FuelUp fuelUp : archived) {
+                merged.add(FuelUpListRow.of(fuelUp));
+            }
+            merged.sort((a, b) -> b.getDate().compareTo(a.getDate()));
+            return merged;
+        } catch (Exception e) {
+            logger.error("Error retrieving fuel-up rows", e);
+            throw new RuntimeException("Failed to retrieve fuel-ups", e);
+        }
+    }
+
+    public List<FuelUp> getFuelUpsBetween(String userId, Date from, Date to) {
+        try {
+            List<FuelUp> hot = readOnly(entityManager.createQuery(
+                    "SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND f.date BETWEEN :from AND :to " +
+                    "ORDER BY f.date DESC", FuelUp.class))
+                .setParameter("userId", userId)
+                .setParameter("from", from, TemporalType.DATE)
+                .setParameter("to", to, TemporalType.DATE)
+                .getResultList();
+
+            // Archived years are only opened when the range reaches back into them
+            Integer latestArchived = archiveStore.getLatestYear();
+            LocalDate fromDay = new java.sql.Date(from.getTime()).toLocalDate();
+            if (latestArchived == null || fromDay.getYear() > latestArchived) {
+                return hot;
+            }
+            return withArchived(hot, archiveStore.read(userId, fromDay, new java.sql.Date(to.getTime()).toLocalDate()));
         } catch (Exception e) {
             logger.error("Error retrieving fuel-ups", e);
             throw new RuntimeException("Failed to retrieve fuel-ups", e);
@@ -59,14 +299,128 @@ public class FuelUpServiceBean implements FuelUpService {
     }
 
     /**
-     * Delete fuel-up
+     * Walk the rows through a forward-only cursor. Entities are loaded
+     * read-only, bypass the second-level cache and are evicted once the
+     * consumer returns, so memory stays bounded by the fetch size. Rows the
+     * caller already had in the persistence context are left managed, with
+     * any unflushed changes. On MySQL
+     * the fetch size is only honoured with useCursorFetch=true on the URL.
+     */
+    public int forEachFuelUp(String userId, Date from, Date to, Consumer<FuelUp> consumer) {
+        StringBuilder hql = new StringBuilder("SELECT f FROM FuelUp f WHERE 1 = 1");
+        if (userId != null) {
+            hql.append(" AND f.user.userId = :userId");
+        }
+        if (from != null) {
+            hql.append(" AND f.date >= :from");
+        }
+        if (to != null) {
+            hql.append(" AND f.date <= :to");
+        }
+        hql.append(" ORDER BY f.date, f.id");
+
+        try {
+            Session session = entityManager.unwrap(Session.class);
+            org.hibernate.Query query = session.createQuery(hql.toString())
+                .setReadOnly(true)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .setCacheMode(CacheMode.IGNORE)
+                .setFlushMode(FlushMode.MANUAL);
+            if (userId != null) {
+                query.setParameter("userId", userId);
+            }
+            if (from != null) {
+                query.setDate("from", from);
+            }
+            if (to != null) {
+                query.setDate("to", to);
+            }
+
+            Set<Object> managedBefore = new HashSet<>();
+            for (Object key : session.getStatistics().getEntityKeys()) {
+                EntityKey entityKey = (EntityKey) key;
+                if (FuelUp.class.getName().equals(entityKey.getEntityName())) {
+                    managedBefore.add(entityKey.getIdentifier());
+                }
+            }
+
+            int visited = 0;
+            ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    FuelUp fuelUp = (FuelUp) results.get(0);
+                    consumer.accept(fuelUp);
+                    if (!managedBefore.contains(fuelUp.getId())) {
+                        session.evict(fuelUp);
+                    }
+                    visited++;
+                }
+            } finally {
+                results.close();
+            }
+            return visited;
+        } catch (Exception e) {
+            logger.error("Error streaming fuel-ups", e);
+            throw new RuntimeException("Failed to stream fuel-ups", e);
+        }
+    }
+
+    /**
+     * Merge archived rows into hot rows, newest first. Back-dated rows can
+     * land in FUEL_UPS for an archived year, so the years may interleave.
+     */
+    private static List<FuelUp> withArchived(List<FuelUp> hot, List<FuelUp> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        List<FuelUp> merged = new ArrayList<>(hot.size() + archived.size());
+        merged.addAll(hot);
+        merged.addAll(archived);
+        merged.sort((a, b) -> b.getDate().compareTo(a.getDate()));
+        return merged;
+    }
+
+    /**
+     * Read-only query mode for the view paths: loaded entities are not
+     * dirty-checked (no snapshot is kept) and the query does not flush
+     * pending changes first. Results must not be modified and written back.
+     */
+    private static <Q extends Query> Q readOnly(Q query) {
+        query.setHint(HINT_READ_ONLY, true);
+        query.setFlushMode(FlushModeType.COMMIT);
+        return query;
+    }
+
+    /**
+     * Soft-delete fuel-up; the row is physically removed later by the
+     * HousekeepingBean purge. A row of an archived year is deleted from
+     * the archive instead.
      */
     public void deleteFuelUp(Long fuelUpId) {
         try {
             logger.info("Deleting fuel-up: " + fuelUpId);
             FuelUp fuelUp = entityManager.find(FuelUp.class, fuelUpId);
-            if (fuelUp != null) {
-                entityManager.remove(fuelUp);
+            if (fuelUp == null) {
+                deleteArchived(archiveStore.find(fuelUpId));
+                return;
+            }
+            if (!fuelUp.isDeleted()) {
+                // Deletes of a user's rows are serialized on the owner; re-read under it
+                lockForSync(fuelUp.getUser());
+                entityManager.refresh(fuelUp, LockModeType.PESSIMISTIC_WRITE);
+            }
+            if (fuelUp != null && !fuelUp.isDeleted()) {
+                fuelUp.setDeletedAt(new Date());
+                Long syncSeq = nextSyncSeq(fuelUp.getUser());
+                if (syncSeq != null) {
+                    entityManager.persist(new FuelUpTombstone(fuelUp.getUser().getUserId(), fuelUpId, syncSeq));
+                }
+                afterCommit(() -> {
+                    afterDelete(fuelUp);
+                    recordArchivedDelete(fuelUp.getUser().getUserId(), Collections.singletonList(fuelUp));
+                    RoutingContext.recordWrite(fuelUp.getUser().getUserId());
+                });
+                pendingEvents().deleted(fuelUp.getUser().getUserId(), Collections.singletonList(fuelUpId));
             }
         } catch (Exception e) {
             logger.error("Error deleting fuel-up", e);
@@ -75,24 +429,317 @@ public class FuelUpServiceBean implements FuelUpService {
     }
 
     /**
-     * Get statistics using direct JDBC (anti-pattern - mixing JPA and JDBC)
+     * Delete a row found in the archive, re-read under the owner's lock
+     */
+    private void deleteArchived(FuelUp archived) throws IOException {
+        if (archived == null) {
+            return;
+        }
+        String userId = archived.getUser().getUserId();
+        User owner = entityManager.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+        if (owner == null) {
+            return;
+        }
+        LocalDate day = new java.sql.Date(archived.getDate().getTime()).toLocalDate();
+        for (FuelUp row : archiveStore.read(userId, day, day)) {
+            if (row.getId().equals(archived.getId())) {
+                deleteArchived(owner, Collections.singletonList(row));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Soft-delete a user's fuel-ups by ID with set-based updates
+     */
+    public int deleteFuelUps(String userId, List<Long> fuelUpIds) {
+        if (fuelUpIds == null || fuelUpIds.isEmpty()) {
+            return 0;
+        }
+        try {
+            User owner = entityManager.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+            if (owner == null) {
+                return 0;
+            }
+            List<FuelUp> rows = new ArrayList<>();
+            for (List<Long> chunk : chunks(fuelUpIds)) {
+                rows.addAll(entityManager.createQuery(
+                        "SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND f.id IN :ids " +
+                        "AND f.deletedAt IS NULL", FuelUp.class)
+                    .setParameter("userId", userId)
+                    .setParameter("ids", chunk)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList());
+            }
+
+            // IDs not live in FUEL_UPS may be rows of archived years
+            List<FuelUp> archived = new ArrayList<>();
+            if (rows.size() < fuelUpIds.size() && !archiveStore.isEmpty()) {
+                Set<Long> wanted = new HashSet<>(fuelUpIds);
+                for (FuelUp row : rows) {
+                    wanted.remove(row.getId());
+                }
+                for (FuelUp row : archiveStore.read(userId, null, null)) {
+                    if (wanted.contains(row.getId())) {
+                        archived.add(row);
+                    }
+                }
+            }
+            return softDelete(owner, rows) + deleteArchived(owner, archived);
+        } catch (Exception e) {
+            logger.error("Error bulk deleting fuel-ups", e);
+            throw new RuntimeException("Failed to delete fuel-ups", e);
+        }
+    }
+
+    /**
+     * Soft-delete a user's fuel-ups dated from..to (inclusive) with
+     * set-based updates
+     */
+    public int deleteFuelUpsBetween(String userId, Date from, Date to) {
+        try {
+            User owner = entityManager.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+            if (owner == null) {
+                return 0;
+            }
+            List<FuelUp> rows = entityManager.createQuery(
+                    "SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND f.date BETWEEN :from AND :to " +
+                    "AND f.deletedAt IS NULL", FuelUp.class)
+                .setParameter("userId", userId)
+                .setParameter("from", from, TemporalType.DATE)
+                .setParameter("to", to, TemporalType.DATE)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+
+            List<FuelUp> archived = Collections.emptyList();
+            Integer latestArchived = archiveStore.getLatestYear();
+            LocalDate fromDay = new java.sql.Date(from.getTime()).toLocalDate();
+            if (latestArchived != null && fromDay.getYear() <= latestArchived) {
+                archived = archiveStore.read(userId, fromDay, new java.sql.Date(to.getTime()).toLocalDate());
+            }
+            return softDelete(owner, rows) + deleteArchived(owner, archived);
+        } catch (Exception e) {
+            logger.error("Error bulk deleting fuel-ups", e);
+            throw new RuntimeException("Failed to delete fuel-ups", e);
+        }
+    }
+
+    /**
+     * Mark the selected rows deleted with one UPDATE per chunk of IDs and
+     * write their tombstones. The caller holds the owner's lock from before
+     * it selected the live rows, so overlapping deletes of the same user
+     * are serialized and each row is tombstoned and counted once.
+     */
+    private int softDelete(User owner, List<FuelUp> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        String userId = owner.getUserId();
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (FuelUp row : rows) {
+            ids.add(row.getId());
+        }
+
+        Date now = new Date();
+        int deleted = 0;
+        for (List<Long> chunk : chunks(ids)) {
+            deleted += entityManager.createQuery(
+                    "UPDATE FuelUp f SET f.deletedAt = :now WHERE f.id IN :ids AND f.deletedAt IS NULL")
+                .setParameter("now", now)
+                .setParameter("ids", chunk)
+                .executeUpdate();
+        }
+
+        for (FuelUp row : rows) {
+            entityManager.persist(new FuelUpTombstone(userId, row.getId(), owner.nextSyncSeq()));
+            // The bulk update bypassed the persistence context
+            entityManager.detach(row);
+        }
+        afterCommit(() -> {
+            for (FuelUp row : rows) {
+                afterDelete(row);
+            }
+            recordArchivedDelete(userId, rows);
+            RoutingContext.recordWrite(userId);
+        });
+        pendingEvents().deleted(userId, ids);
+        logger.info("Deleted " + deleted + " fuel-ups for user " + userId);
+        return deleted;
+    }
+
+    /**
+     * Delete archived rows: the deletion is recorded in the archive before
+     * the commit, while the owner's lock still serializes deletes of the
+     * same rows, and their tombstones are written as for live rows. The
+     * caller holds the owner's lock from before it read the rows.
+     */
+    private int deleteArchived(User owner, List<FuelUp> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        String userId = owner.getUserId();
+        archiveStore.delete(userId, rows);
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (FuelUp row : rows) {
+            ids.add(row.getId());
+            entityManager.persist(new FuelUpTombstone(userId, row.getId(), owner.nextSyncSeq()));
+        }
+        afterCommit(() -> {
+            for (FuelUp row : rows) {
+                afterDelete(row);
+            }
+            RoutingContext.recordWrite(userId);
+        });
+        pendingEvents().deleted(userId, ids);
+        logger.info("Deleted " + rows.size() + " archived fuel-ups for user " + userId);
+        return rows.size();
+    }
+
+    /**
+     * A live row of a year still being archived may already be in the
+     * archive; record its deletion there too, so it is not served once the
+     * archiver finishes removing the year (by then the purge may have
+     * removed the soft-deleted row the archiver would otherwise check)
+     */
+    private void recordArchivedDelete(String userId, List<FuelUp> rows) {
+        try {
+            archiveStore.delete(userId, rows);
+        } catch (IOException e) {
+            logger.warn("Failed to record deleted fuel-ups of user " + userId + " in the archive", e);
+        }
+    }
+
+    /**
+     * Keep the in-memory aggregates and indexes in step with a committed
+     * create; run through afterCommit so a rollback leaves them untouched
+     */
+    private void afterCreate(FuelUp fuelUp) {
+        statisticsCache.recordCreate(fuelUp);
+        statisticsLoader.invalidate(fuelUp.getUser().getUserId());
+        distributions.recordCreate(fuelUp);
+        fleetStatistics.recordCreate(fuelUp);
+        recordLocationPrice(fuelUp);
+        indexForSearch(fuelUp);
+        if (fuelUp.getGeoCell() != null && fuelUp.getId() != null) {
+            geoIndex.add(fuelUp.getUser().getUserId(), fuelUp.getId(), fuelUp.getLatitude(), fuelUp.getLongitude());
+        }
+        // The read-your-writes window starts once the write is visible
+        RoutingContext.recordWrite(fuelUp.getUser().getUserId());
+    }
+
+    /**
+     * Keep the in-memory aggregates and indexes in step with a committed
+     * delete
+     */
+    private void afterDelete(FuelUp fuelUp) {
+        statisticsCache.recordDelete(fuelUp);
+        statisticsLoader.invalidate(fuelUp.getUser().getUserId());
+        distributions.recordDelete(fuelUp);
+        fleetStatistics.recordDelete(fuelUp);
+        if (fuelUp.getLocationId() != null && fuelUp.getDate() != null) {
+            locationPrices.remove(fuelUp.getId(), fuelUp.getUser().getUserId(), fuelUp.getLocationId(),
+                new java.sql.Date(fuelUp.getDate().getTime()).toLocalDate().toEpochDay());
+        }
+        unindexForSearch(fuelUp);
+        if (fuelUp.getGeoCell() != null) {
+            geoIndex.remove(fuelUp.getUser().getUserId(), fuelUp.getId(),
+                fuelUp.getLatitude(), fuelUp.getLongitude());
+        }
+    }
+
+    /**
+     * Run once the current transaction commits, so in-memory state never
+     * reflects a rolled-back write and listeners notified of a change can
+     * already read it; runs immediately outside a transaction
+     */
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationRegistry registry = transactionRegistry();
+        if (registry == null || registry.getTransactionKey() == null) {
+            action.run();
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        logger.warn("After-commit action failed", e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Change events of the current transaction, published once it commits.
+     * Everything a transaction changes for a user goes out as at most one
+     * created and one deleted event, so a write-behind batch or bulk delete
+     * cannot flood (and evict) the user's open dashboards.
+     */
+    private PendingEvents pendingEvents() {
+        TransactionSynchronizationRegistry registry = transactionRegistry();
+        if (registry == null || registry.getTransactionKey() == null) {
+            // No transaction to wait for: publish as each change is recorded
+            return new PendingEvents(events, true);
+        }
+        PendingEvents pending = (PendingEvents) registry.getResource(PendingEvents.class);
+        if (pending == null) {
+            pending = new PendingEvents(events, false);
+            registry.putResource(PendingEvents.class, pending);
+            afterCommit(pending::publish);
+        }
+        return pending;
+    }
+
+    private TransactionSynchronizationRegistry transactionRegistry() {
+        if (transactionRegistry == null) {
+            try {
+                transactionRegistry = JNDILookupHelper.lookupTransactionSynchronizationRegistry();
+            } catch (Exception e) {
+                logger.debug("No transaction synchronization registry bound", e);
+            }
+        }
+        return transactionRegistry;
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += BULK_CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + BULK_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Get statistics from the precomputed aggregates, seeding them with one
+     * direct JDBC query on a miss (anti-pattern - mixing JPA and JDBC)
      * Konveyor will flag: Direct JDBC usage, hardcoded SQL, datasource lookup
      */
     public FuelUpStatistics getStatistics(String userId) {
+        FuelUpStatistics cached = statisticsCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        // Taken before the query: a write committed while it runs stops the seed
+        long version = statisticsCache.version(userId);
 
-        try {
+        try (RoutingContext.Scope readOnly = RoutingContext.readOnly(userId)) {
             // Hardcoded JNDI lookup for datasource (anti-pattern)
             DataSource ds = JNDILookupHelper.lookupDataSource();
             conn = ds.getConnection();
 
             // Direct SQL query (should use JPA)
-            String sql = "SELECT COUNT(*), SUM(GALLONS), SUM(TOTAL_COST), AVG(PRICE_PER_GALLON) " +
-                        "FROM FUEL_UPS WHERE USER_ID = ?";
-
-            stmt = conn.prepareStatement(sql);
+            stmt = conn.prepareStatement(STATISTICS_SQL);
             stmt.setString(1, userId);
             rs = stmt.executeQuery();
 
@@ -101,7 +748,19 @@ public class FuelUpServiceBean implements FuelUpService {
                 BigDecimal totalGallons = rs.getBigDecimal(2);
                 BigDecimal totalSpent = rs.getBigDecimal(3);
                 BigDecimal avgPrice = rs.getBigDecimal(4);
+                BigDecimal sumPrice = rs.getBigDecimal(5);
+
+                // Archived years contribute their footer totals
+                ArchiveSummary archived = archiveStore.summarize(userId);
+                if (archived.getCount() > 0) {
+                    count += archived.getCount();
+                    totalGallons = nz(totalGallons).add(archived.getTotalGallons());
+                    totalSpent = nz(totalSpent).add(archived.getTotalSpent());
+                    sumPrice = nz(sumPrice).add(archived.getSumPricePerGallon());
+                    avgPrice = sumPrice.divide(BigDecimal.valueOf(count), 6, RoundingMode.HALF_UP);
+                }
 
+                statisticsCache.seed(userId, version, count, totalGallons, totalSpent, sumPrice);
                 return new FuelUpStatistics(count, totalGallons, totalSpent, avgPrice);
             }
 
@@ -121,4 +780,362 @@ public class FuelUpServiceBean implements FuelUpService {
             }
         }
     }
+
+    /**
+     * getStatistics on the managed executor. Not @Asynchronous: callers
+     * asking for the same user must share one future, which a
+     * container-created Future cannot do. getStatistics uses no
+     * per-instance state, so running it after this call returns is safe.
+     */
+    public CompletableFuture<FuelUpStatistics> getStatisticsAsync(String userId) {
+        FuelUpStatistics cached = statisticsCache.get(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return statisticsLoader.load(userId, this::getStatistics);
+    }
+
+    /**
+     * Price-per-gallon and gallons-per-fill percentiles from the user's
+     * sketch, built with one streaming pass on first use
+     */
+    public FuelUpDistribution getDistribution(String userId) {
+        FuelUpDistribution cached = distributions.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Taken before the load: a write committed while it runs stops the seed
+        long version = distributions.version(userId);
+        try (RoutingContext.Scope readOnly = RoutingContext.readOnly(userId);
+             Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            FuelUpSketch sketch = FuelUpSketch.load(conn, userId);
+            distributions.seed(userId, version, sketch);
+            return sketch.toDistribution();
+        } catch (Exception e) {
+            logger.error("Error calculating distribution", e);
+            throw new RuntimeException("Failed to calculate distribution", e);
+        }
+    }
+
+    /**
+     * Cheapest fuel among the locations the user filled up at in the last
+     * N days, answered from the in-memory location price index
+     */
+    public List<LocationPrice> findCheapestFuel(String userId, int days) {
+        try {
+            if (!locationPrices.isLoaded()) {
+                try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+                    locationDictionary.load(conn);
+                    locationPrices.load(conn);
+                }
+            }
+
+            long today = LocalDate.now().toEpochDay();
+            List<LocationPrice> results = new ArrayList<>();
+            for (LocationPriceIndex.Quote quote : locationPrices.cheapestFor(userId, today - days, today)) {
+                results.add(new LocationPrice(
+                    quote.getLocationId(),
+                    locationDictionary.getDisplayName(quote.getLocationId()),
+                    BigDecimal.valueOf(quote.getLatestPriceHundredths(), 2),
+                    java.sql.Date.valueOf(LocalDate.ofEpochDay(quote.getLatestEpochDay())),
+                    BigDecimal.valueOf(quote.getRollingAverageHundredths(), 2),
+                    java.sql.Date.valueOf(LocalDate.ofEpochDay(quote.getLastVisitEpochDay()))));
+            }
+            return results;
+        } catch (Exception e) {
+            logger.error("Error finding cheapest fuel", e);
+            throw new RuntimeException("Failed to find cheapest fuel", e);
+        }
+    }
+
+    /**
+     * Search the user's notes and locations through the embedded inverted
+     * index; matching rows are then loaded by primary key, newest first
+     */
+    public FuelUpSearchResult searchFuelUps(String userId, String query, int offset, int limit) {
+        try {
+            FuelUpSearchIndex index = FileSystemHelper.getSearchIndex();
+            if (!index.isBootstrapped()) {
+                try (RoutingContext.Scope readOnly = RoutingContext.readOnly(null);
+                     Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+                    index.bootstrap(conn);
+                }
+            }
+
+            SearchPage page = index.search(userId, query, offset, limit);
+            List<Long> ids = new ArrayList<>();
+            for (long id : page.getFuelUpIds()) {
+                ids.add(id);
+            }
+            List<FuelUp> fuelUps = loadInOrder(userId, ids);
+            return new FuelUpSearchResult(fuelUps, page.getTotalMatches(), offset, limit);
+        } catch (Exception e) {
+            logger.error("Error searching fuel-ups", e);
+            throw new RuntimeException("Failed to search fuel-ups", e);
+        }
+    }
+
+    /**
+     * Fill-ups within radiusNm nautical miles of a point, nearest first.
+     * Served from the in-memory cell index once the user is loaded; the
+     * first query reads only the neighboring GEO_CELL ranges from the
+     * database and then loads the user's cells.
+     */
+    public List<FuelUp> findFuelUpsNear(String userId, double latitude, double longitude, double radiusNm) {
+        GeoGrid.validate(latitude, longitude);
+        GeoGrid.validateRadius(radiusNm);
+        try {
+            List<Long> ids = geoIndex.findNear(userId, latitude, longitude, radiusNm);
+            if (ids != null) {
+                return loadInOrder(userId, ids);
+            }
+
+            List<FuelUp> nearby = queryCellRanges(userId, latitude, longitude, radiusNm);
+            try (RoutingContext.Scope readOnly = RoutingContext.readOnly(userId);
+                 Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+                geoIndex.load(conn, userId);
+            }
+            return nearby;
+        } catch (Exception e) {
+            logger.error("Error finding nearby fuel-ups", e);
+            throw new RuntimeException("Failed to find nearby fuel-ups", e);
+        }
+    }
+
+    private List<FuelUp> queryCellRanges(String userId, double latitude, double longitude, double radiusNm) {
+        List<long[]> ranges = GeoGrid.cellRanges(latitude, longitude, radiusNm);
+        StringBuilder jpql = new StringBuilder("SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND (");
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                jpql.append(" OR ");
+            }
+            jpql.append("f.geoCell BETWEEN :lo").append(i).append(" AND :hi").append(i);
+        }
+        jpql.append(")");
+
+        TypedQuery<FuelUp> query = readOnly(entityManager.createQuery(jpql.toString(), FuelUp.class));
+        query.setParameter("userId", userId);
+        for (int i = 0; i < ranges.size(); i++) {
+            query.setParameter("lo" + i, ranges.get(i)[0]);
+            query.setParameter("hi" + i, ranges.get(i)[1]);
+        }
+
+        List<FuelUp> nearby = new ArrayList<>();
+        Map<FuelUp, Double> distances = new HashMap<>();
+        for (FuelUp candidate : query.getResultList()) {
+            double distance = GeoGrid.distanceNm(latitude, longitude, candidate.getLatitude(), candidate.getLongitude());
+            if (distance <= radiusNm) {
+                nearby.add(candidate);
+                distances.put(candidate, distance);
+            }
+        }
+        nearby.sort((a, b) -> Double.compare(distances.get(a), distances.get(b)));
+        return nearby;
+    }
+
+    /**
+     * Load fuel-ups by primary key, keeping the order of the given IDs
+     */
+    private List<FuelUp> loadInOrder(String userId, List<Long> ids) {
+        List<FuelUp> ordered = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return ordered;
+        }
+        List<FuelUp> rows = readOnly(entityManager.createQuery(
+                "SELECT f FROM FuelUp f WHERE f.id IN :ids AND f.user.userId = :userId", FuelUp.class))
+            .setParameter("ids", ids)
+            .setParameter("userId", userId)
+            .getResultList();
+        Map<Long, FuelUp> byId = new HashMap<>();
+        for (FuelUp row : rows) {
+            byId.put(row.getId(), row);
+        }
+        for (Long id : ids) {
+            FuelUp row = byId.get(id);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Fuel-ups written and deleted after the given change token, oldest
+     * change first, at most limit changes. Both queries walk the
+     * (USER_ID, SYNC_SEQ) indexes from the token onward.
+     *
+     * A full resync (token 0) starts with the archived years, which carry
+     * no change sequence: they are paged by ID under negative tokens
+     * (minus the last archived ID sent) before the FUEL_UPS changes. A
+     * token older than the newest purged tombstone requires a reset.
+     */
+    public FuelUpChanges changesSince(String userId, long token, int limit) {
+        try {
+            User user = entityManager.find(User.class, userId);
+            long current = (user == null || user.getSyncSeq() == null) ? 0 : user.getSyncSeq();
+            long floor = (user == null || user.getSyncFloor() == null) ? 0 : user.getSyncFloor();
+            if (token > current || (token > 0 && token < floor)) {
+                return new FuelUpChanges(new ArrayList<FuelUp>(), new ArrayList<Long>(), current, false, true);
+            }
+
+            List<FuelUp> pageUpserts = new ArrayList<>();
+            if (token <= 0) {
+                long afterId = -token;
+                List<FuelUp> archived = new ArrayList<>();
+                for (FuelUp row : archiveStore.read(userId, null, null)) {
+                    if (row.getId() > afterId) {
+                        archived.add(row);
+                    }
+                }
+                archived.sort(Comparator.comparing(FuelUp::getId));
+                if (archived.size() >= limit) {
+                    pageUpserts.addAll(archived.subList(0, limit));
+                    return new FuelUpChanges(pageUpserts, new ArrayList<Long>(),
+                        -pageUpserts.get(limit - 1).getId(), true, false);
+                }
+                pageUpserts.addAll(archived);
+                token = 0;
+            }
+            int remaining = limit - pageUpserts.size();
+
+            List<FuelUp> upserts = readOnly(entityManager.createQuery(
+                    "SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND f.syncSeq > :token " +
+                    "ORDER BY f.syncSeq", FuelUp.class))
+                .setParameter("userId", userId)
+                .setParameter("token", token)
+                .setMaxResults(remaining + 1)
+                .getResultList();
+            List<FuelUpTombstone> tombstones = readOnly(entityManager.createQuery(
+                    "SELECT t FROM FuelUpTombstone t WHERE t.userId = :userId AND t.syncSeq > :token " +
+                    "ORDER BY t.syncSeq", FuelUpTombstone.class))
+                .setParameter("userId", userId)
+                .setParameter("token", token)
+                .setMaxResults(remaining + 1)
+                .getResultList();
+
+            // Merge both streams in sequence order up to the limit
+            List<Long> pageDeletes = new ArrayList<>();
+            long nextToken = token;
+            int u = 0;
+            int t = 0;
+            while (pageUpserts.size() + pageDeletes.size() < limit
+                    && (u < upserts.size() || t < tombstones.size())) {
+                boolean takeUpsert = t >= tombstones.size()
+                    || (u < upserts.size() && upserts.get(u).getSyncSeq() < tombstones.get(t).getSyncSeq());
+                if (takeUpsert) {
+                    FuelUp fuelUp = upserts.get(u++);
+                    pageUpserts.add(fuelUp);
+                    nextToken = fuelUp.getSyncSeq();
+                } else {
+                    FuelUpTombstone tombstone = tombstones.get(t++);
+                    pageDeletes.add(tombstone.getFuelUpId());
+                    nextToken = tombstone.getSyncSeq();
+                }
+            }
+            boolean hasMore = u < upserts.size() || t < tombstones.size();
+            return new FuelUpChanges(pageUpserts, pageDeletes, hasMore ? nextToken : Math.max(nextToken, current),
+                hasMore, false);
+        } catch (Exception e) {
+            logger.error("Error retrieving changes", e);
+            throw new RuntimeException("Failed to retrieve changes", e);
+        }
+    }
+
+    /**
+     * Next change sequence for the user, taken under a row lock so
+     * concurrent writes for one user are strictly ordered; null when the
+     * user row does not exist
+     */
+    private Long nextSyncSeq(User user) {
+        User owner = lockForSync(user);
+        return owner == null ? null : owner.nextSyncSeq();
+    }
+
+    /**
+     * Write-lock the owner row that holds the change sequence
+     */
+    private User lockForSync(User user) {
+        if (entityManager.contains(user)) {
+            // The row may have been inserted earlier in this transaction
+            entityManager.flush();
+            entityManager.lock(user, LockModeType.PESSIMISTIC_WRITE);
+            return user;
+        }
+        return entityManager.find(User.class, user.getUserId(), LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Search index maintenance is best-effort, like the audit log: a local
+     * disk problem must not fail the write itself
+     */
+    private void indexForSearch(FuelUp fuelUp) {
+        if (fuelUp.getId() == null || (fuelUp.getLocation() == null && fuelUp.getNotes() == null)) {
+            return;
+        }
+        try {
+            FileSystemHelper.getSearchIndex().add(
+                fuelUp.getUser().getUserId(), fuelUp.getId(), fuelUp.getLocation(), fuelUp.getNotes());
+        } catch (IOException e) {
+            logger.warn("Failed to index fuel-up " + fuelUp.getId() + " for search", e);
+        }
+    }
+
+    private void unindexForSearch(FuelUp fuelUp) {
+        try {
+            FileSystemHelper.getSearchIndex().remove(fuelUp.getUser().getUserId(), fuelUp.getId());
+        } catch (IOException e) {
+            logger.warn("Failed to remove fuel-up " + fuelUp.getId() + " from search index", e);
+        }
+    }
+
+    private void recordLocationPrice(FuelUp fuelUp) {
+        // Before the first load the row is picked up by the load itself
+        if (fuelUp.getLocationId() != null && fuelUp.getId() != null && fuelUp.getDate() != null
+                && fuelUp.getPricePerGallon() != null && locationPrices.isLoaded()) {
+            locationPrices.record(fuelUp.getId(), fuelUp.getUser().getUserId(), fuelUp.getLocationId(),
+                new java.sql.Date(fuelUp.getDate().getTime()).toLocalDate().toEpochDay(),
+                fuelUp.getPricePerGallon().movePointRight(2).longValue());
+        }
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * Fuel-up IDs created and deleted per user within one transaction
+     */
+    private static final class PendingEvents {
+        private final FuelUpEventHub hub;
+        private final boolean immediate;
+        private final Map<String, List<Long>> created = new LinkedHashMap<>();
+        private final Map<String, List<Long>> deleted = new LinkedHashMap<>();
+
+        PendingEvents(FuelUpEventHub hub, boolean immediate) {
+            this.hub = hub;
+            this.immediate = immediate;
+        }
+
+        void created(String userId, Long fuelUpId) {
+            created.computeIfAbsent(userId, id -> new ArrayList<>()).add(fuelUpId);
+            if (immediate) {
+                publish();
+            }
+        }
+
+        void deleted(String userId, List<Long> fuelUpIds) {
+            deleted.computeIfAbsent(userId, id -> new ArrayList<>()).addAll(fuelUpIds);
+            if (immediate) {
+                publish();
+            }
+        }
+
+        void publish() {
+            created.forEach(hub::publishCreated);
+            deleted.forEach(hub::publishDeleted);
+            created.clear();
+            deleted.clear();
+        }
+    }
 }
@@ -0,0 +1,299 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.archive.FuelUpArchive;
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.geo.GeoCellIndex;
+import com.boatfuel.housekeeping.FuelUpArchiver;
+import com.boatfuel.housekeeping.FuelUpPartitionManager;
+import com.boatfuel.housekeeping.SoftDeletePurger;
+import com.boatfuel.jdbc.RoutingContext;
+import com.boatfuel.location.LocationPriceIndex;
+import com.boatfuel.report.MonthlyReportGenerator;
+import com.boatfuel.search.FuelUpSearchIndex;
+import com.boatfuel.stats.DistributionRegistry;
+import com.boatfuel.stats.FleetAggregate;
+import com.boatfuel.stats.FleetAggregator;
+import com.boatfuel.stats.FleetStatisticsCache;
+import com.boatfuel.stats.FuelUpColumns;
+import com.boatfuel.stats.FuelUpSketch;
+import com.boatfuel.stats.StatisticsAggregateCache;
+import com.boatfuel.util.FileSystemHelper;
+import com.boatfuel.util.JNDILookupHelper;
+import org.apache.log4j.Logger;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.sql.Connection;
+import java.time.YearMonth;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scheduled clean-up of expiring data.
+ *
+ * The jobs run concurrently (bean-managed concurrency): the report run
+ * throttles itself for a long time and must not hold up the hourly purges.
+ * The archive and report jobs each take their own lock instead.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class HousekeepingBean {
+
+    private static final Logger logger = Logger.getLogger(HousekeepingBean.class);
+
+    // How long soft-deleted fuel-ups are kept before the purge removes them
+    private static final long PURGE_GRACE_MILLIS = 24L * 60 * 60 * 1000;
+
+    public static final String TOMBSTONE_RETENTION_PROPERTY = "boatfuel.sync.tombstoneRetentionDays";
+    public static final int DEFAULT_TOMBSTONE_RETENTION_DAYS = 90;
+
+    private final SoftDeletePurger purger = new SoftDeletePurger();
+
+    private final FuelUpPartitionManager partitions = new FuelUpPartitionManager();
+
+    private final Lock archiveLock = new ReentrantLock();
+
+    private final Lock reportLock = new ReentrantLock();
+
+    @PersistenceContext(unitName = "BoatFuelTrackerPU")
+    private EntityManager entityManager;
+
+    /**
+     * Drop idempotency keys past their expiry, hourly
+     */
+    @Schedule(hour = "*", minute = "15", persistent = false)
+    public void purgeExpiredIdempotencyKeys() {
+        try {
+            int purged = entityManager.createQuery("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+                .setParameter("now", new Date())
+                .executeUpdate();
+            if (purged > 0) {
+                logger.info("Purged " + purged + " expired idempotency keys");
+            }
+        } catch (Exception e) {
+            logger.error("Error purging idempotency keys", e);
+        }
+    }
+
+    /**
+     * Drop delete tombstones past the retention period, nightly. Each
+     * user's sync floor is raised to the newest purged tombstone in the
+     * same transaction, so a client syncing from an older token is told to
+     * reset instead of silently missing the delete.
+     */
+    @Schedule(hour = "4", minute = "30", persistent = false)
+    public void purgeExpiredTombstones() {
+        Date cutoff = new Date(System.currentTimeMillis()
+            - configuredTombstoneRetentionDays() * 24L * 60 * 60 * 1000);
+        try {
+            entityManager.createQuery(
+                    "UPDATE User u SET u.syncFloor = (SELECT MAX(t.syncSeq) FROM FuelUpTombstone t " +
+                    "WHERE t.userId = u.userId AND t.deletedAt < :cutoff) " +
+                    "WHERE EXISTS (SELECT t.id FROM FuelUpTombstone t " +
+                    "WHERE t.userId = u.userId AND t.deletedAt < :cutoff)")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+            int purged = entityManager.createQuery("DELETE FROM FuelUpTombstone t WHERE t.deletedAt < :cutoff")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+            if (purged > 0) {
+                logger.info("Purged " + purged + " expired fuel-up tombstones");
+            }
+        } catch (Exception e) {
+            logger.error("Error purging fuel-up tombstones", e);
+        }
+    }
+
+    static int configuredTombstoneRetentionDays() {
+        String value = System.getProperty(TOMBSTONE_RETENTION_PROPERTY);
+        if (value == null) {
+            try {
+                value = FileSystemHelper.loadConfiguration().getProperty("sync.tombstoneRetentionDays");
+            } catch (Exception e) {
+                logger.debug("No sync configuration available", e);
+            }
+        }
+        try {
+            return value == null ? DEFAULT_TOMBSTONE_RETENTION_DAYS : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid sync.tombstoneRetentionDays '" + value + "', using "
+                + DEFAULT_TOMBSTONE_RETENTION_DAYS);
+            return DEFAULT_TOMBSTONE_RETENTION_DAYS;
+        }
+    }
+
+    /**
+     * Physically remove soft-deleted fuel-ups, hourly. Runs outside a
+     * container transaction so every purge batch commits on its own.
+     */
+    @Schedule(hour = "*", minute = "45", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void purgeDeletedFuelUps() {
+        Date cutoff = new Date(System.currentTimeMillis() - PURGE_GRACE_MILLIS);
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            purger.purge(conn, cutoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error purging deleted fuel-ups", e);
+        }
+    }
+
+    /**
+     * Rebuild the fleet distribution once deletes have made it stale, every
+     * ten minutes, so no read has to scan the whole table. A rebuild that
+     * races a write is dropped and retried on the next run.
+     */
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void rebuildFleetDistribution() {
+        DistributionRegistry registry = DistributionRegistry.getInstance();
+        if (!registry.isFleetStale()) {
+            return;
+        }
+        long version = registry.fleetVersion();
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            if (!registry.seedFleet(version, FuelUpSketch.load(conn, null))) {
+                logger.debug("Fleet distribution changed during its rebuild; retrying on the next run");
+            }
+        } catch (Exception e) {
+            logger.error("Error rebuilding fleet distribution", e);
+        }
+    }
+
+    /**
+     * Rebuild the fleet statistics once a delete or an archive run has left
+     * them stale, every ten minutes, on the same terms as the distribution
+     */
+    @Schedule(hour = "*", minute = "5/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void rebuildFleetStatistics() {
+        FleetStatisticsCache cache = FleetStatisticsCache.getInstance();
+        if (!cache.isStale()) {
+            return;
+        }
+        long version = cache.version();
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            FuelUpColumns columns = FuelUpColumns.load(conn, FileSystemHelper.getArchiveStore());
+            FleetAggregate aggregate = FleetAggregator.aggregate(columns);
+            if (!cache.seed(version, aggregate, columns)) {
+                logger.debug("Fleet statistics changed during their rebuild; retrying on the next run");
+            }
+        } catch (Exception e) {
+            logger.error("Error rebuilding fleet statistics", e);
+        }
+    }
+
+    /**
+     * Keep next year's FUEL_UPS partition ready and move years past the
+     * hot window into the archive, monthly. Last month's reports are
+     * completed first, since the reports read FUEL_UPS only and with a
+     * one-year hot window January's run archives December; if they cannot
+     * be completed the archive waits for the next run.
+     */
+    @Schedule(dayOfMonth = "1", hour = "2", minute = "30", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void archiveColdFuelUps() {
+        if (!archiveLock.tryLock()) {
+            logger.warn("Previous fuel-up archive run still in progress; skipping");
+            return;
+        }
+        try {
+            YearMonth reported = YearMonth.now().minusMonths(1);
+            if (!writeMonthlyReports(reported)) {
+                logger.warn("Archiving postponed: monthly reports for " + reported + " are incomplete");
+                return;
+            }
+            archive();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private void archive() {
+        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+        try (Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            partitions.ensurePartitions(conn, currentYear + 1);
+            FuelUpArchiver archiver = new FuelUpArchiver(FileSystemHelper.getArchiveStore(), partitions,
+                FuelUpArchiver.configuredHotYears());
+            List<Integer> years = archiver.archive(conn, currentYear);
+            if (!years.isEmpty()) {
+                forgetArchivedRows(years);
+                logger.info("Archived fuel-ups for " + years);
+            }
+        } catch (Exception e) {
+            logger.error("Error archiving fuel-ups", e);
+        }
+    }
+
+    /**
+     * Bring the in-memory structures that cover FUEL_UPS in line with what
+     * they load after a restart: the rows of the archived years are gone
+     * from FUEL_UPS, so drop them rather than keep serving them until the
+     * next start. The per-user structures are reloaded on demand and the
+     * fleet distribution is rebuilt in the background; the search index is
+     * persistent, so the archived rows are removed from it one by one.
+     */
+    private void forgetArchivedRows(List<Integer> years) throws IOException {
+        // Statistics totals are unchanged, but reseed so nothing counts rows twice mid-move
+        StatisticsAggregateCache.getInstance().clear();
+        DistributionRegistry.getInstance().clear();
+        FleetStatisticsCache.getInstance().clear();
+        GeoCellIndex.getInstance().clear();
+        LocationPriceIndex.getInstance().clear();
+
+        FuelUpArchiveStore store = FileSystemHelper.getArchiveStore();
+        FuelUpSearchIndex searchIndex = FileSystemHelper.getSearchIndex();
+        for (int year : years) {
+            FuelUpArchive archive = store.getArchive(year);
+            for (String userId : archive.getUserIds()) {
+                for (FuelUp row : archive.read(userId, null, null)) {
+                    searchIndex.remove(userId, row.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write last month's per-user reports. Scheduled daily but a no-op once
+     * the month is complete, so a run cut short by a restart resumes from
+     * its checkpoint the next night. Reads may be served by a replica.
+     */
+    @Schedule(hour = "3", minute = "15", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void generateMonthlyReports() {
+        writeMonthlyReports(YearMonth.now().minusMonths(1));
+    }
+
+    /**
+     * One report run at a time; a run that waited finds the month complete
+     * @return true once every report for the month is written
+     */
+    private boolean writeMonthlyReports(YearMonth month) {
+        reportLock.lock();
+        try (RoutingContext.Scope readOnly = RoutingContext.readOnly(null);
+             Connection conn = JNDILookupHelper.lookupDataSource().getConnection()) {
+            new MonthlyReportGenerator(FileSystemHelper.getReportDirectory()).generate(conn, month);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Error generating monthly reports for " + month, e);
+            return false;
+        } finally {
+            reportLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.boatfuel.ejb;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * DTO for a location's latest and rolling-average fuel price
+ */
+public class LocationPrice implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long locationId;
+    private String locationName;
+    private BigDecimal latestPricePerGallon;
+    private Date latestPriceDate;
+    private BigDecimal rollingAveragePricePerGallon;
+    private Date lastVisited;
+
+    public LocationPrice() {
+    }
+
+    public LocationPrice(Long locationId, String locationName, BigDecimal latestPricePerGallon, Date latestPriceDate,
+                         BigDecimal rollingAveragePricePerGallon, Date lastVisited) {
+        this.locationId = locationId;
+        this.locationName = locationName;
+        this.latestPricePerGallon = latestPricePerGallon;
+        this.latestPriceDate = latestPriceDate;
+        this.rollingAveragePricePerGallon = rollingAveragePricePerGallon;
+        this.lastVisited = lastVisited;
+    }
+
+    public Long getLocationId() {
+        return locationId;
+    }
+
+    public void setLocationId(Long locationId) {
+        this.locationId = locationId;
+    }
+
+    public String getLocationName() {
+        return locationName;
+    }
+
+    public void setLocationName(String locationName) {
+        this.locationName = locationName;
+    }
+
+    public BigDecimal getLatestPricePerGallon() {
+        return latestPricePerGallon;
+    }
+
+    public void setLatestPricePerGallon(BigDecimal latestPricePerGallon) {
+        this.latestPricePerGallon = latestPricePerGallon;
+    }
+
+    public Date getLatestPriceDate() {
+        return latestPriceDate;
+    }
+
+    public void setLatestPriceDate(Date latestPriceDate) {
+        this.latestPriceDate = latestPriceDate;
+    }
+
+    public BigDecimal getRollingAveragePricePerGallon() {
+        return rollingAveragePricePerGallon;
+    }
+
+    public void setRollingAveragePricePerGallon(BigDecimal rollingAveragePricePerGallon) {
+        this.rollingAveragePricePerGallon = rollingAveragePricePerGallon;
+    }
+
+    public Date getLastVisited() {
+        return lastVisited;
+    }
+
+    public void setLastVisited(Date lastVisited) {
+        this.lastVisited = lastVisited;
+    }
+}
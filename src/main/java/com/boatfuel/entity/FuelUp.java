@@ -1,5 +1,6 @@
 package com.boatfuel.entity;
 
+import com.boatfuel.geo.GeoGrid;
 import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Type;
 import javax.persistence.*;
@@ -13,7 +14,14 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "FUEL_UPS")
+@org.hibernate.annotations.Table(appliesTo = "FUEL_UPS", indexes = {
+    // Covers the list projection and the statistics aggregate: equality on
+    // USER_ID and DELETED_AT IS NULL, then rows already in date order
+    @Index(name = "IDX_USER_DATE", columnNames = {"USER_ID", "DELETED_AT", "FUEL_DATE",
+        "GALLONS", "PRICE_PER_GALLON", "TOTAL_COST"}),
+    @Index(name = "IDX_USER_SYNC_SEQ", columnNames = {"USER_ID", "SYNC_SEQ"})})
 @org.hibernate.annotations.Cache(usage = org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE)
+@org.hibernate.annotations.Where(clause = "DELETED_AT IS NULL") // Soft-deleted rows hidden from JPQL
 public class FuelUp implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,7 +37,7 @@ public class FuelUp implements Serializable {
 
     @Temporal(TemporalType.DATE)
     @Column(name = "FUEL_DATE", nullable = false)
-    @Index(name = "IDX_FUEL_DATE") // Old Hibernate @Index (deprecated)
+    @Index(name = "IDX_FUEL_DATE") // Old Hibernate @Index (deprecated); year scans by FuelUpArchiver
     private Date date;
 
     @Column(name = "GALLONS", precision = 10, scale = 2, nullable = false)
@@ -48,6 +56,25 @@ public class FuelUp implements Serializable {
     @Type(type = "text") // Hibernate-specific type
     private String location;
 
+    @Column(name = "LOCATION_ID")
+    @Index(name = "IDX_LOCATION_ID")
+    private Long locationId;
+
+    @Column(name = "LATITUDE")
+    private Double latitude;
+
+    @Column(name = "LONGITUDE")
+    private Double longitude;
+
+    // GeoGrid cell of (LATITUDE, LONGITUDE), maintained by the setters
+    @Column(name = "GEO_CELL")
+    @Index(name = "IDX_GEO_CELL")
+    private Long geoCell;
+
+    // Per-user change sequence at the last write (delta sync)
+    @Column(name = "SYNC_SEQ")
+    private Long syncSeq;
+
     @Column(name = "NOTES", length = 2000)
     @org.hibernate.annotations.Type(type = "text") // Hibernate-specific
     private String notes;
@@ -57,6 +84,12 @@ public class FuelUp implements Serializable {
     @org.hibernate.annotations.CreationTimestamp
     private Date createdAt;
 
+    // Soft delete: set when deleted, row purged later by HousekeepingBean
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DELETED_AT")
+    @Index(name = "IDX_DELETED_AT")
+    private Date deletedAt;
+
     // Default constructor
     public FuelUp() {
     }
@@ -137,6 +170,47 @@ public class FuelUp implements Serializable {
         this.location = location;
     }
 
+    /**
+     * Canonical location (LOCATIONS.LOCATION_ID) resolved from the free text
+     */
+    public Long getLocationId() {
+        return locationId;
+    }
+
+    public void setLocationId(Long locationId) {
+        this.locationId = locationId;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+        calculateGeoCell();
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+        calculateGeoCell();
+    }
+
+    public Long getGeoCell() {
+        return geoCell;
+    }
+
+    public Long getSyncSeq() {
+        return syncSeq;
+    }
+
+    public void setSyncSeq(Long syncSeq) {
+        this.syncSeq = syncSeq;
+    }
+
     public String getNotes() {
         return notes;
     }
@@ -153,6 +227,22 @@ public class FuelUp implements Serializable {
         this.createdAt = createdAt;
     }
 
+    public Date getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Date deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public boolean isDeleted() {
+        return deletedAt != null;
+    }
+
+    private void calculateGeoCell() {
+        this.geoCell = (latitude != null && longitude != null) ? GeoGrid.cellOf(latitude, longitude) : null;
+    }
+
     private void calculateTotalCost() {
         if (gallons != null && pricePerGallon != null) {
             this.totalCost = gallons.multiply(pricePerGallon);
@@ -0,0 +1,90 @@
+package com.boatfuel.entity;
+
+import org.hibernate.annotations.Index;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Record of a deleted fuel-up, kept so offline clients syncing with an
+ * older change token learn about the delete
+ */
+@Entity
+@Table(name = "FUEL_UP_TOMBSTONES")
+@org.hibernate.annotations.Table(appliesTo = "FUEL_UP_TOMBSTONES",
+    indexes = @Index(name = "IDX_TOMBSTONE_USER_SEQ", columnNames = {"USER_ID", "SYNC_SEQ"}))
+public class FuelUpTombstone implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "TOMBSTONE_ID")
+    private Long id;
+
+    @Column(name = "USER_ID", length = 50, nullable = false)
+    private String userId;
+
+    @Column(name = "FUEL_UP_ID", nullable = false)
+    private Long fuelUpId;
+
+    @Column(name = "SYNC_SEQ", nullable = false)
+    private Long syncSeq;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DELETED_AT")
+    private Date deletedAt;
+
+    // Default constructor
+    public FuelUpTombstone() {
+    }
+
+    public FuelUpTombstone(String userId, Long fuelUpId, Long syncSeq) {
+        this.userId = userId;
+        this.fuelUpId = fuelUpId;
+        this.syncSeq = syncSeq;
+        this.deletedAt = new Date();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Long getFuelUpId() {
+        return fuelUpId;
+    }
+
+    public void setFuelUpId(Long fuelUpId) {
+        this.fuelUpId = fuelUpId;
+    }
+
+    public Long getSyncSeq() {
+        return syncSeq;
+    }
+
+    public void setSyncSeq(Long syncSeq) {
+        this.syncSeq = syncSeq;
+    }
+
+    public Date getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Date deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
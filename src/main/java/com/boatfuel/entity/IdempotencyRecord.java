@@ -0,0 +1,98 @@
+package com.boatfuel.entity;
+
+import org.hibernate.annotations.Index;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Result of a request submitted with a client idempotency key. The key
+ * (scoped by user, see IdempotencyFilter.requestKey) is the primary key, so
+ * a duplicate insert fails on the unique constraint even when two retries
+ * race. The owner is also kept in USER_ID, so rows are found by user
+ * without parsing the key.
+ */
+@Entity
+@Table(name = "IDEMPOTENCY_KEYS")
+public class IdempotencyRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "REQUEST_KEY", length = 255)
+    private String requestKey;
+
+    @Column(name = "USER_ID", length = 50)
+    @Index(name = "IDX_IDEMPOTENCY_USER")
+    private String userId;
+
+    @Column(name = "FUEL_UP_ID")
+    private Long fuelUpId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "CREATED_AT")
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "EXPIRES_AT", nullable = false)
+    @Index(name = "IDX_IDEMPOTENCY_EXPIRES")
+    private Date expiresAt;
+
+    // Default constructor
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String requestKey, Long fuelUpId, Date createdAt, Date expiresAt) {
+        this(requestKey, null, fuelUpId, createdAt, expiresAt);
+    }
+
+    public IdempotencyRecord(String requestKey, String userId, Long fuelUpId, Date createdAt, Date expiresAt) {
+        this.requestKey = requestKey;
+        this.userId = userId;
+        this.fuelUpId = fuelUpId;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public void setRequestKey(String requestKey) {
+        this.requestKey = requestKey;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Long getFuelUpId() {
+        return fuelUpId;
+    }
+
+    public void setFuelUpId(Long fuelUpId) {
+        this.fuelUpId = fuelUpId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
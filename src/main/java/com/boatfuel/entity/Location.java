@@ -0,0 +1,74 @@
+package com.boatfuel.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Canonical fuel-up location. Free-text locations are normalized to a
+ * canonical name so equivalent spellings share one LOCATION_ID.
+ */
+@Entity
+@Table(name = "LOCATIONS")
+public class Location implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "LOCATION_ID")
+    private Long id;
+
+    @Column(name = "CANONICAL_NAME", nullable = false, unique = true, length = 255)
+    private String canonicalName;
+
+    @Column(name = "DISPLAY_NAME", length = 500)
+    private String displayName;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "CREATED_AT")
+    @org.hibernate.annotations.CreationTimestamp
+    private Date createdAt;
+
+    // Default constructor
+    public Location() {
+    }
+
+    public Location(String canonicalName, String displayName) {
+        this.canonicalName = canonicalName;
+        this.displayName = displayName;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCanonicalName() {
+        return canonicalName;
+    }
+
+    public void setCanonicalName(String canonicalName) {
+        this.canonicalName = canonicalName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
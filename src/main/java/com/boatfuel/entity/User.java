@@ -46,6 +46,15 @@ public class User implements Serializable {
     @Column(name = "LAST_LOGIN")
     private Date lastLogin;
 
+    // Last change sequence handed out to this user's fuel-ups (delta sync)
+    @Column(name = "SYNC_SEQ")
+    private Long syncSeq;
+
+    // Highest change sequence whose tombstone has been purged; written only
+    // by the tombstone purge, so entity updates never overwrite it
+    @Column(name = "SYNC_FLOOR", insertable = false, updatable = false)
+    private Long syncFloor;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<FuelUp> fuelUps;
 
@@ -110,6 +119,31 @@ public class User implements Serializable {
         this.lastLogin = lastLogin;
     }
 
+    public Long getSyncSeq() {
+        return syncSeq;
+    }
+
+    public void setSyncSeq(Long syncSeq) {
+        this.syncSeq = syncSeq;
+    }
+
+    public Long getSyncFloor() {
+        return syncFloor;
+    }
+
+    public void setSyncFloor(Long syncFloor) {
+        this.syncFloor = syncFloor;
+    }
+
+    /**
+     * Advance and return the user's change sequence; the caller must hold
+     * a write lock on this row
+     */
+    public long nextSyncSeq() {
+        syncSeq = (syncSeq == null ? 0 : syncSeq) + 1;
+        return syncSeq;
+    }
+
     public List<FuelUp> getFuelUps() {
         return fuelUps;
     }
@@ -0,0 +1,24 @@
+package com.boatfuel.events;
+
+import java.io.IOException;
+
+/**
+ * Non-blocking destination for one subscriber's event stream.
+ *
+ * Writes are only attempted while isReady() returns true; a sink that
+ * reports false is expected to call back into its subscription's drain()
+ * once it can accept more (e.g. from a servlet WriteListener).
+ */
+public interface EventSink {
+
+    boolean isReady();
+
+    void write(byte[] data) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * End the stream; called once when the subscription is closed
+     */
+    void close();
+}
@@ -0,0 +1,277 @@
+package com.boatfuel.events;
+
+import com.boatfuel.util.FileSystemHelper;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user fan-out of fuel-up change events to open Server-Sent Events
+ * streams.
+ *
+ * Each subscription owns a bounded buffer of encoded events. Publishing
+ * encodes an event once, appends it to every subscription of the user and
+ * writes as much as each sink accepts without blocking; the remainder is
+ * written when the sink becomes writable again. A subscriber whose buffer
+ * fills up is evicted rather than allowed to hold back the publisher or
+ * grow without bound - its browser reconnects and reloads.
+ *
+ * No thread is held per connection: idle subscriptions are only a queue
+ * and a sink, and a single timer sends the keep-alive comments.
+ */
+public class FuelUpEventHub {
+
+    private static final Logger logger = Logger.getLogger(FuelUpEventHub.class);
+
+    public static final String BUFFER_PROPERTY = "boatfuel.events.bufferSize";
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+    public static final long HEARTBEAT_SECONDS = 20;
+
+    // Largest ID list sent with an event; bigger changes only send the count
+    static final int MAX_EVENT_IDS = 100;
+
+    // Reconnect delay for the browser, sent first on every stream
+    private static final byte[] PREAMBLE = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static volatile FuelUpEventHub instance;
+
+    private final int bufferSize;
+    private final ConcurrentMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public FuelUpEventHub(int bufferSize) {
+        this.bufferSize = Math.max(2, bufferSize);
+    }
+
+    /**
+     * Shared hub with its keep-alive timer running
+     */
+    public static FuelUpEventHub getInstance() {
+        if (instance == null) {
+            synchronized (FuelUpEventHub.class) {
+                if (instance == null) {
+                    FuelUpEventHub hub = new FuelUpEventHub(configuredBufferSize());
+                    hub.startHeartbeat(HEARTBEAT_SECONDS);
+                    instance = hub;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Register a sink for a user's events. Nothing is written to the sink
+     * until it reports ready, so the caller may finish setting it up first.
+     */
+    public Subscription subscribe(String userId, EventSink sink) {
+        Subscription subscription = new Subscription(userId, sink, bufferSize);
+        subscription.buffer.offer(PREAMBLE);
+        subscriptions.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        logger.debug("Event subscriber added for user " + userId);
+        return subscription;
+    }
+
+    public void publishCreated(String userId, Long fuelUpId) {
+        publishCreated(userId, Collections.singletonList(fuelUpId));
+    }
+
+    /**
+     * One event for fuel-ups created together, e.g. by a write-behind batch
+     */
+    public void publishCreated(String userId, List<Long> fuelUpIds) {
+        publish(userId, "fuelup-created", changeData(fuelUpIds));
+    }
+
+    public void publishDeleted(String userId, List<Long> fuelUpIds) {
+        publish(userId, "fuelup-deleted", changeData(fuelUpIds));
+    }
+
+    /**
+     * Send one event to every open stream of the user
+     * @param data single-line payload (JSON)
+     */
+    public void publish(String userId, String event, String data) {
+        Set<Subscription> targets = subscriptions.get(userId);
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        byte[] encoded = ("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+        published.incrementAndGet();
+        for (Subscription subscription : targets) {
+            subscription.enqueue(encoded);
+        }
+    }
+
+    /**
+     * Write a comment to every stream so proxies keep idle connections open
+     * and dead ones surface as write errors
+     */
+    public void heartbeat() {
+        for (Set<Subscription> targets : subscriptions.values()) {
+            for (Subscription subscription : targets) {
+                subscription.enqueue(HEARTBEAT);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Set<Subscription> targets : subscriptions.values()) {
+            count += targets.size();
+        }
+        return count;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    private void startHeartbeat(long periodSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fuelup-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                heartbeat();
+            } catch (Exception e) {
+                logger.warn("Event heartbeat failed", e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.userId, (id, targets) -> {
+            targets.remove(subscription);
+            return targets.isEmpty() ? null : targets;
+        });
+    }
+
+    /**
+     * {"count":n,"ids":[...]}, leaving out the IDs of large changes
+     */
+    private static String changeData(List<Long> fuelUpIds) {
+        StringBuilder data = new StringBuilder("{\"count\":").append(fuelUpIds.size());
+        if (fuelUpIds.size() <= MAX_EVENT_IDS) {
+            data.append(",\"ids\":[");
+            for (int i = 0; i < fuelUpIds.size(); i++) {
+                if (i > 0) {
+                    data.append(',');
+                }
+                data.append(fuelUpIds.get(i));
+            }
+            data.append(']');
+        }
+        return data.append('}').toString();
+    }
+
+    static int configuredBufferSize() {
+        String value = System.getProperty(BUFFER_PROPERTY);
+        if (value == null) {
+            try {
+                value = FileSystemHelper.loadConfiguration().getProperty("events.buffer.size");
+            } catch (Exception e) {
+                logger.debug("No events configuration available", e);
+            }
+        }
+        try {
+            return value == null ? DEFAULT_BUFFER_SIZE : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid events.buffer.size '" + value + "', using " + DEFAULT_BUFFER_SIZE);
+            return DEFAULT_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * One open stream: its pending events and the sink they drain to
+     */
+    public final class Subscription {
+        private final String userId;
+        private final EventSink sink;
+        private final BlockingQueue<byte[]> buffer;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean flushPending;
+
+        Subscription(String userId, EventSink sink, int capacity) {
+            this.userId = userId;
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Write buffered events while the sink accepts them without blocking
+         */
+        public synchronized void drain() {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                while (sink.isReady()) {
+                    byte[] next = buffer.poll();
+                    if (next != null) {
+                        sink.write(next);
+                        flushPending = true;
+                    } else if (flushPending) {
+                        flushPending = false;
+                        sink.flush();
+                    } else {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Event stream for user " + userId + " failed, closing", e);
+                close();
+            }
+        }
+
+        /**
+         * Stop delivering and end the stream; safe to call more than once
+         */
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                remove(this);
+                buffer.clear();
+                sink.close();
+            }
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        int getBufferedCount() {
+            return buffer.size();
+        }
+
+        private void enqueue(byte[] event) {
+            if (!buffer.offer(event)) {
+                evicted.incrementAndGet();
+                logger.info("Evicting slow event subscriber for user " + userId
+                    + " after " + buffer.size() + " undelivered events");
+                close();
+                return;
+            }
+            drain();
+        }
+    }
+}
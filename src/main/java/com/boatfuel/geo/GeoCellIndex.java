@@ -0,0 +1,237 @@
+package com.boatfuel.geo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory GeoGrid index of fill-up coordinates, warmed per user and
+ * bounded to the most recently used users. Proximity queries visit only
+ * the cells returned by GeoGrid.cellRanges.
+ *
+ * A load scans the user's rows without holding the index lock. Fill-ups
+ * added or removed meanwhile are applied to the cells being built and
+ * keep their live state over the scanned one.
+ */
+public class GeoCellIndex {
+
+    public static final int DEFAULT_MAX_USERS = 10_000;
+
+    private static final GeoCellIndex INSTANCE = new GeoCellIndex(DEFAULT_MAX_USERS);
+
+    private static final String LOAD_SQL =
+        "SELECT FUEL_UP_ID, LATITUDE, LONGITUDE FROM FUEL_UPS WHERE USER_ID = ? AND GEO_CELL IS NOT NULL " +
+        "AND DELETED_AT IS NULL";
+
+    private final Map<String, UserCells> users;
+    private final Map<String, Loading> loading = new HashMap<>();
+
+    public GeoCellIndex(final int maxUsers) {
+        this.users = new LinkedHashMap<String, UserCells>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserCells> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public static GeoCellIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized boolean isLoaded(String userId) {
+        return users.containsKey(userId);
+    }
+
+    /**
+     * Load a user's located fill-ups; a no-op while another load of the
+     * same user runs
+     */
+    public void load(Connection connection, String userId) throws SQLException {
+        Loading load = new Loading();
+        synchronized (this) {
+            if (loading.containsKey(userId)) {
+                return;
+            }
+            loading.put(userId, load);
+        }
+
+        List<Point> scanned = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(LOAD_SQL)) {
+            stmt.setString(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    scanned.add(new Point(rs.getLong(1), rs.getDouble(2), rs.getDouble(3)));
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (loading.get(userId) == load) {
+                    loading.remove(userId);
+                } else {
+                    // Cleared while scanning: the scan may predate whatever caused it
+                    load = null;
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (load == null) {
+                return;
+            }
+            for (Point point : scanned) {
+                if (!load.changed.contains(point.fuelUpId)) {
+                    load.cells.add(point);
+                }
+            }
+            users.put(userId, load.cells);
+        }
+    }
+
+    /**
+     * Add a fill-up for a user whose cells are loaded or being loaded
+     */
+    public synchronized void add(String userId, long fuelUpId, double latitude, double longitude) {
+        Loading load = loading.get(userId);
+        if (load != null) {
+            load.changed.add(fuelUpId);
+            load.cells.add(new Point(fuelUpId, latitude, longitude));
+        }
+        UserCells cells = users.get(userId);
+        if (cells != null) {
+            cells.add(new Point(fuelUpId, latitude, longitude));
+        }
+    }
+
+    public synchronized void remove(String userId, long fuelUpId, double latitude, double longitude) {
+        Loading load = loading.get(userId);
+        if (load != null) {
+            load.changed.add(fuelUpId);
+            load.cells.remove(fuelUpId, GeoGrid.cellOf(latitude, longitude));
+        }
+        UserCells cells = users.get(userId);
+        if (cells != null) {
+            cells.remove(fuelUpId, GeoGrid.cellOf(latitude, longitude));
+        }
+    }
+
+    /**
+     * Fill-up IDs within radiusNm of the point, nearest first, or null
+     * when the user is not loaded
+     */
+    public List<Long> findNear(String userId, double latitude, double longitude, double radiusNm) {
+        List<long[]> ranges = GeoGrid.cellRanges(latitude, longitude, radiusNm);
+        List<Point> hits = new ArrayList<>();
+        synchronized (this) {
+            UserCells cells = users.get(userId);
+            if (cells == null) {
+                return null;
+            }
+            for (long[] range : ranges) {
+                cells.collect(range[0], range[1], latitude, longitude, radiusNm, hits);
+            }
+        }
+        Collections.sort(hits, (a, b) -> Double.compare(a.distance, b.distance));
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (Point hit : hits) {
+            ids.add(hit.fuelUpId);
+        }
+        return ids;
+    }
+
+    public synchronized void clear() {
+        users.clear();
+        loading.clear();
+    }
+
+    private static final class Point {
+        final long fuelUpId;
+        final double latitude;
+        final double longitude;
+        double distance;
+
+        Point(long fuelUpId, double latitude, double longitude) {
+            this.fuelUpId = fuelUpId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * Cells being built by a load, and the IDs live writes changed meanwhile
+     */
+    private static final class Loading {
+        final UserCells cells = new UserCells();
+        final Set<Long> changed = new HashSet<>();
+    }
+
+    /**
+     * One user's points bucketed by cell
+     */
+    private static final class UserCells {
+        private final Map<Long, List<Point>> cells = new HashMap<>();
+
+        void add(Point point) {
+            cells.computeIfAbsent(GeoGrid.cellOf(point.latitude, point.longitude), c -> new ArrayList<>())
+                .add(point);
+        }
+
+        void remove(long fuelUpId, long cell) {
+            List<Point> points = cells.get(cell);
+            if (points == null) {
+                return;
+            }
+            for (Iterator<Point> it = points.iterator(); it.hasNext(); ) {
+                if (it.next().fuelUpId == fuelUpId) {
+                    it.remove();
+                }
+            }
+            if (points.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+
+        void collect(long fromCell, long toCell, double latitude, double longitude, double radiusNm,
+                     List<Point> hits) {
+            // Probe the range cell by cell, or walk the user's occupied cells when that is cheaper
+            if (toCell - fromCell + 1 <= cells.size()) {
+                for (long cell = fromCell; cell <= toCell; cell++) {
+                    collectCell(cells.get(cell), latitude, longitude, radiusNm, hits);
+                }
+            } else {
+                for (Map.Entry<Long, List<Point>> entry : cells.entrySet()) {
+                    if (entry.getKey() >= fromCell && entry.getKey() <= toCell) {
+                        collectCell(entry.getValue(), latitude, longitude, radiusNm, hits);
+                    }
+                }
+            }
+        }
+
+        private static void collectCell(List<Point> points, double latitude, double longitude, double radiusNm,
+                                        List<Point> hits) {
+            if (points == null) {
+                return;
+            }
+            for (Point point : points) {
+                double distance = GeoGrid.distanceNm(latitude, longitude, point.latitude, point.longitude);
+                if (distance <= radiusNm) {
+                    Point hit = new Point(point.fuelUpId, point.latitude, point.longitude);
+                    hit.distance = distance;
+                    hits.add(hit);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.boatfuel.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed latitude/longitude cell grid used as the spatial index key.
+ *
+ * Cells are CELL_DEGREES square (about 15 nautical miles of latitude) and
+ * numbered row by row, so the cells a radius query needs within one row
+ * form a contiguous ID range. A query touches only the rows and columns
+ * its bounding box overlaps.
+ */
+public final class GeoGrid {
+
+    public static final double CELL_DEGREES = 0.25;
+    public static final double EARTH_RADIUS_NM = 3440.065;
+
+    static final int LAT_CELLS = (int) Math.round(180 / CELL_DEGREES);
+    static final int LON_CELLS = (int) Math.round(360 / CELL_DEGREES);
+
+    private GeoGrid() {
+    }
+
+    public static long cellOf(double latitude, double longitude) {
+        return (long) latIndex(latitude) * LON_CELLS + lonIndex(longitude);
+    }
+
+    /**
+     * Great-circle distance in nautical miles
+     */
+    public static double distanceNm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+            * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_NM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Inclusive cell ID ranges covering every point within radiusNm of the
+     * given point: one range per grid row (two where the row wraps the
+     * antimeridian)
+     */
+    public static List<long[]> cellRanges(double latitude, double longitude, double radiusNm) {
+        validate(latitude, longitude);
+        validateRadius(radiusNm);
+        double latDelta = radiusNm / 60.0;
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+
+        // Widest longitude span occurs at the row edge closest to a pole
+        double widestLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double cos = Math.cos(Math.toRadians(widestLat));
+        double lonDelta = cos < 1e-6 ? 180 : Math.min(180, radiusNm / (60.0 * cos));
+
+        List<long[]> ranges = new ArrayList<>();
+        int firstRow = latIndex(minLat);
+        int lastRow = latIndex(maxLat);
+        for (int row = firstRow; row <= lastRow; row++) {
+            long base = (long) row * LON_CELLS;
+            if (lonDelta >= 180) {
+                ranges.add(new long[] {base, base + LON_CELLS - 1});
+                continue;
+            }
+            int west = lonIndex(longitude - lonDelta);
+            int east = lonIndex(longitude + lonDelta);
+            if (west <= east) {
+                ranges.add(new long[] {base + west, base + east});
+            } else {
+                ranges.add(new long[] {base + west, base + LON_CELLS - 1});
+                ranges.add(new long[] {base, base + east});
+            }
+        }
+        return ranges;
+    }
+
+    public static void validate(double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180
+                || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+    }
+
+    public static void validateRadius(double radiusNm) {
+        if (!(radiusNm > 0) || Double.isInfinite(radiusNm)) {
+            throw new IllegalArgumentException("Invalid radius: " + radiusNm);
+        }
+    }
+
+    private static int latIndex(double latitude) {
+        return Math.min(LAT_CELLS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES));
+    }
+
+    private static int lonIndex(double longitude) {
+        double normalized = ((longitude + 180) % 360 + 360) % 360;
+        return Math.min(LON_CELLS - 1, (int) Math.floor(normalized / CELL_DEGREES));
+    }
+}
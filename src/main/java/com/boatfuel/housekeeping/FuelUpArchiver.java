@@ -0,0 +1,265 @@
+package com.boatfuel.housekeeping;
+
+import com.boatfuel.archive.FuelUpArchive;
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import com.boatfuel.util.FileSystemHelper;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Moves whole years of fuel-ups older than the hot window out of FUEL_UPS
+ * into the columnar archive store.
+ *
+ * The hot window (archive.hotYears, default 2) counts the current year.
+ * Each colder year is streamed to its archive file ordered by user, and
+ * only after the file is durably in place are the rows removed: by
+ * exchanging the year's partition out of the table when FUEL_UPS is
+ * partitioned, otherwise by primary key in small batches. The store keeps
+ * the year pending removal until every archived row is gone, so a run
+ * cut short is finished by the next one and reads never see a row both
+ * in FUEL_UPS and in the archive. A row soft-deleted after it was
+ * archived is left in FUEL_UPS for the purge and recorded as deleted in
+ * the archive before the batch holding it is marked removed. A year that
+ * already has an archive is left alone.
+ */
+public class FuelUpArchiver {
+
+    private static final Logger logger = Logger.getLogger(FuelUpArchiver.class);
+
+    public static final String HOT_YEARS_PROPERTY = "boatfuel.archive.hotYears";
+    public static final int DEFAULT_HOT_YEARS = 2;
+
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private static final String REMAINING_SQL = "SELECT FUEL_UP_ID, USER_ID FROM FUEL_UPS WHERE FUEL_UP_ID IN (";
+
+    private static final String OLDEST_SQL = "SELECT MIN(FUEL_DATE) FROM FUEL_UPS";
+
+    private static final String YEAR_SQL =
+        "SELECT FUEL_UP_ID, USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST, ENGINE_HOURS, " +
+        "LOCATION_ID, LATITUDE, LONGITUDE, CREATED_AT, LOCATION, NOTES FROM FUEL_UPS " +
+        "WHERE FUEL_DATE >= ? AND FUEL_DATE < ? AND DELETED_AT IS NULL ORDER BY USER_ID, FUEL_DATE, FUEL_UP_ID";
+
+    private final FuelUpArchiveStore store;
+    private final FuelUpPartitionManager partitions;
+    private final int hotYears;
+
+    public FuelUpArchiver(FuelUpArchiveStore store, FuelUpPartitionManager partitions, int hotYears) {
+        this.store = store;
+        this.partitions = partitions;
+        this.hotYears = Math.max(1, hotYears);
+    }
+
+    /**
+     * Hot window from -Dboatfuel.archive.hotYears or archive.hotYears in
+     * the application configuration
+     */
+    public static int configuredHotYears() {
+        String value = System.getProperty(HOT_YEARS_PROPERTY);
+        if (value == null) {
+            try {
+                value = FileSystemHelper.loadConfiguration().getProperty("archive.hotYears");
+            } catch (Exception e) {
+                logger.debug("No archive configuration available", e);
+            }
+        }
+        try {
+            return value == null ? DEFAULT_HOT_YEARS : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid archive.hotYears '" + value + "', using " + DEFAULT_HOT_YEARS);
+            return DEFAULT_HOT_YEARS;
+        }
+    }
+
+    /**
+     * Finish any interrupted removal, then archive every year before the
+     * hot window
+     * @return the years archived or finished by this run
+     */
+    public List<Integer> archive(Connection connection, int currentYear) throws SQLException, IOException {
+        List<Integer> archived = new ArrayList<>();
+        SortedSet<Integer> partitionYears = partitions.partitionYears(connection);
+        for (int year : store.getPendingYears()) {
+            logger.info("Finishing removal of archived fuel-ups for " + year);
+            removeArchivedRows(connection, year, store.getArchive(year).readIds(), partitionYears);
+            archived.add(year);
+        }
+
+        int lastColdYear = currentYear - hotYears;
+        Integer oldest = oldestYear(connection);
+        if (oldest == null) {
+            return archived;
+        }
+        for (int year = oldest; year <= lastColdYear; year++) {
+            if (store.isArchived(year)) {
+                continue;
+            }
+            archiveYear(connection, year, partitionYears);
+            archived.add(year);
+        }
+        return archived;
+    }
+
+    private void archiveYear(Connection connection, int year, SortedSet<Integer> partitionYears)
+            throws SQLException, IOException {
+        Date from = Date.valueOf(year + "-01-01");
+        Date to = Date.valueOf((year + 1) + "-01-01");
+
+        Set<Long> ids = new HashSet<>();
+        FuelUpArchive archive;
+        try (PreparedStatement stmt = connection.prepareStatement(YEAR_SQL)) {
+            stmt.setDate(1, from);
+            stmt.setDate(2, to);
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                archive = store.write(year, new RowIterator(rs, ids));
+            }
+        }
+        logger.info("Archived " + archive.getRowCount() + " fuel-ups from " + year + " to " + archive.getFile());
+        removeArchivedRows(connection, year, ids, partitionYears);
+    }
+
+    /**
+     * Delete a pending year's archived rows from FUEL_UPS, telling the
+     * store as they go, and mark the removal complete
+     */
+    private void removeArchivedRows(Connection connection, int year, Set<Long> ids,
+                                    SortedSet<Integer> partitionYears) throws SQLException, IOException {
+        int removed = 0;
+        if (partitionYears.contains(year)) {
+            removed = partitions.detachYear(connection, year, ids).size();
+            List<Long> archived = new ArrayList<>(ids);
+            for (int i = 0; i < archived.size(); i += DELETE_BATCH_SIZE) {
+                recordDeleted(connection, year, archived.subList(i, Math.min(archived.size(), i + DELETE_BATCH_SIZE)));
+            }
+            store.markRemoved(year, ids);
+        } else {
+            List<Long> remaining = new ArrayList<>(ids);
+            for (int i = 0; i < remaining.size(); i += DELETE_BATCH_SIZE) {
+                List<Long> batch = remaining.subList(i, Math.min(remaining.size(), i + DELETE_BATCH_SIZE));
+                removed += SoftDeletePurger.deleteByIds(connection, batch, "DELETED_AT IS NULL");
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                recordDeleted(connection, year, batch);
+                store.markRemoved(year, batch);
+            }
+        }
+        store.completeRemoval(year);
+        logger.info("Removed " + removed + " archived fuel-ups from FUEL_UPS for " + year);
+    }
+
+    /**
+     * Archived rows of a batch still in FUEL_UPS after the removal were
+     * soft-deleted since the archive was written; record them as deleted
+     * in the archive so it never serves them
+     */
+    private void recordDeleted(Connection connection, int year, List<Long> batch) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(REMAINING_SQL);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        Map<String, List<Long>> deleted = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < batch.size(); i++) {
+                stmt.setLong(i + 1, batch.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    deleted.computeIfAbsent(rs.getString(2), user -> new ArrayList<>()).add(rs.getLong(1));
+                }
+            }
+        }
+        for (Map.Entry<String, List<Long>> entry : deleted.entrySet()) {
+            store.delete(year, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static Integer oldestYear(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(OLDEST_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            Date oldest = rs.next() ? rs.getDate(1) : null;
+            return oldest == null ? null : oldest.toLocalDate().getYear();
+        }
+    }
+
+    /**
+     * Streams result rows as detached entities, remembering their IDs
+     */
+    private static final class RowIterator implements Iterator<FuelUp> {
+        private final ResultSet rs;
+        private final Set<Long> ids;
+        private Boolean hasNext;
+
+        RowIterator(ResultSet rs, Set<Long> ids) {
+            this.rs = rs;
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = rs.next();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to read fuel-ups for archive", e);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public FuelUp next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            try {
+                FuelUp row = new FuelUp();
+                row.setId(rs.getLong(1));
+                User user = new User();
+                user.setUserId(rs.getString(2));
+                row.setUser(user);
+                row.setDate(rs.getDate(3));
+                row.setGallons(rs.getBigDecimal(4));
+                row.setPricePerGallon(rs.getBigDecimal(5));
+                row.setTotalCost(rs.getBigDecimal(6));
+                row.setEngineHours(rs.getBigDecimal(7));
+                long locationId = rs.getLong(8);
+                row.setLocationId(rs.wasNull() ? null : locationId);
+                double latitude = rs.getDouble(9);
+                boolean noLatitude = rs.wasNull();
+                double longitude = rs.getDouble(10);
+                if (!noLatitude && !rs.wasNull()) {
+                    row.setLatitude(latitude);
+                    row.setLongitude(longitude);
+                }
+                row.setCreatedAt(rs.getTimestamp(11));
+                row.setLocation(rs.getString(12));
+                row.setNotes(rs.getString(13));
+                ids.add(row.getId());
+                return row;
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to read fuel-ups for archive", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.boatfuel.housekeeping;
+
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Year-based RANGE partitioning of FUEL_UPS (MySQL).
+ *
+ * The table is partitioned on YEAR(FUEL_DATE) with one partition per
+ * year, a p_archived catch-all below the first year and a p_future
+ * catch-all above the last. Yearly partitions are split off p_future
+ * ahead of time. An archived year is emptied by exchanging its partition
+ * with an empty FUEL_UPS_Pyyyy table, which is instant, atomic against
+ * concurrent inserts and keeps the range valid for late back-dated rows;
+ * rows that were not archived are then copied back from that table.
+ * Converting an unpartitioned table rewrites it, so that is left to a
+ * maintenance window (see partitionTableDdl and init.sql).
+ */
+public class FuelUpPartitionManager {
+
+    private static final Logger logger = Logger.getLogger(FuelUpPartitionManager.class);
+
+    static final String ARCHIVED_PARTITION = "p_archived";
+    static final String FUTURE_PARTITION = "p_future";
+
+    private static final int RESTORE_BATCH_SIZE = 500;
+
+    private static final String PARTITIONS_SQL =
+        "SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS " +
+        "WHERE TABLE_SCHEMA = DATABASE() AND UPPER(TABLE_NAME) = 'FUEL_UPS' AND PARTITION_NAME IS NOT NULL";
+
+    public static String partitionName(int year) {
+        return "p" + year;
+    }
+
+    /**
+     * DDL partitioning an existing FUEL_UPS table for firstYear..lastYear
+     */
+    public static String partitionTableDdl(int firstYear, int lastYear) {
+        StringBuilder ddl = new StringBuilder("ALTER TABLE FUEL_UPS PARTITION BY RANGE (YEAR(FUEL_DATE)) (")
+            .append("PARTITION ").append(ARCHIVED_PARTITION).append(" VALUES LESS THAN (").append(firstYear).append(')');
+        for (int year = firstYear; year <= lastYear; year++) {
+            ddl.append(", PARTITION ").append(partitionName(year))
+                .append(" VALUES LESS THAN (").append(year + 1).append(')');
+        }
+        return ddl.append(", PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN MAXVALUE)").toString();
+    }
+
+    static String addYearDdl(int year) {
+        return "ALTER TABLE FUEL_UPS REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+            + "PARTITION " + partitionName(year) + " VALUES LESS THAN (" + (year + 1) + "), "
+            + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)";
+    }
+
+    /**
+     * Table holding a year's rows once exchanged out of FUEL_UPS
+     */
+    static String detachedTable(int year) {
+        return "FUEL_UPS_P" + year;
+    }
+
+    static String exchangeYearDdl(int year) {
+        return "ALTER TABLE FUEL_UPS EXCHANGE PARTITION " + partitionName(year) + " WITH TABLE " + detachedTable(year);
+    }
+
+    /**
+     * Years with their own partition; empty when FUEL_UPS is not
+     * partitioned or the database has no partition catalog
+     */
+    public SortedSet<Integer> partitionYears(Connection connection) {
+        SortedSet<Integer> years = new TreeSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(PARTITIONS_SQL)) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                if (name.matches("p\\d{4}")) {
+                    years.add(Integer.parseInt(name.substring(1)));
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("No partition catalog available", e);
+        }
+        return years;
+    }
+
+    /**
+     * Split yearly partitions off p_future up to and including the year
+     * @return whether FUEL_UPS is partitioned
+     */
+    public boolean ensurePartitions(Connection connection, int throughYear) throws SQLException {
+        SortedSet<Integer> years = partitionYears(connection);
+        if (years.isEmpty()) {
+            logger.warn("FUEL_UPS is not partitioned; archived years are removed row by row. To partition: "
+                + partitionTableDdl(throughYear - 1, throughYear));
+            return false;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (int year = years.last() + 1; year <= throughYear; year++) {
+                stmt.execute(addYearDdl(year));
+                logger.info("Added FUEL_UPS partition " + partitionName(year));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Swap a year's partition out of FUEL_UPS in one step and put back
+     * every row that is not in the archive: soft-deleted rows left for the
+     * purge and back-dated rows inserted after the archive was written.
+     * Archived rows soft-deleted since are put back too, for the archiver
+     * to record as deleted in the archive.
+     * A table left behind by an interrupted run is restored first.
+     * @return the IDs of the archived rows removed by the exchange
+     */
+    public Set<Long> detachYear(Connection connection, int year, Set<Long> archivedIds) throws SQLException {
+        String table = detachedTable(year);
+        Set<Long> detached = new HashSet<>();
+        if (tableExists(connection, table)) {
+            detached.addAll(restoreUnarchived(connection, table, archivedIds));
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE " + table + " LIKE FUEL_UPS");
+            stmt.execute("ALTER TABLE " + table + " REMOVE PARTITIONING");
+            stmt.execute(exchangeYearDdl(year));
+        }
+        logger.info("Exchanged FUEL_UPS partition " + partitionName(year) + " into " + table);
+        detached.addAll(restoreUnarchived(connection, table, archivedIds));
+        return detached;
+    }
+
+    /**
+     * Copy rows missing from the archive, or deleted since it was written,
+     * back into FUEL_UPS and drop the detached table
+     * @return the IDs of the live archived rows the table held
+     */
+    private static Set<Long> restoreUnarchived(Connection connection, String table, Set<Long> archivedIds)
+            throws SQLException {
+        Set<Long> archived = new HashSet<>();
+        List<Long> restore = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT FUEL_UP_ID, DELETED_AT FROM " + table)) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                if (archivedIds.contains(id) && rs.getTimestamp(2) == null) {
+                    archived.add(id);
+                } else {
+                    restore.add(id);
+                }
+            }
+        }
+        for (int i = 0; i < restore.size(); i += RESTORE_BATCH_SIZE) {
+            List<Long> batch = restore.subList(i, Math.min(restore.size(), i + RESTORE_BATCH_SIZE));
+            StringBuilder sql = new StringBuilder("INSERT IGNORE INTO FUEL_UPS SELECT * FROM ")
+                .append(table).append(" WHERE FUEL_UP_ID IN (");
+            for (int j = 0; j < batch.size(); j++) {
+                sql.append(j == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+                for (int j = 0; j < batch.size(); j++) {
+                    stmt.setLong(j + 1, batch.get(j));
+                }
+                stmt.executeUpdate();
+            }
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE " + table);
+        }
+        if (!restore.isEmpty()) {
+            logger.info("Restored " + restore.size() + " unarchived fuel-ups from " + table);
+        }
+        return archived;
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+}
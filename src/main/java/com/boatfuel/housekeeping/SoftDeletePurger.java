@@ -0,0 +1,104 @@
+package com.boatfuel.housekeeping;
+
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Physically removes soft-deleted fuel-ups in small batches.
+ *
+ * Each batch selects a bounded set of IDs through IDX_DELETED_AT and
+ * deletes them by primary key in its own short transaction, then pauses,
+ * so the purge never holds row locks on FUEL_UPS for long or competes
+ * with peak writes. A run stops after a fixed number of batches and
+ * picks up the remainder on its next schedule.
+ */
+public class SoftDeletePurger {
+
+    private static final Logger logger = Logger.getLogger(SoftDeletePurger.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_PAUSE_MILLIS = 250;
+    public static final int DEFAULT_MAX_BATCHES = 200;
+
+    private static final String SELECT_SQL =
+        "SELECT FUEL_UP_ID FROM FUEL_UPS WHERE DELETED_AT < ? ORDER BY DELETED_AT";
+
+    private final int batchSize;
+    private final long pauseMillis;
+    private final int maxBatches;
+
+    public SoftDeletePurger() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_PAUSE_MILLIS, DEFAULT_MAX_BATCHES);
+    }
+
+    public SoftDeletePurger(int batchSize, long pauseMillis, int maxBatches) {
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * Purge rows soft-deleted before the cutoff
+     * @return number of rows removed
+     */
+    public int purge(Connection connection, Date cutoff) throws SQLException, InterruptedException {
+        int purged = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<Long> ids = selectBatch(connection, cutoff);
+            if (ids.isEmpty()) {
+                break;
+            }
+            purged += deleteByIds(connection, ids, "DELETED_AT IS NOT NULL");
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(pauseMillis);
+        }
+        if (purged > 0) {
+            logger.info("Purged " + purged + " soft-deleted fuel-ups");
+        }
+        return purged;
+    }
+
+    private List<Long> selectBatch(Connection connection, Date cutoff) throws SQLException {
+        List<Long> ids = new ArrayList<>(batchSize);
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_SQL)) {
+            stmt.setTimestamp(1, new Timestamp(cutoff.getTime()));
+            stmt.setMaxRows(batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Delete FUEL_UPS rows by primary key, guarded by an extra condition
+     */
+    static int deleteByIds(Connection connection, List<Long> ids, String condition) throws SQLException {
+        StringBuilder sql = new StringBuilder("DELETE FROM FUEL_UPS WHERE ").append(condition).append(" AND FUEL_UP_ID IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.boatfuel.idempotency;
+
+import com.boatfuel.util.BloomFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory front of the idempotency store.
+ *
+ * A pair of rotating bloom filters answers "definitely never seen" for
+ * fresh keys, so the common first submission needs no lookup query. Keys
+ * the filter may have seen are resolved from a bounded LRU of recent
+ * results, each kept only until its key expires, and only then from
+ * IDEMPOTENCY_KEYS. Generations rotate once per
+ * key TTL and the previous one is still consulted, so a key stays covered
+ * for at least one TTL after it is recorded.
+ */
+public class IdempotencyFilter {
+
+    public static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private static final Pattern VALID_KEY = Pattern.compile("[A-Za-z0-9._:-]{1," + MAX_KEY_LENGTH + "}");
+
+    private static final IdempotencyFilter INSTANCE =
+        new IdempotencyFilter(DEFAULT_TTL_MILLIS, 200_000, 10_000);
+
+    private final long ttlMillis;
+    private final int expectedKeys;
+    private final Map<String, Recent> recent;
+
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long rotatedAt;
+    private volatile boolean warmed;
+
+    public IdempotencyFilter(long ttlMillis, int expectedKeys, final int recentCapacity) {
+        this.ttlMillis = ttlMillis;
+        this.expectedKeys = expectedKeys;
+        this.current = BloomFilter.create(expectedKeys, 0.001);
+        this.previous = BloomFilter.create(expectedKeys, 0.001);
+        this.rotatedAt = System.currentTimeMillis();
+        this.recent = new LinkedHashMap<String, Recent>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Recent> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+    }
+
+    public static IdempotencyFilter getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isValidKey(String key) {
+        return key != null && VALID_KEY.matcher(key).matches();
+    }
+
+    /**
+     * Store key for a user's client key. Client keys may contain ':', so
+     * '%' and ':' in the user ID are escaped: the first ':' then always
+     * ends the user ID and two different pairs never share a key.
+     */
+    public static String requestKey(String userId, String clientKey) {
+        return userId.replace("%", "%25").replace(":", "%3A") + ":" + clientKey;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public boolean isWarmed() {
+        return warmed;
+    }
+
+    public void markWarmed() {
+        warmed = true;
+    }
+
+    /**
+     * False only when the key has certainly not been recorded recently
+     */
+    public synchronized boolean mightContain(String requestKey) {
+        rotateIfDue();
+        return current.mightContain(requestKey) || previous.mightContain(requestKey);
+    }
+
+    /**
+     * Cached result (fuel-up ID) for a recently recorded key, or null once
+     * the key has expired
+     */
+    public synchronized Long getRecent(String requestKey) {
+        Recent entry = recent.get(requestKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            recent.remove(requestKey);
+            return null;
+        }
+        return entry.fuelUpId;
+    }
+
+    /**
+     * @param expiresAt when the stored key expires (epoch millis)
+     */
+    public synchronized void record(String requestKey, Long fuelUpId, long expiresAt) {
+        rotateIfDue();
+        current.add(requestKey);
+        if (fuelUpId != null) {
+            recent.put(requestKey, new Recent(fuelUpId, expiresAt));
+        }
+    }
+
+    /**
+     * Mark a key as possibly recorded, without caching a result
+     */
+    public synchronized void seed(String requestKey) {
+        rotateIfDue();
+        current.add(requestKey);
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - rotatedAt >= ttlMillis) {
+            previous = current;
+            current = BloomFilter.create(expectedKeys, 0.001);
+            rotatedAt = now;
+        }
+    }
+
+    /**
+     * LRU entry: a key's result and its expiry
+     */
+    private static final class Recent {
+        final Long fuelUpId;
+        final long expiresAt;
+
+        Recent(Long fuelUpId, long expiresAt) {
+            this.fuelUpId = fuelUpId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.boatfuel.ingest;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable write-ahead log for write-behind fuel-up ingestion.
+ *
+ * Each accepted fuel-up is appended as a CRC-checked frame and forced to
+ * disk before the caller acknowledges it. Concurrent appenders share one
+ * force: whoever syncs first covers every frame written before it. The
+ * flusher checkpoints the highest stored sequence, and the log is
+ * truncated whenever everything written has been checkpointed. On open,
+ * frames past the checkpoint are recovered; a torn frame at the tail
+ * (crash mid-append, never acknowledged) is cut off.
+ */
+public class IngestLog implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(IngestLog.class);
+
+    static final String LOG_FILE = "fuelups.wal";
+    static final String CHECKPOINT_FILE = "fuelups.checkpoint";
+
+    private static final int MAX_FRAME_BYTES = 1024 * 1024;
+
+    private final File directory;
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+
+    private long nextSequence;
+    private long appendedSequence;
+    private long checkpointSequence;
+    private volatile long syncedSequence;
+    private List<PendingFuelUp> recovered;
+
+    public IngestLog(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create ingest directory: " + directory.getAbsolutePath());
+        }
+        checkpointSequence = readCheckpoint();
+        channel = FileChannel.open(new File(directory, LOG_FILE).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recovered = recover();
+    }
+
+    /**
+     * Entries written but not checkpointed before the last shutdown, in
+     * sequence order; handed out once
+     */
+    public synchronized List<PendingFuelUp> takeRecovered() {
+        List<PendingFuelUp> result = recovered;
+        recovered = new ArrayList<>();
+        return result;
+    }
+
+    /**
+     * Append an entry and return once it is on disk
+     */
+    public long append(PendingFuelUp pending) throws IOException {
+        return append(pending, null);
+    }
+
+    /**
+     * Append an entry and return once it is on disk. The callback runs while
+     * the sequence is still reserved, so anything it hands the entry to sees
+     * entries in sequence order - which checkpoint() relies on.
+     */
+    public long append(PendingFuelUp pending, Consumer<PendingFuelUp> sequenced) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = nextSequence++;
+            pending.setSequence(sequence);
+            ByteBuffer frame = encode(pending);
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            appendedSequence = sequence;
+            if (sequenced != null) {
+                sequenced.accept(pending);
+            }
+        }
+        sync(sequence);
+        return sequence;
+    }
+
+    /**
+     * Record that every entry up to the sequence is stored, truncating the
+     * log once nothing newer is outstanding. Callers must only pass a
+     * sequence below which no entry is still unstored.
+     */
+    public synchronized void checkpoint(long sequence) throws IOException {
+        if (sequence <= checkpointSequence) {
+            return;
+        }
+        File temp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, sequence);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp.toPath(), new File(directory, CHECKPOINT_FILE).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSequence = sequence;
+
+        if (sequence >= appendedSequence && channel.size() > 0) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    public synchronized long getCheckpointSequence() {
+        return checkpointSequence;
+    }
+
+    public synchronized long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            long target;
+            synchronized (this) {
+                target = appendedSequence;
+            }
+            channel.force(false);
+            syncedSequence = target;
+        }
+    }
+
+    private static ByteBuffer encode(PendingFuelUp pending) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        pending.writeTo(new DataOutputStream(bytes));
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Read all intact frames, keep those past the checkpoint and cut off a
+     * torn tail
+     */
+    private List<PendingFuelUp> recover() throws IOException {
+        List<PendingFuelUp> pending = new ArrayList<>();
+        long maxSequence = checkpointSequence;
+        long validLength = 0;
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                PendingFuelUp entry = PendingFuelUp.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+                validLength += 8 + length;
+                maxSequence = Math.max(maxSequence, entry.getSequence());
+                if (entry.getSequence() > checkpointSequence) {
+                    pending.add(entry);
+                }
+            }
+        } catch (EOFException e) {
+            // End of log, possibly mid-frame
+        }
+
+        if (validLength < channel.size()) {
+            logger.warn("Discarding " + (channel.size() - validLength) + " bytes of torn ingest log tail");
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        nextSequence = maxSequence + 1;
+        appendedSequence = maxSequence;
+        syncedSequence = maxSequence;
+        if (!pending.isEmpty()) {
+            logger.info("Recovered " + pending.size() + " unflushed fuel-ups from " + LOG_FILE);
+        }
+        return pending;
+    }
+
+    private long readCheckpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        return bytes.length == 8 ? ByteBuffer.wrap(bytes).getLong() : 0;
+    }
+}
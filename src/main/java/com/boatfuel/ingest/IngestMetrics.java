@@ -0,0 +1,83 @@
+package com.boatfuel.ingest;
+
+import java.io.Serializable;
+
+/**
+ * Point-in-time snapshot of the write-behind queue and flusher
+ */
+public class IngestMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int queueDepth;
+    private final long oldestPendingAgeMillis;
+    private final long lastFlushLagMillis;
+    private final long accepted;
+    private final long flushed;
+    private final long batches;
+    private final long failedBatches;
+    private final long rejected;
+    private final long recovered;
+
+    public IngestMetrics(int queueDepth, long oldestPendingAgeMillis, long lastFlushLagMillis, long accepted,
+                         long flushed, long batches, long failedBatches, long rejected, long recovered) {
+        this.queueDepth = queueDepth;
+        this.oldestPendingAgeMillis = oldestPendingAgeMillis;
+        this.lastFlushLagMillis = lastFlushLagMillis;
+        this.accepted = accepted;
+        this.flushed = flushed;
+        this.batches = batches;
+        this.failedBatches = failedBatches;
+        this.rejected = rejected;
+        this.recovered = recovered;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Age of the oldest fuel-up still waiting to be stored (0 when idle)
+     */
+    public long getOldestPendingAgeMillis() {
+        return oldestPendingAgeMillis;
+    }
+
+    /**
+     * Acceptance-to-commit delay of the oldest entry in the last batch
+     */
+    public long getLastFlushLagMillis() {
+        return lastFlushLagMillis;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getFlushed() {
+        return flushed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getRecovered() {
+        return recovered;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth=%d oldestPending=%dms lastFlushLag=%dms accepted=%d flushed=%d batches=%d failedBatches=%d rejected=%d recovered=%d",
+            queueDepth, oldestPendingAgeMillis, lastFlushLagMillis, accepted, flushed, batches,
+            failedBatches, rejected, recovered);
+    }
+}
@@ -0,0 +1,183 @@
+package com.boatfuel.ingest;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A fuel-up accepted into the write-ahead log but not yet stored.
+ *
+ * Every entry carries an idempotency key (the client's, or one generated
+ * on acceptance) so replaying the log after a crash cannot store a
+ * fuel-up twice.
+ */
+public class PendingFuelUp {
+
+    private long sequence;
+    private final long receivedAt;
+    private final String userId;
+    private final String idempotencyKey;
+    private final long date;
+    private final BigDecimal gallons;
+    private final BigDecimal pricePerGallon;
+    private final BigDecimal totalCost;
+    private final BigDecimal engineHours;
+    private final String location;
+    private final String notes;
+    private final Double latitude;
+    private final Double longitude;
+
+    private PendingFuelUp(long sequence, long receivedAt, String userId, String idempotencyKey, long date,
+                          BigDecimal gallons, BigDecimal pricePerGallon, BigDecimal totalCost,
+                          BigDecimal engineHours, String location, String notes, Double latitude, Double longitude) {
+        this.sequence = sequence;
+        this.receivedAt = receivedAt;
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.date = date;
+        this.gallons = gallons;
+        this.pricePerGallon = pricePerGallon;
+        this.totalCost = totalCost;
+        this.engineHours = engineHours;
+        this.location = location;
+        this.notes = notes;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Capture a parsed fuel-up; a key is generated when the client sent none
+     */
+    public static PendingFuelUp of(String userId, FuelUp fuelUp, String idempotencyKey) {
+        return new PendingFuelUp(0, System.currentTimeMillis(), userId,
+            idempotencyKey != null ? idempotencyKey : "wb-" + UUID.randomUUID(),
+            fuelUp.getDate().getTime(), fuelUp.getGallons(), fuelUp.getPricePerGallon(), fuelUp.getTotalCost(),
+            fuelUp.getEngineHours(), fuelUp.getLocation(), fuelUp.getNotes(),
+            fuelUp.getLatitude(), fuelUp.getLongitude());
+    }
+
+    /**
+     * Fresh, unmanaged entity for the batch writer
+     */
+    public FuelUp toFuelUp() {
+        FuelUp fuelUp = new FuelUp();
+        User user = new User();
+        user.setUserId(userId);
+        fuelUp.setUser(user);
+        fuelUp.setDate(new java.sql.Date(date));
+        fuelUp.setGallons(gallons);
+        fuelUp.setPricePerGallon(pricePerGallon);
+        fuelUp.setTotalCost(totalCost);
+        fuelUp.setEngineHours(engineHours);
+        fuelUp.setLocation(location);
+        fuelUp.setNotes(notes);
+        if (latitude != null && longitude != null) {
+            fuelUp.setLatitude(latitude);
+            fuelUp.setLongitude(longitude);
+        }
+        return fuelUp;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(sequence);
+        out.writeLong(receivedAt);
+        out.writeUTF(userId);
+        out.writeUTF(idempotencyKey);
+        out.writeLong(date);
+        writeDecimal(out, gallons);
+        writeDecimal(out, pricePerGallon);
+        writeDecimal(out, totalCost);
+        writeDecimal(out, engineHours);
+        writeString(out, location);
+        writeString(out, notes);
+        out.writeBoolean(latitude != null && longitude != null);
+        if (latitude != null && longitude != null) {
+            out.writeDouble(latitude);
+            out.writeDouble(longitude);
+        }
+    }
+
+    static PendingFuelUp readFrom(DataInput in) throws IOException {
+        long sequence = in.readLong();
+        long receivedAt = in.readLong();
+        String userId = in.readUTF();
+        String idempotencyKey = in.readUTF();
+        long date = in.readLong();
+        BigDecimal gallons = readDecimal(in);
+        BigDecimal pricePerGallon = readDecimal(in);
+        BigDecimal totalCost = readDecimal(in);
+        BigDecimal engineHours = readDecimal(in);
+        String location = readString(in);
+        String notes = readString(in);
+        Double latitude = null;
+        Double longitude = null;
+        if (in.readBoolean()) {
+            latitude = in.readDouble();
+            longitude = in.readDouble();
+        }
+        return new PendingFuelUp(sequence, receivedAt, userId, idempotencyKey, date,
+            gallons, pricePerGallon, totalCost, engineHours, location, notes, latitude, longitude);
+    }
+
+    // Notes and locations may exceed writeUTF's 64 KB limit, so strings are length-prefixed UTF-8
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        writeString(out, value == null ? null : value.toPlainString());
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingFuelUp[" + sequence + ", " + userId + ", " + idempotencyKey + "]";
+    }
+}
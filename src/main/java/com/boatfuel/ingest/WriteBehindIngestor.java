@@ -0,0 +1,286 @@
+package com.boatfuel.ingest;
+
+import com.boatfuel.util.FileSystemHelper;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional write-behind ingestion for fuel-up submissions.
+ *
+ * Enabled with -Dboatfuel.ingest.mode=write-behind (or ingest.mode in the
+ * application configuration). A submission is acknowledged once it is on
+ * disk in the IngestLog; a single flusher thread then drains the queue in
+ * batches, each stored in one transaction by the BatchWriter, and
+ * checkpoints the log after every commit. Entries left unflushed by a
+ * crash are replayed on start; their idempotency keys make a replay of an
+ * already committed batch harmless.
+ *
+ * A batch that keeps failing is retried one entry at a time. Entries that
+ * fail while others in the same round are stored are bad entries, and are
+ * moved to a dead-letter log so they cannot block the queue. When every
+ * entry fails the database is taken to be down: nothing is dead-lettered
+ * or checkpointed, and the batch (topped up with entries queued since) is
+ * retried with a capped, growing backoff until it can be stored.
+ */
+public class WriteBehindIngestor {
+
+    private static final Logger logger = Logger.getLogger(WriteBehindIngestor.class);
+
+    public static final String MODE_PROPERTY = "boatfuel.ingest.mode";
+    public static final String MODE_WRITE_BEHIND = "write-behind";
+
+    public static final int DEFAULT_MAX_BATCH = 200;
+    public static final int DEFAULT_MAX_PENDING = 10000;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 250;
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    private static final long METRICS_INTERVAL_MILLIS = 30000;
+
+    /**
+     * Stores a batch of pending fuel-ups in a single transaction
+     */
+    public interface BatchWriter {
+        void write(List<PendingFuelUp> batch) throws Exception;
+    }
+
+    private final File directory;
+    private final IngestLog log;
+    private final BatchWriter writer;
+    private final int maxBatch;
+    private final int maxPending;
+    private final long flushIntervalMillis;
+
+    private final BlockingQueue<PendingFuelUp> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+
+    long retryBackoffMillis = 500;
+    long maxOutageBackoffMillis = 30000;
+
+    private volatile boolean running;
+    private volatile long inFlightSince;
+    private volatile long lastFlushLagMillis;
+    private Thread flusher;
+    private IngestLog deadLetters;
+
+    public WriteBehindIngestor(File directory, BatchWriter writer) throws IOException {
+        this(directory, writer, DEFAULT_MAX_BATCH, DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public WriteBehindIngestor(File directory, BatchWriter writer, int maxBatch, int maxPending,
+                               long flushIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.log = new IngestLog(directory);
+        this.writer = writer;
+        this.maxBatch = maxBatch;
+        this.maxPending = maxPending;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Whether submissions go through the write-behind queue
+     */
+    public static boolean isEnabled() {
+        String mode = System.getProperty(MODE_PROPERTY);
+        if (mode == null) {
+            try {
+                mode = FileSystemHelper.loadConfiguration().getProperty("ingest.mode");
+            } catch (Exception e) {
+                logger.debug("No ingest configuration available", e);
+            }
+        }
+        return MODE_WRITE_BEHIND.equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Queue entries recovered from the log, then start the flusher
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        List<PendingFuelUp> replay = log.takeRecovered();
+        queue.addAll(replay);
+        recovered.addAndGet(replay.size());
+
+        running = true;
+        flusher = new Thread(this::run, "fuelup-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Write-behind ingestion started in " + directory.getAbsolutePath()
+            + (replay.isEmpty() ? "" : ", replaying " + replay.size() + " fuel-ups"));
+    }
+
+    /**
+     * Accept a fuel-up once it is durable in the log. Returns false when the
+     * queue is stopped or full; the caller should then store it directly.
+     */
+    public boolean submit(PendingFuelUp pending) throws IOException {
+        if (!running || queue.size() >= maxPending) {
+            return false;
+        }
+        // Queued under the log's sequence lock: the queue must stay in
+        // sequence order, or a checkpoint of a later entry would truncate
+        // an earlier one that is still only in memory
+        log.append(pending, queue::add);
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stop after the batch in progress; anything still queued stays in the
+     * log for the next start
+     */
+    public void stop(long timeoutMillis) throws InterruptedException, IOException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = flusher;
+            flusher = null;
+        }
+        if (thread != null) {
+            thread.join(timeoutMillis);
+        }
+        if (thread == null || !thread.isAlive()) {
+            log.close();
+            if (deadLetters != null) {
+                deadLetters.close();
+            }
+        }
+        logger.info("Write-behind ingestion stopped: " + getMetrics());
+    }
+
+    public IngestMetrics getMetrics() {
+        long now = System.currentTimeMillis();
+        long oldest = inFlightSince;
+        PendingFuelUp head = queue.peek();
+        if (oldest == 0 && head != null) {
+            oldest = head.getReceivedAt();
+        }
+        return new IngestMetrics(
+            queue.size() + (inFlightSince == 0 ? 0 : 1),
+            oldest == 0 ? 0 : Math.max(0, now - oldest),
+            lastFlushLagMillis,
+            accepted.get(),
+            flushed.get(),
+            batches.get(),
+            failedBatches.get(),
+            rejected.get(),
+            recovered.get());
+    }
+
+    private void run() {
+        long lastReport = System.currentTimeMillis();
+        while (running) {
+            try {
+                PendingFuelUp first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<PendingFuelUp> batch = new ArrayList<>(Math.min(maxBatch, queue.size() + 1));
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Write-behind flusher error", e);
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= METRICS_INTERVAL_MILLIS) {
+                lastReport = now;
+                if (accepted.get() > 0 || recovered.get() > 0) {
+                    logger.info("Write-behind ingestion: " + getMetrics());
+                }
+            }
+        }
+    }
+
+    private void flush(List<PendingFuelUp> batch) throws IOException, InterruptedException {
+        inFlightSince = batch.get(0).getReceivedAt();
+        try {
+            long outageBackoff = retryBackoffMillis;
+            while (true) {
+                // Captured up front: moving an entry to the dead letters renumbers it
+                long lastSequence = batch.get(batch.size() - 1).getSequence();
+                for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+                    try {
+                        writer.write(batch);
+                        committed(batch, lastSequence);
+                        return;
+                    } catch (Exception e) {
+                        failedBatches.incrementAndGet();
+                        logger.warn("Write-behind batch of " + batch.size() + " failed (attempt " + attempt + ")", e);
+                        if (!running) {
+                            // Not checkpointed: the batch is replayed on the next start
+                            return;
+                        }
+                        Thread.sleep(retryBackoffMillis * attempt);
+                    }
+                }
+
+                // Isolate the entries that cannot be stored
+                Map<PendingFuelUp, Exception> failed = new LinkedHashMap<>();
+                for (PendingFuelUp pending : batch) {
+                    try {
+                        writer.write(Collections.singletonList(pending));
+                    } catch (Exception e) {
+                        failed.put(pending, e);
+                    }
+                }
+                if (failed.size() < batch.size()) {
+                    for (Map.Entry<PendingFuelUp, Exception> entry : failed.entrySet()) {
+                        reject(entry.getKey(), entry.getValue());
+                    }
+                    committed(batch, lastSequence);
+                    return;
+                }
+
+                // Nothing could be stored: an outage, not bad entries
+                logger.error("Every entry of a write-behind batch of " + batch.size()
+                    + " failed; keeping it and retrying in " + outageBackoff + " ms");
+                if (!running) {
+                    return;
+                }
+                Thread.sleep(outageBackoff);
+                outageBackoff = Math.min(outageBackoff * 2, maxOutageBackoffMillis);
+                // Later entries that store tell a bad entry apart from the outage
+                queue.drainTo(batch, Math.max(0, maxBatch - batch.size()));
+            }
+        } finally {
+            inFlightSince = 0;
+        }
+    }
+
+    private void committed(List<PendingFuelUp> batch, long lastSequence) throws IOException {
+        log.checkpoint(lastSequence);
+        flushed.addAndGet(batch.size());
+        batches.incrementAndGet();
+        lastFlushLagMillis = System.currentTimeMillis() - batch.get(0).getReceivedAt();
+    }
+
+    private void reject(PendingFuelUp pending, Exception cause) throws IOException {
+        rejected.incrementAndGet();
+        logger.error("Moving unstorable fuel-up to dead letters: " + pending, cause);
+        if (deadLetters == null) {
+            deadLetters = new IngestLog(new File(directory, "rejected"));
+        }
+        deadLetters.append(pending);
+    }
+}
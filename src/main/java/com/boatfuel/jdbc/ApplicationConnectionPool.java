@@ -0,0 +1,179 @@
+package com.boatfuel.jdbc;
+
+import com.boatfuel.util.FileSystemHelper;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional application-managed connection pool for the direct JDBC paths.
+ *
+ * Enabled with -Dboatfuel.jdbc.pool=application (or pool.mode=application
+ * in the application configuration); otherwise the container DataSource
+ * from JNDI is used. Pool settings come from the same configuration file:
+ * database.url/user/password plus the pool.* keys read in create().
+ * When database.replica.urls lists read replicas, each gets its own pool
+ * and reads are routed through a ReadWriteRoutingDataSource.
+ */
+public class ApplicationConnectionPool {
+
+    private static final Logger logger = Logger.getLogger(ApplicationConnectionPool.class);
+
+    public static final String MODE_PROPERTY = "boatfuel.jdbc.pool";
+    public static final String MODE_APPLICATION = "application";
+
+    private static final long MONITOR_INTERVAL_SECONDS = 30;
+    private static final long REPLICA_HEALTH_INTERVAL_MILLIS = 10000;
+
+    private static volatile Boolean enabled;
+    private static DataSource dataSource;
+    private static InstrumentedDataSource primaryPool;
+    private static final List<InstrumentedDataSource> replicaPools = new ArrayList<>();
+    private static ScheduledExecutorService monitor;
+
+    private ApplicationConnectionPool() {
+    }
+
+    /**
+     * Whether the application pool replaces the JNDI DataSource (resolved once)
+     */
+    public static boolean isEnabled() {
+        Boolean result = enabled;
+        if (result == null) {
+            String mode = System.getProperty(MODE_PROPERTY);
+            if (mode == null) {
+                try {
+                    mode = FileSystemHelper.loadConfiguration().getProperty("pool.mode");
+                } catch (Exception e) {
+                    logger.debug("No pool configuration available", e);
+                }
+            }
+            result = MODE_APPLICATION.equalsIgnoreCase(mode);
+            enabled = result;
+        }
+        return result;
+    }
+
+    /**
+     * The shared pool (or read/write router over pools), created from the
+     * application configuration on first use
+     */
+    public static synchronized DataSource getDataSource() throws Exception {
+        if (dataSource == null) {
+            Properties config = FileSystemHelper.loadConfiguration();
+            primaryPool = create(config);
+            dataSource = primaryPool;
+
+            String replicaUrls = config.getProperty("database.replica.urls", "").trim();
+            if (!replicaUrls.isEmpty()) {
+                for (String url : replicaUrls.split(",")) {
+                    Properties replicaConfig = new Properties();
+                    replicaConfig.putAll(config);
+                    replicaConfig.setProperty("database.url", url.trim());
+                    replicaPools.add(create(replicaConfig));
+                }
+                ReadWriteRoutingDataSource router = new ReadWriteRoutingDataSource(primaryPool, replicaPools);
+                router.startHealthChecks(REPLICA_HEALTH_INTERVAL_MILLIS);
+                dataSource = router;
+            }
+            startMonitor();
+        }
+        return dataSource;
+    }
+
+    /**
+     * Metrics of the primary pool, or null if the pool is not in use
+     */
+    public static synchronized PoolMetrics getMetrics() {
+        return primaryPool == null ? null : primaryPool.getMetrics();
+    }
+
+    public static synchronized void shutdown() {
+        if (monitor != null) {
+            monitor.shutdownNow();
+            monitor = null;
+        }
+        if (dataSource instanceof ReadWriteRoutingDataSource) {
+            ((ReadWriteRoutingDataSource) dataSource).stopHealthChecks();
+        }
+        List<InstrumentedDataSource> pools = new ArrayList<>(replicaPools);
+        if (primaryPool != null) {
+            pools.add(primaryPool);
+        }
+        for (InstrumentedDataSource pool : pools) {
+            try {
+                pool.close();
+            } catch (Exception e) {
+                logger.warn("Error closing connection pool", e);
+            }
+        }
+        replicaPools.clear();
+        primaryPool = null;
+        dataSource = null;
+    }
+
+    /**
+     * Build an instrumented pool from configuration properties
+     */
+    public static InstrumentedDataSource create(Properties config) {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setDriverClassName(config.getProperty("database.driver", "com.mysql.jdbc.Driver"));
+        pool.setUrl(config.getProperty("database.url"));
+        pool.setUsername(config.getProperty("database.user"));
+        pool.setPassword(config.getProperty("database.password"));
+
+        pool.setMaxActive(intProperty(config, "pool.maxActive", 20));
+        pool.setMaxIdle(intProperty(config, "pool.maxIdle", 10));
+        pool.setMinIdle(intProperty(config, "pool.minIdle", 2));
+        pool.setMaxWait(intProperty(config, "pool.maxWaitMillis", 5000));
+
+        // Per-connection prepared statement cache keyed by SQL text
+        int statementCacheSize = intProperty(config, "pool.preparedStatementCacheSize", 50);
+        pool.setPoolPreparedStatements(statementCacheSize > 0);
+        pool.setMaxOpenPreparedStatements(statementCacheSize);
+        pool.setAccessToUnderlyingConnectionAllowed(true);
+
+        String validationQuery = config.getProperty("pool.validationQuery", "SELECT 1");
+        if (!validationQuery.isEmpty()) {
+            pool.setValidationQuery(validationQuery);
+            pool.setTestOnBorrow(true);
+        }
+
+        long leakThreshold = intProperty(config, "pool.leakThresholdMillis", 60000);
+        logger.info("Creating application connection pool for " + pool.getUrl()
+            + " (maxActive=" + pool.getMaxActive() + ", statementCache=" + statementCacheSize + ")");
+        return new InstrumentedDataSource(pool, leakThreshold);
+    }
+
+    private static void startMonitor() {
+        final List<InstrumentedDataSource> pools = new ArrayList<>();
+        pools.add(primaryPool);
+        pools.addAll(replicaPools);
+
+        monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "boatfuel-pool-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(() -> {
+            for (int i = 0; i < pools.size(); i++) {
+                InstrumentedDataSource pool = pools.get(i);
+                pool.checkForLeaks();
+                logger.info("Connection pool " + (i == 0 ? "primary" : "replica-" + (i - 1)) + ": " + pool.getMetrics());
+            }
+            RoutingContext.purgeExpired();
+        }, MONITOR_INTERVAL_SECONDS, MONITOR_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static int intProperty(Properties config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,210 @@
+package com.boatfuel.jdbc;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-managed DataSource over a commons-dbcp pool, instrumented for
+ * borrow wait time and connection leaks.
+ *
+ * Every borrowed connection is tracked until it is closed; connections held
+ * longer than the leak threshold are reported once, with the stack trace of
+ * the code that borrowed them. Prepared statement pooling is configured on
+ * the underlying pool so repeated SQL skips parsing on each connection.
+ */
+public class InstrumentedDataSource implements DataSource {
+
+    private static final Logger logger = Logger.getLogger(InstrumentedDataSource.class);
+
+    private final BasicDataSource pool;
+    private final long leakThresholdMillis;
+
+    private final Map<Connection, Checkout> checkedOut = new ConcurrentHashMap<>();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+
+    public InstrumentedDataSource(BasicDataSource pool, long leakThresholdMillis) {
+        this.pool = pool;
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = pool.getConnection();
+        } catch (SQLException e) {
+            waitTimeouts.incrementAndGet();
+            throw e;
+        } finally {
+            recordWait(System.nanoTime() - start);
+        }
+        return track(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    /**
+     * Report connections held longer than the leak threshold (once each)
+     * @return number of connections currently over the threshold
+     */
+    public int checkForLeaks() {
+        long now = System.currentTimeMillis();
+        int overThreshold = 0;
+        for (Checkout checkout : checkedOut.values()) {
+            if (now - checkout.borrowedAt >= leakThresholdMillis) {
+                overThreshold++;
+                if (!checkout.reported) {
+                    checkout.reported = true;
+                    leaksDetected.incrementAndGet();
+                    logger.warn("Connection held for " + (now - checkout.borrowedAt)
+                        + " ms without being closed; borrowed at:", checkout.borrowSite);
+                }
+            }
+        }
+        return overThreshold;
+    }
+
+    public PoolMetrics getMetrics() {
+        long borrows = borrowCount.get();
+        double avgWait = borrows == 0 ? 0 : totalWaitNanos.get() / (double) borrows / 1_000_000;
+        return new PoolMetrics(
+            pool.getNumActive(),
+            pool.getNumIdle(),
+            pool.getMaxActive(),
+            borrows,
+            waitTimeouts.get(),
+            avgWait,
+            maxWaitNanos.get() / 1_000_000.0,
+            checkedOut.size(),
+            leaksDetected.get());
+    }
+
+    public void close() throws SQLException {
+        pool.close();
+    }
+
+    private void recordWait(long nanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private Connection track(Connection connection) {
+        Checkout checkout = new Checkout(new Throwable("Connection borrowed"));
+        Connection proxy = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            new TrackingHandler(connection));
+        checkedOut.put(proxy, checkout);
+        return proxy;
+    }
+
+    private static final class Checkout {
+        final long borrowedAt = System.currentTimeMillis();
+        final Throwable borrowSite;
+        volatile boolean reported;
+
+        Checkout(Throwable borrowSite) {
+            this.borrowSite = borrowSite;
+        }
+    }
+
+    /**
+     * Forwards to the pooled connection and stops tracking on close()
+     */
+    private final class TrackingHandler implements InvocationHandler {
+        private final Connection target;
+
+        TrackingHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                checkedOut.remove(proxy);
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                return "Tracked[" + target + "]";
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // DataSource plumbing delegated to the pool
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return pool.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        if (iface.isInstance(pool)) {
+            return iface.cast(pool);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this) || iface.isInstance(pool);
+    }
+}
@@ -0,0 +1,80 @@
+package com.boatfuel.jdbc;
+
+import java.io.Serializable;
+
+/**
+ * Point-in-time snapshot of connection pool usage and contention
+ */
+public class PoolMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int active;
+    private final int idle;
+    private final int maxActive;
+    private final long borrowCount;
+    private final long waitTimeouts;
+    private final double averageWaitMillis;
+    private final double maxWaitMillis;
+    private final int openConnections;
+    private final long leaksDetected;
+
+    public PoolMetrics(int active, int idle, int maxActive, long borrowCount, long waitTimeouts,
+                       double averageWaitMillis, double maxWaitMillis, int openConnections, long leaksDetected) {
+        this.active = active;
+        this.idle = idle;
+        this.maxActive = maxActive;
+        this.borrowCount = borrowCount;
+        this.waitTimeouts = waitTimeouts;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.openConnections = openConnections;
+        this.leaksDetected = leaksDetected;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getWaitTimeouts() {
+        return waitTimeouts;
+    }
+
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Connections handed out by this data source and not yet closed
+     */
+    public int getOpenConnections() {
+        return openConnections;
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d maxActive=%d borrows=%d timeouts=%d avgWait=%.3fms maxWait=%.3fms open=%d leaks=%d",
+            active, idle, maxActive, borrowCount, waitTimeouts, averageWaitMillis, maxWaitMillis,
+            openConnections, leaksDetected);
+    }
+}
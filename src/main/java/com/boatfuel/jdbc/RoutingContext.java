@@ -0,0 +1,109 @@
+package com.boatfuel.jdbc;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-thread routing hints for ReadWriteRoutingDataSource.
+ *
+ * Read-only JDBC work wraps the connection it opens through
+ * JNDILookupHelper.lookupDataSource() in a readOnly() scope so it may go to
+ * a replica. Only those connections are routed: JPA queries run on the
+ * persistence unit's JTA datasource, which is always the primary, so a
+ * scope around them has no effect and none is opened. Writes are recorded
+ * per user; for a short window afterwards that user's reads stay on the
+ * primary so they always see their own changes despite replication lag.
+ */
+public final class RoutingContext {
+
+    public static final long DEFAULT_STICKY_WINDOW_MILLIS = 5000;
+
+    private static final ThreadLocal<String> readOnlyUser = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> readOnly = new ThreadLocal<>();
+    private static final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    private static volatile long stickyWindowMillis = DEFAULT_STICKY_WINDOW_MILLIS;
+
+    private RoutingContext() {
+    }
+
+    /**
+     * Mark the current thread read-only on behalf of a user until the
+     * returned scope is closed; scopes nest and restore the outer state
+     */
+    public static Scope readOnly(String userId) {
+        Scope scope = new Scope(readOnly.get(), readOnlyUser.get());
+        readOnly.set(Boolean.TRUE);
+        readOnlyUser.set(userId);
+        return scope;
+    }
+
+    /**
+     * Pin a user's reads to the primary for the sticky window
+     */
+    public static void recordWrite(String userId) {
+        if (userId != null) {
+            stickyUntil.put(userId, System.currentTimeMillis() + stickyWindowMillis);
+        }
+    }
+
+    /**
+     * True when connections opened now may be served by a replica
+     */
+    public static boolean isReplicaEligible() {
+        if (!Boolean.TRUE.equals(readOnly.get())) {
+            return false;
+        }
+        String userId = readOnlyUser.get();
+        if (userId == null) {
+            return true;
+        }
+        Long until = stickyUntil.get(userId);
+        if (until == null) {
+            return true;
+        }
+        if (until < System.currentTimeMillis()) {
+            stickyUntil.remove(userId, until);
+            return true;
+        }
+        return false;
+    }
+
+    public static void setStickyWindowMillis(long millis) {
+        stickyWindowMillis = millis;
+    }
+
+    /**
+     * Drop expired stickiness entries
+     */
+    public static void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Long> it = stickyUntil.values().iterator(); it.hasNext(); ) {
+            if (it.next() < now) {
+                it.remove();
+            }
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Boolean previousReadOnly;
+        private final String previousUser;
+
+        private Scope(Boolean previousReadOnly, String previousUser) {
+            this.previousReadOnly = previousReadOnly;
+            this.previousUser = previousUser;
+        }
+
+        @Override
+        public void close() {
+            if (previousReadOnly == null) {
+                readOnly.remove();
+                readOnlyUser.remove();
+            } else {
+                readOnly.set(previousReadOnly);
+                readOnlyUser.set(previousUser);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.boatfuel.location;
+
+import org.apache.log4j.Logger;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned canonical-name to LOCATION_ID mapping backed by the LOCATIONS
+ * table. Known names resolve from memory; a new name is looked up (or
+ * inserted) once and then cached for the life of the application.
+ *
+ * A new name is written with INSERT ... ON DUPLICATE KEY UPDATE, so a
+ * transaction on this or another node inserting the same name makes the
+ * database wait instead of failing either create, and no JVM-wide lock is
+ * held across the IO. The resolved ID joins the cache only once the
+ * caller's transaction has committed (confirm), so a rolled-back insert
+ * never leaves a dangling ID behind.
+ */
+public class LocationDictionary {
+
+    private static final Logger logger = Logger.getLogger(LocationDictionary.class);
+
+    private static final LocationDictionary INSTANCE = new LocationDictionary();
+
+    private static final String INSERT_SQL =
+        "INSERT INTO LOCATIONS (CANONICAL_NAME, DISPLAY_NAME, CREATED_AT) VALUES (?, ?, CURRENT_TIMESTAMP) " +
+        "ON DUPLICATE KEY UPDATE CANONICAL_NAME = CANONICAL_NAME";
+
+    private static final String SELECT_SQL =
+        "SELECT LOCATION_ID, DISPLAY_NAME FROM LOCATIONS WHERE CANONICAL_NAME = ? FOR UPDATE";
+
+    private final ConcurrentMap<String, Long> idsByCanonical = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> displayNames = new ConcurrentHashMap<>();
+
+    public static LocationDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * LOCATION_ID for a free-text location, creating the dictionary row if
+     * needed; null when the text has no canonical form
+     */
+    public Long resolve(EntityManager entityManager, String location) {
+        String canonical = LocationNormalizer.canonicalize(location);
+        if (canonical == null) {
+            return null;
+        }
+        Long id = idsByCanonical.get(canonical);
+        if (id != null) {
+            return id;
+        }
+
+        int inserted = entityManager.createNativeQuery(INSERT_SQL)
+            .setParameter(1, canonical)
+            .setParameter(2, location.trim())
+            .executeUpdate();
+        // Locking read: sees a row another transaction committed after ours began
+        Object[] row = (Object[]) entityManager.createNativeQuery(SELECT_SQL)
+            .setParameter(1, canonical)
+            .getSingleResult();
+        id = ((Number) row[0]).longValue();
+        displayNames.putIfAbsent(id, row[1] != null ? (String) row[1] : canonical);
+        if (inserted > 0) {
+            logger.info("Added location " + id + ": " + canonical);
+        }
+        return id;
+    }
+
+    /**
+     * Cache a resolved location once the transaction that resolved it has
+     * committed
+     */
+    public void confirm(String location, Long id) {
+        String canonical = LocationNormalizer.canonicalize(location);
+        if (canonical != null && id != null) {
+            idsByCanonical.putIfAbsent(canonical, id);
+        }
+    }
+
+    /**
+     * Load every committed dictionary entry
+     */
+    public void load(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT LOCATION_ID, CANONICAL_NAME, DISPLAY_NAME FROM LOCATIONS");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                register(rs.getLong(1), rs.getString(2), rs.getString(3));
+            }
+        }
+    }
+
+    public void register(Long id, String canonicalName, String displayName) {
+        idsByCanonical.put(canonicalName, id);
+        displayNames.put(id, displayName != null ? displayName : canonicalName);
+    }
+
+    public String getDisplayName(Long id) {
+        return displayNames.get(id);
+    }
+
+    public void clear() {
+        idsByCanonical.clear();
+        displayNames.clear();
+    }
+}
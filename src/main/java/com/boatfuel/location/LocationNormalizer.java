@@ -0,0 +1,67 @@
+package com.boatfuel.location;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces free-text locations to a canonical key: accents stripped,
+ * lower-cased, punctuation removed, whitespace collapsed and common
+ * marina abbreviations expanded ("Marina Bay", "marina  bay." and
+ * "MARINA BAY" all map to "marina bay").
+ */
+public final class LocationNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private static final String[][] ABBREVIATIONS = {
+        {"mar", "marina"},
+        {"hbr", "harbor"},
+        {"harbour", "harbor"},
+        {"pt", "point"},
+        {"st", "saint"},
+        {"yc", "yacht club"},
+        {"ft", "fort"},
+    };
+
+    private LocationNormalizer() {
+    }
+
+    /**
+     * Canonical key for a location, or null when nothing meaningful remains
+     */
+    public static String canonicalize(String location) {
+        if (location == null) {
+            return null;
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(location, Normalizer.Form.NFKD)).replaceAll("");
+        String cleaned = NON_ALNUM.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        if (cleaned.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder canonical = new StringBuilder(cleaned.length() + 16);
+        String[] words = cleaned.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (i == 0 && "the".equals(word) && words.length > 1) {
+                continue;
+            }
+            if (canonical.length() > 0) {
+                canonical.append(' ');
+            }
+            canonical.append(expand(word));
+        }
+        return canonical.toString();
+    }
+
+    private static String expand(String word) {
+        for (String[] abbreviation : ABBREVIATIONS) {
+            if (abbreviation[0].equals(word)) {
+                return abbreviation[1];
+            }
+        }
+        return word;
+    }
+}
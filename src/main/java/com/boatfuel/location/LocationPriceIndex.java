@@ -0,0 +1,307 @@
+package com.boatfuel.location;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory price index per location: the latest observed price and a
+ * rolling average over a fixed window, plus the locations each user has
+ * filled up at and when. "Cheapest fuel where I've filled up recently"
+ * is answered from these maps without touching FUEL_UPS.
+ *
+ * Prices are tracked in hundredths and dates as epoch days of the local
+ * calendar date. Every observation and visit is kept, not only the newest,
+ * so deleting a fill-up falls back to the one before it.
+ */
+public class LocationPriceIndex {
+
+    public static final int DEFAULT_ROLLING_WINDOW_DAYS = 30;
+
+    private static final LocationPriceIndex INSTANCE = new LocationPriceIndex(DEFAULT_ROLLING_WINDOW_DAYS);
+
+    private static final String LOAD_SQL =
+        "SELECT FUEL_UP_ID, USER_ID, LOCATION_ID, FUEL_DATE, PRICE_PER_GALLON FROM FUEL_UPS " +
+        "WHERE LOCATION_ID IS NOT NULL AND DELETED_AT IS NULL";
+
+    private final int rollingWindowDays;
+    private final ConcurrentMap<Long, LocationPrices> locations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<Long, Visits>> visitsByUser = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public LocationPriceIndex(int rollingWindowDays) {
+        this.rollingWindowDays = rollingWindowDays;
+    }
+
+    public static LocationPriceIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Warm the index with one pass over located fuel-ups
+     */
+    public synchronized void load(Connection connection) throws SQLException {
+        if (loaded) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(LOAD_SQL)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    record(rs.getLong(1), rs.getString(2), rs.getLong(3),
+                        rs.getDate(4).toLocalDate().toEpochDay(),
+                        Math.round(rs.getDouble(5) * 100));
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Record a fill-up observation
+     */
+    public void record(long fuelUpId, String userId, long locationId, long epochDay, long priceHundredths) {
+        locations.computeIfAbsent(locationId, id -> new LocationPrices())
+            .add(new Observation(fuelUpId, epochDay, priceHundredths), rollingWindowDays);
+        visitsByUser.computeIfAbsent(userId, id -> new ConcurrentHashMap<>())
+            .compute(locationId, (id, visits) -> {
+                Visits updated = visits == null ? new Visits() : visits;
+                updated.add(epochDay);
+                return updated;
+            });
+    }
+
+    /**
+     * Forget a deleted fill-up's price observation and visit
+     */
+    public void remove(long fuelUpId, String userId, long locationId, long epochDay) {
+        LocationPrices prices = locations.get(locationId);
+        if (prices != null) {
+            prices.remove(fuelUpId, rollingWindowDays);
+        }
+        Map<Long, Visits> visits = visitsByUser.get(userId);
+        if (visits != null) {
+            visits.computeIfPresent(locationId,
+                (id, locationVisits) -> locationVisits.remove(epochDay) ? null : locationVisits);
+        }
+    }
+
+    /**
+     * Locations the user filled up at on or after sinceEpochDay, cheapest
+     * latest price first
+     */
+    public List<Quote> cheapestFor(String userId, long sinceEpochDay, long todayEpochDay) {
+        Map<Long, Visits> visits = visitsByUser.get(userId);
+        List<Quote> quotes = new ArrayList<>();
+        if (visits == null) {
+            return quotes;
+        }
+        for (Map.Entry<Long, Visits> visit : visits.entrySet()) {
+            long lastVisit = visit.getValue().last();
+            if (lastVisit < sinceEpochDay) {
+                continue;
+            }
+            LocationPrices prices = locations.get(visit.getKey());
+            Quote quote = prices == null ? null : prices.quote(visit.getKey(), lastVisit,
+                todayEpochDay - rollingWindowDays);
+            if (quote != null) {
+                quotes.add(quote);
+            }
+        }
+        quotes.sort(Comparator.comparingLong(Quote::getLatestPriceHundredths));
+        return quotes;
+    }
+
+    public void clear() {
+        locations.clear();
+        visitsByUser.clear();
+        loaded = false;
+    }
+
+    /**
+     * Snapshot of one location's prices for a user
+     */
+    public static final class Quote {
+        private final long locationId;
+        private final long latestPriceHundredths;
+        private final long latestEpochDay;
+        private final long rollingAverageHundredths;
+        private final long lastVisitEpochDay;
+
+        Quote(long locationId, long latestPriceHundredths, long latestEpochDay,
+              long rollingAverageHundredths, long lastVisitEpochDay) {
+            this.locationId = locationId;
+            this.latestPriceHundredths = latestPriceHundredths;
+            this.latestEpochDay = latestEpochDay;
+            this.rollingAverageHundredths = rollingAverageHundredths;
+            this.lastVisitEpochDay = lastVisitEpochDay;
+        }
+
+        public long getLocationId() {
+            return locationId;
+        }
+
+        public long getLatestPriceHundredths() {
+            return latestPriceHundredths;
+        }
+
+        public long getLatestEpochDay() {
+            return latestEpochDay;
+        }
+
+        public long getRollingAverageHundredths() {
+            return rollingAverageHundredths;
+        }
+
+        public long getLastVisitEpochDay() {
+            return lastVisitEpochDay;
+        }
+    }
+
+    private static final class Observation {
+        final long fuelUpId;
+        final long epochDay;
+        final long price;
+
+        Observation(long fuelUpId, long epochDay, long price) {
+            this.fuelUpId = fuelUpId;
+            this.epochDay = epochDay;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Days one user filled up at one location, in order; duplicates are kept
+     * so each deleted fill-up removes exactly one
+     */
+    private static final class Visits {
+        private long[] days = new long[2];
+        private int size;
+
+        synchronized void add(long epochDay) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+            }
+            int at = size;
+            while (at > 0 && days[at - 1] > epochDay) {
+                at--;
+            }
+            System.arraycopy(days, at, days, at + 1, size - at);
+            days[at] = epochDay;
+            size++;
+        }
+
+        /**
+         * @return true once no visits are left
+         */
+        synchronized boolean remove(long epochDay) {
+            int at = Arrays.binarySearch(days, 0, size, epochDay);
+            if (at >= 0) {
+                System.arraycopy(days, at + 1, days, at, size - at - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        synchronized long last() {
+            return size == 0 ? Long.MIN_VALUE : days[size - 1];
+        }
+    }
+
+    /**
+     * Latest observation plus the observations inside the rolling window,
+     * ordered by date, with a running sum for the average. Observations
+     * that leave the window move to older, so a deleted latest price can be
+     * replaced by the next newest.
+     */
+    private static final class LocationPrices {
+        private final ArrayDeque<Observation> window = new ArrayDeque<>();
+        private final List<Observation> older = new ArrayList<>();
+        private Observation latest;
+        private long windowSum;
+
+        synchronized void add(Observation observation, int windowDays) {
+            if (latest == null || observation.epochDay >= latest.epochDay) {
+                latest = observation;
+            }
+            if (observation.epochDay < latest.epochDay - windowDays) {
+                addOlder(observation);
+                return;
+            }
+            if (window.isEmpty() || observation.epochDay >= window.peekLast().epochDay) {
+                window.addLast(observation);
+            } else {
+                // Out-of-order (back-dated) entry: rebuild in date order
+                List<Observation> ordered = new ArrayList<>(window);
+                ordered.add(observation);
+                ordered.sort(Comparator.comparingLong(o -> o.epochDay));
+                window.clear();
+                window.addAll(ordered);
+            }
+            windowSum += observation.price;
+            evictBefore(latest.epochDay - windowDays);
+        }
+
+        synchronized void remove(long fuelUpId, int windowDays) {
+            for (Iterator<Observation> it = window.iterator(); it.hasNext(); ) {
+                Observation observation = it.next();
+                if (observation.fuelUpId == fuelUpId) {
+                    it.remove();
+                    windowSum -= observation.price;
+                }
+            }
+            older.removeIf(observation -> observation.fuelUpId == fuelUpId);
+            if (latest == null || latest.fuelUpId != fuelUpId) {
+                return;
+            }
+            latest = !window.isEmpty() ? window.peekLast()
+                : older.isEmpty() ? null : older.get(older.size() - 1);
+            // The window follows the latest price back in time
+            while (latest != null && !older.isEmpty()
+                    && older.get(older.size() - 1).epochDay >= latest.epochDay - windowDays) {
+                Observation restored = older.remove(older.size() - 1);
+                window.addFirst(restored);
+                windowSum += restored.price;
+            }
+        }
+
+        synchronized Quote quote(long locationId, long lastVisit, long windowStart) {
+            if (latest == null) {
+                return null;
+            }
+            evictBefore(windowStart);
+            long average = window.isEmpty() ? latest.price : Math.round(windowSum / (double) window.size());
+            return new Quote(locationId, latest.price, latest.epochDay, average, lastVisit);
+        }
+
+        private void evictBefore(long epochDay) {
+            while (!window.isEmpty() && window.peekFirst().epochDay < epochDay) {
+                Observation evicted = window.pollFirst();
+                windowSum -= evicted.price;
+                addOlder(evicted);
+            }
+        }
+
+        private void addOlder(Observation observation) {
+            int at = older.size();
+            while (at > 0 && older.get(at - 1).epochDay > observation.epochDay) {
+                at--;
+            }
+            older.add(at, observation);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.boatfuel.report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One user's fuel summary for a month, accumulated row by row, with the
+ * year-to-date totals carried forward from the previous month's report.
+ */
+public class MonthlyReport {
+
+    private final String userId;
+    private final YearMonth month;
+    private final List<Line> fillups = new ArrayList<>();
+    private final Totals monthTotals = new Totals();
+    private final Totals yearToDate;
+
+    public MonthlyReport(String userId, YearMonth month, Totals priorYearToDate) {
+        this.userId = userId;
+        this.month = month;
+        this.yearToDate = new Totals().plus(priorYearToDate);
+    }
+
+    public void add(Date date, BigDecimal gallons, BigDecimal pricePerGallon, BigDecimal totalCost) {
+        fillups.add(new Line(date, gallons, pricePerGallon, totalCost));
+        monthTotals.add(gallons, totalCost);
+        yearToDate.add(gallons, totalCost);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Totals getMonthTotals() {
+        return monthTotals;
+    }
+
+    public Totals getYearToDate() {
+        return yearToDate;
+    }
+
+    /**
+     * CSV with one row per fill-up followed by the month and year-to-date
+     * rows; the ytd row is what the next month's run carries forward
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("type,period,fillups,gallons,avg_price_per_gallon,total_cost\n");
+        for (Line line : fillups) {
+            csv.append("fillup,").append(new java.sql.Date(line.date.getTime())).append(",1,")
+                .append(plain(line.gallons)).append(',').append(plain(line.pricePerGallon)).append(',')
+                .append(plain(line.totalCost)).append('\n');
+        }
+        appendTotals(csv, "month", month.toString(), monthTotals);
+        appendTotals(csv, "ytd", String.valueOf(month.getYear()), yearToDate);
+        return csv.toString();
+    }
+
+    public String toHtml() {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html>\n<head><meta charset=\"UTF-8\"><title>Fuel report ")
+            .append(month).append("</title></head>\n<body>\n");
+        html.append("<h1>Fuel report for ").append(month).append("</h1>\n");
+        html.append("<table border='1'>\n<tr><th></th><th>Fill-ups</th><th>Gallons</th>")
+            .append("<th>Avg price/gal</th><th>Total</th></tr>\n");
+        appendTotalsRow(html, month.toString(), monthTotals);
+        appendTotalsRow(html, month.getYear() + " to date", yearToDate);
+        html.append("</table>\n");
+        if (!fillups.isEmpty()) {
+            html.append("<h2>Fill-ups</h2>\n<table border='1'>\n")
+                .append("<tr><th>Date</th><th>Gallons</th><th>Price/Gal</th><th>Total</th></tr>\n");
+            for (Line line : fillups) {
+                html.append("<tr><td>").append(new java.sql.Date(line.date.getTime()))
+                    .append("</td><td>").append(plain(line.gallons))
+                    .append("</td><td>$").append(plain(line.pricePerGallon))
+                    .append("</td><td>$").append(plain(line.totalCost)).append("</td></tr>\n");
+            }
+            html.append("</table>\n");
+        }
+        html.append("</body>\n</html>\n");
+        return html.toString();
+    }
+
+    /**
+     * Year-to-date totals from a previously written report CSV, or null if
+     * the file has no ytd row
+     */
+    public static Totals readYearToDate(File csv) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("ytd,")) {
+                    String[] fields = line.split(",");
+                    return new Totals(Integer.parseInt(fields[2]), new BigDecimal(fields[3]), new BigDecimal(fields[5]));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void appendTotals(StringBuilder csv, String type, String period, Totals totals) {
+        csv.append(type).append(',').append(period).append(',').append(totals.getCount()).append(',')
+            .append(plain(totals.getGallons())).append(',').append(plain(totals.getAveragePrice())).append(',')
+            .append(plain(totals.getSpent())).append('\n');
+    }
+
+    private static void appendTotalsRow(StringBuilder html, String label, Totals totals) {
+        html.append("<tr><th>").append(label).append("</th><td>").append(totals.getCount())
+            .append("</td><td>").append(plain(totals.getGallons()))
+            .append("</td><td>$").append(plain(totals.getAveragePrice()))
+            .append("</td><td>$").append(plain(totals.getSpent())).append("</td></tr>\n");
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "0" : value.toPlainString();
+    }
+
+    /**
+     * Running fill-up count, gallons and spend; the average price is
+     * spend over gallons so totals can be carried forward exactly
+     */
+    public static final class Totals {
+        private int count;
+        private BigDecimal gallons = BigDecimal.ZERO;
+        private BigDecimal spent = BigDecimal.ZERO;
+
+        public Totals() {
+        }
+
+        public Totals(int count, BigDecimal gallons, BigDecimal spent) {
+            this.count = count;
+            this.gallons = gallons;
+            this.spent = spent;
+        }
+
+        void add(BigDecimal fillGallons, BigDecimal fillCost) {
+            count++;
+            gallons = gallons.add(fillGallons == null ? BigDecimal.ZERO : fillGallons);
+            spent = spent.add(fillCost == null ? BigDecimal.ZERO : fillCost);
+        }
+
+        Totals plus(Totals other) {
+            if (other != null) {
+                count += other.count;
+                gallons = gallons.add(other.gallons);
+                spent = spent.add(other.spent);
+            }
+            return this;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public BigDecimal getGallons() {
+            return gallons;
+        }
+
+        public BigDecimal getSpent() {
+            return spent;
+        }
+
+        public BigDecimal getAveragePrice() {
+            return gallons.signum() == 0 ? BigDecimal.ZERO : spent.divide(gallons, 3, RoundingMode.HALF_UP);
+        }
+    }
+
+    private static final class Line {
+        final Date date;
+        final BigDecimal gallons;
+        final BigDecimal pricePerGallon;
+        final BigDecimal totalCost;
+
+        Line(Date date, BigDecimal gallons, BigDecimal pricePerGallon, BigDecimal totalCost) {
+            this.date = date;
+            this.gallons = gallons;
+            this.pricePerGallon = pricePerGallon;
+            this.totalCost = totalCost;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.boatfuel.report;
+
+import com.boatfuel.jdbc.ApplicationConnectionPool;
+import com.boatfuel.jdbc.PoolMetrics;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each user's monthly fuel report (CSV and HTML) under
+ * directory/YYYY-MM.
+ *
+ * Users are walked in USER_ID order, a chunk at a time. Each chunk reads
+ * only that month's rows for its users from the (USER_ID, DELETED_AT,
+ * FUEL_DATE, ...) covering index, and the year-to-date totals are carried
+ * forward from the previous month's reports rather than re-read from the
+ * year's history. The last finished USER_ID is checkpointed after every
+ * chunk, so an interrupted run resumes where it stopped, and the run
+ * pauses between chunks (longer while the connection pool is busy).
+ */
+public class MonthlyReportGenerator {
+
+    private static final Logger logger = Logger.getLogger(MonthlyReportGenerator.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+    public static final long DEFAULT_PAUSE_MILLIS = 200;
+
+    static final String CHECKPOINT_FILE = "checkpoint";
+    static final String COMPLETE_FILE = "_COMPLETE";
+
+    // Extra pauses per chunk while the pool stays busy
+    private static final int MAX_BUSY_WAITS = 50;
+
+    private static final String USERS_SQL = "SELECT USER_ID FROM USERS WHERE USER_ID > ? ORDER BY USER_ID";
+
+    private static final String ROWS_SQL =
+        "SELECT USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST FROM FUEL_UPS " +
+        "WHERE USER_ID IN (%s) AND DELETED_AT IS NULL AND FUEL_DATE BETWEEN ? AND ? " +
+        "ORDER BY USER_ID, FUEL_DATE";
+
+    private static final String TOTALS_SQL =
+        "SELECT USER_ID, COUNT(*), SUM(GALLONS), SUM(TOTAL_COST) FROM FUEL_UPS " +
+        "WHERE USER_ID IN (%s) AND DELETED_AT IS NULL AND FUEL_DATE BETWEEN ? AND ? GROUP BY USER_ID";
+
+    private final File directory;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    public MonthlyReportGenerator(File directory) {
+        this(directory, DEFAULT_CHUNK_SIZE, DEFAULT_PAUSE_MILLIS);
+    }
+
+    public MonthlyReportGenerator(File directory, int chunkSize, long pauseMillis) {
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Generate (or resume) the reports for a month
+     * @return number of user reports written by this call
+     */
+    public int generate(Connection connection, YearMonth month) throws SQLException, IOException, InterruptedException {
+        File monthDir = monthDirectory(month);
+        if (new File(monthDir, COMPLETE_FILE).exists()) {
+            return 0;
+        }
+        if (!monthDir.exists() && !monthDir.mkdirs()) {
+            throw new IOException("Cannot create report directory: " + monthDir.getAbsolutePath());
+        }
+
+        String lastUserId = readCheckpoint(monthDir);
+        if (!lastUserId.isEmpty()) {
+            logger.info("Resuming " + month + " reports after user " + lastUserId);
+        }
+
+        int written = 0;
+        while (true) {
+            List<String> users = nextUsers(connection, lastUserId);
+            if (users.isEmpty()) {
+                break;
+            }
+            written += writeChunk(connection, month, monthDir, users);
+            lastUserId = users.get(users.size() - 1);
+            writeAtomically(new File(monthDir, CHECKPOINT_FILE), lastUserId);
+            if (users.size() < chunkSize) {
+                break;
+            }
+            throttle();
+        }
+
+        writeAtomically(new File(monthDir, COMPLETE_FILE), "");
+        Files.deleteIfExists(new File(monthDir, CHECKPOINT_FILE).toPath());
+        logger.info("Wrote " + written + " monthly reports for " + month);
+        return written;
+    }
+
+    public File monthDirectory(YearMonth month) {
+        return new File(directory, month.toString());
+    }
+
+    /**
+     * Report files are named after the user ID, percent-encoded so that
+     * distinct IDs never share a file. Only lower-case letters, digits and
+     * . _ - are kept; upper-case letters are encoded too, as the directory
+     * may be on a case-insensitive file system.
+     */
+    static String fileName(String userId) {
+        StringBuilder name = new StringBuilder(userId.length());
+        for (byte b : userId.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '_' || c == '-') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return name.toString();
+    }
+
+    private int writeChunk(Connection connection, YearMonth month, File monthDir, List<String> users)
+            throws SQLException, IOException {
+        Map<String, MonthlyReport.Totals> prior = priorYearToDate(connection, month, users);
+
+        Map<String, MonthlyReport> reports = new LinkedHashMap<>();
+        for (String userId : users) {
+            reports.put(userId, new MonthlyReport(userId, month, prior.get(userId)));
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(ROWS_SQL, placeholders(users.size())))) {
+            int index = bindUsers(stmt, users);
+            stmt.setDate(index++, java.sql.Date.valueOf(month.atDay(1)));
+            stmt.setDate(index, java.sql.Date.valueOf(month.atEndOfMonth()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    reports.get(rs.getString(1)).add(rs.getDate(2), rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5));
+                }
+            }
+        }
+
+        for (MonthlyReport report : reports.values()) {
+            String name = fileName(report.getUserId());
+            writeAtomically(new File(monthDir, name + ".csv"), report.toCsv());
+            writeAtomically(new File(monthDir, name + ".html"), report.toHtml());
+        }
+        return reports.size();
+    }
+
+    /**
+     * Year-to-date totals before this month: read from last month's reports
+     * when that run completed, otherwise (or for users without a readable
+     * report, e.g. one written under an older file name) summed once from
+     * the year's rows
+     */
+    private Map<String, MonthlyReport.Totals> priorYearToDate(Connection connection, YearMonth month, List<String> users)
+            throws SQLException, IOException {
+        Map<String, MonthlyReport.Totals> prior = new HashMap<>();
+        if (month.getMonthValue() == 1) {
+            return prior;
+        }
+
+        YearMonth previous = month.minusMonths(1);
+        File previousDir = monthDirectory(previous);
+        List<String> unreported = users;
+        if (new File(previousDir, COMPLETE_FILE).exists()) {
+            unreported = new ArrayList<>();
+            for (String userId : users) {
+                File csv = new File(previousDir, fileName(userId) + ".csv");
+                MonthlyReport.Totals totals = csv.exists() ? MonthlyReport.readYearToDate(csv) : null;
+                if (totals != null) {
+                    prior.put(userId, totals);
+                } else {
+                    unreported.add(userId);
+                }
+            }
+            if (unreported.isEmpty()) {
+                return prior;
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(TOTALS_SQL, placeholders(unreported.size())))) {
+            int index = bindUsers(stmt, unreported);
+            stmt.setDate(index++, java.sql.Date.valueOf(month.withMonth(1).atDay(1)));
+            stmt.setDate(index, java.sql.Date.valueOf(previous.atEndOfMonth()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    prior.put(rs.getString(1), new MonthlyReport.Totals(rs.getInt(2),
+                        rs.getBigDecimal(3), rs.getBigDecimal(4)));
+                }
+            }
+        }
+        return prior;
+    }
+
+    private List<String> nextUsers(Connection connection, String afterUserId) throws SQLException {
+        List<String> users = new ArrayList<>(chunkSize);
+        try (PreparedStatement stmt = connection.prepareStatement(USERS_SQL)) {
+            stmt.setString(1, afterUserId);
+            stmt.setMaxRows(chunkSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(rs.getString(1));
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Pause between chunks, and keep pausing while interactive requests
+     * hold most of the application pool's connections
+     */
+    private void throttle() throws InterruptedException {
+        Thread.sleep(pauseMillis);
+        for (int i = 0; i < MAX_BUSY_WAITS && poolBusy(); i++) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    // Busy means more than half the pool's connections are checked out
+    private static boolean poolBusy() {
+        PoolMetrics metrics = ApplicationConnectionPool.getMetrics();
+        return metrics != null && metrics.getMaxActive() > 0 && metrics.getActive() * 2 > metrics.getMaxActive();
+    }
+
+    private static String readCheckpoint(File monthDir) throws IOException {
+        File checkpoint = new File(monthDir, CHECKPOINT_FILE);
+        if (!checkpoint.exists()) {
+            return "";
+        }
+        return new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void writeAtomically(File file, String content) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(tmp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+
+    private static int bindUsers(PreparedStatement stmt, List<String> users) throws SQLException {
+        int index = 1;
+        for (String userId : users) {
+            stmt.setString(index++, userId);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,538 @@
+package com.boatfuel.search;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded, per-user inverted index over fuel-up notes and locations.
+ *
+ * Each user has a sorted term dictionary (for prefix queries) mapping to
+ * sorted posting lists of fuel-up IDs. Changes are appended to an
+ * operation log and folded into a snapshot every SNAPSHOT_INTERVAL
+ * operations; on open the snapshot is loaded and the log replayed, with
+ * a torn final record truncated.
+ *
+ * Snapshots are written by a background thread. Writers are only held up
+ * while the in-memory state is copied and the log is set aside as
+ * index.log.old; that file is deleted once the new snapshot is in place,
+ * and replayed before index.log if a restart finds it still there.
+ */
+public class FuelUpSearchIndex {
+
+    private static final Logger logger = Logger.getLogger(FuelUpSearchIndex.class);
+
+    static final int SNAPSHOT_INTERVAL = 10_000;
+
+    private static final int SNAPSHOT_MAGIC = 0x42465349; // "BFSI"
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final String BOOTSTRAP_SQL =
+        "SELECT FUEL_UP_ID, USER_ID, LOCATION, NOTES FROM FUEL_UPS WHERE DELETED_AT IS NULL";
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final File oldLogFile;
+    private final Map<String, UserIndex> users = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object bootstrapMonitor = new Object();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DataOutputStream log;
+    private int opsSinceSnapshot;
+    private boolean snapshotScheduled;
+    private boolean bootstrapped;
+    // IDs changed by live writes while a bootstrap scan runs; those win over the scan
+    private Set<Long> changedDuringBootstrap;
+
+    public FuelUpSearchIndex(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create search index directory: " + directory.getAbsolutePath());
+        }
+        this.snapshotFile = new File(directory, "index.snapshot");
+        this.logFile = new File(directory, "index.log");
+        this.oldLogFile = new File(directory, "index.log.old");
+        loadSnapshot();
+        replayLog(oldLogFile);
+        replayLog(logFile);
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+    }
+
+    /**
+     * Index (or re-index) a fuel-up's location and notes
+     */
+    public void add(String userId, long fuelUpId, String location, String notes) throws IOException {
+        Set<String> terms = Tokenizer.terms(location);
+        terms.addAll(Tokenizer.terms(notes));
+        String[] termArray = terms.toArray(new String[0]);
+
+        lock.writeLock().lock();
+        try {
+            applyAdd(userId, fuelUpId, termArray);
+            if (changedDuringBootstrap != null) {
+                changedDuringBootstrap.add(fuelUpId);
+            }
+            log.writeByte(OP_ADD);
+            log.writeUTF(userId);
+            log.writeLong(fuelUpId);
+            log.writeInt(termArray.length);
+            for (String term : termArray) {
+                log.writeUTF(term);
+            }
+            afterWrite();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String userId, long fuelUpId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            applyRemove(userId, fuelUpId);
+            if (changedDuringBootstrap != null) {
+                changedDuringBootstrap.add(fuelUpId);
+            }
+            log.writeByte(OP_REMOVE);
+            log.writeUTF(userId);
+            log.writeLong(fuelUpId);
+            afterWrite();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fuel-up IDs of the user's notes matching every query term, newest
+     * (highest ID) first. A term ending in '*' matches as a prefix.
+     */
+    public SearchPage search(String userId, String query, int offset, int limit) {
+        List<Clause> clauses = parse(query);
+        if (clauses.isEmpty()) {
+            return new SearchPage(new long[0], 0);
+        }
+
+        long[] matches;
+        lock.readLock().lock();
+        try {
+            UserIndex index = users.get(userId);
+            if (index == null) {
+                return new SearchPage(new long[0], 0);
+            }
+            List<long[]> lists = new ArrayList<>(clauses.size());
+            for (Clause clause : clauses) {
+                long[] ids = clause.prefix ? index.prefixIds(clause.term) : index.termIds(clause.term);
+                if (ids.length == 0) {
+                    return new SearchPage(new long[0], 0);
+                }
+                lists.add(ids);
+            }
+            matches = intersect(lists);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = Math.min(Math.max(0, offset), matches.length);
+        int to = Math.min(matches.length, from + Math.max(0, limit));
+        long[] page = new long[to - from];
+        for (int i = from; i < to; i++) {
+            page[i - from] = matches[matches.length - 1 - i];
+        }
+        return new SearchPage(page, matches.length);
+    }
+
+    public boolean isBootstrapped() {
+        lock.readLock().lock();
+        try {
+            return bootstrapped;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build the index from existing rows once, then snapshot it. The scan
+     * runs without the index lock, so writes keep flowing; a fuel-up added
+     * or removed meanwhile keeps its live state rather than the scanned one.
+     */
+    public void bootstrap(Connection connection) throws SQLException {
+        synchronized (bootstrapMonitor) {
+            lock.writeLock().lock();
+            try {
+                if (bootstrapped) {
+                    return;
+                }
+                changedDuringBootstrap = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Document> scanned;
+            try {
+                scanned = scan(connection);
+            } catch (SQLException | RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    changedDuringBootstrap = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            int count = 0;
+            lock.writeLock().lock();
+            try {
+                for (Document doc : scanned) {
+                    if (!changedDuringBootstrap.contains(doc.fuelUpId)) {
+                        applyAdd(doc.userId, doc.fuelUpId, doc.terms);
+                        count++;
+                    }
+                }
+                changedDuringBootstrap = null;
+                bootstrapped = true;
+                scheduleSnapshot();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Search index bootstrapped with " + count + " fuel-ups");
+        }
+    }
+
+    private static List<Document> scan(Connection connection) throws SQLException {
+        List<Document> scanned = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(BOOTSTRAP_SQL)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Set<String> terms = Tokenizer.terms(rs.getString(3));
+                    terms.addAll(Tokenizer.terms(rs.getString(4)));
+                    scanned.add(new Document(rs.getString(2), rs.getLong(1), terms.toArray(new String[0])));
+                }
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Wait for a pending snapshot and close the log
+     */
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterWrite() throws IOException {
+        log.flush();
+        if (++opsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            scheduleSnapshot();
+        }
+    }
+
+    /**
+     * Queue one background snapshot; called with the write lock held
+     */
+    private void scheduleSnapshot() {
+        if (snapshotScheduled || snapshotter.isShutdown()) {
+            return;
+        }
+        snapshotScheduled = true;
+        snapshotter.execute(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                logger.warn("Search index snapshot failed; the log is kept for replay", e);
+            }
+        });
+    }
+
+    private void applyAdd(String userId, long fuelUpId, String[] terms) {
+        UserIndex index = users.computeIfAbsent(userId, id -> new UserIndex());
+        index.remove(fuelUpId);
+        index.add(fuelUpId, terms);
+    }
+
+    private void applyRemove(String userId, long fuelUpId) {
+        UserIndex index = users.get(userId);
+        if (index != null) {
+            index.remove(fuelUpId);
+        }
+    }
+
+    /**
+     * Write the full index to a new snapshot. The state is copied and the
+     * log set aside under the write lock; the file is written outside it.
+     */
+    private void snapshot() throws IOException {
+        Map<String, Map<Long, String[]>> copy = new HashMap<>();
+        boolean complete;
+        lock.writeLock().lock();
+        try {
+            snapshotScheduled = false;
+            complete = bootstrapped;
+            for (Map.Entry<String, UserIndex> user : users.entrySet()) {
+                copy.put(user.getKey(), new HashMap<>(user.getValue().docs));
+            }
+            log.close();
+            if (oldLogFile.exists()) {
+                // An earlier snapshot failed: its ops are not in any snapshot yet
+                Files.write(oldLogFile.toPath(), Files.readAllBytes(logFile.toPath()), StandardOpenOption.APPEND);
+            } else {
+                Files.move(logFile.toPath(), oldLogFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, false)));
+            opsSinceSnapshot = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeBoolean(complete);
+            out.writeInt(copy.size());
+            for (Map.Entry<String, Map<Long, String[]>> user : copy.entrySet()) {
+                out.writeUTF(user.getKey());
+                out.writeInt(user.getValue().size());
+                for (Map.Entry<Long, String[]> doc : user.getValue().entrySet()) {
+                    out.writeLong(doc.getKey());
+                    out.writeInt(doc.getValue().length);
+                    for (String term : doc.getValue()) {
+                        out.writeUTF(term);
+                    }
+                }
+            }
+        }
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(oldLogFile.toPath());
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a search index snapshot: " + snapshotFile.getAbsolutePath());
+            }
+            bootstrapped = in.readBoolean();
+            int userCount = in.readInt();
+            for (int u = 0; u < userCount; u++) {
+                String userId = in.readUTF();
+                int docCount = in.readInt();
+                for (int d = 0; d < docCount; d++) {
+                    long id = in.readLong();
+                    applyAdd(userId, id, readTerms(in));
+                }
+            }
+        }
+    }
+
+    private void replayLog(File logFile) throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(logFile.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long good = 0;
+        try {
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                String userId = in.readUTF();
+                long id = in.readLong();
+                if (op == OP_ADD) {
+                    applyAdd(userId, id, readTerms(in));
+                } else if (op == OP_REMOVE) {
+                    applyRemove(userId, id);
+                } else {
+                    throw new EOFException("Unknown operation " + op);
+                }
+                opsSinceSnapshot++;
+                good = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            logger.warn("Truncating torn search index log at byte " + good + " of " + bytes.length);
+            try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                file.setLength(good);
+            }
+        }
+    }
+
+    private static String[] readTerms(DataInputStream in) throws IOException {
+        String[] terms = new String[in.readInt()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = in.readUTF();
+        }
+        return terms;
+    }
+
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        for (String piece : query.trim().split("\\s+")) {
+            boolean prefix = piece.endsWith("*");
+            List<String> tokens = Tokenizer.tokens(piece);
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean isPrefix = prefix && i == tokens.size() - 1;
+                String term = tokens.get(i);
+                if (isPrefix || !Tokenizer.terms(term).isEmpty()) {
+                    clauses.add(new Clause(term, isPrefix));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Intersect sorted ID lists, smallest first, probing the others by
+     * binary search
+     */
+    private static long[] intersect(List<long[]> lists) {
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        long[] result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.length > 0; l++) {
+            long[] other = lists.get(l);
+            long[] kept = new long[result.length];
+            int count = 0;
+            for (long id : result) {
+                if (Arrays.binarySearch(other, id) >= 0) {
+                    kept[count++] = id;
+                }
+            }
+            result = Arrays.copyOf(kept, count);
+        }
+        return result;
+    }
+
+    /**
+     * A fuel-up's terms as read by the bootstrap scan
+     */
+    private static final class Document {
+        final String userId;
+        final long fuelUpId;
+        final String[] terms;
+
+        Document(String userId, long fuelUpId, String[] terms) {
+            this.userId = userId;
+            this.fuelUpId = fuelUpId;
+            this.terms = terms;
+        }
+    }
+
+    private static final class Clause {
+        final String term;
+        final boolean prefix;
+
+        Clause(String term, boolean prefix) {
+            this.term = term;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * One user's term dictionary and the terms of each indexed fuel-up
+     */
+    private static final class UserIndex {
+        final TreeMap<String, Postings> terms = new TreeMap<>();
+        final Map<Long, String[]> docs = new HashMap<>();
+
+        void add(long id, String[] docTerms) {
+            docs.put(id, docTerms);
+            for (String term : docTerms) {
+                terms.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+        }
+
+        void remove(long id) {
+            String[] docTerms = docs.remove(id);
+            if (docTerms == null) {
+                return;
+            }
+            for (String term : docTerms) {
+                Postings postings = terms.get(term);
+                if (postings != null && postings.remove(id) && postings.isEmpty()) {
+                    terms.remove(term);
+                }
+            }
+        }
+
+        long[] termIds(String term) {
+            Postings postings = terms.get(term);
+            return postings == null ? new long[0] : postings.toArray();
+        }
+
+        long[] prefixIds(String prefix) {
+            SortedMap<String, Postings> matching = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+            if (matching.size() == 1) {
+                return matching.values().iterator().next().toArray();
+            }
+            int total = 0;
+            for (Postings postings : matching.values()) {
+                total += postings.size();
+            }
+            long[] ids = new long[total];
+            int n = 0;
+            for (Postings postings : matching.values()) {
+                for (int i = 0; i < postings.size(); i++) {
+                    ids[n++] = postings.get(i);
+                }
+            }
+            Arrays.sort(ids);
+            int unique = 0;
+            for (int i = 0; i < n; i++) {
+                if (unique == 0 || ids[unique - 1] != ids[i]) {
+                    ids[unique++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, unique);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.boatfuel.search;
+
+/**
+ * One page of matching fuel-up IDs plus the total number of matches
+ */
+public class SearchPage {
+
+    private final long[] fuelUpIds;
+    private final int totalMatches;
+
+    public SearchPage(long[] fuelUpIds, int totalMatches) {
+        this.fuelUpIds = fuelUpIds;
+        this.totalMatches = totalMatches;
+    }
+
+    public long[] getFuelUpIds() {
+        return fuelUpIds;
+    }
+
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+}
@@ -0,0 +1,95 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.util.DeflaterPool;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Gzip-compresses text responses for clients that accept it.
+ *
+ * Bodies are buffered up to the threshold first: anything smaller is sent
+ * as-is (the gzip framing would outweigh the saving), larger bodies are
+ * streamed through a pooled Deflater. Responses a servlet has already
+ * encoded itself (see IndexServlet) pass straight through.
+ */
+public class CompressionFilter implements Filter {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private int threshold = DEFAULT_THRESHOLD;
+    private DeflaterPool pool = DeflaterPool.getInstance();
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        String value = config.getInitParameter("threshold");
+        if (value != null) {
+            threshold = Integer.parseInt(value.trim());
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        if ("HEAD".equals(request.getMethod()) || !acceptsGzip(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        GzipResponseWrapper wrapper = new GzipResponseWrapper(response, pool, threshold);
+        try {
+            chain.doFilter(request, wrapper);
+        } catch (Throwable e) {
+            // Sending the buffer would commit it as a 200 and hide the error page
+            wrapper.discard();
+            throw e;
+        }
+        wrapper.finish();
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * True if Accept-Encoding lists gzip (or *) without q=0
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase();
+            if (!"gzip".equals(coding) && !"x-gzip".equals(coding) && !"*".equals(coding)) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        rejected = Double.parseDouble(param.substring(2).trim()) <= 0;
+                    } catch (NumberFormatException e) {
+                        rejected = true;
+                    }
+                }
+            }
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,158 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.events.EventSink;
+import com.boatfuel.events.FuelUpEventHub;
+import org.apache.log4j.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-Sent Events stream of the signed-in user's fuel-up changes.
+ *
+ * The request is put into async mode and the container thread returned
+ * straight away; events are written with non-blocking I/O from whichever
+ * thread publishes them, so open dashboards cost no thread while idle.
+ * Streams end after a fixed time and the browser reconnects.
+ */
+public class FuelUpEventsServlet extends HttpServlet {
+
+    private static final Logger logger = Logger.getLogger(FuelUpEventsServlet.class);
+
+    static final long STREAM_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+    private FuelUpEventHub hub;
+
+    @Override
+    public void init() throws ServletException {
+        hub = FuelUpEventHub.getInstance();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        HttpSession session = request.getSession(true);
+        String userId = (String) session.getAttribute("userId");
+
+        if (userId == null) {
+            // For testing: set a default userId if not in session
+            userId = "testuser";
+            session.setAttribute("userId", userId);
+        }
+
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        // Stop reverse proxies from buffering the stream
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(STREAM_TIMEOUT_MILLIS);
+        ServletOutputStream out = response.getOutputStream();
+
+        AsyncSink sink = new AsyncSink(async, out);
+        FuelUpEventHub.Subscription subscription = hub.subscribe(userId, sink);
+        async.addListener(new StreamListener(subscription));
+        out.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() {
+                subscription.drain();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.debug("Event stream write failed", t);
+                subscription.close();
+            }
+        });
+        sink.start();
+        subscription.drain();
+    }
+
+    /**
+     * Writes to the response in non-blocking mode once its WriteListener
+     * is registered
+     */
+    static final class AsyncSink implements EventSink {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean started;
+
+        AsyncSink(AsyncContext async, ServletOutputStream out) {
+            this.async = async;
+            this.out = out;
+        }
+
+        void start() {
+            started = true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return started && !completed.get() && out.isReady();
+        }
+
+        @Override
+        public void write(byte[] data) throws IOException {
+            out.write(data);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            if (completed.compareAndSet(false, true)) {
+                try {
+                    async.complete();
+                } catch (IllegalStateException e) {
+                    // Already completed by the container (timeout or error)
+                    logger.debug("Event stream already completed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the subscription however the stream ends
+     */
+    private static final class StreamListener implements AsyncListener {
+        private final FuelUpEventHub.Subscription subscription;
+
+        StreamListener(FuelUpEventHub.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscription.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            subscription.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            subscription.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
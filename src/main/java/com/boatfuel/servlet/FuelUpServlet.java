@@ -1,7 +1,12 @@
 package com.boatfuel.servlet;
 
+import com.boatfuel.ejb.FuelUpListRow;
 import com.boatfuel.ejb.FuelUpService;
 import com.boatfuel.entity.FuelUp;
+import com.boatfuel.geo.GeoGrid;
+import com.boatfuel.idempotency.IdempotencyFilter;
+import com.boatfuel.ingest.PendingFuelUp;
+import com.boatfuel.ingest.WriteBehindIngestor;
 import com.boatfuel.util.FileSystemHelper;
 import com.boatfuel.util.JNDILookupHelper;
 import org.apache.log4j.Logger;
@@ -17,6 +22,7 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,6 +40,8 @@ public class FuelUpServlet extends HttpServlet {
 
     private FuelUpService fuelUpService;
 
+    private WriteBehindIngestor ingestor;
+
     /**
      * Initialize servlet with EJB lookup (anti-pattern)
      * Konveyor will flag: Manual JNDI EJB lookup, should use @EJB injection
@@ -49,6 +57,11 @@ public class FuelUpServlet extends HttpServlet {
 
             logger.info("FuelUpService EJB lookup successful");
 
+            if (WriteBehindIngestor.isEnabled()) {
+                ingestor = new WriteBehindIngestor(FileSystemHelper.getIngestDirectory(), this::writeBatch);
+                ingestor.start();
+            }
+
         } catch (Exception e) {
             logger.error("Failed to initialize EJB", e);
             throw new ServletException("Cannot initialize EJB", e);
@@ -63,8 +76,7 @@ public class FuelUpServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        response.setContentType("text/html");
-        PrintWriter out = response.getWriter();
+        response.setContentType("text/html;charset=UTF-8");
 
         HttpSession session = request.getSession(true);
         String userId = (String) session.getAttribute("userId");
@@ -76,36 +88,27 @@ public class FuelUpServlet extends HttpServlet {
             logger.info("No userId in session, using default: " + userId);
         }
 
+        // Rows are encoded into a reused per-thread buffer, not concatenated per cell
+        FuelUpTableRenderer page = new FuelUpTableRenderer(response.getOutputStream());
         try {
             // Audit log to file system (anti-pattern)
-            FileSystemHelper.writeAuditLog("User " + userId + " accessed fuel-ups");
+            FileSystemHelper.writeAuditLog(userId, "VIEW_FUELUPS", "User " + userId + " accessed fuel-ups");
 
-            List<FuelUp> fuelUps = fuelUpService.getFuelUpsByUser(userId);
+            // Projection rows: only the four rendered columns are loaded
+            List<FuelUpListRow> fuelUps = fuelUpService.getFuelUpRows(userId);
 
             // Generating HTML in servlet (anti-pattern)
-            out.println("<html>");
-            out.println("<head><title>Boat Fuel Tracker</title></head>");
-            out.println("<body>");
-            out.println("<h1>Your Fuel-Ups</h1>");
-            out.println("<table border='1'>");
-            out.println("<tr><th>Date</th><th>Gallons</th><th>Price/Gal</th><th>Total</th></tr>");
-
-            for (FuelUp fuelUp : fuelUps) {
-                out.println("<tr>");
-                out.println("<td>" + fuelUp.getDate() + "</td>");
-                out.println("<td>" + fuelUp.getGallons() + "</td>");
-                out.println("<td>$" + fuelUp.getPricePerGallon() + "</td>");
-                out.println("<td>$" + fuelUp.getTotalCost() + "</td>");
-                out.println("</tr>");
+            page.writePageStart();
+            for (FuelUpListRow fuelUp : fuelUps) {
+                page.writeRow(fuelUp);
             }
-
-            out.println("</table>");
-            out.println("</body>");
-            out.println("</html>");
+            page.writePageEnd();
 
         } catch (Exception e) {
             logger.error("Error retrieving fuel-ups", e);
-            out.println("<h1>Error: " + e.getMessage() + "</h1>");
+            page.writeError(e.getMessage());
+        } finally {
+            page.finish();
         }
     }
 
@@ -130,6 +133,13 @@ public class FuelUpServlet extends HttpServlet {
             logger.info("No userId in session, using default: " + userId);
         }
 
+        // Optional client key making retries of the same submission safe
+        String idempotencyKey = request.getHeader("Idempotency-Key");
+        if (idempotencyKey != null && !IdempotencyFilter.isValidKey(idempotencyKey)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid idempotency key");
+            return;
+        }
+
         try {
             // Manual parameter extraction (anti-pattern - should use form validation framework)
             String dateStr = request.getParameter("date");
@@ -138,6 +148,8 @@ public class FuelUpServlet extends HttpServlet {
             String engineHoursStr = request.getParameter("engineHours");
             String location = request.getParameter("location");
             String notes = request.getParameter("notes");
+            String latitudeStr = request.getParameter("latitude");
+            String longitudeStr = request.getParameter("longitude");
 
             logger.info("Processing fuel-up submission from user: " + userId);
             logger.info("Date: " + dateStr + ", Gallons: " + gallonsStr + ", Price: " + pricePerGallonStr);
@@ -160,16 +172,43 @@ public class FuelUpServlet extends HttpServlet {
             fuelUp.setLocation(location);
             fuelUp.setNotes(notes);
 
+            // Optional coordinates; both or neither
+            if (latitudeStr != null && !latitudeStr.isEmpty() && longitudeStr != null && !longitudeStr.isEmpty()) {
+                double latitude = Double.parseDouble(latitudeStr);
+                double longitude = Double.parseDouble(longitudeStr);
+                GeoGrid.validate(latitude, longitude);
+                fuelUp.setLatitude(latitude);
+                fuelUp.setLongitude(longitude);
+            }
+
             // Set user (anti-pattern: direct entity manipulation)
             com.boatfuel.entity.User user = new com.boatfuel.entity.User();
             user.setUserId(userId);
             fuelUp.setUser(user);
 
-            // Save via EJB
-            fuelUpService.createFuelUp(fuelUp);
+            // Write-behind mode: acknowledge once the submission is durable in the local log
+            if (ingestor != null && ingestor.submit(PendingFuelUp.of(userId, fuelUp, idempotencyKey))) {
+                FileSystemHelper.writeAuditLog(userId, "CREATE_FUELUP",
+                    "User " + userId + " queued fuel-up: " + gallons + " gallons");
+                response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                out.println("<html><body><h1>Accepted</h1></body></html>");
+                return;
+            }
+
+            // Save via EJB; a repeated key returns the original instead of the new entity
+            FuelUp saved = idempotencyKey == null
+                ? fuelUpService.createFuelUp(fuelUp)
+                : fuelUpService.createFuelUp(fuelUp, idempotencyKey);
+            if (idempotencyKey != null && saved != fuelUp) {
+                logger.info("Duplicate fuel-up submission replayed for key " + idempotencyKey);
+                response.setHeader("Idempotent-Replayed", "true");
+                out.println("<html><body><h1>Success</h1></body></html>");
+                return;
+            }
 
             // Audit log to file system (anti-pattern)
-            FileSystemHelper.writeAuditLog("User " + userId + " added fuel-up: " + gallons + " gallons");
+            FileSystemHelper.writeAuditLog(userId, "CREATE_FUELUP",
+                "User " + userId + " added fuel-up: " + gallons + " gallons");
 
             logger.info("Fuel-up added successfully");
 
@@ -177,6 +216,12 @@ public class FuelUpServlet extends HttpServlet {
             out.println("<html><body><h1>Success</h1></body></html>");
 
         } catch (Exception e) {
+            // A concurrent duplicate loses the race on the key's primary key
+            if (idempotencyKey != null && replayedAfterFailure(userId, idempotencyKey)) {
+                response.setHeader("Idempotent-Replayed", "true");
+                out.println("<html><body><h1>Success</h1></body></html>");
+                return;
+            }
             logger.error("Error adding fuel-up", e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
                 "Error adding fuel-up: " + e.getMessage());
@@ -186,6 +231,35 @@ public class FuelUpServlet extends HttpServlet {
     @Override
     public void destroy() {
         logger.info("Destroying FuelUpServlet");
+        if (ingestor != null) {
+            try {
+                ingestor.stop(10000);
+            } catch (Exception e) {
+                logger.error("Error stopping write-behind ingestion", e);
+            }
+        }
         super.destroy();
     }
+
+    /**
+     * Flush target for write-behind ingestion: one EJB call per batch
+     */
+    private void writeBatch(List<PendingFuelUp> batch) {
+        List<FuelUp> fuelUps = new ArrayList<>(batch.size());
+        List<String> keys = new ArrayList<>(batch.size());
+        for (PendingFuelUp pending : batch) {
+            fuelUps.add(pending.toFuelUp());
+            keys.add(pending.getIdempotencyKey());
+        }
+        fuelUpService.createFuelUps(fuelUps, keys);
+    }
+
+    private boolean replayedAfterFailure(String userId, String idempotencyKey) {
+        try {
+            return fuelUpService.findIdempotentResult(userId, idempotencyKey) != null;
+        } catch (Exception e) {
+            logger.warn("Idempotency lookup failed for key " + idempotencyKey, e);
+            return false;
+        }
+    }
 }
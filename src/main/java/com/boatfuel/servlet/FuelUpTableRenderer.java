@@ -0,0 +1,285 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpListRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Renders the fuel-up list page as UTF-8 straight into a reusable
+ * per-thread byte buffer, handing it to the response in BUFFER_SIZE chunks.
+ *
+ * Markup is written from precomputed byte arrays, dates and decimals are
+ * formatted digit by digit into the buffer and text is HTML-escaped while
+ * it is encoded, so writing a row allocates nothing. Only the byte[] is
+ * kept per thread; it is a JDK type, so container threads do not pin the
+ * web application's class loader after a redeploy.
+ *
+ * One renderer per response; not thread-safe.
+ */
+final class FuelUpTableRenderer {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private static final byte[] PAGE_START = ascii(
+        "<html>\n"
+        + "<head><title>Boat Fuel Tracker</title></head>\n"
+        + "<body>\n"
+        + "<h1>Your Fuel-Ups</h1>\n"
+        + "<table border='1'>\n"
+        + "<tr><th>Date</th><th>Gallons</th><th>Price/Gal</th><th>Total</th></tr>\n");
+    private static final byte[] PAGE_END = ascii("</table>\n</body>\n</html>\n");
+    private static final byte[] ROW_START = ascii("<tr><td>");
+    private static final byte[] CELL = ascii("</td><td>");
+    private static final byte[] MONEY_CELL = ascii("</td><td>$");
+    private static final byte[] ROW_END = ascii("</td></tr>\n");
+    private static final byte[] ERROR_START = ascii("<h1>Error: ");
+    private static final byte[] ERROR_END = ascii("</h1>\n");
+
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] GT = ascii("&gt;");
+    private static final byte[] QUOT = ascii("&quot;");
+    private static final byte[] APOS = ascii("&#39;");
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // Decimals within these bounds are formatted without allocating; see writeDecimal
+    private static final int MAX_FAST_SCALE = 9;
+    private static final int MAX_FAST_PRECISION = 15;
+    private static final long[] POW10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final TimeZone zone;
+    private int position;
+
+    /**
+     * @param zone time zone whose calendar day is shown for each date
+     */
+    FuelUpTableRenderer(OutputStream out, TimeZone zone) {
+        this.out = out;
+        this.buffer = BUFFER.get();
+        this.zone = zone;
+    }
+
+    FuelUpTableRenderer(OutputStream out) {
+        this(out, TimeZone.getDefault());
+    }
+
+    void writePageStart() throws IOException {
+        write(PAGE_START);
+    }
+
+    void writeRow(FuelUpListRow row) throws IOException {
+        write(ROW_START);
+        writeDate(row.getDate());
+        write(CELL);
+        writeDecimal(row.getGallons());
+        write(MONEY_CELL);
+        writeDecimal(row.getPricePerGallon());
+        write(MONEY_CELL);
+        writeDecimal(row.getTotalCost());
+        write(ROW_END);
+    }
+
+    void writePageEnd() throws IOException {
+        write(PAGE_END);
+    }
+
+    void writeError(String message) throws IOException {
+        write(ERROR_START);
+        writeText(message);
+        write(ERROR_END);
+    }
+
+    /**
+     * Hand the buffered bytes to the response; the stream is left open
+     */
+    void finish() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * yyyy-MM-dd of the date's calendar day in the renderer's zone
+     */
+    void writeDate(Date date) throws IOException {
+        if (date == null) {
+            return;
+        }
+        long millis = date.getTime();
+        long epochDay = Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+
+        // Civil date from days since 1970-01-01 (proleptic Gregorian)
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year >= 0 && year <= 9999) {
+            writePadded(year, 4);
+        } else {
+            writeLong(year);
+        }
+        ensure(6);
+        buffer[position++] = '-';
+        writePadded(month, 2);
+        buffer[position++] = '-';
+        writePadded(day, 2);
+    }
+
+    /**
+     * Plain decimal notation keeping the value's scale, as toPlainString()
+     */
+    void writeDecimal(BigDecimal value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        int scale = value.scale();
+        if (scale < 0 || scale > MAX_FAST_SCALE || value.precision() > MAX_FAST_PRECISION) {
+            // Rare for fuel-ups; allocates
+            writeAscii(value.toPlainString());
+            return;
+        }
+        // Exact: the unscaled value is below 2^50, so the correctly rounded
+        // double is within far less than half a unit of it after rescaling
+        long unscaled = Math.round(value.doubleValue() * POW10[scale]);
+        if (unscaled < 0) {
+            ensure(1);
+            buffer[position++] = '-';
+            unscaled = -unscaled;
+        }
+        writeLong(unscaled / POW10[scale]);
+        if (scale > 0) {
+            ensure(1);
+            buffer[position++] = '.';
+            writePadded(unscaled % POW10[scale], scale);
+        }
+    }
+
+    /**
+     * UTF-8 with HTML special characters escaped
+     */
+    void writeText(CharSequence text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': write(AMP); continue;
+                case '<': write(LT); continue;
+                case '>': write(GT); continue;
+                case '"': write(QUOT); continue;
+                case '\'': write(APOS); continue;
+                default: break;
+            }
+            ensure(4);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, as the JDK encoder replaces it
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value < 0) {
+            ensure(1);
+            buffer[position++] = '-';
+            if (value == Long.MIN_VALUE) {
+                writeAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        writePadded(value, digits);
+    }
+
+    /**
+     * Non-negative value in exactly the given number of digits, zero-padded
+     */
+    private void writePadded(long value, int digits) throws IOException {
+        ensure(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private void writeAscii(String text) throws IOException {
+        if (text.length() > buffer.length) {
+            write(text.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (bytes > buffer.length - position) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            int length = position;
+            // Reset first so a failed write does not resend this chunk
+            position = 0;
+            out.write(buffer, 0, length);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,255 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.util.DeflaterPool;
+import com.boatfuel.util.PooledGzipOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Response wrapper behind CompressionFilter. The choice between gzip and
+ * pass-through is made once, when the buffered body outgrows the threshold,
+ * the servlet flushes, or the response completes.
+ */
+class GzipResponseWrapper extends HttpServletResponseWrapper {
+
+    private final DeflaterPool pool;
+    private final int threshold;
+
+    private byte[] buffer;
+    private int buffered;
+    private OutputStream target;
+    private long contentLength = -1;
+    private boolean encodedUpstream;
+
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+
+    GzipResponseWrapper(HttpServletResponse response, DeflaterPool pool, int threshold) {
+        super(response);
+        this.pool = pool;
+        this.threshold = threshold;
+        this.buffer = new byte[Math.max(threshold, 256)];
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new BufferingStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            stream = new BufferingStream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!interceptHeader(name, value)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!interceptHeader(name, value)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        buffered = 0;
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        buffered = 0;
+        contentLength = -1;
+        encodedUpstream = false;
+        super.reset();
+    }
+
+    /**
+     * Complete the body: send what is still buffered, or end the gzip stream
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (target == null) {
+            if (buffered == 0 && stream == null) {
+                return;
+            }
+            passThrough(true);
+        }
+        if (target instanceof PooledGzipOutputStream) {
+            ((PooledGzipOutputStream) target).finish();
+        }
+    }
+
+    /**
+     * Drop the body of a request that failed: nothing still buffered is
+     * sent, so an uncommitted response is left to the container's error
+     * handling
+     */
+    void discard() {
+        buffered = 0;
+        if (target instanceof PooledGzipOutputStream) {
+            ((PooledGzipOutputStream) target).abandon();
+        }
+    }
+
+    private boolean interceptHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            try {
+                contentLength = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+            return true;
+        }
+        if ("Content-Encoding".equalsIgnoreCase(name)) {
+            encodedUpstream = true;
+        }
+        return false;
+    }
+
+    /**
+     * Gzip is worth it for uncompressed text bodies with a 200-class status
+     */
+    private boolean compressible() {
+        if (encodedUpstream || getStatus() < 200 || getStatus() >= 300 || getStatus() == SC_NO_CONTENT) {
+            return false;
+        }
+        String type = getContentType();
+        if (type == null) {
+            return false;
+        }
+        type = type.toLowerCase();
+        return (type.startsWith("text/") && !type.startsWith("text/event-stream"))
+            || type.startsWith("application/json")
+            || type.startsWith("application/javascript")
+            || type.startsWith("image/svg+xml");
+    }
+
+    private void startGzip() throws IOException {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        response.setHeader("Content-Encoding", "gzip");
+        response.addHeader("Vary", "Accept-Encoding");
+        target = new PooledGzipOutputStream(response.getOutputStream(), pool);
+        target.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+
+    /**
+     * Send the body unencoded; the length is known only once it is complete
+     */
+    private void passThrough(boolean complete) throws IOException {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        if (!encodedUpstream && compressible()) {
+            // Small compressible bodies still vary by encoding for caches
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        if (contentLength >= 0) {
+            response.setContentLengthLong(contentLength);
+        } else if (complete) {
+            response.setContentLength(buffered);
+        }
+        target = response.getOutputStream();
+        target.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+
+    private final class BufferingStream extends ServletOutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(b, off, len);
+                return;
+            }
+            if (buffered + len <= threshold) {
+                System.arraycopy(b, off, buffer, buffered, len);
+                buffered += len;
+                return;
+            }
+            if (compressible()) {
+                startGzip();
+            } else {
+                passThrough(false);
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target == null) {
+                if (compressible()) {
+                    startGzip();
+                } else {
+                    passThrough(false);
+                }
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            throw new UnsupportedOperationException("Non-blocking writes are not supported when compressing");
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.boatfuel.servlet;
 
+import com.boatfuel.util.DeflaterPool;
+import com.boatfuel.util.GzipSegment;
+import com.boatfuel.util.PooledGzipOutputStream;
+
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -7,20 +11,36 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Serves the index page with dynamic username injection
  */
 public class IndexServlet extends HttpServlet {
 
+    private static final String USERNAME_PLACEHOLDER = "{{USERNAME}}";
+
+    // {{ASSET:app.css}} becomes the asset's fingerprinted URL
+    private static final Pattern ASSET_PLACEHOLDER = Pattern.compile("\\{\\{ASSET:([^}]+)}}");
+
     private String template;
 
+    // Static text around the placeholder, deflated once at startup
+    private GzipSegment[] segments;
+
     @Override
     public void init() throws ServletException {
         try {
             // Load the HTML template
             InputStream is = getServletContext().getResourceAsStream("/index-template.html");
-            template = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            template = resolveAssets(new String(is.readAllBytes(), StandardCharsets.UTF_8),
+                StaticAssets.forContext(getServletContext()));
+            String[] parts = template.split(Pattern.quote(USERNAME_PLACEHOLDER), -1);
+            segments = new GzipSegment[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                segments[i] = GzipSegment.compress(parts[i].getBytes(StandardCharsets.UTF_8));
+            }
         } catch (Exception e) {
             throw new ServletException("Cannot load index template", e);
         }
@@ -38,9 +58,38 @@ public class IndexServlet extends HttpServlet {
             username = "Unknown";
         }
 
+        if (CompressionFilter.acceptsGzip(request)) {
+            // Only the username is deflated per request
+            response.setHeader("Content-Encoding", "gzip");
+            response.addHeader("Vary", "Accept-Encoding");
+            byte[] name = username.getBytes(StandardCharsets.UTF_8);
+            PooledGzipOutputStream out = new PooledGzipOutputStream(response.getOutputStream(), DeflaterPool.getInstance());
+            try {
+                for (int i = 0; i < segments.length; i++) {
+                    if (i > 0) {
+                        out.write(name);
+                    }
+                    out.writePrecompressed(segments[i]);
+                }
+            } finally {
+                out.finish();
+            }
+            return;
+        }
+
         // Replace placeholder with actual username
-        String html = template.replace("{{USERNAME}}", username);
+        String html = template.replace(USERNAME_PLACEHOLDER, username);
 
         response.getWriter().print(html);
     }
+
+    static String resolveAssets(String template, StaticAssets assets) {
+        Matcher matcher = ASSET_PLACEHOLDER.matcher(template);
+        StringBuffer resolved = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(assets.url(matcher.group(1))));
+        }
+        matcher.appendTail(resolved);
+        return resolved.toString();
+    }
 }
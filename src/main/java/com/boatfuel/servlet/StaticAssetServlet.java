@@ -0,0 +1,85 @@
+package com.boatfuel.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Serves fingerprinted dashboard assets (/assets/app.&lt;hash&gt;.css) from
+ * memory with immutable, year-long cache headers. A changed file gets a
+ * new URL, so a cached copy never needs revalidating.
+ */
+public class StaticAssetServlet extends HttpServlet {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private StaticAssets assets;
+
+    @Override
+    public void init() throws ServletException {
+        try {
+            assets = StaticAssets.forContext(getServletContext());
+        } catch (IOException e) {
+            throw new ServletException("Cannot load static assets", e);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String path = request.getPathInfo();
+        StaticAssets.Asset asset = path == null ? null : assets.find(path.substring(1));
+        if (asset == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        boolean gzipped = asset.hasGzip() && CompressionFilter.acceptsGzip(request);
+        String etag = asset.getEtag(gzipped);
+        response.setHeader("Cache-Control", IMMUTABLE);
+        response.setHeader("ETag", etag);
+        if (asset.hasGzip()) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (gzipped) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        ByteBuffer body = asset.body(gzipped);
+        response.setContentType(asset.getContentType());
+        response.setContentLength(body.remaining());
+
+        // Written straight from the shared backing array, no per-request copy
+        OutputStream out = response.getOutputStream();
+        out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+    }
+
+    /**
+     * True if an If-None-Match list names the ETag (weak comparison, as
+     * RFC 7232 requires for this header) or is *
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
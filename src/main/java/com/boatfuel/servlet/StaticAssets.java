@@ -0,0 +1,187 @@
+package com.boatfuel.servlet;
+
+import org.apache.log4j.Logger;
+
+import javax.servlet.ServletContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The dashboard's CSS and JavaScript under /assets, fingerprinted by
+ * content hash (app.css is served as app.&lt;hash&gt;.css) so the URLs can
+ * be cached forever and change whenever the content does.
+ *
+ * Identity and gzip bodies are built once and kept in memory; requests
+ * only take a duplicate() of the shared buffers.
+ */
+public class StaticAssets {
+
+    private static final Logger logger = Logger.getLogger(StaticAssets.class);
+
+    public static final String ATTRIBUTE = StaticAssets.class.getName();
+    public static final String ASSET_DIR = "/assets/";
+
+    private final String urlPrefix;
+    private final Map<String, Asset> byName = new HashMap<>();
+    private final Map<String, Asset> byFingerprintedName = new HashMap<>();
+
+    public StaticAssets(String contextPath, Map<String, byte[]> contents) {
+        this.urlPrefix = contextPath + ASSET_DIR;
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            Asset asset = new Asset(entry.getKey(), entry.getValue());
+            byName.put(asset.name, asset);
+            byFingerprintedName.put(asset.fingerprintedName, asset);
+        }
+    }
+
+    /**
+     * Assets of a web application, loaded once and shared by its servlets
+     */
+    public static synchronized StaticAssets forContext(ServletContext context) throws IOException {
+        StaticAssets assets = (StaticAssets) context.getAttribute(ATTRIBUTE);
+        if (assets == null) {
+            Map<String, byte[]> contents = new HashMap<>();
+            Set<String> paths = context.getResourcePaths(ASSET_DIR);
+            if (paths != null) {
+                for (String path : paths) {
+                    if (path.endsWith("/")) {
+                        continue;
+                    }
+                    try (InputStream in = context.getResourceAsStream(path)) {
+                        contents.put(path.substring(ASSET_DIR.length()), readFully(in));
+                    }
+                }
+            }
+            assets = new StaticAssets(context.getContextPath(), contents);
+            context.setAttribute(ATTRIBUTE, assets);
+            logger.info("Loaded " + contents.size() + " static assets");
+        }
+        return assets;
+    }
+
+    /**
+     * Fingerprinted URL of an asset, e.g. /ctx/assets/app.3f2a9c1b04de.css
+     */
+    public String url(String name) {
+        Asset asset = byName.get(name);
+        if (asset == null) {
+            throw new IllegalArgumentException("Unknown static asset: " + name);
+        }
+        return urlPrefix + asset.fingerprintedName;
+    }
+
+    /**
+     * Asset served under the given fingerprinted name, or null
+     */
+    public Asset find(String fingerprintedName) {
+        return byFingerprintedName.get(fingerprintedName);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * One immutable asset with its precomputed representations
+     */
+    public static final class Asset {
+        private final String name;
+        private final String fingerprintedName;
+        private final String contentType;
+        private final String etag;
+        private final String gzipEtag;
+        private final ByteBuffer identity;
+        private final ByteBuffer gzip;
+
+        Asset(String name, byte[] content) {
+            String hash = sha256Hex(content).substring(0, 12);
+            int dot = name.lastIndexOf('.');
+            this.name = name;
+            this.fingerprintedName = dot < 0 ? name + "." + hash : name.substring(0, dot) + "." + hash + name.substring(dot);
+            this.contentType = contentType(name);
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gz\"";
+            this.identity = ByteBuffer.wrap(content);
+            byte[] compressed = gzip(content);
+            this.gzip = compressed.length < content.length ? ByteBuffer.wrap(compressed) : null;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Strong ETag of the representation body(gzipped) returns; the two
+         * encodings differ byte for byte, so each has its own
+         */
+        public String getEtag(boolean gzipped) {
+            return gzipped && gzip != null ? gzipEtag : etag;
+        }
+
+        /**
+         * Body to send; an independent view of the shared bytes
+         */
+        public ByteBuffer body(boolean gzipped) {
+            return (gzipped && gzip != null ? gzip : identity).duplicate();
+        }
+
+        public boolean hasGzip() {
+            return gzip != null;
+        }
+
+        private static String contentType(String name) {
+            if (name.endsWith(".css")) {
+                return "text/css;charset=UTF-8";
+            }
+            if (name.endsWith(".js")) {
+                return "application/javascript;charset=UTF-8";
+            }
+            if (name.endsWith(".svg")) {
+                return "image/svg+xml";
+            }
+            return "application/octet-stream";
+        }
+
+        private static byte[] gzip(byte[] content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+            // One-off at startup, so the unpooled JDK stream at maximum compression is fine
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                gzip.write(content);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to compress asset", e);
+            }
+            return out.toByteArray();
+        }
+
+        private static String sha256Hex(byte[] content) {
+            try {
+                StringBuilder hex = new StringBuilder();
+                for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                    hex.append(String.format("%02x", b));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("Failed to fingerprint asset", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpService;
+import com.boatfuel.ejb.FuelUpStatistics;
+import org.apache.log4j.Logger;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the dashboard statistics cards as a small JSON document.
+ * Backed by the precomputed aggregates in FuelUpService.getStatistics, and
+ * revalidated through an ETag so unchanged statistics cost a 304.
+ */
+public class StatsServlet extends HttpServlet {
+
+    private static final Logger logger = Logger.getLogger(StatsServlet.class);
+
+    private FuelUpService fuelUpService;
+
+    /**
+     * Initialize servlet with EJB lookup (anti-pattern)
+     * Konveyor will flag: Manual JNDI EJB lookup, should use @EJB injection
+     */
+    @Override
+    public void init() throws ServletException {
+        try {
+            Context ctx = new InitialContext();
+            fuelUpService = (FuelUpService) ctx.lookup("java:global/boat-fuel-tracker/FuelUpService");
+        } catch (Exception e) {
+            logger.error("Failed to initialize EJB", e);
+            throw new ServletException("Cannot initialize EJB", e);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        HttpSession session = request.getSession(true);
+        String userId = (String) session.getAttribute("userId");
+
+        if (userId == null) {
+            // For testing: set a default userId if not in session
+            userId = "testuser";
+            session.setAttribute("userId", userId);
+        }
+
+        try {
+            String json = toJson(fuelUpService.getStatistics(userId));
+            String etag = "W/\"" + Integer.toHexString(json.hashCode()) + "\"";
+
+            // Per-user data: cacheable by the browser only, always revalidated
+            response.setHeader("Cache-Control", "private, no-cache");
+            response.setHeader("ETag", etag);
+
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            response.setContentType("application/json;charset=UTF-8");
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+
+        } catch (Exception e) {
+            logger.error("Error retrieving statistics", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Error retrieving statistics: " + e.getMessage());
+        }
+    }
+
+    static String toJson(FuelUpStatistics stats) {
+        return "{\"totalFillups\":" + stats.getTotalFillups()
+            + ",\"totalGallons\":" + number(stats.getTotalGallons())
+            + ",\"totalSpent\":" + number(stats.getTotalSpent())
+            + ",\"averagePricePerGallon\":" + number(stats.getAveragePricePerGallon())
+            + "}";
+    }
+
+    private static String number(BigDecimal value) {
+        return value == null ? "0" : value.toPlainString();
+    }
+}
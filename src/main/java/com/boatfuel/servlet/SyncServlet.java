@@ -0,0 +1,163 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpChanges;
+import com.boatfuel.ejb.FuelUpService;
+import com.boatfuel.entity.FuelUp;
+import org.apache.log4j.Logger;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+
+/**
+ * Delta sync for offline clients: GET /sync?since=&lt;token&gt;&amp;limit=&lt;n&gt;
+ * returns only the fuel-ups written and deleted after the token, as JSON,
+ * with the token to use on the next call. Tokens are opaque to the client
+ * and may be negative while a full resync pages through archived years.
+ */
+public class SyncServlet extends HttpServlet {
+
+    private static final Logger logger = Logger.getLogger(SyncServlet.class);
+
+    static final int DEFAULT_LIMIT = 500;
+    static final int MAX_LIMIT = 5000;
+
+    private FuelUpService fuelUpService;
+
+    /**
+     * Initialize servlet with EJB lookup (anti-pattern)
+     * Konveyor will flag: Manual JNDI EJB lookup, should use @EJB injection
+     */
+    @Override
+    public void init() throws ServletException {
+        try {
+            Context ctx = new InitialContext();
+            fuelUpService = (FuelUpService) ctx.lookup("java:global/boat-fuel-tracker/FuelUpService");
+        } catch (Exception e) {
+            logger.error("Failed to initialize EJB", e);
+            throw new ServletException("Cannot initialize EJB", e);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        HttpSession session = request.getSession(true);
+        String userId = (String) session.getAttribute("userId");
+
+        if (userId == null) {
+            // For testing: set a default userId if not in session
+            userId = "testuser";
+            session.setAttribute("userId", userId);
+        }
+
+        long token;
+        int limit;
+        try {
+            String since = request.getParameter("since");
+            String limitStr = request.getParameter("limit");
+            token = (since == null || since.isEmpty()) ? 0 : Long.parseLong(since);
+            limit = (limitStr == null || limitStr.isEmpty()) ? DEFAULT_LIMIT : Integer.parseInt(limitStr);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid sync token or limit");
+            return;
+        }
+        limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+
+        try {
+            byte[] body = toJson(fuelUpService.changesSince(userId, token, limit)).getBytes(StandardCharsets.UTF_8);
+            response.setHeader("Cache-Control", "private, no-store");
+            response.setContentType("application/json;charset=UTF-8");
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+
+        } catch (Exception e) {
+            logger.error("Error retrieving changes", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Error retrieving changes: " + e.getMessage());
+        }
+    }
+
+    static String toJson(FuelUpChanges changes) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"token\":\"").append(changes.getNextToken()).append('"')
+            .append(",\"hasMore\":").append(changes.isHasMore())
+            .append(",\"reset\":").append(changes.isResetRequired())
+            .append(",\"upserts\":[");
+        boolean first = true;
+        for (FuelUp fuelUp : changes.getUpserts()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"id\":").append(fuelUp.getId())
+                .append(",\"date\":").append(fuelUp.getDate() == null ? "null"
+                    : "\"" + dateFormat.format(fuelUp.getDate()) + "\"")
+                .append(",\"gallons\":").append(number(fuelUp.getGallons()))
+                .append(",\"pricePerGallon\":").append(number(fuelUp.getPricePerGallon()))
+                .append(",\"totalCost\":").append(number(fuelUp.getTotalCost()))
+                .append(",\"engineHours\":").append(number(fuelUp.getEngineHours()))
+                .append(",\"location\":").append(string(fuelUp.getLocation()))
+                .append(",\"notes\":").append(string(fuelUp.getNotes()))
+                .append(",\"latitude\":").append(fuelUp.getLatitude())
+                .append(",\"longitude\":").append(fuelUp.getLongitude())
+                .append('}');
+        }
+        json.append("],\"deleted\":[");
+        for (int i = 0; i < changes.getDeletedIds().size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(changes.getDeletedIds().get(i));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String number(BigDecimal value) {
+        return value == null ? "null" : value.toPlainString();
+    }
+
+    private static String string(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.boatfuel.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring mapping keys (user IDs) to shard IDs.
+ * Each shard owns VIRTUAL_NODES points on the ring, so adding a shard moves
+ * only about 1/n of the keys, spread evenly across the existing shards.
+ */
+public final class ConsistentHashRing {
+
+    static final int VIRTUAL_NODES = 160;
+
+    private final NavigableMap<Long, String> ring;
+    private final Set<String> shardIds;
+
+    private ConsistentHashRing(NavigableMap<Long, String> ring, Set<String> shardIds) {
+        this.ring = ring;
+        this.shardIds = shardIds;
+    }
+
+    public static ConsistentHashRing of(Iterable<String> shardIds) {
+        ConsistentHashRing ring = new ConsistentHashRing(new TreeMap<>(), new TreeSet<>());
+        for (String shardId : shardIds) {
+            ring = ring.withShard(shardId);
+        }
+        return ring;
+    }
+
+    /**
+     * New ring with the shard added
+     */
+    public ConsistentHashRing withShard(String shardId) {
+        TreeMap<Long, String> points = new TreeMap<>(ring);
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            points.put(hash(shardId + "#" + i), shardId);
+        }
+        TreeSet<String> ids = new TreeSet<>(shardIds);
+        ids.add(shardId);
+        return new ConsistentHashRing(points, ids);
+    }
+
+    /**
+     * New ring with the shard removed
+     */
+    public ConsistentHashRing withoutShard(String shardId) {
+        TreeMap<Long, String> points = new TreeMap<>(ring);
+        points.values().removeIf(shardId::equals);
+        TreeSet<String> ids = new TreeSet<>(shardIds);
+        ids.remove(shardId);
+        return new ConsistentHashRing(points, ids);
+    }
+
+    /**
+     * Shard owning the key: first ring point clockwise from the key's hash
+     */
+    public String shardFor(String key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("No shards configured");
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Set<String> getShardIds() {
+        return Collections.unmodifiableSet(shardIds);
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.boatfuel.shard;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+/**
+ * One database holding a subset of users and their fuel-ups
+ */
+public class Shard {
+
+    private final String id;
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public Shard(String id, DataSource dataSource) {
+        this(id, dataSource, null);
+    }
+
+    public Shard(String id, DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.id = id;
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Persistence unit bound to this shard, or null for JDBC-only shards
+     */
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+}
@@ -0,0 +1,131 @@
+package com.boatfuel.shard;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+
+/**
+ * Routes per-user work to the shard that owns the user.
+ *
+ * Ownership comes from a consistent hash ring over the user ID. The shard
+ * set is fixed for the life of a router. There is no online rebalancing:
+ * FuelUpServiceBean does not route through the router, so a migration
+ * could not keep its writes out. Adding a shard (which reassigns about
+ * 1/n of the users) means moving their rows with the application stopped
+ * and starting it with a router over the new set.
+ *
+ * Fuel-up IDs must be unique across shards (e.g. per-shard
+ * auto_increment_offset) so rows can move without key collisions.
+ */
+public class ShardRouter {
+
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final ConsistentHashRing ring;
+    private final ExecutorService scatterExecutor;
+
+    public ShardRouter(Collection<Shard> shards) {
+        for (Shard shard : shards) {
+            this.shards.put(shard.getId(), shard);
+        }
+        this.ring = ConsistentHashRing.of(new ArrayList<>(this.shards.keySet()));
+        this.scatterExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "boatfuel-shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Shard owning the user
+     */
+    public Shard shardFor(String userId) {
+        return shards.get(ring.shardFor(userId));
+    }
+
+    /**
+     * Run per-user work against the user's shard
+     */
+    public <T> T withUser(String userId, ShardCallback<T> work) throws SQLException {
+        return work.apply(shardFor(userId));
+    }
+
+    /**
+     * New EntityManager on the user's shard; the caller must close it
+     */
+    public EntityManager createEntityManager(String userId) {
+        Shard shard = shardFor(userId);
+        if (shard.getEntityManagerFactory() == null) {
+            throw new IllegalStateException("Shard " + shard.getId() + " has no persistence unit");
+        }
+        return shard.getEntityManagerFactory().createEntityManager();
+    }
+
+    /**
+     * Run a query on every shard in parallel and merge the partial results
+     */
+    public <T> T scatterGather(ShardQuery<T> query, BinaryOperator<T> merge) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (final Shard shard : getShards()) {
+            futures.add(scatterExecutor.submit(() -> {
+                try (Connection connection = shard.getDataSource().getConnection()) {
+                    return query.execute(connection);
+                }
+            }));
+        }
+
+        T result = null;
+        try {
+            for (Future<T> future : futures) {
+                T partial = future.get();
+                result = (result == null) ? partial : merge.apply(result, partial);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during scatter-gather", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Shard query failed", cause);
+        }
+        return result;
+    }
+
+    public Collection<Shard> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public void shutdown() {
+        scatterExecutor.shutdownNow();
+    }
+
+    /**
+     * Work against a single shard
+     */
+    public interface ShardCallback<T> {
+        T apply(Shard shard) throws SQLException;
+    }
+
+    /**
+     * Query run on each shard's connection during scatter-gather
+     */
+    public interface ShardQuery<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+}
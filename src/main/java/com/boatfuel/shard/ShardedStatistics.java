@@ -0,0 +1,69 @@
+package com.boatfuel.shard;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Admin-wide aggregates computed as a parallel scatter-gather across shards
+ */
+public class ShardedStatistics {
+
+    private static final String PARTIAL_SQL =
+        "SELECT COUNT(*), SUM(GALLONS), SUM(TOTAL_COST), SUM(PRICE_PER_GALLON) FROM FUEL_UPS " +
+        "WHERE DELETED_AT IS NULL";
+
+    private final ShardRouter router;
+
+    public ShardedStatistics(ShardRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * Totals across every user on every shard
+     */
+    public FuelUpStatistics fleetStatistics() throws SQLException {
+        Partial total = router.scatterGather(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(PARTIAL_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return new Partial(rs.getLong(1), nz(rs.getBigDecimal(2)), nz(rs.getBigDecimal(3)), nz(rs.getBigDecimal(4)));
+            }
+        }, Partial::merge);
+
+        BigDecimal average = total.count == 0
+            ? BigDecimal.ZERO
+            : total.sumPrice.divide(BigDecimal.valueOf(total.count), 6, RoundingMode.HALF_UP);
+        return new FuelUpStatistics((int) total.count, total.gallons, total.spent, average);
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * Mergeable per-shard totals; the average is derived only after merging
+     */
+    private static final class Partial {
+        final long count;
+        final BigDecimal gallons;
+        final BigDecimal spent;
+        final BigDecimal sumPrice;
+
+        Partial(long count, BigDecimal gallons, BigDecimal spent, BigDecimal sumPrice) {
+            this.count = count;
+            this.gallons = gallons;
+            this.spent = spent;
+            this.sumPrice = sumPrice;
+        }
+
+        Partial merge(Partial other) {
+            return new Partial(count + other.count, gallons.add(other.gallons),
+                spent.add(other.spent), sumPrice.add(other.sumPrice));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+import com.boatfuel.util.FileSystemHelper;
+import com.boatfuel.util.JNDILookupHelper;
+import org.apache.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs statistics queries off the caller's thread.
+ *
+ * Concurrent requests for the same user share one in-flight query
+ * (single-flight), a completed result is handed out again for a short
+ * freshness window, and at most maxConcurrent queries occupy executor
+ * threads at once; the rest wait in a queue rather than on a thread.
+ */
+public class AsyncStatisticsLoader {
+
+    private static final Logger logger = Logger.getLogger(AsyncStatisticsLoader.class);
+
+    public static final String CONCURRENCY_PROPERTY = "boatfuel.stats.asyncConcurrency";
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final long DEFAULT_FRESH_MILLIS = 2000;
+
+    private static volatile AsyncStatisticsLoader instance;
+
+    private final Executor executor;
+    private final long freshMillis;
+    private final Semaphore permits;
+
+    private final ConcurrentMap<String, CompletableFuture<FuelUpStatistics>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Fresh> recent = new ConcurrentHashMap<>();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    // Bumped by invalidate(); a load only caches its result if unchanged
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    public AsyncStatisticsLoader(Executor executor, int maxConcurrent, long freshMillis) {
+        this.executor = executor;
+        this.freshMillis = freshMillis;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * Shared loader on the container's managed executor, or a small private
+     * pool when none is bound (tests, standalone tools)
+     */
+    public static AsyncStatisticsLoader getInstance() {
+        if (instance == null) {
+            synchronized (AsyncStatisticsLoader.class) {
+                if (instance == null) {
+                    instance = new AsyncStatisticsLoader(resolveExecutor(), configuredConcurrency(), DEFAULT_FRESH_MILLIS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Statistics for a user: a fresh result, the query already running for
+     * the user, or a newly queued query
+     */
+    public CompletableFuture<FuelUpStatistics> load(String userId, Function<String, FuelUpStatistics> query) {
+        Fresh fresh = recent.get(userId);
+        if (fresh != null) {
+            if (System.currentTimeMillis() - fresh.completedAt <= freshMillis) {
+                return CompletableFuture.completedFuture(fresh.statistics);
+            }
+            recent.remove(userId, fresh);
+        }
+
+        CompletableFuture<FuelUpStatistics> future = new CompletableFuture<>();
+        CompletableFuture<FuelUpStatistics> running = inFlight.putIfAbsent(userId, future);
+        if (running != null) {
+            return running;
+        }
+
+        long version = versions.getOrDefault(userId, 0L);
+        waiting.add(() -> {
+            try {
+                FuelUpStatistics statistics = query.apply(userId);
+                // A write committed while the query ran may be missing from it
+                if (versions.getOrDefault(userId, 0L) == version) {
+                    recent.put(userId, new Fresh(statistics));
+                }
+                inFlight.remove(userId, future);
+                future.complete(statistics);
+            } catch (Throwable t) {
+                // Failures are not remembered; the next request retries
+                inFlight.remove(userId, future);
+                future.completeExceptionally(t);
+            }
+        });
+        drain();
+        return future;
+    }
+
+    /**
+     * Forget a user's fresh result, e.g. after a write. A query already
+     * running for the user still completes its callers, but is neither
+     * cached nor shared with later requests.
+     */
+    public void invalidate(String userId) {
+        versions.merge(userId, 1L, Long::sum);
+        recent.remove(userId);
+        inFlight.remove(userId);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Hand queued queries to the executor while permits are available
+     */
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable task = waiting.poll();
+            if (task == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Run on the caller rather than leave the future hanging
+                logger.warn("Statistics executor rejected task, running inline", e);
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    private static Executor resolveExecutor() {
+        try {
+            return JNDILookupHelper.lookupManagedExecutor();
+        } catch (Exception e) {
+            logger.warn("No managed executor bound, using a private statistics pool");
+            return Executors.newFixedThreadPool(DEFAULT_MAX_CONCURRENT, runnable -> {
+                Thread thread = new Thread(runnable, "statistics-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static int configuredConcurrency() {
+        String value = System.getProperty(CONCURRENCY_PROPERTY);
+        if (value == null) {
+            try {
+                value = FileSystemHelper.loadConfiguration().getProperty("stats.async.concurrency");
+            } catch (Exception e) {
+                logger.debug("No statistics configuration available", e);
+            }
+        }
+        try {
+            return value == null ? DEFAULT_MAX_CONCURRENT : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid stats.async.concurrency '" + value + "', using " + DEFAULT_MAX_CONCURRENT);
+            return DEFAULT_MAX_CONCURRENT;
+        }
+    }
+
+    private static final class Fresh {
+        final FuelUpStatistics statistics;
+        final long completedAt = System.currentTimeMillis();
+
+        Fresh(FuelUpStatistics statistics) {
+            this.statistics = statistics;
+        }
+    }
+}
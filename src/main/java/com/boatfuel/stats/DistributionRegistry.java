@@ -0,0 +1,151 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpDistribution;
+import com.boatfuel.entity.FuelUp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user and fleet-wide FuelUpSketch instances, seeded once from the
+ * database and then updated incrementally on every create.
+ *
+ * Sketches cannot remove values, so a delete drops the affected user's
+ * sketch to be reseeded on the next read. The fleet sketch is too costly
+ * to rebuild on a read path: a delete only marks it stale, it keeps being
+ * served, and HousekeepingBean rebuilds it in the background.
+ *
+ * Entries never expire, so a seed must not miss a write: every change
+ * bumps a version (per user, and for the fleet), a reader takes it
+ * before its query, and the seed is discarded if it has moved on.
+ */
+public class DistributionRegistry {
+
+    private static final DistributionRegistry INSTANCE = new DistributionRegistry();
+
+    private final ConcurrentMap<String, FuelUpSketch> users = new ConcurrentHashMap<>();
+    // Values come from one counter, so a dropped entry never reappears with an old version
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile long clearedAt;
+
+    private final Object fleetLock = new Object();
+    private volatile FuelUpSketch fleet;
+    private long fleetVersion;
+    private volatile boolean fleetStale;
+
+    public static DistributionRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Distribution for a user, or null when the user has not been seeded
+     */
+    public FuelUpDistribution get(String userId) {
+        FuelUpSketch sketch = users.get(userId);
+        return sketch == null ? null : sketch.toDistribution();
+    }
+
+    /**
+     * Current version of a user's rows; read it before loading a sketch
+     */
+    public long version(String userId) {
+        Long version = versions.get(userId);
+        return version == null ? clearedAt : version;
+    }
+
+    /**
+     * Seed a user's sketch loaded at the given version
+     * @return false if a change arrived since, and the sketch was dropped
+     */
+    public boolean seed(String userId, long version, FuelUpSketch sketch) {
+        // Changes bump the version inside compute on the same key, so they cannot slip in between
+        return users.compute(userId, (id, current) -> version(id) == version ? sketch : current) == sketch;
+    }
+
+    /**
+     * Fleet-wide distribution, or null when the fleet has not been seeded
+     */
+    public FuelUpDistribution getFleet() {
+        FuelUpSketch sketch = fleet;
+        return sketch == null ? null : sketch.toDistribution();
+    }
+
+    public long fleetVersion() {
+        synchronized (fleetLock) {
+            return fleetVersion;
+        }
+    }
+
+    /**
+     * Seed the fleet sketch loaded at the given version
+     * @return false if a change arrived since, and the sketch was dropped
+     */
+    public boolean seedFleet(long version, FuelUpSketch sketch) {
+        synchronized (fleetLock) {
+            if (fleetVersion != version) {
+                return false;
+            }
+            fleet = sketch;
+            fleetStale = false;
+            return true;
+        }
+    }
+
+    /**
+     * Whether the fleet sketch still counts deleted rows
+     */
+    public boolean isFleetStale() {
+        return fleetStale && fleet != null;
+    }
+
+    public void recordCreate(FuelUp fuelUp) {
+        if (fuelUp.getUser() == null || fuelUp.getUser().getUserId() == null) {
+            return;
+        }
+        users.compute(fuelUp.getUser().getUserId(), (userId, sketch) -> {
+            bump(userId);
+            if (sketch != null) {
+                sketch.add(fuelUp.getPricePerGallon(), fuelUp.getGallons());
+            }
+            return sketch;
+        });
+        synchronized (fleetLock) {
+            fleetVersion++;
+            if (fleet != null) {
+                fleet.add(fuelUp.getPricePerGallon(), fuelUp.getGallons());
+            }
+        }
+    }
+
+    public void recordDelete(FuelUp fuelUp) {
+        if (fuelUp.getUser() != null && fuelUp.getUser().getUserId() != null) {
+            users.compute(fuelUp.getUser().getUserId(), (userId, sketch) -> {
+                bump(userId);
+                return null;
+            });
+        }
+        synchronized (fleetLock) {
+            fleetVersion++;
+            fleetStale = true;
+        }
+    }
+
+    /**
+     * Drop every user sketch and mark the fleet sketch for a rebuild
+     */
+    public void clear() {
+        clearedAt = versionCounter.incrementAndGet();
+        versions.clear();
+        users.clear();
+        synchronized (fleetLock) {
+            fleetVersion++;
+            fleetStale = true;
+        }
+    }
+
+    private void bump(String userId) {
+        versions.put(userId, versionCounter.incrementAndGet());
+    }
+}
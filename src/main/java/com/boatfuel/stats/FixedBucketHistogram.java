@@ -0,0 +1,63 @@
+package com.boatfuel.stats;
+
+import java.io.Serializable;
+
+/**
+ * Fixed-width bucket histogram. Values below the lower bound count in the
+ * first bucket and values past the last bucket in the final (open-ended)
+ * bucket. Histograms with the same layout merge by adding counts.
+ */
+public class FixedBucketHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double lowerBound;
+    private final double bucketWidth;
+    private final long[] counts;
+    private long totalCount;
+
+    public FixedBucketHistogram(double lowerBound, double bucketWidth, int buckets) {
+        if (bucketWidth <= 0 || buckets < 1) {
+            throw new IllegalArgumentException("Invalid histogram layout");
+        }
+        this.lowerBound = lowerBound;
+        this.bucketWidth = bucketWidth;
+        this.counts = new long[buckets];
+    }
+
+    public synchronized void add(double value) {
+        int bucket = (int) Math.floor((value - lowerBound) / bucketWidth);
+        counts[Math.max(0, Math.min(counts.length - 1, bucket))]++;
+        totalCount++;
+    }
+
+    public void merge(FixedBucketHistogram other) {
+        if (other.lowerBound != lowerBound || other.bucketWidth != bucketWidth
+                || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bucket layouts");
+        }
+        long[] otherCounts = other.getCounts();
+        synchronized (this) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += otherCounts[i];
+                totalCount += otherCounts[i];
+            }
+        }
+    }
+
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getBucketWidth() {
+        return bucketWidth;
+    }
+}
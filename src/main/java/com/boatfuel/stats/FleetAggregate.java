@@ -0,0 +1,217 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FleetStatistics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Mergeable partial fleet aggregate over a range of FuelUpColumns rows.
+ *
+ * Everything is accumulated in primitives (fixed-point hundredths), so
+ * partials from different threads merge exactly and in any order. Per-user
+ * gallons cover only the contiguous user range the partial has seen.
+ */
+public class FleetAggregate {
+
+    /** Price histogram: $0.25 buckets from $0.00 to $10.00, plus one overflow bucket */
+    public static final int PRICE_BUCKET_HUNDREDTHS = 25;
+    public static final int PRICE_BUCKETS = 41;
+
+    long count;
+    long gallons;
+    long spent;
+    long priceSum;
+    long minPrice = Long.MAX_VALUE;
+    long maxPrice = Long.MIN_VALUE;
+    final long[] priceHistogram = new long[PRICE_BUCKETS];
+
+    int userBase = -1;
+    long[] userGallons = new long[0];
+
+    /**
+     * Accumulate rows [from, to)
+     */
+    void addRange(FuelUpColumns columns, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int firstUser = columns.userIndex[from];
+        int lastUser = columns.userIndex[to - 1];
+        userBase = firstUser;
+        userGallons = new long[lastUser - firstUser + 1];
+
+        long[] histogram = priceHistogram;
+        long localCount = 0, localGallons = 0, localSpent = 0, localPrice = 0;
+        long localMin = minPrice, localMax = maxPrice;
+        for (int i = from; i < to; i++) {
+            long g = columns.gallons[i];
+            long p = columns.pricePerGallon[i];
+            localCount++;
+            localGallons += g;
+            localSpent += columns.totalCost[i];
+            localPrice += p;
+            if (p < localMin) {
+                localMin = p;
+            }
+            if (p > localMax) {
+                localMax = p;
+            }
+            histogram[bucket(p)]++;
+            userGallons[columns.userIndex[i] - firstUser] += g;
+        }
+        count += localCount;
+        gallons += localGallons;
+        spent += localSpent;
+        priceSum += localPrice;
+        minPrice = localMin;
+        maxPrice = localMax;
+    }
+
+    /**
+     * Accumulate a single row into the fleet-wide totals
+     */
+    void add(long rowGallons, long rowPrice, long rowTotal) {
+        count++;
+        gallons += rowGallons;
+        spent += rowTotal;
+        priceSum += rowPrice;
+        minPrice = Math.min(minPrice, rowPrice);
+        maxPrice = Math.max(maxPrice, rowPrice);
+        priceHistogram[bucket(rowPrice)]++;
+    }
+
+    /**
+     * Take a single row back out of the fleet-wide totals
+     * @return false if the row held the minimum or maximum price, which is
+     *         then no longer known
+     */
+    boolean subtract(long rowGallons, long rowPrice, long rowTotal) {
+        count--;
+        gallons -= rowGallons;
+        spent -= rowTotal;
+        priceSum -= rowPrice;
+        priceHistogram[bucket(rowPrice)]--;
+        if (count <= 0) {
+            minPrice = Long.MAX_VALUE;
+            maxPrice = Long.MIN_VALUE;
+            return true;
+        }
+        return rowPrice != minPrice && rowPrice != maxPrice;
+    }
+
+    /**
+     * Fleet-wide totals of this aggregate, without the per-user gallons
+     */
+    FleetAggregate copyTotals() {
+        FleetAggregate copy = new FleetAggregate();
+        copy.count = count;
+        copy.gallons = gallons;
+        copy.spent = spent;
+        copy.priceSum = priceSum;
+        copy.minPrice = minPrice;
+        copy.maxPrice = maxPrice;
+        System.arraycopy(priceHistogram, 0, copy.priceHistogram, 0, PRICE_BUCKETS);
+        return copy;
+    }
+
+    /**
+     * Combine two partials into a new one
+     */
+    public FleetAggregate merge(FleetAggregate other) {
+        FleetAggregate merged = new FleetAggregate();
+        merged.count = count + other.count;
+        merged.gallons = gallons + other.gallons;
+        merged.spent = spent + other.spent;
+        merged.priceSum = priceSum + other.priceSum;
+        merged.minPrice = Math.min(minPrice, other.minPrice);
+        merged.maxPrice = Math.max(maxPrice, other.maxPrice);
+        for (int i = 0; i < PRICE_BUCKETS; i++) {
+            merged.priceHistogram[i] = priceHistogram[i] + other.priceHistogram[i];
+        }
+
+        if (userBase < 0) {
+            merged.userBase = other.userBase;
+            merged.userGallons = other.userGallons;
+        } else if (other.userBase < 0) {
+            merged.userBase = userBase;
+            merged.userGallons = userGallons;
+        } else {
+            int base = Math.min(userBase, other.userBase);
+            int end = Math.max(userBase + userGallons.length, other.userBase + other.userGallons.length);
+            long[] combined = new long[end - base];
+            for (int i = 0; i < userGallons.length; i++) {
+                combined[userBase - base + i] += userGallons[i];
+            }
+            for (int i = 0; i < other.userGallons.length; i++) {
+                combined[other.userBase - base + i] += other.userGallons[i];
+            }
+            merged.userBase = base;
+            merged.userGallons = combined;
+        }
+        return merged;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getGallonsHundredths() {
+        return gallons;
+    }
+
+    public long getSpentHundredths() {
+        return spent;
+    }
+
+    /**
+     * Convert to the fleet statistics DTO with the top N consumers by gallons
+     */
+    public FleetStatistics toStatistics(FuelUpColumns columns, int topN) {
+        return toStatistics(columns.userCount(), topConsumers(columns, topN));
+    }
+
+    FleetStatistics toStatistics(int userCount, List<FleetStatistics.TopConsumer> topConsumers) {
+        FleetStatistics stats = new FleetStatistics();
+        stats.setTotalFillups(count);
+        stats.setUserCount(userCount);
+        stats.setTotalGallons(money(gallons));
+        stats.setTotalSpent(money(spent));
+        stats.setAveragePricePerGallon(count == 0
+            ? BigDecimal.ZERO
+            : BigDecimal.valueOf(priceSum).divide(BigDecimal.valueOf(count * 100), 4, RoundingMode.HALF_UP));
+        stats.setMinPricePerGallon(count == 0 ? BigDecimal.ZERO : money(minPrice));
+        stats.setMaxPricePerGallon(count == 0 ? BigDecimal.ZERO : money(maxPrice));
+        stats.setPriceBucketWidth(money(PRICE_BUCKET_HUNDREDTHS));
+        stats.setPriceHistogram(priceHistogram.clone());
+        stats.setTopConsumers(topConsumers);
+        return stats;
+    }
+
+    private List<FleetStatistics.TopConsumer> topConsumers(FuelUpColumns columns, int topN) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> Long.compare(userGallons[a], userGallons[b]));
+        for (int i = 0; i < userGallons.length; i++) {
+            heap.offer(i);
+            if (heap.size() > topN) {
+                heap.poll();
+            }
+        }
+        List<FleetStatistics.TopConsumer> top = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            int i = heap.poll();
+            top.add(0, new FleetStatistics.TopConsumer(columns.userIds[userBase + i], money(userGallons[i])));
+        }
+        return top;
+    }
+
+    private static int bucket(long price) {
+        return (int) Math.min(PRICE_BUCKETS - 1, Math.max(0, price / PRICE_BUCKET_HUNDREDTHS));
+    }
+
+    static BigDecimal money(long hundredths) {
+        return BigDecimal.valueOf(hundredths, 2);
+    }
+}
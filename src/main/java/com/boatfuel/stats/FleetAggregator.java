@@ -0,0 +1,130 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.util.FileSystemHelper;
+import com.boatfuel.util.JNDILookupHelper;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel fleet aggregation: the rows are cut into one contiguous range
+ * per worker, each range is aggregated independently and the partials are
+ * merged in order.
+ *
+ * Workers run on the container's managed executor, so the threads belong
+ * to the application server and stop with it; a small private pool is used
+ * only when none is bound (tests, standalone tools).
+ */
+public class FleetAggregator {
+
+    private static final Logger logger = Logger.getLogger(FleetAggregator.class);
+
+    public static final String PARALLELISM_PROPERTY = "boatfuel.stats.fleetParallelism";
+
+    static final int SEQUENTIAL_THRESHOLD = 16 * 1024;
+
+    private static volatile ExecutorService executor;
+    private static volatile int parallelism;
+
+    private FleetAggregator() {
+    }
+
+    public static FleetAggregate aggregate(FuelUpColumns columns) {
+        if (columns.size() < 2 * SEQUENTIAL_THRESHOLD) {
+            return aggregateSequential(columns);
+        }
+        return aggregate(columns, executor(), parallelism);
+    }
+
+    public static FleetAggregate aggregate(FuelUpColumns columns, ExecutorService executor, int parallelism) {
+        int ranges = Math.max(1, Math.min(parallelism, columns.size() / SEQUENTIAL_THRESHOLD));
+        if (ranges == 1) {
+            return aggregateSequential(columns);
+        }
+
+        List<Future<FleetAggregate>> partials = new ArrayList<>(ranges);
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) columns.size() * r / ranges);
+            int to = (int) ((long) columns.size() * (r + 1) / ranges);
+            partials.add(executor.submit(() -> {
+                FleetAggregate aggregate = new FleetAggregate();
+                aggregate.addRange(columns, from, to);
+                return aggregate;
+            }));
+        }
+
+        FleetAggregate merged = new FleetAggregate();
+        try {
+            for (Future<FleetAggregate> partial : partials) {
+                merged = merged.merge(partial.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while aggregating fleet statistics", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to aggregate fleet statistics", e.getCause());
+        } finally {
+            for (Future<FleetAggregate> partial : partials) {
+                partial.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Single-threaded reference path
+     */
+    public static FleetAggregate aggregateSequential(FuelUpColumns columns) {
+        FleetAggregate aggregate = new FleetAggregate();
+        aggregate.addRange(columns, 0, columns.size());
+        return aggregate;
+    }
+
+    private static ExecutorService executor() {
+        if (executor == null) {
+            synchronized (FleetAggregator.class) {
+                if (executor == null) {
+                    parallelism = configuredParallelism();
+                    executor = resolveExecutor(parallelism);
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService resolveExecutor(int threads) {
+        try {
+            return JNDILookupHelper.lookupManagedExecutor();
+        } catch (Exception e) {
+            logger.warn("No managed executor bound, using a private fleet aggregation pool");
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "fleet-aggregator");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static int configuredParallelism() {
+        int fallback = Runtime.getRuntime().availableProcessors();
+        String value = System.getProperty(PARALLELISM_PROPERTY);
+        if (value == null) {
+            try {
+                value = FileSystemHelper.loadConfiguration().getProperty("stats.fleet.parallelism");
+            } catch (Exception e) {
+                logger.debug("No statistics configuration available", e);
+            }
+        }
+        try {
+            return value == null ? fallback : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid stats.fleet.parallelism '" + value + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
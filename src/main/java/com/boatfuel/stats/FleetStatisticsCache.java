@@ -0,0 +1,151 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FleetStatistics;
+import com.boatfuel.entity.FuelUp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Fleet statistics kept in memory: seeded once from FuelUpColumns (the
+ * FUEL_UPS rows and the archive) and then updated on every committed
+ * create and delete, so a read never scans the table.
+ *
+ * Deleting the cheapest or dearest fill-up leaves the price extremes
+ * unknown; the totals keep being served, marked stale, and HousekeepingBean
+ * rebuilds them in the background. As in DistributionRegistry, a reader
+ * takes the version before loading and the seed is discarded if it moved.
+ */
+public class FleetStatisticsCache {
+
+    private static final FleetStatisticsCache INSTANCE = new FleetStatisticsCache();
+
+    private final Object lock = new Object();
+    private FleetAggregate totals;
+    // User ID -> {fill-ups, gallons in hundredths}
+    private Map<String, long[]> users;
+    private long version;
+    private boolean stale;
+
+    public static FleetStatisticsCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fleet statistics with the top N consumers, or null when not seeded
+     */
+    public FleetStatistics get(int topN) {
+        synchronized (lock) {
+            if (totals == null) {
+                return null;
+            }
+            PriorityQueue<Map.Entry<String, long[]>> heap =
+                new PriorityQueue<>((a, b) -> Long.compare(a.getValue()[1], b.getValue()[1]));
+            for (Map.Entry<String, long[]> user : users.entrySet()) {
+                heap.offer(user);
+                if (heap.size() > topN) {
+                    heap.poll();
+                }
+            }
+            List<FleetStatistics.TopConsumer> top = new ArrayList<>();
+            while (!heap.isEmpty()) {
+                Map.Entry<String, long[]> user = heap.poll();
+                top.add(0, new FleetStatistics.TopConsumer(user.getKey(), FleetAggregate.money(user.getValue()[1])));
+            }
+            return totals.toStatistics(users.size(), top);
+        }
+    }
+
+    public long version() {
+        synchronized (lock) {
+            return version;
+        }
+    }
+
+    /**
+     * Seed from an aggregate of the columns loaded at the given version
+     * @return false if a change arrived since, and the seed was dropped
+     */
+    public boolean seed(long version, FleetAggregate aggregate, FuelUpColumns columns) {
+        Map<String, long[]> seeded = new HashMap<>(columns.userCount() * 2);
+        for (int i = 0; i < columns.size(); i++) {
+            long[] user = seeded.computeIfAbsent(columns.userIds[columns.userIndex[i]], id -> new long[2]);
+            user[0]++;
+            user[1] += columns.gallons[i];
+        }
+        synchronized (lock) {
+            if (this.version != version) {
+                return false;
+            }
+            totals = aggregate.copyTotals();
+            users = seeded;
+            stale = false;
+            return true;
+        }
+    }
+
+    /**
+     * Whether the served price extremes may be out of date
+     */
+    public boolean isStale() {
+        synchronized (lock) {
+            return stale && totals != null;
+        }
+    }
+
+    public void recordCreate(FuelUp fuelUp) {
+        if (fuelUp.getUser() == null || fuelUp.getUser().getUserId() == null) {
+            return;
+        }
+        long gallons = FuelUpColumns.hundredths(fuelUp.getGallons());
+        synchronized (lock) {
+            version++;
+            if (totals == null) {
+                return;
+            }
+            totals.add(gallons, FuelUpColumns.hundredths(fuelUp.getPricePerGallon()),
+                FuelUpColumns.hundredths(fuelUp.getTotalCost()));
+            long[] user = users.computeIfAbsent(fuelUp.getUser().getUserId(), id -> new long[2]);
+            user[0]++;
+            user[1] += gallons;
+        }
+    }
+
+    public void recordDelete(FuelUp fuelUp) {
+        if (fuelUp.getUser() == null || fuelUp.getUser().getUserId() == null) {
+            return;
+        }
+        long gallons = FuelUpColumns.hundredths(fuelUp.getGallons());
+        synchronized (lock) {
+            version++;
+            if (totals == null) {
+                return;
+            }
+            if (!totals.subtract(gallons, FuelUpColumns.hundredths(fuelUp.getPricePerGallon()),
+                    FuelUpColumns.hundredths(fuelUp.getTotalCost()))) {
+                stale = true;
+            }
+            long[] user = users.get(fuelUp.getUser().getUserId());
+            if (user != null) {
+                user[1] -= gallons;
+                if (--user[0] <= 0) {
+                    users.remove(fuelUp.getUser().getUserId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop in-flight seeds and mark the statistics for a rebuild, after rows
+     * moved between FUEL_UPS and the archive
+     */
+    public void clear() {
+        synchronized (lock) {
+            version++;
+            stale = true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented, primitive snapshot of fuel-up rows for fleet analytics.
+ * Money and volume are fixed-point hundredths; rows are ordered by user so
+ * any index range covers a contiguous range of user indexes.
+ */
+public class FuelUpColumns {
+
+    private static final String LOAD_SQL =
+        "SELECT USER_ID, GALLONS, PRICE_PER_GALLON, TOTAL_COST FROM FUEL_UPS WHERE DELETED_AT IS NULL";
+
+    private static final int FETCH_SIZE = 1000;
+
+    final String[] userIds;
+    final int[] userIndex;
+    final long[] gallons;
+    final long[] pricePerGallon;
+    final long[] totalCost;
+    final int size;
+
+    public FuelUpColumns(String[] userIds, int[] userIndex, long[] gallons, long[] pricePerGallon,
+                         long[] totalCost, int size) {
+        this.userIds = userIds;
+        this.userIndex = userIndex;
+        this.gallons = gallons;
+        this.pricePerGallon = pricePerGallon;
+        this.totalCost = totalCost;
+        this.size = size;
+    }
+
+    /**
+     * Stream every fuel-up into columns in one forward-only pass
+     */
+    public static FuelUpColumns load(Connection connection) throws SQLException {
+        Builder builder = new Builder();
+        loadHot(connection, builder);
+        return builder.build();
+    }
+
+    /**
+     * Every live fuel-up: the FUEL_UPS rows plus the archived years, which
+     * are decoded user by user
+     */
+    public static FuelUpColumns load(Connection connection, FuelUpArchiveStore archive)
+            throws SQLException, IOException {
+        Builder builder = new Builder();
+        loadHot(connection, builder);
+        if (archive != null) {
+            for (String userId : archive.getUserIds()) {
+                for (FuelUp row : archive.read(userId, null, null)) {
+                    builder.add(userId, hundredths(row.getGallons()), hundredths(row.getPricePerGallon()),
+                        hundredths(row.getTotalCost()));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    static long hundredths(BigDecimal value) {
+        return value == null ? 0 : hundredths(value.doubleValue());
+    }
+
+    private static long hundredths(double value) {
+        return Math.round(value * 100);
+    }
+
+    private static void loadHot(Connection connection, Builder builder) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(LOAD_SQL)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.add(rs.getString(1), hundredths(rs.getDouble(2)), hundredths(rs.getDouble(3)),
+                        hundredths(rs.getDouble(4)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects rows in any order; build() groups them by user with a
+     * counting sort, so the database does not have to sort them
+     */
+    static final class Builder {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> users = new ArrayList<>();
+        private int[] userIndex = new int[1024];
+        private long[] gallons = new long[1024];
+        private long[] price = new long[1024];
+        private long[] total = new long[1024];
+        private int size;
+
+        void add(String userId, long rowGallons, long rowPrice, long rowTotal) {
+            if (size == userIndex.length) {
+                int capacity = size * 2;
+                userIndex = Arrays.copyOf(userIndex, capacity);
+                gallons = Arrays.copyOf(gallons, capacity);
+                price = Arrays.copyOf(price, capacity);
+                total = Arrays.copyOf(total, capacity);
+            }
+            Integer index = indexes.get(userId);
+            if (index == null) {
+                index = users.size();
+                indexes.put(userId, index);
+                users.add(userId);
+            }
+            userIndex[size] = index;
+            gallons[size] = rowGallons;
+            price[size] = rowPrice;
+            total[size] = rowTotal;
+            size++;
+        }
+
+        FuelUpColumns build() {
+            int[] offsets = new int[users.size() + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[userIndex[i] + 1]++;
+            }
+            for (int u = 0; u < users.size(); u++) {
+                offsets[u + 1] += offsets[u];
+            }
+            int[] sortedUsers = new int[size];
+            long[] sortedGallons = new long[size];
+            long[] sortedPrice = new long[size];
+            long[] sortedTotal = new long[size];
+            for (int i = 0; i < size; i++) {
+                int target = offsets[userIndex[i]]++;
+                sortedUsers[target] = userIndex[i];
+                sortedGallons[target] = gallons[i];
+                sortedPrice[target] = price[i];
+                sortedTotal[target] = total[i];
+            }
+            return new FuelUpColumns(users.toArray(new String[0]), sortedUsers, sortedGallons, sortedPrice,
+                sortedTotal, size);
+        }
+    }
+}
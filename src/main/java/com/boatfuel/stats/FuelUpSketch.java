@@ -0,0 +1,125 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpDistribution;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Price-per-gallon and gallons-per-fill sketches for one user or the fleet:
+ * a t-digest for percentiles and a fixed-bucket histogram for each.
+ *
+ * The rendered distribution is cached until the next write, so repeated
+ * p50/p90/p99 reads are constant time.
+ */
+public class FuelUpSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** $0.25 price buckets up to $10.00, then open-ended */
+    public static final double PRICE_BUCKET_WIDTH = 0.25;
+    public static final int PRICE_BUCKETS = 41;
+
+    /** 10 gallon buckets up to 500 gallons, then open-ended */
+    public static final double GALLONS_BUCKET_WIDTH = 10;
+    public static final int GALLONS_BUCKETS = 51;
+
+    private final TDigest priceDigest = new TDigest();
+    private final TDigest gallonsDigest = new TDigest();
+    private final FixedBucketHistogram priceHistogram =
+        new FixedBucketHistogram(0, PRICE_BUCKET_WIDTH, PRICE_BUCKETS);
+    private final FixedBucketHistogram gallonsHistogram =
+        new FixedBucketHistogram(0, GALLONS_BUCKET_WIDTH, GALLONS_BUCKETS);
+
+    private static final String USER_SQL =
+        "SELECT PRICE_PER_GALLON, GALLONS FROM FUEL_UPS WHERE USER_ID = ? AND DELETED_AT IS NULL";
+    private static final String FLEET_SQL =
+        "SELECT PRICE_PER_GALLON, GALLONS FROM FUEL_UPS WHERE DELETED_AT IS NULL";
+
+    private transient volatile FuelUpDistribution snapshot;
+
+    /**
+     * Build a sketch in one streaming pass over a user's rows, or over all
+     * rows when userId is null
+     */
+    public static FuelUpSketch load(Connection connection, String userId) throws SQLException {
+        FuelUpSketch sketch = new FuelUpSketch();
+        try (PreparedStatement stmt = connection.prepareStatement(userId == null ? FLEET_SQL : USER_SQL)) {
+            if (userId != null) {
+                stmt.setString(1, userId);
+            }
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sketch.add(rs.getBigDecimal(1), rs.getBigDecimal(2));
+                }
+            }
+        }
+        return sketch;
+    }
+
+    public void add(BigDecimal pricePerGallon, BigDecimal gallons) {
+        synchronized (this) {
+            if (pricePerGallon != null) {
+                double price = pricePerGallon.doubleValue();
+                priceDigest.add(price);
+                priceHistogram.add(price);
+            }
+            if (gallons != null) {
+                double volume = gallons.doubleValue();
+                gallonsDigest.add(volume);
+                gallonsHistogram.add(volume);
+            }
+            snapshot = null;
+        }
+    }
+
+    public synchronized void merge(FuelUpSketch other) {
+        priceDigest.merge(other.priceDigest);
+        gallonsDigest.merge(other.gallonsDigest);
+        priceHistogram.merge(other.priceHistogram);
+        gallonsHistogram.merge(other.gallonsHistogram);
+        snapshot = null;
+    }
+
+    public FuelUpDistribution toDistribution() {
+        FuelUpDistribution current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = render();
+            }
+            return snapshot;
+        }
+    }
+
+    private FuelUpDistribution render() {
+        FuelUpDistribution distribution = new FuelUpDistribution();
+        distribution.setCount(Math.max(priceDigest.size(), gallonsDigest.size()));
+        distribution.setPriceP50(value(priceDigest, 0.50, 3));
+        distribution.setPriceP90(value(priceDigest, 0.90, 3));
+        distribution.setPriceP99(value(priceDigest, 0.99, 3));
+        distribution.setPriceBucketWidth(BigDecimal.valueOf(PRICE_BUCKET_WIDTH));
+        distribution.setPriceHistogram(priceHistogram.getCounts());
+        distribution.setGallonsP50(value(gallonsDigest, 0.50, 2));
+        distribution.setGallonsP90(value(gallonsDigest, 0.90, 2));
+        distribution.setGallonsP99(value(gallonsDigest, 0.99, 2));
+        distribution.setGallonsBucketWidth(BigDecimal.valueOf(GALLONS_BUCKET_WIDTH));
+        distribution.setGallonsHistogram(gallonsHistogram.getCounts());
+        return distribution;
+    }
+
+    private static BigDecimal value(TDigest digest, double q, int scale) {
+        double estimate = digest.quantile(q);
+        return Double.isNaN(estimate)
+            ? BigDecimal.ZERO
+            : BigDecimal.valueOf(estimate).setScale(scale, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,162 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+import com.boatfuel.entity.FuelUp;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precomputed per-user fuel-up aggregates backing the dashboard statistics.
+ *
+ * An entry is seeded from one aggregate query and then kept current by
+ * applying each committed create/delete as a delta, so reads never touch
+ * the database. Entries expire after a fixed time to bound any drift from
+ * writes that bypass the service.
+ *
+ * Deltas for a user without an entry are dropped, so a write committed
+ * while a seed query runs would be missing from the seeded totals. Every
+ * delta bumps the user's version instead; a reader takes the version
+ * before its query and the seed is discarded if it has moved on.
+ */
+public class StatisticsAggregateCache {
+
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final StatisticsAggregateCache INSTANCE = new StatisticsAggregateCache(DEFAULT_TTL_MILLIS);
+
+    private final ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    // Values come from one counter, so a dropped entry never reappears with an old version
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile long clearedAt;
+    private final long ttlMillis;
+
+    public StatisticsAggregateCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static StatisticsAggregateCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Cached statistics, or null when the user has no live entry
+     */
+    public FuelUpStatistics get(String userId) {
+        Aggregate aggregate = aggregates.get(userId);
+        if (aggregate == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - aggregate.loadedAt > ttlMillis) {
+            aggregates.remove(userId, aggregate);
+            return null;
+        }
+        return aggregate.toStatistics();
+    }
+
+    /**
+     * Current version of a user's totals; read it before the seed query
+     */
+    public long version(String userId) {
+        Long version = versions.get(userId);
+        return version == null ? clearedAt : version;
+    }
+
+    /**
+     * Seed a user's entry from totals queried at the given version
+     * @return false if a delta arrived since, and the totals were dropped
+     */
+    public boolean seed(String userId, long version, int count, BigDecimal totalGallons, BigDecimal totalSpent,
+                        BigDecimal sumPrice) {
+        Aggregate fresh = new Aggregate(count, nz(totalGallons), nz(totalSpent), nz(sumPrice));
+        // Deltas bump the version inside compute on the same key, so they cannot slip in between
+        return aggregates.compute(userId, (id, current) -> version(id) == version ? fresh : current) == fresh;
+    }
+
+    public void recordCreate(FuelUp fuelUp) {
+        apply(fuelUp, 1);
+    }
+
+    public void recordDelete(FuelUp fuelUp) {
+        apply(fuelUp, -1);
+    }
+
+    public void invalidate(String userId) {
+        aggregates.compute(userId, (id, current) -> {
+            bump(id);
+            return null;
+        });
+    }
+
+    public void clear() {
+        clearedAt = versionCounter.incrementAndGet();
+        versions.clear();
+        aggregates.clear();
+    }
+
+    private void bump(String userId) {
+        versions.put(userId, versionCounter.incrementAndGet());
+    }
+
+    private void apply(FuelUp fuelUp, int sign) {
+        if (fuelUp.getUser() == null || fuelUp.getUser().getUserId() == null) {
+            return;
+        }
+        // Only live entries are updated; a missing entry is seeded on the next read
+        aggregates.compute(fuelUp.getUser().getUserId(), (userId, current) -> {
+            bump(userId);
+            return current == null ? null : current.plus(
+                sign,
+                nz(fuelUp.getGallons()),
+                nz(fuelUp.getTotalCost()),
+                nz(fuelUp.getPricePerGallon()));
+        });
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * Immutable running totals; replaced atomically on every delta
+     */
+    private static final class Aggregate {
+        final int count;
+        final BigDecimal totalGallons;
+        final BigDecimal totalSpent;
+        final BigDecimal sumPrice;
+        final long loadedAt;
+
+        Aggregate(int count, BigDecimal totalGallons, BigDecimal totalSpent, BigDecimal sumPrice) {
+            this(count, totalGallons, totalSpent, sumPrice, System.currentTimeMillis());
+        }
+
+        private Aggregate(int count, BigDecimal totalGallons, BigDecimal totalSpent, BigDecimal sumPrice, long loadedAt) {
+            this.count = count;
+            this.totalGallons = totalGallons;
+            this.totalSpent = totalSpent;
+            this.sumPrice = sumPrice;
+            this.loadedAt = loadedAt;
+        }
+
+        Aggregate plus(int sign, BigDecimal gallons, BigDecimal cost, BigDecimal price) {
+            if (sign < 0) {
+                return new Aggregate(Math.max(0, count - 1), totalGallons.subtract(gallons),
+                    totalSpent.subtract(cost), sumPrice.subtract(price), loadedAt);
+            }
+            return new Aggregate(count + 1, totalGallons.add(gallons),
+                totalSpent.add(cost), sumPrice.add(price), loadedAt);
+        }
+
+        FuelUpStatistics toStatistics() {
+            BigDecimal average = count == 0
+                ? BigDecimal.ZERO
+                : sumPrice.divide(BigDecimal.valueOf(count), 6, RoundingMode.HALF_UP);
+            return new FuelUpStatistics(count, totalGallons, totalSpent, average);
+        }
+    }
+}
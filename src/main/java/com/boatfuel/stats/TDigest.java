@@ -0,0 +1,209 @@
+package com.boatfuel.stats;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest (Dunning) for streaming quantile estimates.
+ *
+ * Values are buffered and periodically merged into at most ~compression
+ * centroids, which are kept small near the tails so p90/p99 stay accurate.
+ * Memory and query cost are bounded by the compression, not by the number
+ * of values seen. Digests are serializable and merge with each other.
+ */
+public class TDigest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int bufferCount;
+
+    private double totalWeight;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public synchronized void add(double value, double weight) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        min = Double.isNaN(min) ? value : Math.min(min, value);
+        max = Double.isNaN(max) ? value : Math.max(max, value);
+    }
+
+    /**
+     * Fold another digest's centroids into this one. Centroid means lie
+     * inside the other digest's range, so its min and max are carried over
+     * explicitly to keep the tails exact.
+     */
+    public void merge(TDigest other) {
+        double[] otherMeans;
+        double[] otherWeights;
+        double otherMin;
+        double otherMax;
+        synchronized (other) {
+            other.compress();
+            otherMeans = Arrays.copyOf(other.means, other.centroidCount);
+            otherWeights = Arrays.copyOf(other.weights, other.centroidCount);
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            for (int i = 0; i < otherMeans.length; i++) {
+                add(otherMeans[i], otherWeights[i]);
+            }
+            if (!Double.isNaN(otherMin)) {
+                min = Double.isNaN(min) ? otherMin : Math.min(min, otherMin);
+                max = Double.isNaN(max) ? otherMax : Math.max(max, otherMax);
+            }
+        }
+    }
+
+    /**
+     * Estimated value at quantile q (0..1), or NaN when empty
+     */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * (index / (weights[0] / 2));
+        }
+
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step > index) {
+                double fraction = (index - cumulative) / step;
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            cumulative += step;
+        }
+
+        double lastHalf = weights[centroidCount - 1] / 2;
+        double fraction = lastHalf == 0 ? 1 : Math.min(1, (index - cumulative) / lastHalf);
+        return means[centroidCount - 1] + fraction * (max - means[centroidCount - 1]);
+    }
+
+    public synchronized long size() {
+        return Math.round(totalWeight);
+    }
+
+    public synchronized double getMin() {
+        return min;
+    }
+
+    public synchronized double getMax() {
+        return max;
+    }
+
+    synchronized int centroidCount() {
+        compress();
+        return centroidCount;
+    }
+
+    /**
+     * Merge buffered values with the existing centroids in one sorted pass
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+        int n = centroidCount + bufferCount;
+        double[] allMeans = new double[n];
+        double[] allWeights = new double[n];
+        System.arraycopy(means, 0, allMeans, 0, centroidCount);
+        System.arraycopy(weights, 0, allWeights, 0, centroidCount);
+        System.arraycopy(bufferMeans, 0, allMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, allWeights, centroidCount, bufferCount);
+        bufferCount = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        int out = 0;
+        double soFar = 0;
+        double currentMean = allMeans[order[0]];
+        double currentWeight = allWeights[order[0]];
+        double qLimit = quantileLimit(0);
+        for (int k = 1; k < n; k++) {
+            int i = order[k];
+            double proposed = currentWeight + allWeights[i];
+            if ((soFar + proposed) / totalWeight <= qLimit) {
+                currentMean += (allMeans[i] - currentMean) * allWeights[i] / proposed;
+                currentWeight = proposed;
+            } else {
+                out = emit(out, currentMean, currentWeight);
+                soFar += currentWeight;
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+                qLimit = quantileLimit(soFar / totalWeight);
+            }
+        }
+        centroidCount = emit(out, currentMean, currentWeight);
+    }
+
+    private int emit(int index, double mean, double weight) {
+        if (index == means.length) {
+            means = Arrays.copyOf(means, index * 2);
+            weights = Arrays.copyOf(weights, index * 2);
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    /**
+     * Upper quantile a centroid starting at q may reach: one unit of the k1
+     * scale function k(q) = compression / (2 pi) * asin(2q - 1)
+     */
+    private double quantileLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        double limit = (Math.sin(Math.min(k * 2 * Math.PI / compression, Math.PI / 2)) + 1) / 2;
+        return Math.min(1, limit);
+    }
+}
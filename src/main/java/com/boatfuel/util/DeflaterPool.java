@@ -0,0 +1,47 @@
+package com.boatfuel.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of raw (nowrap) Deflaters.
+ *
+ * Every Deflater holds a native zlib stream (~256 KB) that is only freed
+ * by end() or finalization, so allocating one per response churns native
+ * memory under load. Borrowed instances are reset on release; when the
+ * pool is full the surplus instance is ended straight away.
+ */
+public class DeflaterPool {
+
+    private static final DeflaterPool INSTANCE =
+        new DeflaterPool(Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final int level;
+    private final BlockingQueue<Deflater> idle;
+
+    public DeflaterPool(int level, int maxIdle) {
+        this.level = level;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+    }
+
+    public static DeflaterPool getInstance() {
+        return INSTANCE;
+    }
+
+    public Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -1,10 +1,18 @@
 package com.boatfuel.util;
 
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.audit.AuditLogStore;
+import com.boatfuel.search.FuelUpSearchIndex;
 import org.apache.log4j.Logger;
 import org.jboss.vfs.VFS;
 import org.jboss.vfs.VirtualFile;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Properties;
 
 /**
@@ -23,6 +31,11 @@ public class FileSystemHelper {
     private static final String LOG_DIR = "/var/log/boatfuel";
     private static final String EXPORT_DIR = "C:\\BoatFuel\\exports"; // Windows path
     private static final String TEMP_DIR = "/tmp/boatfuel";
+    private static final String DATA_DIR = "/opt/boatfuel/data";
+
+    private static volatile AuditLogStore auditLogStore;
+    private static volatile FuelUpSearchIndex searchIndex;
+    private static volatile FuelUpArchiveStore archiveStore;
 
     /**
      * Load configuration from file system (anti-pattern)
@@ -88,10 +101,19 @@ public class FileSystemHelper {
     }
 
     /**
-     * Using JBoss VFS API (vendor lock-in)
+     * Read a file, memory-mapping it when the path is on the local file system.
+     * JBoss VFS is only used as a fallback for virtual paths (vendor lock-in)
      * Konveyor will flag: JBoss-specific API, should use standard Java NIO
      */
     public static String readFileUsingJBossVFS(String path) throws IOException {
+        Path physicalPath = toPhysicalPath(path);
+        if (physicalPath != null) {
+            logger.debug("Reading file using memory mapping: " + path);
+            try (MappedFileReader reader = MappedFileReader.open(physicalPath)) {
+                return reader.decode(StandardCharsets.UTF_8);
+            }
+        }
+
         logger.info("Reading file using JBoss VFS: " + path);
 
         VirtualFile virtualFile = VFS.getChild(path);
@@ -100,39 +122,135 @@ public class FileSystemHelper {
             throw new FileNotFoundException("File not found: " + path);
         }
 
-        try (InputStream is = virtualFile.openStream();
-             BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+        try (InputStream is = virtualFile.openStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(8192);
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = is.read(chunk)) != -1) {
+                content.write(chunk, 0, read);
             }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
 
-            return content.toString();
+    /**
+     * Memory-map a local file for zero-copy access (large imports, templates)
+     * Caller must close the returned reader
+     */
+    public static MappedFileReader openMappedFile(String path) throws IOException {
+        Path physicalPath = toPhysicalPath(path);
+        if (physicalPath == null) {
+            throw new FileNotFoundException("Not a local file: " + path);
         }
+        return MappedFileReader.open(physicalPath);
     }
 
     /**
-     * Write log to file system (anti-pattern)
-     * Konveyor will flag: File system logging, hardcoded paths
+     * Resolve a path to a regular local file, or null for virtual/missing paths
      */
-    public static void writeAuditLog(String message) {
-        File logDir = new File(LOG_DIR);
-        if (!logDir.exists()) {
-            logDir.mkdirs();
+    private static Path toPhysicalPath(String path) {
+        try {
+            Path candidate = Paths.get(path);
+            return Files.isRegularFile(candidate) ? candidate : null;
+        } catch (InvalidPathException e) {
+            return null;
         }
+    }
 
-        File logFile = new File(logDir, "audit.log");
+    /**
+     * Write an unattributed audit entry
+     * Konveyor will flag: File system logging, hardcoded paths
+     */
+    public static void writeAuditLog(String message) {
+        writeAuditLog(null, "EVENT", message);
+    }
 
-        try (FileWriter writer = new FileWriter(logFile, true)) {
-            String timestamp = new java.util.Date().toString();
-            writer.write(timestamp + " - " + message + "\n");
+    /**
+     * Append a structured entry to the segmented audit store under LOG_DIR
+     * Konveyor will flag: File system logging, hardcoded paths
+     */
+    public static void writeAuditLog(String userId, String action, String message) {
+        try {
+            getAuditLogStore().append(userId, action, message);
         } catch (IOException e) {
             logger.error("Failed to write audit log", e);
         }
     }
 
+    /**
+     * Audit store rooted at the hardcoded log directory, opened on first use
+     */
+    public static AuditLogStore getAuditLogStore() throws IOException {
+        AuditLogStore store = auditLogStore;
+        if (store == null) {
+            synchronized (FileSystemHelper.class) {
+                store = auditLogStore;
+                if (store == null) {
+                    store = new AuditLogStore(new File(LOG_DIR, "audit"));
+                    auditLogStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Full-text search index rooted at the hardcoded data directory, opened on first use
+     */
+    public static FuelUpSearchIndex getSearchIndex() throws IOException {
+        FuelUpSearchIndex index = searchIndex;
+        if (index == null) {
+            synchronized (FileSystemHelper.class) {
+                index = searchIndex;
+                if (index == null) {
+                    index = new FuelUpSearchIndex(new File(DATA_DIR, "search"));
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Yearly fuel-up archives under the data directory (hardcoded)
+     */
+    public static FuelUpArchiveStore getArchiveStore() {
+        FuelUpArchiveStore store = archiveStore;
+        if (store == null) {
+            synchronized (FileSystemHelper.class) {
+                store = archiveStore;
+                if (store == null) {
+                    store = new FuelUpArchiveStore(new File(DATA_DIR, "archive"));
+                    archiveStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Write-ahead log directory for write-behind ingestion (hardcoded)
+     */
+    public static File getIngestDirectory() {
+        return new File(DATA_DIR, "ingest");
+    }
+
+    /**
+     * Monthly report output directory: -Dboatfuel.report.dir, then
+     * report.directory from the configuration, then under the data directory
+     */
+    public static File getReportDirectory() {
+        String dir = System.getProperty("boatfuel.report.dir");
+        if (dir == null) {
+            try {
+                dir = loadConfiguration().getProperty("report.directory");
+            } catch (IOException e) {
+                logger.debug("No report configuration available", e);
+            }
+        }
+        return dir == null ? new File(DATA_DIR, "reports") : new File(dir);
+    }
+
     /**
      * Get temp directory (hardcoded)
      */
@@ -0,0 +1,44 @@
+package com.boatfuel.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Static content deflated once, ending on a byte boundary without a final
+ * block, so it can be spliced into any PooledGzipOutputStream.
+ */
+public final class GzipSegment {
+
+    private final byte[] original;
+    private final byte[] compressed;
+
+    private GzipSegment(byte[] original, byte[] compressed) {
+        this.original = original;
+        this.compressed = compressed;
+    }
+
+    public static GzipSegment compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+            byte[] buffer = new byte[8192];
+            int written;
+            do {
+                written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, written);
+            } while (written == buffer.length || !deflater.needsInput());
+            return new GzipSegment(data.clone(), out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] getOriginal() {
+        return original;
+    }
+
+    public byte[] getCompressed() {
+        return compressed;
+    }
+}
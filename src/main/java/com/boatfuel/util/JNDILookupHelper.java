@@ -1,11 +1,14 @@
 package com.boatfuel.util;
 
+import com.boatfuel.jdbc.ApplicationConnectionPool;
 import org.apache.log4j.Logger;
 
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
+import javax.transaction.TransactionSynchronizationRegistry;
 import java.util.Hashtable;
 
 /**
@@ -37,6 +40,11 @@ public class JNDILookupHelper {
      */
     public static DataSource lookupDataSource() throws NamingException {
         try {
+            // Application-managed, instrumented pool when configured
+            if (ApplicationConnectionPool.isEnabled()) {
+                return ApplicationConnectionPool.getDataSource();
+            }
+
             Context ctx = getInitialContext();
 
             // Try WebSphere-specific JNDI first (vendor lock-in)
@@ -56,6 +64,22 @@ public class JNDILookupHelper {
         }
     }
 
+    /**
+     * Lookup the container's default managed executor (Java EE 7)
+     * Konveyor will flag: Hardcoded JNDI, not using @Resource injection
+     */
+    public static ManagedExecutorService lookupManagedExecutor() throws NamingException {
+        return (ManagedExecutorService) new InitialContext().lookup("java:comp/DefaultManagedExecutorService");
+    }
+
+    /**
+     * Lookup the container's transaction synchronization registry (JTA 1.1)
+     * Konveyor will flag: Hardcoded JNDI, not using @Resource injection
+     */
+    public static TransactionSynchronizationRegistry lookupTransactionSynchronizationRegistry() throws NamingException {
+        return (TransactionSynchronizationRegistry) new InitialContext().lookup("java:comp/TransactionSynchronizationRegistry");
+    }
+
     /**
      * Create InitialContext with WebSphere-specific configuration
      * Konveyor will flag: Vendor-specific context factory, hardcoded URLs
@@ -0,0 +1,191 @@
+package com.boatfuel.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only memory-mapped view of a file on the local file system.
+ * The file is mapped once with FileChannel.map and then exposed as a
+ * ByteBuffer, a CharSequence or a line iterator without copying the content.
+ *
+ * The CharSequence views map each byte to one char (ISO-8859-1), which is
+ * exact for ASCII import files and templates; use decode() for multi-byte text.
+ */
+public final class MappedFileReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private MappedFileReader(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Map the given file read-only
+     */
+    public static MappedFileReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + path + " (" + size + " bytes)");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedFileReader(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Independent read-only view over the whole mapping (position 0, limit size)
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Byte-per-char view over the whole mapping
+     */
+    public CharSequence asCharSequence() {
+        return new ByteCharSequence(buffer, 0, buffer.capacity());
+    }
+
+    /**
+     * Decode the whole file into a String (one copy)
+     */
+    public String decode(Charset charset) {
+        return charset.decode(asByteBuffer()).toString();
+    }
+
+    /**
+     * Iterate over lines without allocating per line. The returned iterator
+     * hands out the same CharSequence instance on every call to next(), so
+     * callers must copy (toString) a line if they need to keep it.
+     * Line terminators (\n or \r\n) are not part of the line.
+     */
+    public LineIterator lines() {
+        return new LineIterator(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Iterator over the lines of a mapping, reusing a single flyweight line
+     */
+    public static final class LineIterator implements Iterator<CharSequence> {
+
+        private final ByteBuffer source;
+        private final ByteCharSequence line;
+        private int position;
+        private int lineNumber;
+
+        LineIterator(ByteBuffer source) {
+            this.source = source;
+            this.line = new ByteCharSequence(source, 0, 0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < source.capacity();
+        }
+
+        @Override
+        public CharSequence next() {
+            int limit = source.capacity();
+            if (position >= limit) {
+                throw new NoSuchElementException();
+            }
+
+            int start = position;
+            int end = start;
+            while (end < limit && source.get(end) != '\n') {
+                end++;
+            }
+            position = end < limit ? end + 1 : end;
+
+            if (end > start && source.get(end - 1) == '\r') {
+                end--;
+            }
+
+            lineNumber++;
+            line.reset(start, end - start);
+            return line;
+        }
+
+        /**
+         * 1-based number of the line last returned by next()
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+    }
+
+    /**
+     * CharSequence over a region of a ByteBuffer, one char per byte
+     */
+    static final class ByteCharSequence implements CharSequence {
+
+        private final ByteBuffer source;
+        private int offset;
+        private int length;
+
+        ByteCharSequence(ByteBuffer source, int offset, int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        void reset(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return (char) (source.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new ByteCharSequence(source, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (source.get(offset + i) & 0xFF);
+            }
+            return new String(chars);
+        }
+    }
+}
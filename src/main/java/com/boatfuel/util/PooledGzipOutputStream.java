@@ -0,0 +1,140 @@
+package com.boatfuel.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * GZIP output stream on a Deflater borrowed from a DeflaterPool (the JDK
+ * GZIPOutputStream always allocates its own).
+ *
+ * flush() emits a sync flush so partial responses reach the client, and
+ * writePrecompressed() splices in a segment deflated ahead of time; the
+ * Deflater is reset after a splice because its history no longer matches
+ * what the client has decoded.
+ */
+public class PooledGzipOutputStream extends FilterOutputStream {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final DeflaterPool pool;
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[8192];
+    private Deflater deflater;
+    private long size;
+
+    public PooledGzipOutputStream(OutputStream out, DeflaterPool pool) throws IOException {
+        super(out);
+        this.pool = pool;
+        this.deflater = pool.borrow();
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return;
+        }
+        crc.update(b, off, len);
+        size += len;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain(Deflater.NO_FLUSH);
+        }
+    }
+
+    /**
+     * Append a segment compressed by GzipSegment.compress
+     */
+    public void writePrecompressed(GzipSegment segment) throws IOException {
+        ensureOpen();
+        sync();
+        out.write(segment.getCompressed());
+        crc.update(segment.getOriginal(), 0, segment.getOriginal().length);
+        size += segment.getOriginal().length;
+        deflater.reset();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        sync();
+        out.flush();
+    }
+
+    /**
+     * Write the final block and trailer and return the Deflater to the pool
+     */
+    public void finish() throws IOException {
+        if (deflater == null) {
+            return;
+        }
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) size);
+        } finally {
+            pool.release(deflater);
+            deflater = null;
+        }
+    }
+
+    /**
+     * Return the Deflater to the pool without ending the gzip stream, for a
+     * response that failed part-way
+     */
+    public void abandon() {
+        if (deflater != null) {
+            pool.release(deflater);
+            deflater = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void sync() throws IOException {
+        int written;
+        do {
+            written = drain(Deflater.SYNC_FLUSH);
+        } while (written == buffer.length);
+    }
+
+    private int drain(int flush) throws IOException {
+        int written = deflater.deflate(buffer, 0, buffer.length, flush);
+        if (written > 0) {
+            out.write(buffer, 0, written);
+        }
+        return written;
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (deflater == null) {
+            throw new IOException("Stream finished");
+        }
+    }
+}
@@ -0,0 +1,203 @@
+// Fetch fuel-ups from legacy servlet
+async function loadFuelUps() {
+    try {
+        // Note: This uses HTTP Basic Auth configured in web.xml
+        const response = await fetch('fuelups');
+
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+
+        const html = await response.text();
+
+        // Parse the legacy servlet HTML response
+        const parser = new DOMParser();
+        const doc = parser.parseFromString(html, 'text/html');
+
+        // Check if it's an error page
+        if (html.includes('<h1>Error:')) {
+            document.getElementById('recordsContainer').innerHTML =
+                '<div class="error-message">Unable to load fuel-ups. Please check database connection.</div>';
+            return;
+        }
+
+        // Extract table from servlet response
+        const table = doc.querySelector('table');
+
+        if (table) {
+            const rows = table.querySelectorAll('tbody tr, tr:not(:first-child)');
+
+            // Create styled table
+            const styledTable = `
+                <table class="records-table">
+                    <thead>
+                        <tr>
+                            <th>Date</th>
+                            <th>Gallons</th>
+                            <th>Price/Gal</th>
+                            <th>Total Cost</th>
+                        </tr>
+                    </thead>
+                    <tbody>
+                        ${Array.from(rows).map(row => {
+                            const cells = row.querySelectorAll('td');
+                            if (cells.length >= 4) {
+                                return `<tr>${Array.from(cells).slice(0, 4).map(cell =>
+                                    `<td>${cell.textContent}</td>`
+                                ).join('')}</tr>`;
+                            }
+                            return '';
+                        }).join('')}
+                    </tbody>
+                </table>
+            `;
+
+            document.getElementById('recordsContainer').innerHTML = styledTable;
+        } else {
+            document.getElementById('recordsContainer').innerHTML =
+                '<p class="no-records">No fuel-ups recorded yet.</p>';
+        }
+    } catch (error) {
+        console.error('Error loading fuel-ups:', error);
+        document.getElementById('recordsContainer').innerHTML =
+            `<div class="error-message">Error loading data: ${error.message}</div>`;
+    }
+}
+
+// Fetch server-side statistics (a few hundred bytes, revalidated by ETag)
+async function loadStats() {
+    try {
+        const response = await fetch('stats', { cache: 'no-cache' });
+
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+
+        const stats = await response.json();
+
+        document.getElementById('totalFillups').textContent = stats.totalFillups;
+        document.getElementById('totalGallons').textContent = Number(stats.totalGallons).toFixed(2);
+        document.getElementById('totalSpent').textContent = '$' + Number(stats.totalSpent).toFixed(2);
+        document.getElementById('avgPrice').textContent = '$' + Number(stats.averagePricePerGallon).toFixed(2);
+    } catch (error) {
+        console.error('Error loading statistics:', error);
+    }
+}
+
+// Load data when page loads
+document.addEventListener('DOMContentLoaded', function() {
+    loadStats();
+    loadFuelUps();
+
+    // Set today's date as default
+    document.getElementById('date').valueAsDate = new Date();
+
+    subscribeToChanges();
+});
+
+// Reload when fuel-ups change elsewhere (another tab or device). Events may
+// be missed while disconnected, so every reconnect reloads as well.
+function subscribeToChanges() {
+    if (!window.EventSource) {
+        return;
+    }
+    const source = new EventSource('events');
+    let connectedBefore = false;
+    const reload = () => Promise.all([loadStats(), loadFuelUps()]);
+
+    source.addEventListener('fuelup-created', reload);
+    source.addEventListener('fuelup-deleted', reload);
+    source.addEventListener('open', function() {
+        if (connectedBefore) {
+            reload();
+        }
+        connectedBefore = true;
+    });
+}
+
+// Idempotency key for the submission in flight; kept across retries
+// so a resubmit after a network error cannot create a duplicate
+let pendingSubmissionKey = null;
+
+function newSubmissionKey() {
+    if (window.crypto && crypto.randomUUID) {
+        return crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).slice(2);
+}
+
+// Editing the form makes it a different submission
+document.getElementById('fuelForm').addEventListener('input', function() {
+    pendingSubmissionKey = null;
+});
+
+// Form submission handler
+document.getElementById('fuelForm').addEventListener('submit', async function(e) {
+    e.preventDefault();
+
+    const submitBtn = document.getElementById('submitBtn');
+    const messageContainer = document.getElementById('messageContainer');
+
+    // Disable submit button
+    submitBtn.disabled = true;
+    submitBtn.textContent = 'Adding...';
+
+    // Get form values
+    const formData = new URLSearchParams();
+    formData.append('date', document.getElementById('date').value);
+    formData.append('gallons', document.getElementById('gallons').value);
+    formData.append('pricePerGallon', document.getElementById('pricePerGallon').value);
+    formData.append('engineHours', document.getElementById('engineHours').value);
+    formData.append('location', document.getElementById('location').value);
+    formData.append('notes', document.getElementById('notes').value);
+
+    if (!pendingSubmissionKey) {
+        pendingSubmissionKey = newSubmissionKey();
+    }
+
+    try {
+        const response = await fetch('fuelups', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/x-www-form-urlencoded',
+                'Idempotency-Key': pendingSubmissionKey,
+            },
+            body: formData
+        });
+
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+
+        pendingSubmissionKey = null;
+
+        // Show success message
+        messageContainer.innerHTML = '<div class="success-message">Fuel-up added successfully!</div>';
+
+        // Reset form
+        document.getElementById('fuelForm').reset();
+        document.getElementById('date').valueAsDate = new Date();
+
+        // Reload statistics and fuel-ups
+        await Promise.all([loadStats(), loadFuelUps()]);
+
+        // Clear success message after 3 seconds
+        setTimeout(() => {
+            messageContainer.innerHTML = '';
+        }, 3000);
+
+    } catch (error) {
+        console.error('Error adding fuel-up:', error);
+        messageContainer.innerHTML = `<div class="error-message">Error adding fuel-up: ${error.message}</div>`;
+    } finally {
+        // Re-enable submit button
+        submitBtn.disabled = false;
+        submitBtn.textContent = 'Add Fuel-Up';
+    }
+});
+
+// Logout function
+function logout() {
+    // Clear HTTP Basic Auth by redirecting to a logout endpoint
+    window.location.href = 'logout';
+}
@@ -0,0 +1,168 @@
+package com.boatfuel.archive;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the columnar yearly archive and the archive store.
+ */
+class FuelUpArchiveTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testRoundTripPreservesColumns() throws Exception {
+        // Arrange
+        List<FuelUp> rows = new ArrayList<>();
+        FuelUp full = row(10L, "alice", "2022-03-05", "25.50", "3.89");
+        full.setEngineHours(new BigDecimal("102.5"));
+        full.setLocation("Marina Bay");
+        full.setLocationId(7L);
+        full.setNotes("Long trip – topped off");
+        full.setLatitude(41.5);
+        full.setLongitude(-71.25);
+        rows.add(full);
+        rows.add(row(11L, "alice", "2022-07-01", "10.00", "4.10"));
+        rows.add(row(5L, "bob", "2022-01-02", "30.00", "3.50"));
+
+        // Act
+        FuelUpArchive.write(new File(directory, "fuel_ups-2022.bfa"), 2022, rows.iterator());
+        FuelUpArchive archive = FuelUpArchive.open(new File(directory, "fuel_ups-2022.bfa"));
+        List<FuelUp> alice = archive.read("alice", null, null);
+
+        // Assert
+        assertEquals(2022, archive.getYear());
+        assertEquals(3, archive.getRowCount());
+        assertEquals(2, alice.size());
+        FuelUp first = alice.get(0);
+        assertEquals(Long.valueOf(10L), first.getId());
+        assertEquals("alice", first.getUser().getUserId());
+        assertEquals(java.sql.Date.valueOf("2022-03-05"), first.getDate());
+        assertEquals(new BigDecimal("25.50"), first.getGallons());
+        assertEquals(new BigDecimal("99.20"), first.getTotalCost());
+        assertEquals(new BigDecimal("102.5"), first.getEngineHours());
+        assertEquals("Marina Bay", first.getLocation());
+        assertEquals(Long.valueOf(7L), first.getLocationId());
+        assertEquals("Long trip – topped off", first.getNotes());
+        assertEquals(41.5, first.getLatitude(), 0);
+        assertEquals(-71.25, first.getLongitude(), 0);
+        assertNull(alice.get(1).getEngineHours());
+        assertNull(alice.get(1).getLatitude());
+        assertTrue(archive.read("carol", null, null).isEmpty());
+    }
+
+    @Test
+    void testSummaryComesFromFooter() throws Exception {
+        List<FuelUp> rows = new ArrayList<>();
+        rows.add(row(1L, "alice", "2021-05-01", "10.00", "4.00"));
+        rows.add(row(2L, "alice", "2021-06-01", "20.00", "3.00"));
+        FuelUpArchive.write(new File(directory, "fuel_ups-2021.bfa"), 2021, rows.iterator());
+
+        ArchiveSummary summary = FuelUpArchive.open(new File(directory, "fuel_ups-2021.bfa")).summarize("alice");
+
+        assertEquals(2, summary.getCount());
+        assertEquals(new BigDecimal("30.00"), summary.getTotalGallons());
+        assertEquals(new BigDecimal("100.00"), summary.getTotalSpent());
+        assertEquals(new BigDecimal("7.00"), summary.getSumPricePerGallon());
+    }
+
+    @Test
+    void testStoreReadsOnlyYearsInRange() throws Exception {
+        // Arrange
+        FuelUpArchiveStore store = new FuelUpArchiveStore(new File(directory, "archive"));
+        List<FuelUp> y2020 = new ArrayList<>();
+        y2020.add(row(1L, "alice", "2020-12-31", "10.00", "4.00"));
+        List<FuelUp> y2021 = new ArrayList<>();
+        y2021.add(row(2L, "alice", "2021-01-15", "11.00", "4.00"));
+        y2021.add(row(3L, "alice", "2021-08-15", "12.00", "4.00"));
+        store.write(2020, y2020.iterator());
+        store.write(2021, y2021.iterator());
+        store.completeRemoval(2020);
+        store.completeRemoval(2021);
+
+        // Act
+        FuelUpArchiveStore reopened = new FuelUpArchiveStore(new File(directory, "archive"));
+        List<FuelUp> all = reopened.read("alice", null, null);
+        List<FuelUp> early2021 = reopened.read("alice", LocalDate.of(2021, 1, 1), LocalDate.of(2021, 6, 30));
+
+        // Assert
+        assertEquals(Integer.valueOf(2021), reopened.getLatestYear());
+        assertEquals(3, all.size());
+        assertEquals(Long.valueOf(2L), all.get(0).getId());
+        assertEquals(1, early2021.size());
+        assertEquals(Long.valueOf(2L), early2021.get(0).getId());
+        assertEquals(3, reopened.summarize("alice").getCount());
+    }
+
+    @Test
+    void testPendingYearServesOnlyRemovedRows() throws Exception {
+        // Arrange
+        File dir = new File(directory, "archive");
+        FuelUpArchiveStore store = new FuelUpArchiveStore(dir);
+        List<FuelUp> y2021 = new ArrayList<>();
+        y2021.add(row(2L, "alice", "2021-01-15", "11.00", "4.00"));
+        y2021.add(row(3L, "alice", "2021-08-15", "12.00", "4.00"));
+        store.write(2021, y2021.iterator());
+
+        // Act & Assert: nothing is served until rows leave FUEL_UPS
+        assertFalse(store.isArchived(2021));
+        assertTrue(store.read("alice", null, null).isEmpty());
+        store.markRemoved(2021, java.util.Collections.singleton(2L));
+        assertEquals(1, store.read("alice", null, null).size());
+        assertEquals(1, store.summarize("alice").getCount());
+
+        // A restart forgets partial progress but keeps the year pending
+        FuelUpArchiveStore reopened = new FuelUpArchiveStore(dir);
+        assertEquals(java.util.Collections.singleton(2021), reopened.getPendingYears());
+        assertEquals(0, reopened.summarize("alice").getCount());
+
+        reopened.completeRemoval(2021);
+        assertTrue(reopened.isArchived(2021));
+        assertEquals(2, reopened.read("alice", null, null).size());
+        assertTrue(new FuelUpArchiveStore(dir).isArchived(2021));
+    }
+
+    @Test
+    void testDeletedRowsAreNotServedAfterRestart() throws Exception {
+        // Arrange
+        File dir = new File(directory, "archive");
+        FuelUpArchiveStore store = new FuelUpArchiveStore(dir);
+        List<FuelUp> y2021 = new ArrayList<>();
+        y2021.add(row(2L, "alice", "2021-01-15", "11.00", "4.00"));
+        y2021.add(row(3L, "alice", "2021-08-15", "12.00", "4.00"));
+        store.write(2021, y2021.iterator());
+        store.completeRemoval(2021);
+
+        // Act
+        store.delete(2021, "alice", java.util.Collections.singleton(2L));
+
+        // Assert
+        assertEquals(1, store.read("alice", null, null).size());
+        assertEquals(new BigDecimal("12.00"), store.summarize("alice").getTotalGallons());
+        assertNull(store.find(2L));
+        assertEquals(Long.valueOf(3L), store.find(3L).getId());
+        FuelUpArchiveStore reopened = new FuelUpArchiveStore(dir);
+        assertEquals(Long.valueOf(3L), reopened.read("alice", null, null).get(0).getId());
+        assertEquals(1, reopened.summarize("alice").getCount());
+    }
+
+    private static FuelUp row(Long id, String userId, String date, String gallons, String price) {
+        User user = new User();
+        user.setUserId(userId);
+        FuelUp fuelUp = new FuelUp(user, java.sql.Date.valueOf(date), new BigDecimal(gallons), new BigDecimal(price));
+        fuelUp.setId(id);
+        fuelUp.setTotalCost(fuelUp.getTotalCost().setScale(2, java.math.RoundingMode.HALF_UP));
+        return fuelUp;
+    }
+}
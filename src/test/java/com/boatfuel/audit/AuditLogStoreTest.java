@@ -0,0 +1,115 @@
+package com.boatfuel.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the segmented audit store: rolling, indexed queries and reopen.
+ */
+class AuditLogStoreTest {
+
+    private static final long HOUR = 60L * 60 * 1000;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testQueryByUserAndTimeRange() throws Exception {
+        // Arrange
+        AuditLogStore store = new AuditLogStore(directory);
+        for (int i = 0; i < 500; i++) {
+            String user = (i % 2 == 0) ? "alice" : "bob";
+            store.append(1_000_000L + i * 1000L, user, "VIEW_FUELUPS", "entry " + i);
+        }
+
+        // Act
+        List<AuditEntry> entries = store.query("alice", 1_100_000L, 1_200_000L);
+
+        // Assert
+        assertEquals(51, entries.size());
+        for (AuditEntry entry : entries) {
+            assertEquals("alice", entry.getUserId());
+            assertTrue(entry.getTimestamp() >= 1_100_000L && entry.getTimestamp() <= 1_200_000L);
+        }
+        assertEquals("entry 100", entries.get(0).getMessage());
+        assertEquals("entry 200", entries.get(entries.size() - 1).getMessage());
+    }
+
+    @Test
+    void testSegmentsRollBySize() throws Exception {
+        AuditLogStore store = new AuditLogStore(directory, 2048, Long.MAX_VALUE);
+
+        for (int i = 0; i < 200; i++) {
+            store.append(1_000L + i, "alice", "VIEW_FUELUPS", "some audit message " + i);
+        }
+
+        assertTrue(store.getSegmentCount() > 1);
+        assertEquals(200, store.query(null, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testSegmentsRollByAge() throws Exception {
+        AuditLogStore store = new AuditLogStore(directory, Long.MAX_VALUE, HOUR);
+
+        store.append(0, "alice", "A", "first");
+        store.append(HOUR / 2, "alice", "A", "second");
+        store.append(HOUR * 2, "alice", "A", "third");
+
+        assertEquals(2, store.getSegmentCount());
+    }
+
+    @Test
+    void testQueryTouchesOnlyRelevantSegments() throws Exception {
+        // Arrange: one segment per hour, bob only active in the last one
+        AuditLogStore store = new AuditLogStore(directory, Long.MAX_VALUE, HOUR);
+        for (int hour = 0; hour < 5; hour++) {
+            for (int i = 0; i < 10; i++) {
+                store.append(hour * HOUR + i, "alice", "VIEW_FUELUPS", "hour " + hour);
+            }
+        }
+        store.append(4 * HOUR + 100, "bob", "CREATE_FUELUP", "bob fuel-up");
+
+        // Act & Assert
+        assertEquals(5, store.getSegmentCount());
+        assertEquals(1, store.selectSegments("bob", 0, Long.MAX_VALUE).size());
+        assertEquals(2, store.selectSegments("alice", HOUR, 2 * HOUR).size());
+        assertEquals(1, store.query("bob", 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testReopenLoadsSealedSegments() throws Exception {
+        AuditLogStore store = new AuditLogStore(directory, 1024, Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            store.append(5_000L + i, "user-" + (i % 3), "VIEW_FUELUPS", "message " + i);
+        }
+        store.close();
+
+        AuditLogStore reopened = new AuditLogStore(directory, 1024, Long.MAX_VALUE);
+        List<AuditEntry> entries = reopened.query("user-1", 0, Long.MAX_VALUE);
+
+        assertEquals(33, entries.size());
+        assertEquals(store.getSegmentCount(), reopened.getSegmentCount());
+
+        // New appends never go back in time relative to the reopened data
+        reopened.append(1L, "user-1", "VIEW_FUELUPS", "late");
+        List<AuditEntry> all = reopened.query("user-1", 0, Long.MAX_VALUE);
+        assertEquals("late", all.get(all.size() - 1).getMessage());
+    }
+
+    @Test
+    void testUnattributedEntries() throws Exception {
+        AuditLogStore store = new AuditLogStore(directory);
+
+        store.append(10L, null, "EVENT", "system started");
+
+        List<AuditEntry> entries = store.query(null, 0, 100);
+        assertEquals(1, entries.size());
+        assertNull(entries.get(0).getUserId());
+        assertEquals("EVENT", entries.get(0).getAction());
+    }
+}
@@ -0,0 +1,226 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import com.boatfuel.events.EventSink;
+import com.boatfuel.events.FuelUpEventHub;
+import com.boatfuel.jdbc.RoutingContext;
+import com.boatfuel.stats.StatisticsAggregateCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that in-memory state follows only committed writes, using a
+ * stand-in for the container's transaction synchronization registry.
+ */
+class AfterCommitTest {
+
+    private static EntityManagerFactory emf;
+
+    private EntityManager em;
+    private FuelUpServiceBean service;
+    private FakeRegistry registry;
+    private User user;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        em = emf.createEntityManager();
+        service = new FuelUpServiceBean();
+        registry = new FakeRegistry();
+        inject("entityManager", em);
+        inject("transactionRegistry", registry);
+
+        em.getTransaction().begin();
+        user = new User();
+        user.setEmail("commit-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        em.getTransaction().commit();
+
+        StatisticsAggregateCache cache = StatisticsAggregateCache.getInstance();
+        cache.seed(user.getUserId(), cache.version(user.getUserId()), 0,
+            BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StatisticsAggregateCache.getInstance().invalidate(user.getUserId());
+        em.close();
+    }
+
+    @Test
+    void testRolledBackCreateLeavesAggregatesUntouched() {
+        // Arrange
+        em.getTransaction().begin();
+        service.createFuelUp(new FuelUp(user, new Date(), new BigDecimal("20.00"), new BigDecimal("4.00")));
+        assertEquals(0, cachedFillups());
+
+        // Act
+        em.getTransaction().rollback();
+        registry.complete(Status.STATUS_ROLLEDBACK);
+
+        // Assert
+        assertEquals(0, cachedFillups());
+    }
+
+    @Test
+    void testCommittedCreateAndDeleteAreApplied() {
+        // Arrange
+        FuelUp fuelUp = new FuelUp(user, new Date(), new BigDecimal("20.00"), new BigDecimal("4.00"));
+        fuelUp.setTotalCost(new BigDecimal("80.00"));
+
+        // Act & Assert
+        em.getTransaction().begin();
+        service.createFuelUp(fuelUp);
+        em.getTransaction().commit();
+        registry.complete(Status.STATUS_COMMITTED);
+        assertEquals(1, cachedFillups());
+
+        em.getTransaction().begin();
+        service.deleteFuelUp(fuelUp.getId());
+        assertEquals(1, cachedFillups());
+        em.getTransaction().commit();
+        registry.complete(Status.STATUS_COMMITTED);
+        assertEquals(0, cachedFillups());
+    }
+
+    @Test
+    void testStickyPrimaryWindowStartsAtCommit() {
+        // Arrange
+        em.getTransaction().begin();
+        service.createFuelUp(new FuelUp(user, new Date(), new BigDecimal("20.00"), new BigDecimal("4.00")));
+        em.getTransaction().commit();
+
+        // Act & Assert
+        try (RoutingContext.Scope readOnly = RoutingContext.readOnly(user.getUserId())) {
+            assertTrue(RoutingContext.isReplicaEligible());
+            registry.complete(Status.STATUS_COMMITTED);
+            assertFalse(RoutingContext.isReplicaEligible());
+        }
+    }
+
+    @Test
+    void testBatchPublishesOneEventPerTransaction() throws Exception {
+        // Arrange: a subscriber whose buffer is smaller than the batch
+        FuelUpEventHub hub = new FuelUpEventHub(4);
+        inject("events", hub);
+        StringBuilder stream = new StringBuilder();
+        hub.subscribe(user.getUserId(), new EventSink() {
+            public boolean isReady() { return true; }
+            public void write(byte[] data) { stream.append(new String(data, StandardCharsets.UTF_8)); }
+            public void flush() { }
+            public void close() { }
+        }).drain();
+        List<FuelUp> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(new FuelUp(user, new Date(), new BigDecimal("20.00"), new BigDecimal("4.00")));
+        }
+
+        // Act
+        em.getTransaction().begin();
+        service.createFuelUps(batch, Collections.nCopies(batch.size(), (String) null));
+        em.getTransaction().commit();
+        assertFalse(stream.toString().contains("fuelup-created"));
+        registry.complete(Status.STATUS_COMMITTED);
+
+        // Assert
+        assertEquals(1, stream.toString().split("event: fuelup-created", -1).length - 1);
+        assertTrue(stream.toString().contains("\"count\":10"));
+        assertEquals(0, hub.getEvictedCount());
+    }
+
+    private int cachedFillups() {
+        return StatisticsAggregateCache.getInstance().get(user.getUserId()).getTotalFillups();
+    }
+
+    private void inject(String name, Object value) throws Exception {
+        Field field = FuelUpServiceBean.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    /**
+     * One open transaction at a time; complete() ends it like the container
+     */
+    static final class FakeRegistry implements TransactionSynchronizationRegistry {
+        private final List<Synchronization> synchronizations = new ArrayList<>();
+        private final Map<Object, Object> resources = new HashMap<>();
+        private Object key = new Object();
+
+        void complete(int status) {
+            List<Synchronization> registered = new ArrayList<>(synchronizations);
+            synchronizations.clear();
+            resources.clear();
+            key = new Object();
+            for (Synchronization synchronization : registered) {
+                synchronization.afterCompletion(status);
+            }
+        }
+
+        @Override
+        public Object getTransactionKey() {
+            return key;
+        }
+
+        @Override
+        public void putResource(Object resourceKey, Object value) {
+            resources.put(resourceKey, value);
+        }
+
+        @Override
+        public Object getResource(Object resourceKey) {
+            return resources.get(resourceKey);
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization synchronization) {
+            synchronizations.add(synchronization);
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+}
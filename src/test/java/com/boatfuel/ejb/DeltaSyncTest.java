@@ -0,0 +1,195 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-user change sequences and changesSince against H2.
+ */
+class DeltaSyncTest {
+
+    private static EntityManagerFactory emf;
+
+    private EntityManager em;
+    private FuelUpServiceBean service;
+    private User user;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        em = emf.createEntityManager();
+        service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        user = new User();
+        user.setEmail("sync-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        em.getTransaction().commit();
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void testChangesSinceReturnsOnlyNewWritesAndDeletes() {
+        // Arrange
+        FuelUp first = create("20.00");
+        FuelUp second = create("25.00");
+        FuelUpChanges initial = service.changesSince(user.getUserId(), 0, 100);
+        create("30.00");
+        inTransaction(() -> service.deleteFuelUp(first.getId()));
+
+        // Act
+        FuelUpChanges delta = service.changesSince(user.getUserId(), initial.getNextToken(), 100);
+
+        // Assert
+        assertEquals(2, initial.getUpserts().size());
+        assertEquals(1, delta.getUpserts().size());
+        assertEquals(new BigDecimal("30.00"), delta.getUpserts().get(0).getGallons());
+        assertEquals(1, delta.getDeletedIds().size());
+        assertEquals(first.getId(), delta.getDeletedIds().get(0));
+        assertFalse(delta.isHasMore());
+        assertTrue(second.getSyncSeq() > first.getSyncSeq());
+
+        FuelUpChanges none = service.changesSince(user.getUserId(), delta.getNextToken(), 100);
+        assertTrue(none.getUpserts().isEmpty());
+        assertTrue(none.getDeletedIds().isEmpty());
+        assertEquals(delta.getNextToken(), none.getNextToken());
+    }
+
+    @Test
+    void testPagesFollowSequenceOrder() {
+        for (int i = 0; i < 5; i++) {
+            create("1" + i + ".00");
+        }
+
+        FuelUpChanges page1 = service.changesSince(user.getUserId(), 0, 2);
+        FuelUpChanges page2 = service.changesSince(user.getUserId(), page1.getNextToken(), 2);
+        FuelUpChanges page3 = service.changesSince(user.getUserId(), page2.getNextToken(), 2);
+
+        assertTrue(page1.isHasMore());
+        assertTrue(page2.isHasMore());
+        assertFalse(page3.isHasMore());
+        assertEquals(new BigDecimal("10.00"), page1.getUpserts().get(0).getGallons());
+        assertEquals(new BigDecimal("12.00"), page2.getUpserts().get(0).getGallons());
+        assertEquals(1, page3.getUpserts().size());
+    }
+
+    @Test
+    void testUnknownTokenRequiresReset() {
+        create("20.00");
+
+        FuelUpChanges changes = service.changesSince(user.getUserId(), 9999, 100);
+
+        assertTrue(changes.isResetRequired());
+        assertEquals(1, changes.getNextToken());
+    }
+
+    @Test
+    void testFullResyncIncludesArchivedYears(@TempDir File directory) throws Exception {
+        // Arrange: two archived rows and one in FUEL_UPS
+        FuelUpArchiveStore store = new FuelUpArchiveStore(directory);
+        long base = 800_000_000L + (System.nanoTime() % 1_000_000) * 10;
+        store.write(2019, Arrays.asList(archived(base + 1, "2019-03-01"), archived(base + 2, "2019-04-01"))
+            .iterator());
+        store.completeRemoval(2019);
+        Field field = FuelUpServiceBean.class.getDeclaredField("archiveStore");
+        field.setAccessible(true);
+        field.set(service, store);
+        create("30.00");
+
+        // Act
+        FuelUpChanges page1 = service.changesSince(user.getUserId(), 0, 1);
+        FuelUpChanges page2 = service.changesSince(user.getUserId(), page1.getNextToken(), 1);
+        FuelUpChanges page3 = service.changesSince(user.getUserId(), page2.getNextToken(), 1);
+
+        // Assert: archived rows by ID first, then the FUEL_UPS changes
+        assertEquals(base + 1, (long) page1.getUpserts().get(0).getId());
+        assertTrue(page1.isHasMore());
+        assertEquals(base + 2, (long) page2.getUpserts().get(0).getId());
+        assertEquals(new BigDecimal("30.00"), page3.getUpserts().get(0).getGallons());
+        assertFalse(page3.isHasMore());
+        assertEquals(1, page3.getNextToken());
+    }
+
+    @Test
+    void testTokenOlderThanPurgedTombstonesRequiresReset() throws Exception {
+        // Arrange: a delete whose tombstone is past the retention period
+        FuelUp first = create("20.00");
+        long staleToken = service.changesSince(user.getUserId(), 0, 100).getNextToken();
+        create("25.00");
+        inTransaction(() -> service.deleteFuelUp(first.getId()));
+        inTransaction(() -> em.createQuery("UPDATE FuelUpTombstone t SET t.deletedAt = :when WHERE t.userId = :userId")
+            .setParameter("when", new Date(0))
+            .setParameter("userId", user.getUserId())
+            .executeUpdate());
+        long currentToken = service.changesSince(user.getUserId(), staleToken, 100).getNextToken();
+        HousekeepingBean housekeeping = new HousekeepingBean();
+        Field field = HousekeepingBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(housekeeping, em);
+
+        // Act
+        inTransaction(housekeeping::purgeExpiredTombstones);
+        em.clear();
+
+        // Assert
+        assertEquals(0L, (long) em.createQuery("SELECT COUNT(t) FROM FuelUpTombstone t WHERE t.userId = :userId",
+            Long.class).setParameter("userId", user.getUserId()).getSingleResult());
+        assertTrue(service.changesSince(user.getUserId(), staleToken, 100).isResetRequired());
+        assertFalse(service.changesSince(user.getUserId(), currentToken, 100).isResetRequired());
+        assertFalse(service.changesSince(user.getUserId(), 0, 100).isResetRequired());
+    }
+
+    private FuelUp archived(long id, String date) {
+        FuelUp fuelUp = new FuelUp(user, java.sql.Date.valueOf(date), new BigDecimal("10.00"), new BigDecimal("4.00"));
+        fuelUp.setId(id);
+        return fuelUp;
+    }
+
+    private FuelUp create(String gallons) {
+        FuelUp fuelUp = new FuelUp(user, new Date(), new BigDecimal(gallons), new BigDecimal("4.00"));
+        inTransaction(() -> service.createFuelUp(fuelUp));
+        return fuelUp;
+    }
+
+    private void inTransaction(Runnable work) {
+        em.getTransaction().begin();
+        work.run();
+        em.getTransaction().commit();
+    }
+}
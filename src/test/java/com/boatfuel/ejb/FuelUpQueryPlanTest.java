@@ -0,0 +1,160 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the list read paths: the list projection and the statistics
+ * aggregate must be served from the IDX_USER_DATE index, never a table
+ * scan, and listed entities are loaded read-only.
+ */
+class FuelUpQueryPlanTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @Test
+    void testListProjectionUsesCoveringIndex() throws Exception {
+        // Arrange: translate the JPQL exactly as Hibernate will run it
+        EntityManager em = emf.createEntityManager();
+        String[] sql;
+        try {
+            SessionFactoryImplementor factory = em.unwrap(SessionImplementor.class).getFactory();
+            sql = factory.getQueryPlanCache()
+                .getHQLQueryPlan(FuelUpServiceBean.LIST_ROWS_JPQL, false, Collections.emptyMap())
+                .getSqlStrings();
+        } finally {
+            em.close();
+        }
+
+        // Act
+        String plan = explain(sql[0]);
+
+        // Assert
+        assertEquals(1, sql.length);
+        assertIndexOnly(plan);
+        assertFalse(plan.toUpperCase().contains("NOTES"), plan);
+    }
+
+    @Test
+    void testStatisticsUsesCoveringIndex() throws Exception {
+        assertIndexOnly(explain(FuelUpServiceBean.STATISTICS_SQL));
+    }
+
+    @Test
+    void testListProjectionReturnsRowsNewestFirst() throws Exception {
+        // Arrange
+        EntityManager em = emf.createEntityManager();
+        FuelUpServiceBean service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        User user = new User();
+        user.setEmail("plan-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        FuelUp older = new FuelUp(user, new Date(System.currentTimeMillis() - 86_400_000L),
+            new BigDecimal("10.00"), new BigDecimal("4.00"));
+        FuelUp newer = new FuelUp(user, new Date(), new BigDecimal("12.00"), new BigDecimal("4.50"));
+        newer.setNotes("not part of the projection");
+        em.persist(older);
+        em.persist(newer);
+        em.getTransaction().commit();
+        em.clear();
+
+        try {
+            // Act
+            List<FuelUpListRow> rows = service.getFuelUpRows(user.getUserId());
+
+            // Assert
+            assertEquals(2, rows.size());
+            assertEquals(newer.getId(), rows.get(0).getId());
+            assertEquals(0, new BigDecimal("54.00").compareTo(rows.get(0).getTotalCost()));
+            assertEquals(older.getId(), rows.get(1).getId());
+            assertFalse(em.contains(newer), "projection must not load entities");
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void testEntityListIsLoadedReadOnly() throws Exception {
+        // Arrange
+        EntityManager em = emf.createEntityManager();
+        FuelUpServiceBean service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        User user = new User();
+        user.setEmail("readonly-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        em.persist(new FuelUp(user, new Date(), new BigDecimal("10.00"), new BigDecimal("4.00")));
+        em.getTransaction().commit();
+        em.clear();
+
+        try {
+            // Act
+            em.getTransaction().begin();
+            List<FuelUp> fuelUps = service.getFuelUpsByUser(user.getUserId());
+            fuelUps.get(0).setNotes("changed");
+            em.getTransaction().commit();
+            em.clear();
+
+            // Assert: no snapshot, so the change is never flushed
+            assertNull(em.find(FuelUp.class, fuelUps.get(0).getId()).getNotes());
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void assertIndexOnly(String plan) {
+        assertTrue(plan.toUpperCase().contains("IDX_USER_DATE"), plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private static String explain(String sql) throws Exception {
+        try (Connection conn = DriverManager.getConnection(
+                "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            stmt.setString(1, "plan-user");
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -139,14 +139,30 @@ class FuelUpServiceBeanTest {
         // Arrange
         Long fuelUpId = 1L;
         when(entityManager.find(FuelUp.class, fuelUpId)).thenReturn(testFuelUp);
-        doNothing().when(entityManager).remove(any(FuelUp.class));
 
         // Act
         fuelUpService.deleteFuelUp(fuelUpId);
 
-        // Assert
+        // Assert: soft delete, the row is purged later
         verify(entityManager, times(1)).find(FuelUp.class, fuelUpId);
-        verify(entityManager, times(1)).remove(testFuelUp);
+        verify(entityManager, never()).remove(any(FuelUp.class));
+        assertTrue(testFuelUp.isDeleted());
+    }
+
+    @Test
+    void testDeleteFuelUpAlreadyDeleted() {
+        // Arrange
+        Long fuelUpId = 1L;
+        Date deletedAt = new Date(0);
+        testFuelUp.setDeletedAt(deletedAt);
+        when(entityManager.find(FuelUp.class, fuelUpId)).thenReturn(testFuelUp);
+
+        // Act
+        fuelUpService.deleteFuelUp(fuelUpId);
+
+        // Assert
+        assertEquals(deletedAt, testFuelUp.getDeletedAt());
+        verify(entityManager, never()).persist(any());
     }
 
     @Test
@@ -167,8 +183,7 @@ class FuelUpServiceBeanTest {
     void testDeleteFuelUpThrowsException() {
         // Arrange
         Long fuelUpId = 1L;
-        when(entityManager.find(FuelUp.class, fuelUpId)).thenReturn(testFuelUp);
-        doThrow(new RuntimeException("Delete error")).when(entityManager).remove(any(FuelUp.class));
+        when(entityManager.find(FuelUp.class, fuelUpId)).thenThrow(new RuntimeException("Delete error"));
 
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
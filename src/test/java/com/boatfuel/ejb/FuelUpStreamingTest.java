@@ -0,0 +1,139 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming fuel-ups through forEachFuelUp against H2.
+ */
+class FuelUpStreamingTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    private static EntityManagerFactory emf;
+
+    private EntityManager em;
+    private FuelUpServiceBean service;
+    private User user;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        em = emf.createEntityManager();
+        service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        user = new User();
+        user.setEmail("stream-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        for (int i = 0; i < 1200; i++) {
+            FuelUp fuelUp = new FuelUp(user, new Date(START + (1199 - i) * DAY),
+                new BigDecimal("10.00"), new BigDecimal("4.00"));
+            if (i % 100 == 0) {
+                fuelUp.setDeletedAt(new Date());
+            }
+            em.persist(fuelUp);
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void testStreamsLiveRowsInDateOrderWithoutRetainingThem() {
+        // Arrange
+        List<Date> dates = new ArrayList<>();
+        List<FuelUp> visited = new ArrayList<>();
+
+        // Act
+        int count = service.forEachFuelUp(user.getUserId(), null, null, fuelUp -> {
+            dates.add(fuelUp.getDate());
+            if (visited.size() < 10) {
+                visited.add(fuelUp);
+            }
+        });
+
+        // Assert
+        assertEquals(1188, count);
+        assertEquals(count, dates.size());
+        for (int i = 1; i < dates.size(); i++) {
+            assertTrue(dates.get(i - 1).compareTo(dates.get(i)) <= 0);
+        }
+        for (FuelUp fuelUp : visited) {
+            assertFalse(em.contains(fuelUp), "streamed entities must be evicted");
+        }
+    }
+
+    @Test
+    void testCallersManagedChangesSurviveStreaming() {
+        // Arrange: the caller holds a row it has changed but not flushed
+        Date day = new Date(START + 5 * DAY);
+        em.getTransaction().begin();
+        FuelUp held = em.createQuery("SELECT f FROM FuelUp f WHERE f.user.userId = :userId AND f.date = :day",
+                FuelUp.class)
+            .setParameter("userId", user.getUserId())
+            .setParameter("day", day)
+            .getSingleResult();
+        held.setNotes("edited while streaming");
+
+        // Act
+        int count = service.forEachFuelUp(user.getUserId(), day, day, fuelUp -> { });
+        em.getTransaction().commit();
+        em.clear();
+
+        // Assert
+        assertEquals(1, count);
+        assertEquals("edited while streaming", em.find(FuelUp.class, held.getId()).getNotes());
+    }
+
+    @Test
+    void testDateRangeIsInclusive() {
+        // Arrange
+        Date from = new Date(START + 10 * DAY);
+        Date to = new Date(START + 19 * DAY);
+        List<Date> dates = new ArrayList<>();
+
+        // Act
+        int count = service.forEachFuelUp(user.getUserId(), from, to, fuelUp -> dates.add(fuelUp.getDate()));
+
+        // Assert
+        assertEquals(10, count);
+        assertEquals(new java.sql.Date(from.getTime()).toString(), dates.get(0).toString());
+        assertEquals(new java.sql.Date(to.getTime()).toString(), dates.get(9).toString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.IdempotencyRecord;
+import com.boatfuel.entity.User;
+import com.boatfuel.idempotency.IdempotencyFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for idempotent fuel-up creation against H2.
+ */
+class IdempotentCreateTest {
+
+    private static EntityManagerFactory emf;
+
+    private EntityManager em;
+    private FuelUpServiceBean service;
+    private User user;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        em = emf.createEntityManager();
+        service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        user = new User();
+        user.setEmail("idem-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        em.getTransaction().commit();
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void testRetryWithSameKeyReturnsOriginal() {
+        // Arrange
+        FuelUp first = inTransaction(() -> service.createFuelUp(newFuelUp("20.00"), "retry-key"));
+        em.clear();
+
+        // Act
+        FuelUp retried = inTransaction(() -> service.createFuelUp(newFuelUp("20.00"), "retry-key"));
+
+        // Assert
+        assertEquals(first.getId(), retried.getId());
+        assertEquals(1L, countFuelUps());
+        assertEquals(first.getId(), service.findIdempotentResult(user.getUserId(), "retry-key"));
+        IdempotencyRecord record = em.find(IdempotencyRecord.class,
+            IdempotencyFilter.requestKey(user.getUserId(), "retry-key"));
+        assertEquals(user.getUserId(), record.getUserId());
+    }
+
+    @Test
+    void testDistinctKeysCreateSeparateFuelUps() {
+        inTransaction(() -> service.createFuelUp(newFuelUp("10.00"), "key-a"));
+        inTransaction(() -> service.createFuelUp(newFuelUp("10.00"), "key-b"));
+
+        assertEquals(2L, countFuelUps());
+        assertNull(service.findIdempotentResult(user.getUserId(), "key-c"));
+    }
+
+    @Test
+    void testExpiredKeyCanBeReused() {
+        // Arrange: a stale record for the key that the purge has not removed yet
+        String requestKey = IdempotencyFilter.requestKey(user.getUserId(), "stale-key");
+        inTransaction(() -> {
+            em.persist(new IdempotencyRecord(requestKey, 12345L, new Date(0), new Date(1000)));
+            IdempotencyFilter.getInstance().seed(requestKey);
+            return null;
+        });
+
+        // Act
+        FuelUp created = inTransaction(() -> service.createFuelUp(newFuelUp("15.00"), "stale-key"));
+
+        // Assert
+        assertNotNull(created.getId());
+        assertEquals(1L, countFuelUps());
+        assertEquals(created.getId(), em.find(IdempotencyRecord.class, requestKey).getFuelUpId());
+    }
+
+    private FuelUp newFuelUp(String gallons) {
+        return new FuelUp(user, new Date(), new BigDecimal(gallons), new BigDecimal("4.00"));
+    }
+
+    private long countFuelUps() {
+        return em.createQuery("SELECT COUNT(f) FROM FuelUp f WHERE f.user.userId = :userId", Long.class)
+            .setParameter("userId", user.getUserId())
+            .getSingleResult();
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        em.getTransaction().begin();
+        T result = work.get();
+        em.getTransaction().commit();
+        return result;
+    }
+}
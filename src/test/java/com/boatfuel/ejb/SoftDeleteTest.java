@@ -0,0 +1,217 @@
+package com.boatfuel.ejb;
+
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import com.boatfuel.housekeeping.SoftDeletePurger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for soft delete, bulk deletes and the deferred purge against H2.
+ */
+class SoftDeleteTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static EntityManagerFactory emf;
+
+    private EntityManager em;
+    private FuelUpServiceBean service;
+    private User user;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        em = emf.createEntityManager();
+        service = new FuelUpServiceBean();
+        Field field = FuelUpServiceBean.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(service, em);
+
+        em.getTransaction().begin();
+        user = new User();
+        user.setEmail("soft-" + System.nanoTime() + "@boat.com");
+        em.persist(user);
+        em.getTransaction().commit();
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void testBulkDeleteByIdsHidesRowsAndWritesTombstones() {
+        // Arrange
+        FuelUp first = create(new Date(), "10.00");
+        FuelUp second = create(new Date(), "11.00");
+        FuelUp kept = create(new Date(), "12.00");
+        long token = service.changesSince(user.getUserId(), 0, 100).getNextToken();
+
+        // Act
+        int deleted = inTransaction(() -> service.deleteFuelUps(user.getUserId(),
+            Arrays.asList(first.getId(), second.getId(), 987654321L)));
+        em.clear();
+
+        // Assert
+        assertEquals(2, deleted);
+        assertEquals(1, service.getFuelUpsByUser(user.getUserId()).size());
+        assertEquals(kept.getId(), service.getFuelUpsByUser(user.getUserId()).get(0).getId());
+        FuelUpChanges changes = service.changesSince(user.getUserId(), token, 100);
+        assertEquals(2, changes.getDeletedIds().size());
+        assertTrue(changes.getUpserts().isEmpty());
+    }
+
+    @Test
+    void testOverlappingDeletesActOnlyOnLiveRows() {
+        // Arrange
+        FuelUp first = create(new Date(), "10.00");
+        FuelUp second = create(new Date(), "11.00");
+        FuelUp third = create(new Date(), "12.00");
+        long token = service.changesSince(user.getUserId(), 0, 100).getNextToken();
+        inTransaction(() -> service.deleteFuelUps(user.getUserId(), Arrays.asList(first.getId(), second.getId())));
+
+        // Act
+        int deleted = inTransaction(() -> service.deleteFuelUps(user.getUserId(),
+            Arrays.asList(second.getId(), third.getId())));
+        inTransaction(() -> {
+            service.deleteFuelUp(first.getId());
+            return null;
+        });
+        em.clear();
+
+        // Assert: one tombstone per row
+        assertEquals(1, deleted);
+        FuelUpChanges changes = service.changesSince(user.getUserId(), token, 100);
+        assertEquals(3, changes.getDeletedIds().size());
+    }
+
+    @Test
+    void testBulkDeleteByDateRange() {
+        long now = System.currentTimeMillis();
+        create(new Date(now - 40 * DAY), "10.00");
+        create(new Date(now - 35 * DAY), "11.00");
+        create(new Date(now - 2 * DAY), "12.00");
+
+        int deleted = inTransaction(() -> service.deleteFuelUpsBetween(user.getUserId(),
+            new Date(now - 45 * DAY), new Date(now - 30 * DAY)));
+        em.clear();
+
+        assertEquals(2, deleted);
+        assertEquals(1, service.getFuelUpsByUser(user.getUserId()).size());
+        assertEquals(0, (int) inTransaction(() -> service.deleteFuelUpsBetween(user.getUserId(),
+            new Date(now - 45 * DAY), new Date(now - 30 * DAY))));
+    }
+
+    @Test
+    void testArchivedRowsCanBeDeleted(@TempDir File directory) throws Exception {
+        // Arrange: three rows of an archived year, long gone from FUEL_UPS
+        FuelUpArchiveStore store = new FuelUpArchiveStore(directory);
+        long base = 900_000_000L + (System.nanoTime() % 1_000_000) * 10;
+        store.write(2019, Arrays.asList(
+            archived(base + 1, "2019-03-01"), archived(base + 2, "2019-04-01"), archived(base + 3, "2019-05-01"))
+            .iterator());
+        store.completeRemoval(2019);
+        Field field = FuelUpServiceBean.class.getDeclaredField("archiveStore");
+        field.setAccessible(true);
+        field.set(service, store);
+        long token = service.changesSince(user.getUserId(), 0, 100).getNextToken();
+
+        // Act
+        int deleted = inTransaction(() -> service.deleteFuelUps(user.getUserId(), Arrays.asList(base + 1)));
+        inTransaction(() -> {
+            service.deleteFuelUp(base + 2);
+            return null;
+        });
+        int again = inTransaction(() -> service.deleteFuelUpsBetween(user.getUserId(),
+            java.sql.Date.valueOf("2019-01-01"), java.sql.Date.valueOf("2019-04-30")));
+        em.clear();
+
+        // Assert
+        assertEquals(1, deleted);
+        assertEquals(0, again);
+        assertEquals(1, service.getFuelUpsByUser(user.getUserId()).size());
+        assertEquals(base + 3, (long) service.getFuelUpsByUser(user.getUserId()).get(0).getId());
+        assertEquals(1, new FuelUpArchiveStore(directory).summarize(user.getUserId()).getCount());
+        assertEquals(2, service.changesSince(user.getUserId(), token, 100).getDeletedIds().size());
+    }
+
+    @Test
+    void testPurgeRemovesOnlyRowsDeletedBeforeCutoff() throws Exception {
+        // Arrange: two rows deleted two days ago, one just now, one live
+        FuelUp old1 = create(new Date(), "10.00");
+        FuelUp old2 = create(new Date(), "11.00");
+        FuelUp recent = create(new Date(), "12.00");
+        create(new Date(), "13.00");
+        inTransaction(() -> service.deleteFuelUps(user.getUserId(),
+            Arrays.asList(old1.getId(), old2.getId(), recent.getId())));
+        inTransaction(() -> em.createQuery("UPDATE FuelUp f SET f.deletedAt = :when WHERE f.id IN :ids")
+            .setParameter("when", new Date(System.currentTimeMillis() - 2 * DAY))
+            .setParameter("ids", Arrays.asList(old1.getId(), old2.getId()))
+            .executeUpdate());
+
+        // Act
+        int purged;
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "")) {
+            purged = new SoftDeletePurger(1, 0, 10).purge(conn, new Date(System.currentTimeMillis() - DAY));
+
+            // Assert
+            assertEquals(2, purged);
+            try (ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT COUNT(*) FROM FUEL_UPS WHERE USER_ID = '" + user.getUserId() + "'")) {
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+        }
+    }
+
+    private FuelUp archived(long id, String date) {
+        FuelUp fuelUp = new FuelUp(user, java.sql.Date.valueOf(date), new BigDecimal("10.00"), new BigDecimal("4.00"));
+        fuelUp.setId(id);
+        return fuelUp;
+    }
+
+    private FuelUp create(Date date, String gallons) {
+        FuelUp fuelUp = new FuelUp(user, date, new BigDecimal(gallons), new BigDecimal("4.00"));
+        inTransaction(() -> service.createFuelUp(fuelUp));
+        return fuelUp;
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        em.getTransaction().begin();
+        T result = work.get();
+        em.getTransaction().commit();
+        return result;
+    }
+}
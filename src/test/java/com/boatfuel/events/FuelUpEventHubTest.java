@@ -0,0 +1,169 @@
+package com.boatfuel.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-user event fan-out: delivery, back-pressure and
+ * slow-consumer eviction.
+ */
+class FuelUpEventHubTest {
+
+    @Test
+    void testEventsReachOnlyTheUsersStreams() {
+        // Arrange
+        FuelUpEventHub hub = new FuelUpEventHub(8);
+        RecordingSink alice1 = new RecordingSink();
+        RecordingSink alice2 = new RecordingSink();
+        RecordingSink bob = new RecordingSink();
+        hub.subscribe("alice", alice1).drain();
+        hub.subscribe("alice", alice2).drain();
+        hub.subscribe("bob", bob).drain();
+
+        // Act
+        hub.publishCreated("alice", 42L);
+
+        // Assert
+        assertTrue(alice1.text().endsWith("event: fuelup-created\ndata: {\"count\":1,\"ids\":[42]}\n\n"));
+        assertTrue(alice2.text().contains("data: {\"count\":1,\"ids\":[42]}"));
+        assertFalse(bob.text().contains("fuelup-created"));
+        assertTrue(bob.text().startsWith("retry: "));
+        assertEquals(3, hub.getSubscriberCount());
+        assertEquals(1, hub.getPublishedCount());
+    }
+
+    @Test
+    void testEventsAreBufferedUntilTheSinkIsReady() {
+        FuelUpEventHub hub = new FuelUpEventHub(8);
+        RecordingSink sink = new RecordingSink();
+        sink.ready = false;
+        FuelUpEventHub.Subscription subscription = hub.subscribe("alice", sink);
+
+        hub.publishDeleted("alice", Arrays.asList(1L, 2L));
+        assertEquals(0, sink.out.size());
+        assertEquals(2, subscription.getBufferedCount());
+
+        sink.ready = true;
+        subscription.drain();
+
+        assertTrue(sink.text().contains("event: fuelup-deleted\ndata: {\"count\":2,\"ids\":[1,2]}\n\n"));
+        assertEquals(0, subscription.getBufferedCount());
+        assertTrue(sink.flushes > 0);
+    }
+
+    @Test
+    void testSlowConsumerIsEvicted() {
+        // Arrange: a stalled stream next to a healthy one
+        FuelUpEventHub hub = new FuelUpEventHub(4);
+        RecordingSink stalled = new RecordingSink();
+        stalled.ready = false;
+        RecordingSink healthy = new RecordingSink();
+        FuelUpEventHub.Subscription slow = hub.subscribe("alice", stalled);
+        hub.subscribe("alice", healthy).drain();
+
+        // Act
+        for (long id = 1; id <= 10; id++) {
+            hub.publishCreated("alice", id);
+        }
+
+        // Assert
+        assertTrue(slow.isClosed());
+        assertTrue(stalled.closed);
+        assertEquals(1, hub.getEvictedCount());
+        assertEquals(1, hub.getSubscriberCount());
+        assertTrue(healthy.text().contains("data: {\"count\":1,\"ids\":[10]}"));
+    }
+
+    @Test
+    void testWriteFailureClosesSubscription() {
+        FuelUpEventHub hub = new FuelUpEventHub(8);
+        RecordingSink sink = new RecordingSink();
+        sink.failWrites = true;
+        FuelUpEventHub.Subscription subscription = hub.subscribe("alice", sink);
+
+        subscription.drain();
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, hub.getSubscriberCount());
+    }
+
+    @Test
+    void testLargeDeleteSendsOnlyTheCount() {
+        FuelUpEventHub hub = new FuelUpEventHub(8);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe("alice", sink).drain();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id <= FuelUpEventHub.MAX_EVENT_IDS; id++) {
+            ids.add(id);
+        }
+
+        hub.publishDeleted("alice", ids);
+
+        assertTrue(sink.text().contains("data: {\"count\":" + ids.size() + "}\n\n"));
+    }
+
+    @Test
+    void testHeartbeatAndClose() {
+        FuelUpEventHub hub = new FuelUpEventHub(8);
+        RecordingSink sink = new RecordingSink();
+        FuelUpEventHub.Subscription subscription = hub.subscribe("alice", sink);
+
+        hub.heartbeat();
+        subscription.close();
+        subscription.close();
+        hub.publishCreated("alice", 1L);
+
+        assertTrue(sink.text().contains(": keep-alive\n\n"));
+        assertFalse(sink.text().contains("fuelup-created"));
+        assertEquals(0, hub.getSubscriberCount());
+        assertEquals(1, sink.closeCount);
+    }
+
+    /**
+     * In-memory sink whose readiness the test controls
+     */
+    private static final class RecordingSink implements EventSink {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean ready = true;
+        boolean failWrites;
+        boolean closed;
+        int closeCount;
+        int flushes;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void write(byte[] data) throws IOException {
+            if (failWrites) {
+                throw new IOException("Broken pipe");
+            }
+            out.write(data);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeCount++;
+        }
+
+        String text() {
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.boatfuel.geo;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the geo cell grid and the in-memory proximity index.
+ */
+class GeoCellIndexTest {
+
+    // Avalon, Catalina Island and Newport Beach are about 26 nm apart
+    private static final double AVALON_LAT = 33.3428;
+    private static final double AVALON_LON = -118.3279;
+    private static final double NEWPORT_LAT = 33.6073;
+    private static final double NEWPORT_LON = -117.9290;
+
+    @Test
+    void testDistance() {
+        double distance = GeoGrid.distanceNm(AVALON_LAT, AVALON_LON, NEWPORT_LAT, NEWPORT_LON);
+
+        assertEquals(26, distance, 1.5);
+        assertEquals(60, GeoGrid.distanceNm(10, 20, 11, 20), 0.1);
+    }
+
+    @Test
+    void testCellRangesCoverOnlyNeighboringRows() {
+        List<long[]> ranges = GeoGrid.cellRanges(AVALON_LAT, AVALON_LON, 10);
+
+        // 10 nm spans under half a degree of latitude: at most 2-3 rows of one short range each
+        assertTrue(ranges.size() <= 3);
+        for (long[] range : ranges) {
+            assertTrue(range[1] - range[0] <= 3);
+        }
+        long cell = GeoGrid.cellOf(AVALON_LAT, AVALON_LON);
+        assertTrue(ranges.stream().anyMatch(r -> cell >= r[0] && cell <= r[1]));
+    }
+
+    @Test
+    void testCellRangesWrapAntimeridian() {
+        List<long[]> ranges = GeoGrid.cellRanges(0, 179.95, 30);
+
+        long east = GeoGrid.cellOf(0.1, -179.8);
+        assertTrue(ranges.stream().anyMatch(r -> east >= r[0] && east <= r[1]));
+    }
+
+    @Test
+    void testInvalidRadiusIsRejected() {
+        GeoCellIndex index = new GeoCellIndex(1);
+
+        for (double radius : new double[] {0, -5, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> GeoGrid.cellRanges(AVALON_LAT, AVALON_LON, radius));
+            assertThrows(IllegalArgumentException.class, () -> index.findNear("alice", AVALON_LAT, AVALON_LON, radius));
+        }
+    }
+
+    @Test
+    void testFindNearMatchesBruteForce() throws Exception {
+        // Arrange: random points around southern California, loaded from H2
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+        EntityManager em = emf.createEntityManager();
+        Random random = new Random(5);
+        List<FuelUp> fuelUps = new ArrayList<>();
+
+        em.getTransaction().begin();
+        User user = new User();
+        user.setEmail("navigator@boat.com");
+        em.persist(user);
+        for (int i = 0; i < 500; i++) {
+            FuelUp fuelUp = new FuelUp(user, new Date(), new BigDecimal("20.00"), new BigDecimal("4.00"));
+            fuelUp.setLatitude(32.5 + random.nextDouble() * 2);
+            fuelUp.setLongitude(-119.5 + random.nextDouble() * 2);
+            em.persist(fuelUp);
+            fuelUps.add(fuelUp);
+        }
+        em.getTransaction().commit();
+
+        GeoCellIndex index = new GeoCellIndex(10);
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "")) {
+            index.load(conn, user.getUserId());
+        }
+
+        // Act
+        List<Long> near = index.findNear(user.getUserId(), AVALON_LAT, AVALON_LON, 20);
+
+        // Assert
+        List<Long> expected = new ArrayList<>();
+        for (FuelUp fuelUp : fuelUps) {
+            if (GeoGrid.distanceNm(AVALON_LAT, AVALON_LON, fuelUp.getLatitude(), fuelUp.getLongitude()) <= 20) {
+                expected.add(fuelUp.getId());
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), near.size());
+        assertTrue(near.containsAll(expected));
+        assertNull(index.findNear("someone-else", AVALON_LAT, AVALON_LON, 20));
+
+        em.close();
+        emf.close();
+    }
+
+    @Test
+    void testAddRemoveNearestFirstAndEviction() throws Exception {
+        // Arrange: an empty schema is enough to mark users as loaded
+        GeoCellIndex index = new GeoCellIndex(1);
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:geo;DB_CLOSE_DELAY=-1", "sa", "")) {
+            conn.createStatement().execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT, USER_ID VARCHAR(50), "
+                + "LATITUDE DOUBLE, LONGITUDE DOUBLE, GEO_CELL BIGINT, DELETED_AT TIMESTAMP)");
+            index.load(conn, "alice");
+
+            // Act
+            index.add("alice", 1, NEWPORT_LAT, NEWPORT_LON);
+            index.add("alice", 2, AVALON_LAT + 0.01, AVALON_LON);
+            index.add("bob", 3, AVALON_LAT, AVALON_LON);
+
+            // Assert
+            assertEquals(Arrays.asList(2L, 1L), index.findNear("alice", AVALON_LAT, AVALON_LON, 50));
+            index.remove("alice", 2, AVALON_LAT + 0.01, AVALON_LON);
+            assertEquals(Collections.singletonList(1L), index.findNear("alice", AVALON_LAT, AVALON_LON, 50));
+
+            index.load(conn, "bob");
+            assertFalse(index.isLoaded("alice"));
+            assertTrue(index.isLoaded("bob"));
+        }
+    }
+
+    @Test
+    void testFillUpAddedDuringLoadIsKept() throws Exception {
+        GeoCellIndex index = new GeoCellIndex(10);
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:geo-load;DB_CLOSE_DELAY=-1", "sa", "")) {
+            // Arrange: one stored fill-up, and another committed while the scan runs
+            conn.createStatement().execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT, USER_ID VARCHAR(50), "
+                + "LATITUDE DOUBLE, LONGITUDE DOUBLE, GEO_CELL BIGINT, DELETED_AT TIMESTAMP)");
+            conn.createStatement().execute("INSERT INTO FUEL_UPS VALUES (1, 'alice', " + NEWPORT_LAT + ", "
+                + NEWPORT_LON + ", " + GeoGrid.cellOf(NEWPORT_LAT, NEWPORT_LON) + ", NULL)");
+            Connection racing = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        index.add("alice", 2, AVALON_LAT, AVALON_LON);
+                    }
+                    return method.invoke(conn, args);
+                });
+
+            // Act
+            index.load(racing, "alice");
+
+            // Assert
+            assertEquals(Arrays.asList(2L, 1L), index.findNear("alice", AVALON_LAT, AVALON_LON, 50));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.boatfuel.housekeeping;
+
+import com.boatfuel.archive.FuelUpArchive;
+import com.boatfuel.archive.FuelUpArchiveStore;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.stats.FuelUpColumns;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for moving cold years out of FUEL_UPS and the partition DDL.
+ */
+class FuelUpArchiverTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testColdYearsMoveToArchive() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:archiver;DB_CLOSE_DELAY=-1", "sa", "")) {
+            // Arrange
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT PRIMARY KEY, USER_ID VARCHAR(50), "
+                    + "FUEL_DATE DATE, GALLONS DECIMAL(10,2), PRICE_PER_GALLON DECIMAL(10,2), TOTAL_COST DECIMAL(10,2), "
+                    + "ENGINE_HOURS DECIMAL(10,1), LOCATION_ID BIGINT, LATITUDE DOUBLE, LONGITUDE DOUBLE, "
+                    + "CREATED_AT TIMESTAMP, LOCATION VARCHAR(500), NOTES VARCHAR(2000), DELETED_AT TIMESTAMP)");
+                stmt.execute("INSERT INTO FUEL_UPS (FUEL_UP_ID, USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST, DELETED_AT) VALUES "
+                    + "(1, 'alice', '2021-04-01', 10.00, 4.00, 40.00, NULL), "
+                    + "(2, 'bob', '2021-05-01', 20.00, 4.00, 80.00, NULL), "
+                    + "(3, 'alice', '2022-06-01', 15.00, 4.00, 60.00, NULL), "
+                    + "(4, 'alice', '2022-07-01', 15.00, 4.00, 60.00, CURRENT_TIMESTAMP), "
+                    + "(5, 'alice', '2024-01-01', 12.00, 4.00, 48.00, NULL)");
+            }
+            FuelUpArchiveStore store = new FuelUpArchiveStore(directory);
+            FuelUpArchiver archiver = new FuelUpArchiver(store, new FuelUpPartitionManager(), 2);
+
+            // Act
+            List<Integer> years = archiver.archive(conn, 2024);
+            List<Integer> again = archiver.archive(conn, 2024);
+
+            // Assert
+            assertEquals(Arrays.asList(2021, 2022), years);
+            assertTrue(again.isEmpty());
+            assertEquals(2, store.read("alice", null, null).size());
+            assertEquals(1, store.read("bob", null, null).size());
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT FUEL_UP_ID FROM FUEL_UPS ORDER BY FUEL_UP_ID")) {
+                assertTrue(rs.next());
+                assertEquals(4, rs.getLong(1)); // soft-deleted, left for the purge
+                assertTrue(rs.next());
+                assertEquals(5, rs.getLong(1));
+                assertFalse(rs.next());
+            }
+            FuelUpColumns fleet = FuelUpColumns.load(conn, store);
+            assertEquals(4, fleet.size()); // archived rows count towards fleet statistics
+            assertEquals(2, fleet.userCount());
+        }
+    }
+
+    @Test
+    void testInterruptedRemovalIsFinishedByTheNextRun() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:archiver-resume;DB_CLOSE_DELAY=-1", "sa", "")) {
+            // Arrange: the 2021 archive was written but no rows were removed
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT PRIMARY KEY, USER_ID VARCHAR(50), "
+                    + "FUEL_DATE DATE, GALLONS DECIMAL(10,2), PRICE_PER_GALLON DECIMAL(10,2), TOTAL_COST DECIMAL(10,2), "
+                    + "ENGINE_HOURS DECIMAL(10,1), LOCATION_ID BIGINT, LATITUDE DOUBLE, LONGITUDE DOUBLE, "
+                    + "CREATED_AT TIMESTAMP, LOCATION VARCHAR(500), NOTES VARCHAR(2000), DELETED_AT TIMESTAMP)");
+                stmt.execute("INSERT INTO FUEL_UPS (FUEL_UP_ID, USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST) VALUES "
+                    + "(1, 'alice', '2021-04-01', 10.00, 4.00, 40.00), "
+                    + "(2, 'alice', '2021-05-01', 20.00, 4.00, 80.00)");
+            }
+            FuelUpArchiver crashing = new FuelUpArchiver(new CrashingStore(directory), new FuelUpPartitionManager(), 2);
+            assertThrows(IOException.class, () -> crashing.archive(conn, 2024));
+            FuelUpArchiveStore store = new FuelUpArchiveStore(directory);
+            assertFalse(store.isArchived(2021));
+            assertTrue(store.read("alice", null, null).isEmpty()); // still served from FUEL_UPS
+
+            // Act
+            List<Integer> years = new FuelUpArchiver(store, new FuelUpPartitionManager(), 2).archive(conn, 2024);
+
+            // Assert
+            assertEquals(Arrays.asList(2021), years);
+            assertTrue(store.isArchived(2021));
+            assertEquals(2, store.read("alice", null, null).size());
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM FUEL_UPS")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testRowDeletedWhileArchivingIsNotServed() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:archiver-delete;DB_CLOSE_DELAY=-1", "sa", "")) {
+            // Arrange: row 2 is soft-deleted after the archive is written
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT PRIMARY KEY, USER_ID VARCHAR(50), "
+                    + "FUEL_DATE DATE, GALLONS DECIMAL(10,2), PRICE_PER_GALLON DECIMAL(10,2), TOTAL_COST DECIMAL(10,2), "
+                    + "ENGINE_HOURS DECIMAL(10,1), LOCATION_ID BIGINT, LATITUDE DOUBLE, LONGITUDE DOUBLE, "
+                    + "CREATED_AT TIMESTAMP, LOCATION VARCHAR(500), NOTES VARCHAR(2000), DELETED_AT TIMESTAMP)");
+                stmt.execute("INSERT INTO FUEL_UPS (FUEL_UP_ID, USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST) VALUES "
+                    + "(1, 'alice', '2021-04-01', 10.00, 4.00, 40.00), "
+                    + "(2, 'alice', '2021-05-01', 20.00, 4.00, 80.00)");
+            }
+            FuelUpArchiveStore store = new FuelUpArchiveStore(directory) {
+                @Override
+                public FuelUpArchive write(int year, Iterator<FuelUp> rowsByUser) throws IOException {
+                    FuelUpArchive archive = super.write(year, rowsByUser);
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("UPDATE FUEL_UPS SET DELETED_AT = CURRENT_TIMESTAMP WHERE FUEL_UP_ID = 2");
+                    } catch (java.sql.SQLException e) {
+                        throw new IOException(e);
+                    }
+                    return archive;
+                }
+            };
+
+            // Act
+            new FuelUpArchiver(store, new FuelUpPartitionManager(), 2).archive(conn, 2024);
+
+            // Assert: left for the purge, and never served from the archive
+            assertEquals(1, store.read("alice", null, null).size());
+            assertEquals(1, new FuelUpArchiveStore(directory).read("alice", null, null).size());
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT FUEL_UP_ID FROM FUEL_UPS")) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getLong(1));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    void testPartitionDdl() {
+        assertEquals("ALTER TABLE FUEL_UPS PARTITION BY RANGE (YEAR(FUEL_DATE)) ("
+                + "PARTITION p_archived VALUES LESS THAN (2025), "
+                + "PARTITION p2025 VALUES LESS THAN (2026), "
+                + "PARTITION p2026 VALUES LESS THAN (2027), "
+                + "PARTITION p_future VALUES LESS THAN MAXVALUE)",
+            FuelUpPartitionManager.partitionTableDdl(2025, 2026));
+        assertEquals("ALTER TABLE FUEL_UPS REORGANIZE PARTITION p_future INTO ("
+                + "PARTITION p2027 VALUES LESS THAN (2028), PARTITION p_future VALUES LESS THAN MAXVALUE)",
+            FuelUpPartitionManager.addYearDdl(2027));
+        assertEquals("ALTER TABLE FUEL_UPS EXCHANGE PARTITION p2022 WITH TABLE FUEL_UPS_P2022",
+            FuelUpPartitionManager.exchangeYearDdl(2022));
+    }
+
+    /**
+     * Store whose node stops right after writing an archive
+     */
+    private static final class CrashingStore extends FuelUpArchiveStore {
+        CrashingStore(File directory) {
+            super(directory);
+        }
+
+        @Override
+        public FuelUpArchive write(int year, Iterator<FuelUp> rowsByUser) throws IOException {
+            super.write(year, rowsByUser);
+            throw new IOException("node stopped");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.boatfuel.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the idempotency key filter and key validation.
+ */
+class IdempotencyFilterTest {
+
+    @Test
+    void testFreshKeysAreRuledOut() {
+        // Arrange
+        IdempotencyFilter filter = new IdempotencyFilter(IdempotencyFilter.DEFAULT_TTL_MILLIS, 10_000, 100);
+        for (int i = 0; i < 1000; i++) {
+            filter.record("user:seen-" + i, (long) i, Long.MAX_VALUE);
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (filter.mightContain("user:fresh-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(filter.mightContain("user:seen-5"));
+        assertTrue(falsePositives < 10, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testRecentResultsAreBounded() {
+        IdempotencyFilter filter = new IdempotencyFilter(IdempotencyFilter.DEFAULT_TTL_MILLIS, 1000, 2);
+
+        filter.record("u:a", 1L, Long.MAX_VALUE);
+        filter.record("u:b", 2L, Long.MAX_VALUE);
+        filter.record("u:c", 3L, Long.MAX_VALUE);
+        filter.seed("u:d");
+
+        assertNull(filter.getRecent("u:a"));
+        assertEquals(Long.valueOf(3L), filter.getRecent("u:c"));
+        assertNull(filter.getRecent("u:d"));
+        assertTrue(filter.mightContain("u:a"));
+        assertTrue(filter.mightContain("u:d"));
+    }
+
+    @Test
+    void testExpiredResultsAreMisses() {
+        IdempotencyFilter filter = new IdempotencyFilter(IdempotencyFilter.DEFAULT_TTL_MILLIS, 1000, 10);
+
+        filter.record("u:live", 1L, System.currentTimeMillis() + 60_000);
+        filter.record("u:expired", 2L, System.currentTimeMillis() - 1);
+
+        assertEquals(Long.valueOf(1L), filter.getRecent("u:live"));
+        assertNull(filter.getRecent("u:expired"));
+    }
+
+    @Test
+    void testKeysSurviveOneRotation() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(20, 1000, 10);
+        filter.seed("u:old");
+
+        Thread.sleep(30);
+        assertTrue(filter.mightContain("u:old"));
+
+        Thread.sleep(30);
+        assertFalse(filter.mightContain("u:old"));
+    }
+
+    @Test
+    void testKeyValidation() {
+        assertTrue(IdempotencyFilter.isValidKey("3f2c9a1e-7b4d-4c8e-9f00-1a2b3c4d5e6f"));
+        assertFalse(IdempotencyFilter.isValidKey(""));
+        assertFalse(IdempotencyFilter.isValidKey(null));
+        assertFalse(IdempotencyFilter.isValidKey("has space"));
+        assertFalse(IdempotencyFilter.isValidKey(new String(new char[101]).replace('\0', 'a')));
+        assertEquals("alice:k1", IdempotencyFilter.requestKey("alice", "k1"));
+    }
+
+    @Test
+    void testRequestKeysDoNotCollideAcrossUsers() {
+        assertTrue(IdempotencyFilter.isValidKey("b:c"));
+        assertNotEquals(IdempotencyFilter.requestKey("a:b", "c"), IdempotencyFilter.requestKey("a", "b:c"));
+        assertNotEquals(IdempotencyFilter.requestKey("a%3Ab", "c"), IdempotencyFilter.requestKey("a:b", "c"));
+    }
+}
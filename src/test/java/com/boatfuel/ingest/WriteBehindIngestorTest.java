@@ -0,0 +1,237 @@
+package com.boatfuel.ingest;
+
+import com.boatfuel.entity.FuelUp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the write-ahead log and write-behind flusher: batching,
+ * crash recovery and dead-lettering.
+ */
+class WriteBehindIngestorTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testSubmissionsAreCoalescedIntoBatches() throws Exception {
+        // Arrange: hold the first flush so the rest queue up behind it
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindIngestor ingestor = new WriteBehindIngestor(directory, batch -> {
+            batchSizes.add(batch.size());
+            release.await(5, TimeUnit.SECONDS);
+        });
+        ingestor.start();
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            assertTrue(ingestor.submit(pending("user-" + (i % 3), "1" + i)));
+        }
+        release.countDown();
+        awaitFlushed(ingestor, 50);
+
+        // Assert
+        IngestMetrics metrics = ingestor.getMetrics();
+        assertEquals(50, metrics.getAccepted());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getBatches() <= 3, "batches: " + batchSizes);
+        assertEquals(50, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        ingestor.stop(1000);
+        assertEquals(0, new File(directory, IngestLog.LOG_FILE).length());
+    }
+
+    @Test
+    void testUnflushedEntriesAreReplayedOnStart() throws Exception {
+        // Arrange: three acknowledged entries, only the first stored before the crash
+        IngestLog log = new IngestLog(directory);
+        log.append(pending("alice", "10"));
+        log.append(pending("alice", "11"));
+        log.append(pending("bob", "12"));
+        log.checkpoint(1);
+        log.close();
+
+        List<PendingFuelUp> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindIngestor ingestor = new WriteBehindIngestor(directory, written::addAll);
+
+        // Act
+        ingestor.start();
+        awaitFlushed(ingestor, 2);
+        ingestor.stop(1000);
+
+        // Assert
+        assertEquals(2, ingestor.getMetrics().getRecovered());
+        assertEquals(2, written.size());
+        assertEquals(2, written.get(0).getSequence());
+        assertEquals("bob", written.get(1).getUserId());
+        assertEquals(new BigDecimal("12"), written.get(1).toFuelUp().getGallons());
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws Exception {
+        IngestLog log = new IngestLog(directory);
+        PendingFuelUp first = pending("alice", "10");
+        log.append(first);
+        log.append(pending("alice", "11"));
+        log.close();
+        try (FileOutputStream out = new FileOutputStream(new File(directory, IngestLog.LOG_FILE), true)) {
+            out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+        }
+
+        IngestLog reopened = new IngestLog(directory);
+        List<PendingFuelUp> recovered = reopened.takeRecovered();
+
+        assertEquals(2, recovered.size());
+        assertEquals(first.getIdempotencyKey(), recovered.get(0).getIdempotencyKey());
+        assertEquals(3, reopened.append(pending("alice", "12")));
+        reopened.close();
+    }
+
+    @Test
+    void testFailingEntryIsMovedToDeadLetters() throws Exception {
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindIngestor ingestor = new WriteBehindIngestor(directory, batch -> {
+            for (PendingFuelUp pending : batch) {
+                if ("unknown".equals(pending.getUserId())) {
+                    throw new IllegalStateException("No such user");
+                }
+            }
+            for (PendingFuelUp pending : batch) {
+                stored.add(pending.getUserId());
+            }
+        });
+        ingestor.retryBackoffMillis = 1;
+        ingestor.start();
+
+        ingestor.submit(pending("alice", "10"));
+        ingestor.submit(pending("unknown", "11"));
+        ingestor.submit(pending("bob", "12"));
+        awaitFlushed(ingestor, 3);
+        ingestor.stop(1000);
+
+        assertEquals(1, ingestor.getMetrics().getRejected());
+        assertTrue(stored.contains("alice"));
+        assertTrue(stored.contains("bob"));
+        assertFalse(stored.contains("unknown"));
+        assertTrue(new File(new File(directory, "rejected"), IngestLog.LOG_FILE).length() > 0);
+    }
+
+    @Test
+    void testOutageKeepsTheBatchInsteadOfDeadLettering() throws Exception {
+        // Arrange: the database rejects every write until it comes back
+        AtomicBoolean down = new AtomicBoolean(true);
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindIngestor ingestor = new WriteBehindIngestor(directory, batch -> {
+            if (down.get()) {
+                throw new IllegalStateException("Connection refused");
+            }
+            for (PendingFuelUp pending : batch) {
+                stored.add(pending.getUserId());
+            }
+        });
+        ingestor.retryBackoffMillis = 1;
+        ingestor.maxOutageBackoffMillis = 20;
+        ingestor.start();
+
+        // Act
+        ingestor.submit(pending("alice", "10"));
+        ingestor.submit(pending("bob", "11"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ingestor.getMetrics().getFailedBatches() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, ingestor.getMetrics().getFlushed());
+        down.set(false);
+        awaitFlushed(ingestor, 2);
+        ingestor.stop(1000);
+
+        // Assert
+        assertEquals(0, ingestor.getMetrics().getRejected());
+        assertTrue(stored.contains("alice"));
+        assertTrue(stored.contains("bob"));
+        assertFalse(new File(directory, "rejected").exists());
+    }
+
+    @Test
+    void testConcurrentSubmissionsReachTheFlusherInSequenceOrder() throws Exception {
+        // Arrange: the flusher must see every sequence, in order, or a
+        // checkpoint could truncate an acknowledged entry still in memory
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindIngestor ingestor = new WriteBehindIngestor(directory, batch -> {
+            for (PendingFuelUp pending : batch) {
+                sequences.add(pending.getSequence());
+            }
+        });
+        ingestor.start();
+        int threads = 8;
+        int perThread = 100;
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> submitters = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            String userId = "user-" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    for (int i = 0; i < perThread; i++) {
+                        assertTrue(ingestor.submit(pending(userId, "1" + i)));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            submitters.add(thread);
+            thread.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread thread : submitters) {
+            thread.join(10000);
+        }
+        awaitFlushed(ingestor, threads * perThread);
+        ingestor.stop(1000);
+
+        // Assert
+        assertTrue(failures.isEmpty(), failures.toString());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, sequences.get(i).longValue());
+        }
+        IngestLog reopened = new IngestLog(directory);
+        assertTrue(reopened.takeRecovered().isEmpty());
+        assertEquals(threads * perThread, reopened.getCheckpointSequence());
+        reopened.close();
+    }
+
+    private static PendingFuelUp pending(String userId, String gallons) {
+        FuelUp fuelUp = new FuelUp();
+        fuelUp.setDate(new java.sql.Date(1_700_000_000_000L));
+        fuelUp.setGallons(new BigDecimal(gallons));
+        fuelUp.setPricePerGallon(new BigDecimal("4.25"));
+        fuelUp.setNotes("Holiday weekend");
+        return PendingFuelUp.of(userId, fuelUp, null);
+    }
+
+    private static void awaitFlushed(WriteBehindIngestor ingestor, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ingestor.getMetrics().getFlushed() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, ingestor.getMetrics().getFlushed());
+    }
+}
@@ -137,9 +137,11 @@ class EndToEndIntegrationTest {
         fuelUpService.deleteFuelUp(fuelUpId);
         tx.commit();
 
-        // Verify deletion
+        // Verify deletion: soft-deleted, hidden from reads until purged
+        em.clear();
         FuelUp deletedFuelUp = em.find(FuelUp.class, fuelUpId);
-        assertNull(deletedFuelUp);
+        assertTrue(deletedFuelUp == null || deletedFuelUp.isDeleted());
+        assertTrue(fuelUpService.getFuelUpsByUser(user.getUserId()).isEmpty());
     }
 
     @Test
@@ -0,0 +1,122 @@
+package com.boatfuel.jdbc;
+
+import org.apache.commons.dbcp.DelegatingPreparedStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the application-managed, instrumented connection pool on H2.
+ */
+class InstrumentedDataSourceTest {
+
+    private InstrumentedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("database.driver", "org.h2.Driver");
+        config.setProperty("database.url", "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1;MODE=MySQL");
+        config.setProperty("database.user", "sa");
+        config.setProperty("database.password", "");
+        config.setProperty("pool.maxActive", "2");
+        config.setProperty("pool.minIdle", "0");
+        config.setProperty("pool.maxWaitMillis", "2000");
+        config.setProperty("pool.leakThresholdMillis", "0");
+        dataSource = ApplicationConnectionPool.create(config);
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS FUEL_UPS (USER_ID VARCHAR(50), GALLONS DECIMAL(10,2))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dataSource.close();
+    }
+
+    @Test
+    void testActiveAndIdleCounts() throws Exception {
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        PoolMetrics busy = dataSource.getMetrics();
+        assertEquals(2, busy.getActive());
+        assertEquals(2, busy.getOpenConnections());
+
+        first.close();
+        second.close();
+
+        PoolMetrics quiet = dataSource.getMetrics();
+        assertEquals(0, quiet.getActive());
+        assertEquals(2, quiet.getIdle());
+        assertEquals(0, quiet.getOpenConnections());
+        assertTrue(quiet.getBorrowCount() >= 3);
+    }
+
+    @Test
+    void testPreparedStatementsAreCachedPerConnection() throws Exception {
+        String sql = "SELECT COUNT(*) FROM FUEL_UPS WHERE USER_ID = ?";
+
+        Connection conn = dataSource.getConnection();
+        PreparedStatement first = conn.prepareStatement(sql);
+        Statement firstDelegate = ((DelegatingPreparedStatement) first).getInnermostDelegate();
+        first.close();
+
+        PreparedStatement second = conn.prepareStatement(sql);
+        Statement secondDelegate = ((DelegatingPreparedStatement) second).getInnermostDelegate();
+        second.close();
+        conn.close();
+
+        assertSame(firstDelegate, secondDelegate);
+    }
+
+    @Test
+    void testWaitTimeIsRecordedUnderContention() throws Exception {
+        // Arrange: exhaust the pool, release one connection after a delay
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread releaser = new Thread(() -> {
+            try {
+                waiting.await(1, TimeUnit.SECONDS);
+                Thread.sleep(100);
+                first.close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        releaser.start();
+
+        // Act
+        waiting.countDown();
+        Connection third = dataSource.getConnection();
+        releaser.join();
+
+        // Assert
+        assertTrue(dataSource.getMetrics().getMaxWaitMillis() >= 50);
+        third.close();
+        second.close();
+    }
+
+    @Test
+    void testLeakDetection() throws Exception {
+        Connection leaked = dataSource.getConnection();
+
+        assertEquals(1, dataSource.checkForLeaks());
+        assertEquals(1, dataSource.checkForLeaks());
+        assertEquals(1, dataSource.getMetrics().getLeaksDetected());
+
+        leaked.close();
+        assertEquals(0, dataSource.checkForLeaks());
+    }
+}
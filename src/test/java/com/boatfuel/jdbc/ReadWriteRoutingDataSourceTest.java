@@ -0,0 +1,147 @@
+package com.boatfuel.jdbc;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests read/write routing against separate in-memory H2 primary and replica databases.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica;
+    private ReadWriteRoutingDataSource router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = h2("routing_primary");
+        replica = h2("routing_replica");
+        label(primary, "primary");
+        label(replica, "replica");
+        router = new ReadWriteRoutingDataSource(primary, Collections.singletonList(replica));
+        RoutingContext.setStickyWindowMillis(RoutingContext.DEFAULT_STICKY_WINDOW_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.stopHealthChecks();
+        RoutingContext.setStickyWindowMillis(RoutingContext.DEFAULT_STICKY_WINDOW_MILLIS);
+    }
+
+    @Test
+    void testWritesGoToPrimary() throws Exception {
+        assertEquals("primary", whoAmI());
+    }
+
+    @Test
+    void testReadOnlyScopeGoesToReplica() throws Exception {
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("reader")) {
+            assertEquals("replica", whoAmI());
+        }
+        assertEquals("primary", whoAmI());
+    }
+
+    @Test
+    void testReadYourWritesStickiness() throws Exception {
+        RoutingContext.recordWrite("writer");
+
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("writer")) {
+            assertEquals("primary", whoAmI());
+        }
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("someone-else")) {
+            assertEquals("replica", whoAmI());
+        }
+    }
+
+    @Test
+    void testStickinessExpires() throws Exception {
+        RoutingContext.setStickyWindowMillis(1);
+        RoutingContext.recordWrite("writer");
+        Thread.sleep(10);
+
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("writer")) {
+            assertEquals("replica", whoAmI());
+        }
+    }
+
+    @Test
+    void testFailoverToHealthyReplicaThenPrimary() throws Exception {
+        // Arrange: first replica points at a database that does not exist
+        JdbcDataSource broken = new JdbcDataSource();
+        broken.setURL("jdbc:h2:mem:routing_missing;IFEXISTS=TRUE");
+        router = new ReadWriteRoutingDataSource(primary, Arrays.asList(broken, replica));
+
+        // Act & Assert: reads skip the broken replica
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("reader")) {
+            assertEquals("replica", whoAmI());
+            assertEquals("replica", whoAmI());
+        }
+        assertEquals(1, router.getHealthyReplicaCount());
+
+        // With no healthy replica left, reads fall back to the primary
+        ReadWriteRoutingDataSource onlyBroken =
+            new ReadWriteRoutingDataSource(primary, Collections.singletonList(broken));
+        onlyBroken.checkHealth();
+        assertEquals(0, onlyBroken.getHealthyReplicaCount());
+        try (RoutingContext.Scope scope = RoutingContext.readOnly("reader");
+             Connection conn = onlyBroken.getConnection()) {
+            assertEquals("primary", label(conn));
+        }
+    }
+
+    @Test
+    void testHealthCheckRestoresReplica() throws Exception {
+        router.checkHealth();
+        assertEquals(1, router.getHealthyReplicaCount());
+    }
+
+    @Test
+    void testNestedScopesRestoreOuterState() throws Exception {
+        try (RoutingContext.Scope outer = RoutingContext.readOnly("reader")) {
+            try (RoutingContext.Scope inner = RoutingContext.readOnly("writer")) {
+                assertTrue(RoutingContext.isReplicaEligible());
+            }
+            assertTrue(RoutingContext.isReplicaEligible());
+        }
+        assertFalse(RoutingContext.isReplicaEligible());
+    }
+
+    private String whoAmI() throws Exception {
+        try (Connection conn = router.getConnection()) {
+            return label(conn);
+        }
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    private static void label(DataSource dataSource, String role) throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS ROLE (NAME VARCHAR(20))");
+            stmt.execute("DELETE FROM ROLE");
+            stmt.execute("INSERT INTO ROLE VALUES ('" + role + "')");
+        }
+    }
+
+    private static String label(Connection conn) throws Exception {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT NAME FROM ROLE")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.boatfuel.location;
+
+import com.boatfuel.entity.Location;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for location normalization, the location dictionary and the
+ * in-memory location price index.
+ */
+class LocationPriceIndexTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setupEntityManagerFactory() {
+        emf = Persistence.createEntityManagerFactory("BoatFuelTrackerPU-Test");
+    }
+
+    @AfterAll
+    static void closeEntityManagerFactory() {
+        if (emf != null) {
+            emf.close();
+        }
+    }
+
+    @Test
+    void testCanonicalize() {
+        assertEquals("marina bay", LocationNormalizer.canonicalize("  Marina   Bay. "));
+        assertEquals("marina bay", LocationNormalizer.canonicalize("MARINA BAY"));
+        assertEquals("harbor point", LocationNormalizer.canonicalize("The Harbour Pt"));
+        assertEquals("cafe dock", LocationNormalizer.canonicalize("Café Dock"));
+        assertNull(LocationNormalizer.canonicalize(" -- "));
+        assertNull(LocationNormalizer.canonicalize(null));
+    }
+
+    @Test
+    void testDictionaryResolvesEquivalentNamesToOneRow() {
+        // Arrange
+        LocationDictionary dictionary = new LocationDictionary();
+        EntityManager em = emf.createEntityManager();
+
+        // Act
+        em.getTransaction().begin();
+        Long first = dictionary.resolve(em, "Sunset Marina");
+        em.getTransaction().commit();
+        dictionary.confirm("Sunset Marina", first);
+        em.getTransaction().begin();
+        Long second = dictionary.resolve(em, "sunset  MARINA");
+        Long third = dictionary.resolve(em, "Sunset Mar.");
+        em.getTransaction().commit();
+
+        // Assert
+        assertNotNull(first);
+        assertEquals(first, second);
+        assertEquals(first, third);
+        List<Location> rows = em.createQuery(
+                "SELECT l FROM Location l WHERE l.canonicalName = 'sunset marina'", Location.class)
+            .getResultList();
+        assertEquals(1, rows.size());
+        assertEquals("Sunset Marina", dictionary.getDisplayName(first));
+        em.close();
+    }
+
+    @Test
+    void testNameInsertedElsewhereResolvesToTheExistingRow() {
+        // Arrange: another node added the name after this one loaded its cache
+        LocationDictionary dictionary = new LocationDictionary();
+        EntityManager other = emf.createEntityManager();
+        other.getTransaction().begin();
+        Location existing = new Location("north dock", "North Dock");
+        other.persist(existing);
+        other.getTransaction().commit();
+        other.close();
+        EntityManager em = emf.createEntityManager();
+
+        // Act
+        em.getTransaction().begin();
+        Long resolved = dictionary.resolve(em, "NORTH DOCK");
+        Long inserted = dictionary.resolve(em, "South Dock");
+        em.getTransaction().rollback();
+
+        // Assert
+        assertEquals(existing.getId(), resolved);
+        assertEquals("North Dock", dictionary.getDisplayName(resolved));
+        assertNotNull(inserted);
+        em.getTransaction().begin();
+        Long again = dictionary.resolve(em, "South Dock");
+        em.getTransaction().commit();
+        assertNotEquals(inserted, again); // the rolled-back ID was never cached
+        em.close();
+    }
+
+    @Test
+    void testCheapestAmongRecentlyVisitedLocations() {
+        // Arrange
+        LocationPriceIndex index = new LocationPriceIndex(30);
+        long today = 20_000;
+        index.record(1, "alice", 10, today - 5, 420);
+        index.record(2, "alice", 20, today - 3, 389);
+        index.record(3, "alice", 30, today - 200, 299);
+        index.record(4, "bob", 10, today - 1, 400);
+
+        // Act
+        List<LocationPriceIndex.Quote> quotes = index.cheapestFor("alice", today - 90, today);
+
+        // Assert: location 30 was last visited too long ago
+        assertEquals(2, quotes.size());
+        assertEquals(20, quotes.get(0).getLocationId());
+        assertEquals(10, quotes.get(1).getLocationId());
+        assertEquals(400, quotes.get(1).getLatestPriceHundredths());
+        assertEquals(410, quotes.get(1).getRollingAverageHundredths());
+        assertEquals(today - 5, quotes.get(1).getLastVisitEpochDay());
+    }
+
+    @Test
+    void testRollingAverageWindowAndRemoval() {
+        LocationPriceIndex index = new LocationPriceIndex(30);
+        long today = 20_000;
+        index.record(1, "alice", 10, today - 60, 300);
+        index.record(2, "alice", 10, today - 10, 400);
+        index.record(3, "alice", 10, today - 20, 380);
+        index.record(4, "alice", 10, today - 2, 420);
+
+        LocationPriceIndex.Quote quote = index.cheapestFor("alice", 0, today).get(0);
+        assertEquals(420, quote.getLatestPriceHundredths());
+        assertEquals(400, quote.getRollingAverageHundredths());
+
+        index.remove(4, "alice", 10, today - 2);
+
+        quote = index.cheapestFor("alice", 0, today).get(0);
+        assertEquals(400, quote.getLatestPriceHundredths());
+        assertEquals(390, quote.getRollingAverageHundredths());
+        assertEquals(today - 10, quote.getLastVisitEpochDay());
+    }
+
+    @Test
+    void testRemovingTheLatestPriceFallsBackToAnOlderOne() {
+        // Arrange: the older price has already left the rolling window
+        LocationPriceIndex index = new LocationPriceIndex(30);
+        long today = 20_000;
+        index.record(1, "alice", 10, today - 90, 350);
+        index.record(2, "bob", 10, today - 1, 410);
+        assertEquals(410, index.cheapestFor("alice", 0, today).get(0).getLatestPriceHundredths());
+
+        // Act
+        index.remove(2, "bob", 10, today - 1);
+
+        // Assert
+        LocationPriceIndex.Quote quote = index.cheapestFor("alice", 0, today).get(0);
+        assertEquals(350, quote.getLatestPriceHundredths());
+        assertEquals(today - 90, quote.getLatestEpochDay());
+        assertTrue(index.cheapestFor("bob", 0, today).isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+package com.boatfuel.report;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for chunked, checkpointed monthly report generation against H2.
+ */
+class MonthlyReportGeneratorTest {
+
+    @TempDir
+    File directory;
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:reports;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute("CREATE TABLE USERS (USER_ID VARCHAR(50) PRIMARY KEY)");
+            stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT AUTO_INCREMENT PRIMARY KEY, USER_ID VARCHAR(50), "
+                + "FUEL_DATE DATE, GALLONS DECIMAL(10,2), PRICE_PER_GALLON DECIMAL(10,2), TOTAL_COST DECIMAL(10,2), "
+                + "DELETED_AT TIMESTAMP)");
+            stmt.execute("INSERT INTO USERS VALUES ('alice'), ('bob'), ('carol'), ('dave'), ('erin')");
+            stmt.execute("INSERT INTO FUEL_UPS (USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST, DELETED_AT) VALUES "
+                + "('alice', '2026-01-10', 10.00, 4.00, 40.00, NULL), "
+                + "('alice', '2026-02-03', 20.00, 4.00, 80.00, NULL), "
+                + "('alice', '2026-02-20', 10.00, 5.00, 50.00, NULL), "
+                + "('alice', '2026-02-21', 99.00, 5.00, 495.00, CURRENT_TIMESTAMP), "
+                + "('carol', '2026-02-14', 5.00, 4.00, 20.00, NULL), "
+                + "('erin', '2026-03-01', 8.00, 4.00, 32.00, NULL)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    void testWritesReportForEveryUserInChunks() throws Exception {
+        // Arrange
+        MonthlyReportGenerator generator = new MonthlyReportGenerator(directory, 2, 0);
+
+        // Act
+        int written = generator.generate(conn, YearMonth.of(2026, 2));
+        int again = generator.generate(conn, YearMonth.of(2026, 2));
+
+        // Assert
+        File monthDir = generator.monthDirectory(YearMonth.of(2026, 2));
+        assertEquals(5, written);
+        assertEquals(0, again);
+        assertTrue(new File(monthDir, MonthlyReportGenerator.COMPLETE_FILE).exists());
+        assertFalse(new File(monthDir, MonthlyReportGenerator.CHECKPOINT_FILE).exists());
+        String alice = read(new File(monthDir, "alice.csv"));
+        assertTrue(alice.contains("fillup,2026-02-03,1,20.00,4.00,80.00"), alice);
+        assertTrue(alice.contains("month,2026-02,2,30.00,4.333,130.00"), alice);
+        assertFalse(alice.contains("99.00"), alice);
+        assertTrue(read(new File(monthDir, "alice.html")).contains("<td>$130.00</td>"));
+        assertTrue(read(new File(monthDir, "bob.csv")).contains("month,2026-02,0,0,0,0"));
+    }
+
+    @Test
+    void testYearToDateCarriesForwardFromPreviousMonth() throws Exception {
+        // Arrange: January computed, then its ytd carried into February and March
+        MonthlyReportGenerator generator = new MonthlyReportGenerator(directory, 10, 0);
+        generator.generate(conn, YearMonth.of(2026, 1));
+        generator.generate(conn, YearMonth.of(2026, 2));
+        // Later rows for January must not change March: only reports are carried
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO FUEL_UPS (USER_ID, FUEL_DATE, GALLONS, PRICE_PER_GALLON, TOTAL_COST) "
+                + "VALUES ('alice', '2026-01-11', 1.00, 1.00, 1.00)");
+        }
+
+        // Act
+        generator.generate(conn, YearMonth.of(2026, 3));
+
+        // Assert
+        File march = generator.monthDirectory(YearMonth.of(2026, 3));
+        MonthlyReport.Totals alice = MonthlyReport.readYearToDate(new File(march, "alice.csv"));
+        assertEquals(3, alice.getCount());
+        assertEquals(0, new BigDecimal("170.00").compareTo(alice.getSpent()));
+        assertEquals(1, MonthlyReport.readYearToDate(new File(march, "erin.csv")).getCount());
+    }
+
+    @Test
+    void testYearToDateWithoutPreviousReportsIsQueried() throws Exception {
+        MonthlyReportGenerator generator = new MonthlyReportGenerator(directory, 10, 0);
+
+        generator.generate(conn, YearMonth.of(2026, 2));
+
+        File february = generator.monthDirectory(YearMonth.of(2026, 2));
+        MonthlyReport.Totals alice = MonthlyReport.readYearToDate(new File(february, "alice.csv"));
+        assertEquals(3, alice.getCount());
+        assertEquals(0, new BigDecimal("40.00").compareTo(alice.getGallons()));
+    }
+
+    @Test
+    void testUserWithoutPreviousReportFileIsQueried() throws Exception {
+        // Arrange: January finished, but alice's report is under another name
+        MonthlyReportGenerator generator = new MonthlyReportGenerator(directory, 10, 0);
+        generator.generate(conn, YearMonth.of(2026, 1));
+        File january = generator.monthDirectory(YearMonth.of(2026, 1));
+        assertTrue(new File(january, "alice.csv").renameTo(new File(january, "Alice.csv")));
+
+        // Act
+        generator.generate(conn, YearMonth.of(2026, 2));
+
+        // Assert
+        File february = generator.monthDirectory(YearMonth.of(2026, 2));
+        assertEquals(3, MonthlyReport.readYearToDate(new File(february, "alice.csv")).getCount());
+    }
+
+    @Test
+    void testResumesAfterCheckpoint() throws Exception {
+        // Arrange: a previous run got as far as bob
+        MonthlyReportGenerator generator = new MonthlyReportGenerator(directory, 2, 0);
+        File monthDir = generator.monthDirectory(YearMonth.of(2026, 2));
+        assertTrue(monthDir.mkdirs());
+        Files.write(new File(monthDir, MonthlyReportGenerator.CHECKPOINT_FILE).toPath(),
+            "bob".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        int written = generator.generate(conn, YearMonth.of(2026, 2));
+
+        // Assert
+        assertEquals(3, written);
+        assertFalse(new File(monthDir, "alice.csv").exists());
+        assertTrue(new File(monthDir, "carol.csv").exists());
+        assertTrue(new File(monthDir, "erin.html").exists());
+    }
+
+    @Test
+    void testFileNamesAreSanitized() {
+        assertEquals("a%2Fb%5Cc.d-e", MonthlyReportGenerator.fileName("a/b\\c.d-e"));
+        assertEquals("a%20b", MonthlyReportGenerator.fileName("a b"));
+        assertEquals("a_b", MonthlyReportGenerator.fileName("a_b"));
+        assertEquals("%41lice", MonthlyReportGenerator.fileName("Alice"));
+        assertEquals("%25", MonthlyReportGenerator.fileName("%"));
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
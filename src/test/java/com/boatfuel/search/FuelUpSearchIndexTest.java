@@ -0,0 +1,165 @@
+package com.boatfuel.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the embedded full-text index: term, prefix and paged queries,
+ * per-user scoping and recovery from disk.
+ */
+class FuelUpSearchIndexTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testTermAndPrefixSearch() throws Exception {
+        // Arrange
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        index.add("alice", 1, "Catalina Island", "Replaced the impeller");
+        index.add("alice", 2, "Avalon, Catalina", "Topped off");
+        index.add("alice", 3, "Marina Bay", "Impeller noise again");
+        index.add("bob", 4, "Catalina", "Impeller check");
+
+        // Act & Assert
+        assertArrayEquals(new long[] {3, 1}, index.search("alice", "impeller", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {2, 1}, index.search("alice", "CATALINA", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {1}, index.search("alice", "catalina impeller", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {3, 1}, index.search("alice", "imp*", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {2, 1}, index.search("alice", "cat*", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {1}, index.search("alice", "cat* isl*", 0, 10).getFuelUpIds());
+        assertArrayEquals(new long[] {4}, index.search("bob", "impeller", 0, 10).getFuelUpIds());
+        assertEquals(0, index.search("alice", "generator", 0, 10).getTotalMatches());
+        assertEquals(0, index.search("carol", "impeller", 0, 10).getTotalMatches());
+    }
+
+    @Test
+    void testPagination() throws Exception {
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        for (int i = 1; i <= 25; i++) {
+            index.add("alice", i, "Marina Bay", "fill " + i);
+        }
+
+        SearchPage second = index.search("alice", "marina", 10, 10);
+        SearchPage last = index.search("alice", "marina", 20, 10);
+
+        assertEquals(25, second.getTotalMatches());
+        assertEquals(15, second.getFuelUpIds()[0]);
+        assertEquals(6, second.getFuelUpIds()[9]);
+        assertArrayEquals(new long[] {5, 4, 3, 2, 1}, last.getFuelUpIds());
+        assertEquals(0, index.search("alice", "marina", 30, 10).getFuelUpIds().length);
+    }
+
+    @Test
+    void testRemoveAndReindex() throws Exception {
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        index.add("alice", 1, "Harbor Point", "impeller");
+        index.add("alice", 1, "Harbor Point", "new prop");
+
+        assertEquals(0, index.search("alice", "impeller", 0, 10).getTotalMatches());
+        assertEquals(1, index.search("alice", "prop", 0, 10).getTotalMatches());
+
+        index.remove("alice", 1);
+
+        assertEquals(0, index.search("alice", "harbor", 0, 10).getTotalMatches());
+    }
+
+    @Test
+    void testReopenReplaysLogAndTruncatesTornRecord() throws Exception {
+        // Arrange
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        index.add("alice", 1, "Catalina", "impeller");
+        index.add("alice", 2, "Catalina", "oil change");
+        index.remove("alice", 2);
+        index.close();
+        File log = new File(directory, "index.log");
+        long goodLength = log.length();
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(goodLength);
+            file.write(new byte[] {1, 0, 5, 'a'});
+        }
+
+        // Act
+        FuelUpSearchIndex reopened = new FuelUpSearchIndex(directory);
+
+        // Assert
+        assertEquals(goodLength, log.length());
+        assertArrayEquals(new long[] {1}, reopened.search("alice", "catalina", 0, 10).getFuelUpIds());
+        reopened.add("alice", 3, "Catalina", "");
+        assertEquals(2, reopened.search("alice", "catalina", 0, 10).getTotalMatches());
+    }
+
+    @Test
+    void testSnapshotCompactsLog() throws Exception {
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        for (int i = 0; i < FuelUpSearchIndex.SNAPSHOT_INTERVAL + 5; i++) {
+            index.add("user-" + (i % 7), i, "Dock " + (i % 13), "note " + i);
+        }
+        index.close();
+
+        assertTrue(new File(directory, "index.snapshot").exists());
+        FuelUpSearchIndex reopened = new FuelUpSearchIndex(directory);
+        int id = FuelUpSearchIndex.SNAPSHOT_INTERVAL + 3;
+        assertEquals(1, reopened.search("user-" + (id % 7), "note " + id, 0, 10).getTotalMatches());
+    }
+
+    @Test
+    void testNegativePagingIsClamped() throws Exception {
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        index.add("alice", 1, "Catalina", "impeller");
+
+        assertEquals(0, index.search("alice", "catalina", 0, -1).getFuelUpIds().length);
+        assertArrayEquals(new long[] {1}, index.search("alice", "catalina", -3, 10).getFuelUpIds());
+    }
+
+    @Test
+    void testBootstrapKeepsLiveWrites() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:search-bootstrap;DB_CLOSE_DELAY=-1", "sa", "")) {
+            // Arrange: one stored row, plus a row committed and indexed after the scan's snapshot
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT PRIMARY KEY, USER_ID VARCHAR(50), "
+                    + "LOCATION VARCHAR(500), NOTES VARCHAR(2000), DELETED_AT TIMESTAMP)");
+                stmt.execute("INSERT INTO FUEL_UPS VALUES (1, 'alice', 'Avalon', 'impeller', NULL)");
+            }
+            FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+            index.add("alice", 2, "Avalon", "oil change");
+
+            // Act
+            index.bootstrap(conn);
+            index.close();
+
+            // Assert
+            assertTrue(index.isBootstrapped());
+            assertEquals(2, index.search("alice", "avalon", 0, 10).getTotalMatches());
+            FuelUpSearchIndex reopened = new FuelUpSearchIndex(directory);
+            assertTrue(reopened.isBootstrapped());
+            assertEquals(2, reopened.search("alice", "avalon", 0, 10).getTotalMatches());
+        }
+    }
+
+    @Test
+    void testReopenReplaysLogSetAsideForAnUnfinishedSnapshot() throws Exception {
+        // Arrange: a crash after the log was set aside but before the snapshot landed
+        FuelUpSearchIndex index = new FuelUpSearchIndex(directory);
+        index.add("alice", 1, "Catalina", "impeller");
+        index.close();
+        assertTrue(new File(directory, "index.log").renameTo(new File(directory, "index.log.old")));
+        FuelUpSearchIndex second = new FuelUpSearchIndex(directory);
+        second.add("alice", 2, "Catalina", "oil change");
+        second.close();
+
+        // Act
+        FuelUpSearchIndex reopened = new FuelUpSearchIndex(directory);
+
+        // Assert
+        assertArrayEquals(new long[] {2, 1}, reopened.search("alice", "catalina", 0, 10).getFuelUpIds());
+    }
+}
@@ -0,0 +1,172 @@
+package com.boatfuel.servlet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for Accept-Encoding negotiation and the size threshold of the gzip filter.
+ */
+@ExtendWith(MockitoExtension.class)
+class CompressionFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private CompressionFilter filter;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() {
+        filter = new CompressionFilter();
+        body = new ByteArrayOutputStream();
+    }
+
+    @Test
+    void testLargeHtmlIsGzipped() throws Exception {
+        // Arrange
+        acceptGzip("text/html");
+        StringBuilder html = new StringBuilder("<table>");
+        for (int i = 0; i < 500; i++) {
+            html.append("<tr><td>2024-01-15</td><td>15.50</td><td>$3.89</td></tr>\n");
+        }
+        FilterChain chain = (req, res) -> {
+            PrintWriter out = res.getWriter();
+            out.print(html);
+        };
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        verify(response, never()).setContentLength(anyInt());
+        assertTrue(body.size() < html.length() / 10, "compressed to " + body.size());
+        assertEquals(html.toString(), gunzip(body.toByteArray()));
+    }
+
+    @Test
+    void testSmallBodyIsSentAsIs() throws Exception {
+        // Arrange
+        acceptGzip("application/json;charset=UTF-8");
+        byte[] json = "{\"totalFillups\":3}".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            res.setContentLength(json.length);
+            res.getOutputStream().write(json);
+        });
+
+        // Assert
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(response).setContentLengthLong(json.length);
+        assertArrayEquals(json, body.toByteArray());
+    }
+
+    @Test
+    void testAlreadyEncodedResponsePassesThrough() throws Exception {
+        // Arrange
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        byte[] payload = new byte[4096];
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            ((HttpServletResponse) res).setHeader("Content-Encoding", "gzip");
+            res.getOutputStream().write(payload);
+        });
+
+        // Assert
+        verify(response, times(1)).setHeader("Content-Encoding", "gzip");
+        assertEquals(payload.length, body.size());
+    }
+
+    @Test
+    void testFailedRequestLeavesResponseUncommitted() throws Exception {
+        // Arrange
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        FilterChain chain = (req, res) -> {
+            res.getWriter().print("<p>partial</p>");
+            throw new ServletException("Boom");
+        };
+
+        // Act
+        assertThrows(ServletException.class, () -> filter.doFilter(request, response, chain));
+
+        // Assert
+        verify(response, never()).getOutputStream();
+        verify(response, never()).setContentLength(anyInt());
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    }
+
+    @Test
+    void testNoAcceptEncodingSkipsWrapping() throws Exception {
+        when(request.getMethod()).thenReturn("GET");
+        FilterChain chain = mock(FilterChain.class);
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    void testAcceptEncodingNegotiation() {
+        assertTrue(accepts("gzip, deflate, br"));
+        assertTrue(accepts("deflate, gzip;q=0.5"));
+        assertTrue(accepts("*"));
+        assertFalse(accepts("gzip;q=0"));
+        assertFalse(accepts("br, deflate"));
+        assertFalse(accepts(null));
+    }
+
+    private void acceptGzip(String contentType) throws Exception {
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+        when(response.getStatus()).thenReturn(200);
+        when(response.getContentType()).thenReturn(contentType);
+        lenient().when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+    }
+
+    private static boolean accepts(String header) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(header);
+        return CompressionFilter.acceptsGzip(request);
+    }
+
+    static String gunzip(byte[] data) throws Exception {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
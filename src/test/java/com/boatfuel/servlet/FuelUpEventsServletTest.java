@@ -0,0 +1,93 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.events.FuelUpEventHub;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the Server-Sent Events endpoint.
+ */
+@ExtendWith(MockitoExtension.class)
+class FuelUpEventsServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private HttpSession session;
+
+    @Mock
+    private AsyncContext async;
+
+    private FuelUpEventHub hub;
+    private FuelUpEventsServlet servlet;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        hub = new FuelUpEventHub(8);
+        servlet = new FuelUpEventsServlet();
+        body = new ByteArrayOutputStream();
+
+        java.lang.reflect.Field field = FuelUpEventsServlet.class.getDeclaredField("hub");
+        field.setAccessible(true);
+        field.set(servlet, hub);
+
+        when(request.getSession(true)).thenReturn(session);
+        when(session.getAttribute("userId")).thenReturn("test-user-123");
+        when(request.startAsync()).thenReturn(async);
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+    }
+
+    @Test
+    void testDoGetStreamsUserEvents() throws Exception {
+        // Act
+        servlet.doGet(request, response);
+        hub.publishCreated("test-user-123", 7L);
+        hub.publishCreated("someone-else", 8L);
+
+        // Assert
+        verify(response).setContentType("text/event-stream;charset=UTF-8");
+        verify(async).setTimeout(FuelUpEventsServlet.STREAM_TIMEOUT_MILLIS);
+        String stream = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(stream.startsWith("retry: "));
+        assertTrue(stream.contains("event: fuelup-created\ndata: {\"count\":1,\"ids\":[7]}\n\n"));
+        assertFalse(stream.contains("{\"count\":1,\"ids\":[8]}"));
+        verify(async, never()).complete();
+    }
+
+    @Test
+    void testStreamEndUnsubscribes() throws Exception {
+        // Arrange
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        servlet.doGet(request, response);
+        verify(async).addListener(listener.capture());
+        assertEquals(1, hub.getSubscriberCount());
+
+        // Act
+        listener.getValue().onTimeout(new AsyncEvent(async));
+
+        // Assert
+        assertEquals(0, hub.getSubscriberCount());
+        verify(async).complete();
+    }
+}
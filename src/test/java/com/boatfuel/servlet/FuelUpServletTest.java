@@ -1,5 +1,6 @@
 package com.boatfuel.servlet;
 
+import com.boatfuel.ejb.FuelUpListRow;
 import com.boatfuel.ejb.FuelUpService;
 import com.boatfuel.entity.FuelUp;
 import com.boatfuel.entity.User;
@@ -13,6 +14,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
@@ -22,6 +24,8 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -47,12 +51,14 @@ class FuelUpServletTest {
     private FuelUpServlet servlet;
     private StringWriter stringWriter;
     private PrintWriter printWriter;
+    private ByteArrayOutputStream body;
 
     @BeforeEach
     void setUp() throws Exception {
         servlet = new FuelUpServlet();
         stringWriter = new StringWriter();
         printWriter = new PrintWriter(stringWriter);
+        body = new ByteArrayOutputStream();
 
         // Use reflection to inject the mocked service
         java.lang.reflect.Field field = FuelUpServlet.class.getDeclaredField("fuelUpService");
@@ -64,20 +70,20 @@ class FuelUpServletTest {
     void testDoGetWithUserIdInSession() throws Exception {
         // Arrange
         String userId = "test-user-123";
-        List<FuelUp> fuelUps = createTestFuelUps();
+        List<FuelUpListRow> fuelUps = createTestRows();
 
         when(request.getSession(true)).thenReturn(session);
         when(session.getAttribute("userId")).thenReturn(userId);
-        when(response.getWriter()).thenReturn(printWriter);
-        when(fuelUpService.getFuelUpsByUser(userId)).thenReturn(fuelUps);
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        when(fuelUpService.getFuelUpRows(userId)).thenReturn(fuelUps);
 
         // Act
         servlet.doGet(request, response);
 
         // Assert
-        verify(response).setContentType("text/html");
-        verify(fuelUpService).getFuelUpsByUser(userId);
-        String output = stringWriter.toString();
+        verify(response).setContentType("text/html;charset=UTF-8");
+        verify(fuelUpService).getFuelUpRows(userId);
+        String output = body.toString("UTF-8");
         assertTrue(output.contains("<html>"));
         assertTrue(output.contains("Your Fuel-Ups"));
     }
@@ -85,42 +91,41 @@ class FuelUpServletTest {
     @Test
     void testDoGetWithoutUserIdInSession() throws Exception {
         // Arrange
-        List<FuelUp> fuelUps = new ArrayList<>();
+        List<FuelUpListRow> fuelUps = new ArrayList<>();
 
         when(request.getSession(true)).thenReturn(session);
         when(session.getAttribute("userId")).thenReturn(null);
-        when(response.getWriter()).thenReturn(printWriter);
-        when(fuelUpService.getFuelUpsByUser("testuser")).thenReturn(fuelUps);
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        when(fuelUpService.getFuelUpRows("testuser")).thenReturn(fuelUps);
 
         // Act
         servlet.doGet(request, response);
 
         // Assert
         verify(session).setAttribute("userId", "testuser");
-        verify(fuelUpService).getFuelUpsByUser("testuser");
+        verify(fuelUpService).getFuelUpRows("testuser");
     }
 
     @Test
     void testDoGetRendersHtmlTable() throws Exception {
         // Arrange
         String userId = "test-user-123";
-        List<FuelUp> fuelUps = createTestFuelUps();
+        List<FuelUpListRow> fuelUps = createTestRows();
 
         when(request.getSession(true)).thenReturn(session);
         when(session.getAttribute("userId")).thenReturn(userId);
-        when(response.getWriter()).thenReturn(printWriter);
-        when(fuelUpService.getFuelUpsByUser(userId)).thenReturn(fuelUps);
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        when(fuelUpService.getFuelUpRows(userId)).thenReturn(fuelUps);
 
         // Act
         servlet.doGet(request, response);
 
         // Assert
-        String output = stringWriter.toString();
+        String output = body.toString("UTF-8");
         assertTrue(output.contains("<table"));
         assertTrue(output.contains("<tr>"));
         assertTrue(output.contains("<td>"));
-        assertTrue(output.contains("15.5"));
-        assertTrue(output.contains("3.89"));
+        assertTrue(output.contains("<td>15.5</td><td>$3.89</td>"));
     }
 
     @Test
@@ -130,14 +135,14 @@ class FuelUpServletTest {
 
         when(request.getSession(true)).thenReturn(session);
         when(session.getAttribute("userId")).thenReturn(userId);
-        when(response.getWriter()).thenReturn(printWriter);
-        when(fuelUpService.getFuelUpsByUser(userId)).thenThrow(new RuntimeException("Database error"));
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        when(fuelUpService.getFuelUpRows(userId)).thenThrow(new RuntimeException("Database error"));
 
         // Act
         servlet.doGet(request, response);
 
         // Assert
-        String output = stringWriter.toString();
+        String output = body.toString("UTF-8");
         assertTrue(output.contains("Error"));
     }
 
@@ -299,12 +304,12 @@ class FuelUpServletTest {
     void testSessionManagement() throws Exception {
         // Arrange
         String userId = "test-user-123";
-        List<FuelUp> fuelUps = new ArrayList<>();
+        List<FuelUpListRow> fuelUps = new ArrayList<>();
 
         when(request.getSession(true)).thenReturn(session);
         when(session.getAttribute("userId")).thenReturn(userId);
-        when(response.getWriter()).thenReturn(printWriter);
-        when(fuelUpService.getFuelUpsByUser(userId)).thenReturn(fuelUps);
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        when(fuelUpService.getFuelUpRows(userId)).thenReturn(fuelUps);
 
         // Act
         servlet.doGet(request, response);
@@ -314,6 +319,49 @@ class FuelUpServletTest {
         verify(session).getAttribute("userId");
     }
 
+    @Test
+    void testDoPostReplaysDuplicateIdempotencyKey() throws Exception {
+        // Arrange
+        FuelUp original = createTestFuelUps().get(0);
+        when(request.getSession()).thenReturn(session);
+        when(session.getAttribute("userId")).thenReturn("test-user-123");
+        when(request.getHeader("Idempotency-Key")).thenReturn("retry-1");
+        when(request.getParameter("date")).thenReturn("2024-01-15");
+        when(request.getParameter("gallons")).thenReturn("15.5");
+        when(request.getParameter("pricePerGallon")).thenReturn("3.89");
+        when(response.getWriter()).thenReturn(printWriter);
+        when(fuelUpService.createFuelUp(any(FuelUp.class), eq("retry-1"))).thenReturn(original);
+
+        // Act
+        servlet.doPost(request, response);
+
+        // Assert
+        verify(response).setHeader("Idempotent-Replayed", "true");
+        verify(fuelUpService, never()).createFuelUp(any(FuelUp.class));
+        assertTrue(stringWriter.toString().contains("Success"));
+    }
+
+    @Test
+    void testDoPostRejectsInvalidIdempotencyKey() throws Exception {
+        when(request.getSession()).thenReturn(session);
+        when(session.getAttribute("userId")).thenReturn("test-user-123");
+        when(request.getHeader("Idempotency-Key")).thenReturn("not a valid key");
+        when(response.getWriter()).thenReturn(printWriter);
+
+        servlet.doPost(request, response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+        verifyNoInteractions(fuelUpService);
+    }
+
+    private List<FuelUpListRow> createTestRows() {
+        List<FuelUpListRow> rows = new ArrayList<>();
+        for (FuelUp fuelUp : createTestFuelUps()) {
+            rows.add(FuelUpListRow.of(fuelUp));
+        }
+        return rows;
+    }
+
     private List<FuelUp> createTestFuelUps() {
         List<FuelUp> fuelUps = new ArrayList<>();
 
@@ -0,0 +1,132 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpListRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fuel-up table rendering: the previous per-cell string concatenation
+ * through a PrintWriter against FuelUpTableRenderer. The GC profiler's
+ * gc.alloc.rate.norm column shows the bytes allocated per page.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.boatfuel.servlet.FuelUpTableRenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuelUpTableRenderBenchmark {
+
+    @Param({"10000", "100000"})
+    int rows;
+
+    private List<FuelUpListRow> fuelUps;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fuelUps = randomRows(rows, new Random(42));
+    }
+
+    @Benchmark
+    public long concatenated() {
+        CountingOutputStream sink = new CountingOutputStream();
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8));
+        out.println("<html>");
+        out.println("<head><title>Boat Fuel Tracker</title></head>");
+        out.println("<body>");
+        out.println("<h1>Your Fuel-Ups</h1>");
+        out.println("<table border='1'>");
+        out.println("<tr><th>Date</th><th>Gallons</th><th>Price/Gal</th><th>Total</th></tr>");
+        for (FuelUpListRow fuelUp : fuelUps) {
+            out.println("<tr>");
+            out.println("<td>" + fuelUp.getDate() + "</td>");
+            out.println("<td>" + fuelUp.getGallons() + "</td>");
+            out.println("<td>$" + fuelUp.getPricePerGallon() + "</td>");
+            out.println("<td>$" + fuelUp.getTotalCost() + "</td>");
+            out.println("</tr>");
+        }
+        out.println("</table>");
+        out.println("</body>");
+        out.println("</html>");
+        out.flush();
+        return sink.count;
+    }
+
+    @Benchmark
+    public long renderer() throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        FuelUpTableRenderer page = new FuelUpTableRenderer(sink);
+        page.writePageStart();
+        for (FuelUpListRow fuelUp : fuelUps) {
+            page.writeRow(fuelUp);
+        }
+        page.writePageEnd();
+        page.finish();
+        return sink.count;
+    }
+
+    static List<FuelUpListRow> randomRows(int count, Random random) {
+        List<FuelUpListRow> rows = new ArrayList<>(count);
+        long day = 18_000;
+        for (int i = 0; i < count; i++) {
+            BigDecimal gallons = BigDecimal.valueOf(500 + random.nextInt(20_000), 2);
+            BigDecimal price = BigDecimal.valueOf(2_500 + random.nextInt(3_000), 3);
+            BigDecimal total = gallons.multiply(price).setScale(2, RoundingMode.HALF_UP);
+            rows.add(new FuelUpListRow((long) i,
+                java.sql.Date.valueOf(java.time.LocalDate.ofEpochDay(day - i / 3)), gallons, price, total));
+        }
+        return rows;
+    }
+
+    /**
+     * Discards output, as a response to a fast client would
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(FuelUpTableRenderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
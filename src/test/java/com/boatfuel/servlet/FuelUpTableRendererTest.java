@@ -0,0 +1,162 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpListRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the buffered fuel-up table renderer: formatting, escaping and
+ * chunked output.
+ */
+class FuelUpTableRendererTest {
+
+    @Test
+    void testRowMatchesTextFormatting() throws Exception {
+        // Arrange
+        FuelUpListRow row = new FuelUpListRow(1L, java.sql.Date.valueOf("2024-03-05"),
+            new BigDecimal("15.5"), new BigDecimal("3.899"), new BigDecimal("60.43"));
+
+        // Act
+        String html = render(out -> {
+            FuelUpTableRenderer page = new FuelUpTableRenderer(out);
+            page.writeRow(row);
+            page.finish();
+        });
+
+        // Assert
+        assertEquals("<tr><td>2024-03-05</td><td>15.5</td><td>$3.899</td><td>$60.43</td></tr>\n", html);
+    }
+
+    @Test
+    void testDecimalsMatchToPlainString() throws Exception {
+        Random random = new Random(7);
+        BigDecimal[] values = new BigDecimal[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = BigDecimal.valueOf(random.nextLong() % 1_000_000_000_000L, random.nextInt(10));
+        }
+        BigDecimal[] edges = {
+            BigDecimal.ZERO, new BigDecimal("0.00"), new BigDecimal("-0.05"), new BigDecimal("1E+3"),
+            new BigDecimal("123456789012345.678"), new BigDecimal("0.0000000001"), new BigDecimal("-999999999999999")
+        };
+
+        for (BigDecimal value : concat(values, edges)) {
+            String rendered = render(out -> {
+                FuelUpTableRenderer page = new FuelUpTableRenderer(out);
+                page.writeDecimal(value);
+                page.finish();
+            });
+            assertEquals(value.toPlainString(), rendered);
+        }
+    }
+
+    @Test
+    void testDatesUseTheZonesCalendarDay() throws Exception {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        LocalDate[] days = {
+            LocalDate.of(1969, 12, 31), LocalDate.of(1970, 1, 1), LocalDate.of(2000, 2, 29),
+            LocalDate.of(2024, 3, 10), LocalDate.of(2024, 11, 3), LocalDate.of(2099, 12, 31)
+        };
+
+        for (LocalDate day : days) {
+            // Late evening local time is already the next day in UTC
+            Date date = Date.from(day.atTime(23, 30).atZone(ZoneId.of(zone.getID())).toInstant());
+            String rendered = render(out -> {
+                FuelUpTableRenderer page = new FuelUpTableRenderer(out, zone);
+                page.writeDate(date);
+                page.finish();
+            });
+            assertEquals(day.toString(), rendered);
+        }
+    }
+
+    @Test
+    void testTextIsEscapedAndUtf8Encoded() throws Exception {
+        String message = "<script>alert('x')</script> & \"café\" € 🚤";
+
+        String html = render(out -> {
+            FuelUpTableRenderer page = new FuelUpTableRenderer(out);
+            page.writeError(message);
+            page.finish();
+        });
+
+        assertEquals("<h1>Error: &lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; &amp; "
+            + "&quot;café&quot; € 🚤</h1>\n", html);
+    }
+
+    @Test
+    void testLargePagesAreWrittenInBufferSizedChunks() throws Exception {
+        // Arrange
+        List<FuelUpListRow> rows = FuelUpTableRenderBenchmark.randomRows(20_000, new Random(1));
+        ChunkRecordingStream out = new ChunkRecordingStream();
+
+        // Act
+        FuelUpTableRenderer page = new FuelUpTableRenderer(out);
+        page.writePageStart();
+        for (FuelUpListRow row : rows) {
+            page.writeRow(row);
+        }
+        page.writePageEnd();
+        page.finish();
+
+        // Assert
+        String html = new String(out.bytes.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(html.startsWith("<html>"));
+        assertTrue(html.endsWith("</html>\n"));
+        assertEquals(rows.size() + 1, html.split("<tr>", -1).length - 1);
+        assertTrue(out.writes <= out.bytes.size() / (FuelUpTableRenderer.BUFFER_SIZE - 100) + 1);
+        assertEquals(1, out.flushes);
+    }
+
+    private interface Rendering {
+        void run(OutputStream out) throws IOException;
+    }
+
+    private static String render(Rendering rendering) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rendering.run(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal[] concat(BigDecimal[] first, BigDecimal[] second) {
+        BigDecimal[] all = new BigDecimal[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    private static final class ChunkRecordingStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int writes;
+        int flushes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
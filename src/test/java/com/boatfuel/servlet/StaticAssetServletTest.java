@@ -0,0 +1,174 @@
+package com.boatfuel.servlet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for fingerprinted, pre-compressed dashboard assets.
+ */
+@ExtendWith(MockitoExtension.class)
+class StaticAssetServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private StaticAssets assets;
+    private StaticAssetServlet servlet;
+    private ByteArrayOutputStream body;
+    private String css;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append(".row-").append(i).append(" { margin: 0; padding: 4px; }\n");
+        }
+        css = sb.toString();
+        Map<String, byte[]> contents = new HashMap<>();
+        contents.put("app.css", css.getBytes(StandardCharsets.UTF_8));
+        contents.put("app.js", "loadFuelUps();".getBytes(StandardCharsets.UTF_8));
+        assets = new StaticAssets("/boat-fuel-tracker", contents);
+
+        servlet = new StaticAssetServlet();
+        java.lang.reflect.Field field = StaticAssetServlet.class.getDeclaredField("assets");
+        field.setAccessible(true);
+        field.set(servlet, assets);
+        body = new ByteArrayOutputStream();
+    }
+
+    @Test
+    void testUrlsAreFingerprintedByContent() {
+        String url = assets.url("app.css");
+
+        assertTrue(url.matches("/boat-fuel-tracker/assets/app\\.[0-9a-f]{12}\\.css"), url);
+        assertEquals("<link href=\"" + url + "\">",
+            IndexServlet.resolveAssets("<link href=\"{{ASSET:app.css}}\">", assets));
+    }
+
+    @Test
+    void testServesGzipWithImmutableCaching() throws Exception {
+        // Arrange
+        when(request.getPathInfo()).thenReturn("/" + fingerprinted("app.css"));
+        when(request.getHeader("If-None-Match")).thenReturn(null);
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+
+        // Act
+        servlet.doGet(request, response);
+
+        // Assert
+        verify(response).setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setContentType("text/css;charset=UTF-8");
+        verify(response).setContentLength(body.size());
+        assertTrue(body.size() < css.length() / 4);
+        assertEquals(css, CompressionFilterTest.gunzip(body.toByteArray()));
+    }
+
+    @Test
+    void testSmallAssetIsServedUncompressed() throws Exception {
+        when(request.getPathInfo()).thenReturn("/" + fingerprinted("app.js"));
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+
+        servlet.doGet(request, response);
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        assertEquals("loadFuelUps();", new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNotModifiedWhenEtagMatches() throws Exception {
+        // Arrange: learn the ETag from a first response
+        when(request.getPathInfo()).thenReturn("/" + fingerprinted("app.css"));
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        servlet.doGet(request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        HttpServletResponse second = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        // Act
+        servlet.doGet(request, second);
+
+        // Assert
+        verify(second).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(second, never()).getOutputStream();
+    }
+
+    @Test
+    void testEncodingsHaveSeparateEtags() throws Exception {
+        // Arrange: the ETag of the gzip body
+        when(request.getPathInfo()).thenReturn("/" + fingerprinted("app.css"));
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+        servlet.doGet(request, response);
+        ArgumentCaptor<String> gzipEtag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), gzipEtag.capture());
+        HttpServletResponse identity = mock(HttpServletResponse.class);
+        when(identity.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(new ByteArrayOutputStream()));
+        when(request.getHeader("Accept-Encoding")).thenReturn(null);
+        when(request.getHeader("If-None-Match")).thenReturn(gzipEtag.getValue());
+
+        // Act
+        servlet.doGet(request, identity);
+
+        // Assert
+        assertTrue(gzipEtag.getValue().endsWith("-gz\""), gzipEtag.getValue());
+        verify(identity, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(identity).setHeader("ETag", assets.find(fingerprinted("app.css")).getEtag(false));
+        assertTrue(StaticAssetServlet.matches("\"x\", W/" + gzipEtag.getValue(), gzipEtag.getValue()));
+    }
+
+    @Test
+    void testUnknownOrStaleFingerprintIsNotFound() throws Exception {
+        when(request.getPathInfo()).thenReturn("/app.000000000000.css");
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    void testIndexTemplateReferencesOnlyKnownAssets() throws Exception {
+        // Arrange: the real template and asset files
+        Map<String, byte[]> contents = new HashMap<>();
+        contents.put("app.css", Files.readAllBytes(Paths.get("src/main/webapp/assets/app.css")));
+        contents.put("app.js", Files.readAllBytes(Paths.get("src/main/webapp/assets/app.js")));
+        String template = new String(Files.readAllBytes(Paths.get("src/main/webapp/index-template.html")),
+            StandardCharsets.UTF_8);
+
+        // Act
+        String resolved = IndexServlet.resolveAssets(template, new StaticAssets("", contents));
+
+        // Assert
+        assertFalse(resolved.contains("{{ASSET:"));
+        assertFalse(resolved.contains("<style>"));
+        assertTrue(resolved.contains("{{USERNAME}}"));
+        assertTrue(resolved.length() < 8 * 1024, "HTML shell is " + resolved.length() + " chars");
+    }
+
+    private String fingerprinted(String name) {
+        String url = assets.url(name);
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+}
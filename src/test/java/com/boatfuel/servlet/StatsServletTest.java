@@ -0,0 +1,126 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpService;
+import com.boatfuel.ejb.FuelUpStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the JSON statistics endpoint.
+ */
+@ExtendWith(MockitoExtension.class)
+class StatsServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private HttpSession session;
+
+    @Mock
+    private FuelUpService fuelUpService;
+
+    private StatsServlet servlet;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servlet = new StatsServlet();
+        body = new ByteArrayOutputStream();
+
+        java.lang.reflect.Field field = StatsServlet.class.getDeclaredField("fuelUpService");
+        field.setAccessible(true);
+        field.set(servlet, fuelUpService);
+
+        when(request.getSession(true)).thenReturn(session);
+        when(session.getAttribute("userId")).thenReturn("test-user-123");
+        when(fuelUpService.getStatistics("test-user-123")).thenReturn(
+            new FuelUpStatistics(3, new BigDecimal("77.80"), new BigDecimal("302.22"), new BigDecimal("3.876667")));
+    }
+
+    @Test
+    void testDoGetReturnsJson() throws Exception {
+        // Arrange
+        when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+
+        // Act
+        servlet.doGet(request, response);
+
+        // Assert
+        verify(response).setContentType("application/json;charset=UTF-8");
+        String json = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals("{\"totalFillups\":3,\"totalGallons\":77.80,\"totalSpent\":302.22,"
+            + "\"averagePricePerGallon\":3.876667}", json);
+        assertTrue(json.length() < 200);
+    }
+
+    @Test
+    void testDoGetNotModifiedWhenEtagMatches() throws Exception {
+        // Arrange: first request to learn the ETag
+        when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+        servlet.doGet(request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+
+        HttpServletResponse second = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        // Act
+        servlet.doGet(request, second);
+
+        // Assert
+        verify(second).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(second, never()).getOutputStream();
+    }
+
+    @Test
+    void testDoGetHandlesException() throws Exception {
+        when(fuelUpService.getStatistics("test-user-123")).thenThrow(new RuntimeException("Database error"));
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_INTERNAL_SERVER_ERROR), contains("Error retrieving statistics"));
+    }
+
+    static class CapturingOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream target;
+
+        CapturingOutputStream(ByteArrayOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
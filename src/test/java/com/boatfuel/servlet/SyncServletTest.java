@@ -0,0 +1,90 @@
+package com.boatfuel.servlet;
+
+import com.boatfuel.ejb.FuelUpChanges;
+import com.boatfuel.ejb.FuelUpService;
+import com.boatfuel.entity.FuelUp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the delta sync endpoint.
+ */
+@ExtendWith(MockitoExtension.class)
+class SyncServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private HttpSession session;
+
+    @Mock
+    private FuelUpService fuelUpService;
+
+    private SyncServlet servlet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servlet = new SyncServlet();
+
+        java.lang.reflect.Field field = SyncServlet.class.getDeclaredField("fuelUpService");
+        field.setAccessible(true);
+        field.set(servlet, fuelUpService);
+
+        when(request.getSession(true)).thenReturn(session);
+        when(session.getAttribute("userId")).thenReturn("test-user-123");
+    }
+
+    @Test
+    void testDoGetReturnsChangesSinceToken() throws Exception {
+        // Arrange
+        FuelUp fuelUp = new FuelUp();
+        fuelUp.setId(7L);
+        fuelUp.setGallons(new BigDecimal("12.50"));
+        fuelUp.setNotes("Said \"fill it\"\n");
+        when(request.getParameter("since")).thenReturn("41");
+        when(fuelUpService.changesSince("test-user-123", 41, SyncServlet.DEFAULT_LIMIT)).thenReturn(
+            new FuelUpChanges(Collections.singletonList(fuelUp), Arrays.asList(3L, 5L), 44, false, false));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new StatsServletTest.CapturingOutputStream(body));
+
+        // Act
+        servlet.doGet(request, response);
+
+        // Assert
+        String json = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"token\":\"44\",\"hasMore\":false,\"reset\":false,\"upserts\":[{\"id\":7,"));
+        assertTrue(json.contains("\"gallons\":12.50"));
+        assertTrue(json.contains("\"notes\":\"Said \\\"fill it\\\"\\n\""));
+        assertTrue(json.endsWith("\"deleted\":[3,5]}"));
+    }
+
+    @Test
+    void testDoGetRejectsInvalidToken() throws Exception {
+        when(request.getParameter("since")).thenReturn("abc");
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+        verifyNoInteractions(fuelUpService);
+    }
+}
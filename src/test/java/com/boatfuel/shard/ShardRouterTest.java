@@ -0,0 +1,139 @@
+package com.boatfuel.shard;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests user sharding across several in-memory H2 databases:
+ * routing and scatter-gather aggregates.
+ */
+class ShardRouterTest {
+
+    private static final int USERS = 200;
+
+    private final String run = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong nextId = new AtomicLong(1);
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        router = new ShardRouter(Arrays.asList(shard("s0"), shard("s1"), shard("s2")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    void testRoutingIsStableAndSpread() throws Exception {
+        Map<String, Integer> perShard = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            String userId = "user-" + i;
+            String shardId = router.shardFor(userId).getId();
+            assertEquals(shardId, router.shardFor(userId).getId());
+            perShard.merge(shardId, 1, Integer::sum);
+        }
+
+        assertEquals(3, perShard.size());
+        for (int count : perShard.values()) {
+            assertTrue(count > 600, "unbalanced shard: " + perShard);
+        }
+    }
+
+    @Test
+    void testScatterGatherFleetStatistics() throws Exception {
+        insertUsers(USERS, 2);
+
+        FuelUpStatistics stats = new ShardedStatistics(router).fleetStatistics();
+
+        assertEquals(USERS * 2, stats.getTotalFillups());
+        assertEquals(0, new BigDecimal(USERS * 2 * 10).compareTo(stats.getTotalGallons()));
+        assertEquals(0, new BigDecimal("4").compareTo(stats.getAveragePricePerGallon()));
+    }
+
+    @Test
+    void testUserWorkRunsOnlyOnTheOwningShard() throws Exception {
+        // Arrange
+        List<String> users = insertUsers(USERS, 2);
+
+        // Act & Assert
+        for (String userId : users) {
+            Shard owner = router.shardFor(userId);
+            for (Shard shard : router.getShards()) {
+                assertEquals(shard == owner ? 2 : 0, countFuelUps(shard, userId));
+            }
+        }
+    }
+
+    private List<String> insertUsers(int count, int fuelUpsEach) throws Exception {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String userId = "user-" + i;
+            users.add(userId);
+            router.withUser(userId, shard -> {
+                try (Connection conn = shard.getDataSource().getConnection()) {
+                    try (PreparedStatement user = conn.prepareStatement(
+                            "INSERT INTO USERS (USER_ID, EMAIL) VALUES (?, ?)")) {
+                        user.setString(1, userId);
+                        user.setString(2, userId + "@example.com");
+                        user.executeUpdate();
+                    }
+                    try (PreparedStatement fuelUp = conn.prepareStatement(
+                            "INSERT INTO FUEL_UPS (FUEL_UP_ID, USER_ID, GALLONS, PRICE_PER_GALLON, TOTAL_COST) "
+                                + "VALUES (?, ?, 10, 4, 40)")) {
+                        for (int j = 0; j < fuelUpsEach; j++) {
+                            fuelUp.setLong(1, nextId.getAndIncrement());
+                            fuelUp.setString(2, userId);
+                            fuelUp.executeUpdate();
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        return users;
+    }
+
+    private int countFuelUps(Shard shard, String userId) throws Exception {
+        try (Connection conn = shard.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM FUEL_UPS WHERE USER_ID = ?")) {
+            stmt.setString(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private Shard shard(String id) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:shard_" + run + "_" + id + ";DB_CLOSE_DELAY=-1;MODE=MySQL");
+        dataSource.setUser("sa");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE USERS (USER_ID VARCHAR(50) PRIMARY KEY, EMAIL VARCHAR(255))");
+            stmt.execute("CREATE TABLE FUEL_UPS (FUEL_UP_ID BIGINT PRIMARY KEY, USER_ID VARCHAR(50) NOT NULL, "
+                + "GALLONS DECIMAL(10,2), PRICE_PER_GALLON DECIMAL(10,2), TOTAL_COST DECIMAL(10,2), DELETED_AT TIMESTAMP, "
+                + "FOREIGN KEY (USER_ID) REFERENCES USERS(USER_ID))");
+        }
+        return new Shard(id, dataSource);
+    }
+}
@@ -0,0 +1,146 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for single-flight, freshness and bounded concurrency of async statistics.
+ */
+class AsyncStatisticsLoaderTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneQuery() throws Exception {
+        // Arrange
+        AsyncStatisticsLoader loader = new AsyncStatisticsLoader(executor, 4, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+
+        // Act
+        CompletableFuture<FuelUpStatistics> first = loader.load("alice", userId -> {
+            queries.incrementAndGet();
+            await(release);
+            return stats(3);
+        });
+        CompletableFuture<FuelUpStatistics> second = loader.load("alice", userId -> stats(99));
+        release.countDown();
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(3, first.get(5, TimeUnit.SECONDS).getTotalFillups());
+        assertEquals(1, queries.get());
+        assertEquals(0, loader.getInFlightCount());
+    }
+
+    @Test
+    void testFreshResultIsReusedUntilInvalidated() throws Exception {
+        AsyncStatisticsLoader loader = new AsyncStatisticsLoader(executor, 4, 60_000);
+        AtomicInteger queries = new AtomicInteger();
+
+        loader.load("alice", userId -> stats(queries.incrementAndGet())).get(5, TimeUnit.SECONDS);
+        FuelUpStatistics reused = loader.load("alice", userId -> stats(queries.incrementAndGet())).get(5, TimeUnit.SECONDS);
+        loader.invalidate("alice");
+        FuelUpStatistics reloaded = loader.load("alice", userId -> stats(queries.incrementAndGet())).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, reused.getTotalFillups());
+        assertEquals(2, reloaded.getTotalFillups());
+    }
+
+    @Test
+    void testQueryOverlappingInvalidationIsNotCached() throws Exception {
+        // Arrange: a query is running when a write invalidates the user
+        AsyncStatisticsLoader loader = new AsyncStatisticsLoader(executor, 4, 60_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<FuelUpStatistics> stale = loader.load("alice", userId -> {
+            started.countDown();
+            await(release);
+            return stats(1);
+        });
+        await(started);
+
+        // Act
+        loader.invalidate("alice");
+        CompletableFuture<FuelUpStatistics> afterWrite = loader.load("alice", userId -> stats(2));
+        release.countDown();
+
+        // Assert
+        assertNotSame(stale, afterWrite);
+        assertEquals(1, stale.get(5, TimeUnit.SECONDS).getTotalFillups());
+        assertEquals(2, afterWrite.get(5, TimeUnit.SECONDS).getTotalFillups());
+        assertEquals(2, loader.load("alice", userId -> stats(3)).get(5, TimeUnit.SECONDS).getTotalFillups());
+    }
+
+    @Test
+    void testFailuresAreNotReused() throws Exception {
+        AsyncStatisticsLoader loader = new AsyncStatisticsLoader(executor, 4, 60_000);
+
+        CompletableFuture<FuelUpStatistics> failed = loader.load("alice", userId -> {
+            throw new RuntimeException("Failed to calculate statistics");
+        });
+
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals(7, loader.load("alice", userId -> stats(7)).get(5, TimeUnit.SECONDS).getTotalFillups());
+    }
+
+    @Test
+    void testConcurrencyIsBounded() throws Exception {
+        // Arrange
+        AsyncStatisticsLoader loader = new AsyncStatisticsLoader(executor, 2, 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[8];
+
+        // Act
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = loader.load("user-" + i, userId -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return stats(1);
+            });
+        }
+        CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(maxRunning.get() <= 2, "max running " + maxRunning.get());
+    }
+
+    private static FuelUpStatistics stats(int count) {
+        return new FuelUpStatistics(count, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for seeding and maintaining the per-user and fleet sketches.
+ */
+class DistributionRegistryTest {
+
+    private final DistributionRegistry registry = new DistributionRegistry();
+
+    @Test
+    void testCreateIsAppliedToSeededSketch() {
+        registry.seed("captain", registry.version("captain"), new FuelUpSketch());
+
+        registry.recordCreate(fuelUp("captain", "10.00", "3.50"));
+
+        assertEquals(1, registry.get("captain").getCount());
+    }
+
+    @Test
+    void testSeedLoadedBeforeAWriteIsDropped() {
+        // Arrange: the sketch is loaded, then a create commits before seed()
+        long version = registry.version("captain");
+        registry.recordCreate(fuelUp("captain", "10.00", "3.50"));
+
+        // Act
+        boolean seeded = registry.seed("captain", version, new FuelUpSketch());
+
+        // Assert: the next read loads again and sees the create
+        assertFalse(seeded);
+        assertNull(registry.get("captain"));
+    }
+
+    @Test
+    void testDeleteKeepsServingTheFleetUntilRebuilt() {
+        // Arrange
+        FuelUpSketch fleet = new FuelUpSketch();
+        fleet.add(new BigDecimal("3.50"), new BigDecimal("10.00"));
+        assertTrue(registry.seedFleet(registry.fleetVersion(), fleet));
+        FuelUp deleted = fuelUp("deckhand", "10.00", "3.50");
+
+        // Act
+        registry.recordDelete(deleted);
+
+        // Assert
+        assertTrue(registry.isFleetStale());
+        assertEquals(1, registry.getFleet().getCount());
+        long version = registry.fleetVersion();
+        registry.recordCreate(fuelUp("captain", "12.00", "3.75"));
+        assertFalse(registry.seedFleet(version, new FuelUpSketch()));
+        assertTrue(registry.seedFleet(registry.fleetVersion(), new FuelUpSketch()));
+        assertFalse(registry.isFleetStale());
+        assertEquals(0, registry.getFleet().getCount());
+    }
+
+    private FuelUp fuelUp(String userId, String gallons, String price) {
+        User user = new User();
+        user.setUserId(userId);
+        return new FuelUp(user, new Date(), new BigDecimal(gallons), new BigDecimal(price));
+    }
+}
@@ -0,0 +1,70 @@
+package com.boatfuel.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fleet aggregation throughput at increasing parallelism. Speedup is the
+ * ratio of each score to the parallelism=1 score; it is bounded by the
+ * number of physical cores on the machine running the benchmark.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.boatfuel.stats.FleetAggregationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetAggregationBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    @Param({"5000000"})
+    int rows;
+
+    private FuelUpColumns columns;
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        columns = FleetAggregatorTest.randomColumns(rows, rows / 50, new Random(42));
+        pool = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public FleetAggregate aggregate() {
+        return FleetAggregator.aggregate(columns, pool, parallelism);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(FleetAggregationBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,135 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FleetStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parallel fleet aggregation and partial merging.
+ */
+class FleetAggregatorTest {
+
+    @Test
+    void testParallelMatchesSequential() {
+        // Arrange
+        FuelUpColumns columns = randomColumns(100_000, 2_000, new Random(7));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        // Act
+        FleetAggregate parallel = FleetAggregator.aggregate(columns, pool, 4);
+        FleetAggregate sequential = FleetAggregator.aggregateSequential(columns);
+        pool.shutdown();
+
+        // Assert
+        assertEquals(sequential.count, parallel.count);
+        assertEquals(sequential.gallons, parallel.gallons);
+        assertEquals(sequential.spent, parallel.spent);
+        assertEquals(sequential.priceSum, parallel.priceSum);
+        assertEquals(sequential.minPrice, parallel.minPrice);
+        assertEquals(sequential.maxPrice, parallel.maxPrice);
+        assertArrayEquals(sequential.priceHistogram, parallel.priceHistogram);
+        assertEquals(sequential.userBase, parallel.userBase);
+        assertArrayEquals(sequential.userGallons, parallel.userGallons);
+    }
+
+    @Test
+    void testMergeIsOrderIndependent() {
+        FuelUpColumns columns = randomColumns(1_000, 40, new Random(3));
+        FleetAggregate first = new FleetAggregate();
+        first.addRange(columns, 0, 400);
+        FleetAggregate second = new FleetAggregate();
+        second.addRange(columns, 400, 1_000);
+
+        FleetAggregate ab = first.merge(second);
+        FleetAggregate ba = second.merge(first);
+
+        assertEquals(ab.gallons, ba.gallons);
+        assertArrayEquals(ab.userGallons, ba.userGallons);
+        assertArrayEquals(ab.priceHistogram, ba.priceHistogram);
+    }
+
+    @Test
+    void testStatisticsAndTopConsumers() {
+        // Arrange: alice 30 gal, bob 5 gal, carol 12 gal
+        FuelUpColumns columns = new FuelUpColumns(
+            new String[] {"alice", "bob", "carol"},
+            new int[] {0, 0, 1, 2},
+            new long[] {1000, 2000, 500, 1200},
+            new long[] {350, 410, 1250, 399},
+            new long[] {3500, 8200, 6250, 4788},
+            4);
+
+        // Act
+        FleetStatistics stats = FleetAggregator.aggregateSequential(columns).toStatistics(columns, 2);
+
+        // Assert
+        assertEquals(4, stats.getTotalFillups());
+        assertEquals(3, stats.getUserCount());
+        assertEquals(new BigDecimal("47.00"), stats.getTotalGallons());
+        assertEquals(new BigDecimal("227.38"), stats.getTotalSpent());
+        assertEquals(new BigDecimal("3.50"), stats.getMinPricePerGallon());
+        assertEquals(new BigDecimal("12.50"), stats.getMaxPricePerGallon());
+        assertEquals(1, stats.getPriceHistogram()[FleetAggregate.PRICE_BUCKETS - 1]);
+        assertEquals(2, stats.getTopConsumers().size());
+        assertEquals("alice", stats.getTopConsumers().get(0).getUserId());
+        assertEquals("carol", stats.getTopConsumers().get(1).getUserId());
+    }
+
+    @Test
+    void testBuilderGroupsRowsByUser() {
+        // Arrange: rows arrive unordered, as from FUEL_UPS followed by the archive
+        FuelUpColumns.Builder builder = new FuelUpColumns.Builder();
+        builder.add("bob", 500, 1250, 6250);
+        builder.add("alice", 1000, 350, 3500);
+        builder.add("bob", 200, 400, 800);
+        builder.add("alice", 2000, 410, 8200);
+
+        // Act
+        FuelUpColumns columns = builder.build();
+        FleetStatistics stats = FleetAggregator.aggregateSequential(columns).toStatistics(columns, 2);
+
+        // Assert
+        assertArrayEquals(new int[] {0, 0, 1, 1}, columns.userIndex);
+        assertEquals(2, stats.getUserCount());
+        assertEquals("bob", columns.userIds[0]);
+        assertEquals(new BigDecimal("7.00"), stats.getTopConsumers().get(1).getTotalGallons());
+    }
+
+    @Test
+    void testEmptyFleet() {
+        FuelUpColumns columns = new FuelUpColumns(new String[0], new int[0], new long[0], new long[0], new long[0], 0);
+
+        FleetStatistics stats = FleetAggregator.aggregate(columns).toStatistics(columns, 5);
+
+        assertEquals(0, stats.getTotalFillups());
+        assertEquals(BigDecimal.ZERO, stats.getAveragePricePerGallon());
+        assertTrue(stats.getTopConsumers().isEmpty());
+    }
+
+    /**
+     * Synthetic columns ordered by user, as FuelUpColumns.load produces them
+     */
+    static FuelUpColumns randomColumns(int rows, int users, Random random) {
+        String[] userIds = new String[users];
+        for (int u = 0; u < users; u++) {
+            userIds[u] = "user-" + u;
+        }
+        int[] userIndex = new int[rows];
+        long[] gallons = new long[rows];
+        long[] price = new long[rows];
+        long[] total = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            userIndex[i] = (int) ((long) i * users / rows);
+            gallons[i] = 500 + random.nextInt(20_000);
+            price[i] = 250 + random.nextInt(600);
+            total[i] = gallons[i] * price[i] / 100;
+        }
+        return new FuelUpColumns(userIds, userIndex, gallons, price, total, rows);
+    }
+}
@@ -0,0 +1,79 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FleetStatistics;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for seeding and maintaining the in-memory fleet statistics.
+ */
+class FleetStatisticsCacheTest {
+
+    private final FleetStatisticsCache cache = new FleetStatisticsCache();
+
+    @Test
+    void testCreatesAndDeletesAreApplied() {
+        // Arrange: alice 10 gal at $3.50, bob 20 gal at $4.10
+        seed(new FuelUpColumns(new String[] {"alice", "bob"}, new int[] {0, 1},
+            new long[] {1000, 2000}, new long[] {350, 410}, new long[] {3500, 8200}, 2));
+        FuelUp fillUp = fuelUp("carol", "30.00", "3.80");
+
+        // Act
+        cache.recordCreate(fillUp);
+        FleetStatistics afterCreate = cache.get(1);
+        cache.recordDelete(fillUp);
+        FleetStatistics afterDelete = cache.get(5);
+
+        // Assert
+        assertEquals(3, afterCreate.getTotalFillups());
+        assertEquals(3, afterCreate.getUserCount());
+        assertEquals(new BigDecimal("60.00"), afterCreate.getTotalGallons());
+        assertEquals("carol", afterCreate.getTopConsumers().get(0).getUserId());
+        assertEquals(2, afterDelete.getTotalFillups());
+        assertEquals(2, afterDelete.getUserCount());
+        assertEquals(new BigDecimal("117.00"), afterDelete.getTotalSpent());
+        assertFalse(cache.isStale());
+    }
+
+    @Test
+    void testDeletingAnExtremeMarksStatisticsStale() {
+        seed(new FuelUpColumns(new String[] {"alice"}, new int[] {0, 0},
+            new long[] {1000, 2000}, new long[] {350, 410}, new long[] {3500, 8200}, 2));
+
+        cache.recordDelete(fuelUp("alice", "10.00", "3.50"));
+
+        assertTrue(cache.isStale());
+        assertEquals(1, cache.get(5).getTotalFillups());
+    }
+
+    @Test
+    void testSeedLoadedBeforeAWriteIsDropped() {
+        // Arrange: the columns are loaded, then a create commits before seed()
+        long version = cache.version();
+        cache.recordCreate(fuelUp("alice", "10.00", "3.50"));
+        FuelUpColumns columns = new FuelUpColumns(new String[0], new int[0], new long[0], new long[0], new long[0], 0);
+
+        // Act
+        boolean seeded = cache.seed(version, FleetAggregator.aggregateSequential(columns), columns);
+
+        // Assert: the next read loads again and sees the create
+        assertFalse(seeded);
+        assertNull(cache.get(5));
+    }
+
+    private void seed(FuelUpColumns columns) {
+        assertTrue(cache.seed(cache.version(), FleetAggregator.aggregateSequential(columns), columns));
+    }
+
+    private FuelUp fuelUp(String userId, String gallons, String price) {
+        User user = new User();
+        user.setUserId(userId);
+        return new FuelUp(user, new Date(), new BigDecimal(gallons), new BigDecimal(price));
+    }
+}
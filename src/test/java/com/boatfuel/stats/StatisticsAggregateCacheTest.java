@@ -0,0 +1,106 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpStatistics;
+import com.boatfuel.entity.FuelUp;
+import com.boatfuel.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the precomputed per-user statistics aggregates.
+ */
+class StatisticsAggregateCacheTest {
+
+    private final StatisticsAggregateCache cache = new StatisticsAggregateCache(60_000);
+
+    @Test
+    void testMissUntilSeeded() {
+        assertNull(cache.get("captain"));
+
+        cache.seed("captain", cache.version("captain"), 2, new BigDecimal("40.00"), new BigDecimal("160.00"), new BigDecimal("8.00"));
+
+        FuelUpStatistics stats = cache.get("captain");
+        assertNotNull(stats);
+        assertEquals(2, stats.getTotalFillups());
+        assertEquals(new BigDecimal("40.00"), stats.getTotalGallons());
+        assertEquals(0, new BigDecimal("4").compareTo(stats.getAveragePricePerGallon()));
+    }
+
+    @Test
+    void testCreateAndDeleteApplyDeltas() {
+        cache.seed("captain", cache.version("captain"), 0, null, null, null);
+        FuelUp fuelUp = fuelUp("captain", "10.00", "3.50");
+
+        cache.recordCreate(fuelUp);
+        FuelUpStatistics afterCreate = cache.get("captain");
+        assertEquals(1, afterCreate.getTotalFillups());
+        assertEquals(0, new BigDecimal("35.00").compareTo(afterCreate.getTotalSpent()));
+        assertEquals(0, new BigDecimal("3.50").compareTo(afterCreate.getAveragePricePerGallon()));
+
+        cache.recordDelete(fuelUp);
+        FuelUpStatistics afterDelete = cache.get("captain");
+        assertEquals(0, afterDelete.getTotalFillups());
+        assertEquals(0, BigDecimal.ZERO.compareTo(afterDelete.getTotalGallons()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(afterDelete.getAveragePricePerGallon()));
+    }
+
+    @Test
+    void testDeltaForUnseededUserIsIgnored() {
+        cache.recordCreate(fuelUp("deckhand", "10.00", "3.50"));
+
+        assertNull(cache.get("deckhand"));
+    }
+
+    @Test
+    void testSeedQueriedBeforeAWriteIsDropped() {
+        // Arrange: the seed query runs, then a create commits before seed()
+        long version = cache.version("captain");
+        cache.recordCreate(fuelUp("captain", "10.00", "3.50"));
+
+        // Act
+        boolean seeded = cache.seed("captain", version, 0, null, null, null);
+
+        // Assert: the next read queries again and sees the create
+        assertFalse(seeded);
+        assertNull(cache.get("captain"));
+        assertTrue(cache.seed("captain", cache.version("captain"), 1, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.ONE));
+    }
+
+    @Test
+    void testSeedQueriedBeforeAClearIsDropped() {
+        long version = cache.version("captain");
+        cache.clear();
+
+        assertFalse(cache.seed("captain", version, 1, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE));
+        assertNull(cache.get("captain"));
+    }
+
+    @Test
+    void testExpiredEntryIsDropped() throws Exception {
+        StatisticsAggregateCache shortLived = new StatisticsAggregateCache(1);
+        shortLived.seed("captain", shortLived.version("captain"), 1, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+
+        Thread.sleep(5);
+
+        assertNull(shortLived.get("captain"));
+    }
+
+    @Test
+    void testInvalidate() {
+        cache.seed("captain", cache.version("captain"), 1, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+
+        cache.invalidate("captain");
+
+        assertNull(cache.get("captain"));
+    }
+
+    private FuelUp fuelUp(String userId, String gallons, String price) {
+        User user = new User();
+        user.setUserId(userId);
+        return new FuelUp(user, new Date(), new BigDecimal(gallons), new BigDecimal(price));
+    }
+}
@@ -0,0 +1,126 @@
+package com.boatfuel.stats;
+
+import com.boatfuel.ejb.FuelUpDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the quantile and histogram sketches.
+ */
+class TDigestTest {
+
+    @Test
+    void testQuantilesOfUniformValues() {
+        // Arrange
+        TDigest digest = new TDigest();
+        Random random = new Random(11);
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            digest.add(random.nextDouble() * 100);
+        }
+
+        // Assert
+        assertEquals(100_000, digest.size());
+        assertEquals(50, digest.quantile(0.50), 1.0);
+        assertEquals(90, digest.quantile(0.90), 0.5);
+        assertEquals(99, digest.quantile(0.99), 0.2);
+        assertTrue(digest.centroidCount() < 2 * TDigest.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    void testMergedDigestsMatchSingleDigest() {
+        TDigest left = new TDigest();
+        TDigest right = new TDigest();
+        for (int i = 0; i < 10_000; i++) {
+            left.add(i);
+            right.add(10_000 + i);
+        }
+
+        left.merge(right);
+
+        assertEquals(20_000, left.size());
+        assertEquals(10_000, left.quantile(0.5), 200);
+        assertEquals(19_800, left.quantile(0.99), 100);
+        assertEquals(0, left.getMin());
+        assertEquals(19_999, left.getMax());
+    }
+
+    @Test
+    void testMergeKeepsTheOtherDigestsExtremes() {
+        // Arrange: a coarse digest whose outer centroids average away its min and max
+        TDigest coarse = new TDigest(5);
+        for (int i = 0; i < 10_000; i++) {
+            coarse.add(i);
+        }
+        TDigest merged = new TDigest();
+
+        // Act
+        merged.merge(coarse);
+
+        // Assert
+        assertEquals(0, merged.getMin());
+        assertEquals(9_999, merged.getMax());
+        assertEquals(0, merged.quantile(0), 0.001);
+        assertEquals(9_999, merged.quantile(1), 0.001);
+    }
+
+    @Test
+    void testEmptyDigest() {
+        assertTrue(Double.isNaN(new TDigest().quantile(0.5)));
+    }
+
+    @Test
+    void testHistogramBucketsAndMerge() {
+        FixedBucketHistogram a = new FixedBucketHistogram(0, 0.25, 41);
+        FixedBucketHistogram b = new FixedBucketHistogram(0, 0.25, 41);
+        a.add(3.10);
+        a.add(3.20);
+        b.add(50.0);
+        b.add(-1.0);
+
+        a.merge(b);
+
+        long[] counts = a.getCounts();
+        assertEquals(4, a.getTotalCount());
+        assertEquals(2, counts[12]);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[40]);
+        assertThrows(IllegalArgumentException.class, () -> a.merge(new FixedBucketHistogram(0, 1, 41)));
+    }
+
+    @Test
+    void testSketchSurvivesSerialization() throws Exception {
+        // Arrange
+        FuelUpSketch sketch = new FuelUpSketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(new BigDecimal("3.00").add(BigDecimal.valueOf(i, 2)), BigDecimal.valueOf(i));
+        }
+
+        // Act
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sketch);
+        }
+        FuelUpSketch copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (FuelUpSketch) in.readObject();
+        }
+        copy.add(new BigDecimal("3.50"), new BigDecimal("20"));
+
+        // Assert
+        FuelUpDistribution distribution = copy.toDistribution();
+        assertEquals(101, distribution.getCount());
+        assertEquals(3.50, distribution.getPriceP50().doubleValue(), 0.02);
+        assertEquals(90, distribution.getGallonsP90().doubleValue(), 2);
+        assertSame(distribution, copy.toDistribution());
+    }
+}
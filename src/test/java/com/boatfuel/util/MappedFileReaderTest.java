@@ -0,0 +1,114 @@
+package com.boatfuel.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MappedFileReader and the NIO path of FileSystemHelper.
+ */
+class MappedFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testByteBufferAndCharSequenceViews() throws Exception {
+        // Arrange
+        Path file = write("import.csv", "date,gallons\n2024-01-15,15.5\n");
+
+        // Act
+        try (MappedFileReader reader = MappedFileReader.open(file)) {
+            ByteBuffer bytes = reader.asByteBuffer();
+            CharSequence chars = reader.asCharSequence();
+
+            // Assert
+            assertEquals(29, reader.size());
+            assertEquals(29, bytes.remaining());
+            assertEquals('d', (char) bytes.get(0));
+            assertEquals(29, chars.length());
+            assertEquals("gallons", chars.subSequence(5, 12).toString());
+        }
+    }
+
+    @Test
+    void testLineIteratorReusesFlyweight() throws Exception {
+        // Arrange
+        Path file = write("lines.txt", "first\r\nsecond\n\nlast");
+
+        // Act
+        List<String> lines = new ArrayList<>();
+        CharSequence previous = null;
+        boolean sameInstance = true;
+        try (MappedFileReader reader = MappedFileReader.open(file)) {
+            MappedFileReader.LineIterator it = reader.lines();
+            while (it.hasNext()) {
+                CharSequence line = it.next();
+                if (previous != null && previous != line) {
+                    sameInstance = false;
+                }
+                previous = line;
+                lines.add(line.toString());
+            }
+            assertEquals(4, it.getLineNumber());
+        }
+
+        // Assert
+        assertTrue(sameInstance);
+        assertEquals(4, lines.size());
+        assertEquals("first", lines.get(0));
+        assertEquals("second", lines.get(1));
+        assertEquals("", lines.get(2));
+        assertEquals("last", lines.get(3));
+    }
+
+    @Test
+    void testEmptyFile() throws Exception {
+        Path file = write("empty.txt", "");
+
+        try (MappedFileReader reader = MappedFileReader.open(file)) {
+            assertEquals(0, reader.size());
+            assertFalse(reader.lines().hasNext());
+            assertEquals("", reader.decode(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testDecodeUtf8() throws Exception {
+        Path file = write("template.html", "<p>Café ⛵</p>\n");
+
+        try (MappedFileReader reader = MappedFileReader.open(file)) {
+            assertEquals("<p>Café ⛵</p>\n", reader.decode(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testReadFileUsesLocalFile() throws Exception {
+        Path file = write("notes.txt", "line one\nline two\n");
+
+        String content = FileSystemHelper.readFileUsingJBossVFS(file.toString());
+
+        assertEquals("line one\nline two\n", content);
+    }
+
+    @Test
+    void testOpenMappedFileRejectsMissingFile() {
+        assertThrows(FileNotFoundException.class, () ->
+            FileSystemHelper.openMappedFile(tempDir.resolve("missing.txt").toString()));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,76 @@
+package com.boatfuel.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pooled gzip output with pre-compressed segments spliced in.
+ */
+class PooledGzipOutputStreamTest {
+
+    @Test
+    void testSplicedSegmentsDecodeAsOneBody() throws Exception {
+        // Arrange
+        DeflaterPool pool = new DeflaterPool(6, 2);
+        GzipSegment head = GzipSegment.compress(repeat("<style>body { margin: 0 }</style>\n", 200));
+        GzipSegment tail = GzipSegment.compress(repeat("<script>load();</script>\n", 200));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        // Act
+        PooledGzipOutputStream out = new PooledGzipOutputStream(bytes, pool);
+        out.writePrecompressed(head);
+        out.write("captain-ahab".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.writePrecompressed(tail);
+        out.write("</html>".getBytes(StandardCharsets.UTF_8));
+        out.close();
+
+        // Assert
+        String expected = new String(head.getOriginal(), StandardCharsets.UTF_8) + "captain-ahab"
+            + new String(tail.getOriginal(), StandardCharsets.UTF_8) + "</html>";
+        assertEquals(expected, gunzip(bytes.toByteArray()));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testDeflatersAreReused() throws Exception {
+        DeflaterPool pool = new DeflaterPool(6, 1);
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (PooledGzipOutputStream out = new PooledGzipOutputStream(bytes, pool)) {
+                out.write(("body " + i).getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals("body " + i, gunzip(bytes.toByteArray()));
+        }
+
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String gunzip(byte[] data) throws Exception {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}